@@ -23,16 +23,49 @@
 package waterloo.fx.plot;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import javafx.geometry.Rectangle2D;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.paint.Paint;
 import javafx.scene.shape.Rectangle;
 import javafx.scene.shape.Shape;
+import javafx.scene.text.Text;
 
 /**
+ * Base class for plots that draw a rectangle, or a shape inscribed in a
+ * rectangle, for each datum.
+ *
+ * Subclasses calculate the pixel bounds of each element and record them via
+ * {@code setBounds} before calling {@code renderBounds}. The bounds are then
+ * applied to one {@code Rectangle} per datum or, when the plot is batched, all
+ * elements are drawn onto a single canvas. In both cases, labels and
+ * hit-testing via {@code indexAt} use the recorded bounds rather than the
+ * nodes.
+ *
+ * The fill and edge color of individual elements can be overridden using
+ * {@code setElementFill} and {@code setElementEdgeColor}.
  *
  * @author Malcolm Lidierth
  * @param <T>
  */
 abstract public class AbstractBox<T extends Shape> extends AbstractPlot<ArrayList<Shape>> implements MarkerInterface {
 
+    /**
+     * Pixel bounds of each element as [x, y, width, height]. The x value is
+     * NaN for elements that can not be drawn.
+     */
+    private double[] bounds = new double[0];
+    /**
+     * Number of elements described in {@code bounds}.
+     */
+    private int boundsCount;
+    /**
+     * Fill and edge color overrides indexed by element, null where the plot
+     * style is used. The arrays are extended as overrides are set.
+     */
+    private Paint[] elementFill = new Paint[0];
+    private Paint[] elementEdgeColor = new Paint[0];
+
     /**
      * Default constructor.
      *
@@ -74,6 +107,267 @@ abstract public class AbstractBox<T extends Shape> extends AbstractPlot<ArrayLis
         super.arrangePlot(chart);
     }
 
+    /**
+     * Resets the bounds for {@code n} elements, marking each as invalid.
+     *
+     * @param n the number of elements
+     */
+    protected final void clearBounds(int n) {
+        if (bounds.length < 4 * n) {
+            bounds = new double[4 * n];
+        }
+        Arrays.fill(bounds, 0, 4 * n, Double.NaN);
+        boundsCount = n;
+    }
+
+    /**
+     * Records the pixel bounds of an element. Negative widths and heights are
+     * normalized so the bounds always describe the same area with a
+     * non-negative size.
+     *
+     * @param index the index of the element
+     * @param x the x pixel position of one corner
+     * @param y the y pixel position of that corner
+     * @param w the width
+     * @param h the height
+     */
+    protected final void setBounds(int index, double x, double y, double w, double h) {
+        if (w < 0) {
+            x += w;
+            w = -w;
+        }
+        if (h < 0) {
+            y += h;
+            h = -h;
+        }
+        bounds[4 * index] = x;
+        bounds[4 * index + 1] = y;
+        bounds[4 * index + 2] = w;
+        bounds[4 * index + 3] = h;
+    }
+
+    /**
+     * Returns the pixel bounds of an element in the coordinate space of the
+     * chart view, or null if the element is not drawn.
+     *
+     * @param index the index of the element
+     * @return the bounds
+     */
+    public Rectangle2D getBounds(int index) {
+        if (index < 0 || index >= boundsCount || !Double.isFinite(bounds[4 * index])) {
+            return null;
+        }
+        return new Rectangle2D(bounds[4 * index], bounds[4 * index + 1], bounds[4 * index + 2], bounds[4 * index + 3]);
+    }
+
+    /**
+     * Returns the index of the topmost element whose bounds contain the
+     * specified pixel location in the coordinate space of the chart view.
+     *
+     * @param x the x pixel position
+     * @param y the y pixel position
+     * @return the index of the element, or -1 if there is none
+     */
+    public int indexAt(double x, double y) {
+        for (int k = boundsCount - 1; k >= 0; k--) {
+            int i = 4 * k;
+            if (x >= bounds[i] && x <= bounds[i] + bounds[i + 2]
+                    && y >= bounds[i + 1] && y <= bounds[i + 1] + bounds[i + 3]) {
+                return k;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Applies the recorded bounds to the visual elements: either to the
+     * {@code Rectangle} for each datum or, when the plot is batched, by drawing
+     * every element onto the batch canvas. Elements sharing the default style
+     * are drawn first, followed by those with overridden styles. Large batches
+     * are drawn progressively over several pulses, in which case the order
+     * applies within each chunk.
+     *
+     * @param chart the chart being laid out
+     */
+    protected final void renderBounds(Chart chart) {
+        if (isCanvasRendered()) {
+            paintProgressively(chart, boundsCount, (g, from, to, step) -> {
+                g.setLineWidth(visualModel.getEdgeWidth());
+                g.setFill(getFill());
+                g.setStroke(visualModel.getEdgeColor());
+                for (int k = from; k < to; k += step) {
+                    if (Double.isFinite(bounds[4 * k]) && !isElementStyled(k)) {
+                        drawElement(g, bounds[4 * k], bounds[4 * k + 1], bounds[4 * k + 2], bounds[4 * k + 3]);
+                    }
+                }
+                for (int k = from; k < to; k += step) {
+                    if (Double.isFinite(bounds[4 * k]) && isElementStyled(k)) {
+                        g.setFill(getElementFill(k));
+                        g.setStroke(getElementEdgeColor(k));
+                        drawElement(g, bounds[4 * k], bounds[4 * k + 1], bounds[4 * k + 2], bounds[4 * k + 3]);
+                    }
+                }
+            });
+        } else {
+            for (int k = 0; k < boundsCount && k < visualElement.size(); k++) {
+                if (Double.isFinite(bounds[4 * k]) && visualElement.get(k) instanceof Rectangle) {
+                    Rectangle marker = (Rectangle) visualElement.get(k);
+                    marker.setX(bounds[4 * k]);
+                    marker.setY(bounds[4 * k + 1]);
+                    marker.setWidth(bounds[4 * k + 2]);
+                    marker.setHeight(bounds[4 * k + 3]);
+                    marker.setStroke(getElementEdgeColor(k));
+                    marker.setStrokeWidth(visualModel.getEdgeWidth());
+                    marker.setFill(getElementFill(k));
+                    applyShape(marker);
+                }
+            }
+        }
+    }
+
+    /**
+     * Draws one element onto the batch canvas. The fill and stroke have already
+     * been set on the GraphicsContext. Subclasses drawing shapes other than
+     * rectangles should override this together with {@code applyShape}.
+     *
+     * @param g the GraphicsContext
+     * @param x the x pixel position of the upper-left corner
+     * @param y the y pixel position of the upper-left corner
+     * @param w the width
+     * @param h the height
+     */
+    protected void drawElement(GraphicsContext g, double x, double y, double w, double h) {
+        g.fillRect(x, y, w, h);
+        g.strokeRect(x, y, w, h);
+    }
+
+    /**
+     * Hook to customize the shape of a {@code Rectangle} element after its
+     * bounds have been set. Does nothing by default.
+     *
+     * @param marker the element
+     */
+    protected void applyShape(Rectangle marker) {
+    }
+
+    /**
+     * Positions the labels from the visual model at the center of the bounds
+     * recorded for the corresponding element.
+     */
+    @Override
+    protected void arrangeLabels() {
+        for (int k = 0; k < visualModel.getLabels().size() && k < boundsCount; k++) {
+            Text text = visualModel.getLabels().get(k);
+            double x = bounds[4 * k];
+            if (!Double.isFinite(x)) {
+                text.setVisible(false);
+                continue;
+            }
+            text.setVisible(true);
+            double y = bounds[4 * k + 1];
+            double w = bounds[4 * k + 2];
+            double h = bounds[4 * k + 3];
+            text.setX(x + (w / 2d) - (text.prefWidth(-1d) / 2d));
+            text.setY(y + (h / 2d));
+            switch (labelOrientation) {
+                case AUTO:
+                    if (h > w) {
+                        text.setRotate(-90d);
+                    }
+                    break;
+                case VERTICAL:
+                    text.setRotate(-90d);
+                    break;
+                case HORIZONTAL:
+                case CUSTOM:
+                default:
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Overrides the fill for a single element.
+     *
+     * @param index the index of the element
+     * @param fill the fill to use, or null to restore the default
+     */
+    public void setElementFill(int index, Paint fill) {
+        elementFill = setOverride(elementFill, index, fill);
+        requestArrange();
+    }
+
+    /**
+     * Returns the fill used for an element.
+     *
+     * @param index the index of the element
+     * @return the overriding fill if set, otherwise the plot fill
+     */
+    public Paint getElementFill(int index) {
+        Paint fill = getOverride(elementFill, index);
+        return fill == null ? getFill() : fill;
+    }
+
+    /**
+     * Overrides the edge color for a single element.
+     *
+     * @param index the index of the element
+     * @param color the color to use, or null to restore the default
+     */
+    public void setElementEdgeColor(int index, Paint color) {
+        elementEdgeColor = setOverride(elementEdgeColor, index, color);
+        requestArrange();
+    }
+
+    /**
+     * Returns the edge color used for an element.
+     *
+     * @param index the index of the element
+     * @return the overriding edge color if set, otherwise the plot edge color
+     */
+    public Paint getElementEdgeColor(int index) {
+        Paint color = getOverride(elementEdgeColor, index);
+        return color == null ? getEdgeColor() : color;
+    }
+
+    /**
+     * Removes all element fill and edge color overrides.
+     */
+    public void clearElementStyles() {
+        elementFill = new Paint[0];
+        elementEdgeColor = new Paint[0];
+        requestArrange();
+    }
+
+    /**
+     * @return true if the fill or edge color of an element is overridden
+     */
+    private boolean isElementStyled(int index) {
+        return (index < elementFill.length && elementFill[index] != null)
+                || (index < elementEdgeColor.length && elementEdgeColor[index] != null);
+    }
+
+    private static Paint getOverride(Paint[] overrides, int index) {
+        return index >= 0 && index < overrides.length ? overrides[index] : null;
+    }
+
+    /**
+     * Sets or clears an override, returning the array, extended if needed.
+     */
+    private static Paint[] setOverride(Paint[] overrides, int index, Paint paint) {
+        if (index < 0) {
+            throw new IndexOutOfBoundsException("Index: " + index);
+        }
+        if (index >= overrides.length) {
+            if (paint == null) {
+                return overrides;
+            }
+            overrides = Arrays.copyOf(overrides, Math.max(index + 1, overrides.length + (overrides.length >> 1)));
+        }
+        overrides[index] = paint;
+        return overrides;
+    }
+
     @Override
     public boolean isValid() {
         return dataModel.getYData().size() > 0
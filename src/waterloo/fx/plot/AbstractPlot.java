@@ -39,9 +39,12 @@ import java.util.logging.Logger;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import javafx.application.Platform;
+import javafx.beans.InvalidationListener;
 import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.DoubleProperty;
 import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.ReadOnlyDoubleProperty;
+import javafx.beans.property.ReadOnlyDoubleWrapper;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.beans.property.StringProperty;
 import javafx.collections.ListChangeListener;
@@ -57,6 +60,8 @@ import javafx.geometry.Dimension2D;
 import javafx.geometry.Point2D;
 import javafx.geometry.VPos;
 import javafx.scene.Node;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.effect.DropShadow;
 import javafx.scene.effect.Effect;
 import javafx.scene.layout.Background;
@@ -66,6 +71,12 @@ import javafx.scene.paint.Color;
 import javafx.scene.paint.Paint;
 import javafx.scene.paint.PhongMaterial;
 import javafx.scene.shape.Circle;
+import javafx.scene.shape.ClosePath;
+import javafx.scene.shape.LineTo;
+import javafx.scene.shape.MoveTo;
+import javafx.scene.shape.Path;
+import javafx.scene.shape.PathElement;
+import javafx.scene.shape.Polygon;
 import javafx.scene.shape.Shape3D;
 import javafx.scene.shape.Sphere;
 import javafx.scene.text.Text;
@@ -84,6 +95,7 @@ import waterloo.fx.markers.RightTriangle;
 import waterloo.fx.markers.Square;
 import waterloo.fx.markers.Triangle;
 import waterloo.fx.plot.model.DataModel;
+import waterloo.fx.transforms.AbstractTransform;
 import waterloo.fx.util.GJCyclicArrayList;
 
 /**
@@ -130,6 +142,12 @@ public abstract class AbstractPlot<T extends List<? extends Node>> extends Stack
         AUTO, VERTICAL, HORIZONTAL, CUSTOM
     }
 
+    /**
+     * Key in the properties of markers created from the marker template,
+     * whose effects are removed at reduced quality.
+     */
+    private static final String TEMPLATE_MARKER = "waterloo.templateMarker";
+
     /**
      * This pane is used to render the plot
      */
@@ -173,30 +191,42 @@ public abstract class AbstractPlot<T extends List<? extends Node>> extends Stack
      * nodesNeedUpdate true and update the display.
      */
     protected AtomicBoolean nodesNeedUpdate = new AtomicBoolean(true);
+    /**
+     * True while a request posted by {@code update()} is waiting to run.
+     */
+    private final AtomicBoolean updatePending = new AtomicBoolean();
+    /**
+     * True when the data or style of the plot have changed since it was last
+     * arranged. The chart will arrange plots where this is false only if its
+     * limits or size have changed.
+     */
+    private volatile boolean arrangeNeeded = true;
+    /**
+     * True when the chart has asked for cheaper rendering, e.g. during a pan
+     * or zoom.
+     */
+    private boolean reducedQuality;
+    /**
+     * True when the plot needs to be arranged only because the rendering
+     * quality has changed. The chart defers this while it previews a pan or
+     * zoom.
+     */
+    private volatile boolean qualityArrangeNeeded;
 
     /**
      *
      */
+    private final ColumnText xDataText = new ColumnText(dataModel.getXColumn(), true);
     private final StringProperty xData = new StyleableStringProperty("") {
 
         @Override
         public void set(String s) {
-            dataModel.getXData().clear();
-            if (!s.isEmpty()) {
-                if (s.substring(0, 1).matches("[a-zA-Z]")) {
-                    try {
-                        s = decode(s);
-                    } catch (UnsupportedEncodingException ex) {
-                    }
-                }
-                List<String> items = Arrays.asList(s.replaceAll("\\s*", "").split(","));
-                items.forEach(x -> dataModel.getXData().add(Double.valueOf(x)));
-            }
+            xDataText.set(s);
         }
 
         @Override
         public String get() {
-            return dataModel.getXData().stream().map(x -> x.toString()).collect(Collectors.joining(", "));
+            return xDataText.get();
         }
 
         @Override
@@ -215,26 +245,17 @@ public abstract class AbstractPlot<T extends List<? extends Node>> extends Stack
         }
 
     };
+    private final ColumnText yDataText = new ColumnText(dataModel.getYColumn(), true);
     private final StringProperty yData = new StyleableStringProperty("") {
 
         @Override
         public void set(String s) {
-            dataModel.getYData().clear();
-            if (!s.isEmpty()) {
-                if (s.substring(0, 1).matches("[a-zA-Z]")) {
-                    try {
-                        s = decode(s);
-                    } catch (UnsupportedEncodingException ex) {
-                    }
-                }
-                List<String> items = Arrays.asList(s.replaceAll("\\s*", "").split(","));
-                items.forEach(y -> dataModel.getYData().add(Double.valueOf(y)));
-            }
+            yDataText.set(s);
         }
 
         @Override
         public String get() {
-            return dataModel.getYData().stream().map(x -> x.toString()).collect(Collectors.joining(", "));
+            return yDataText.get();
         }
 
         @Override
@@ -253,20 +274,17 @@ public abstract class AbstractPlot<T extends List<? extends Node>> extends Stack
         }
 
     };
+    private final ColumnText extraDataEastText = new ColumnText(dataModel.getExtraColumn0(), false);
     private final StringProperty extraDataEast = new StyleableStringProperty("") {
 
         @Override
         public void set(String s) {
-            dataModel.getExtraData0().clear();
-            if (!s.isEmpty()) {
-                List<String> items = Arrays.asList(s.split("\\s*,\\s*"));
-                items.forEach(x -> dataModel.getExtraData0().add(Double.valueOf(x)));
-            }
+            extraDataEastText.set(s);
         }
 
         @Override
         public String get() {
-            return dataModel.getExtraData0().stream().map(x -> x.toString()).collect(Collectors.joining(", "));
+            return extraDataEastText.get();
         }
 
         @Override
@@ -285,20 +303,17 @@ public abstract class AbstractPlot<T extends List<? extends Node>> extends Stack
         }
 
     };
+    private final ColumnText extraDataNorthText = new ColumnText(dataModel.getExtraColumn1(), false);
     private final StringProperty extraDataNorth = new StyleableStringProperty("") {
 
         @Override
         public void set(String s) {
-            dataModel.getExtraData1().clear();
-            if (!s.isEmpty()) {
-                List<String> items = Arrays.asList(s.split("\\s*,\\s*"));
-                items.forEach(x -> dataModel.getExtraData1().add(Double.valueOf(x)));
-            }
+            extraDataNorthText.set(s);
         }
 
         @Override
         public String get() {
-            return dataModel.getExtraData1().stream().map(x -> x.toString()).collect(Collectors.joining(", "));
+            return extraDataNorthText.get();
         }
 
         @Override
@@ -317,20 +332,17 @@ public abstract class AbstractPlot<T extends List<? extends Node>> extends Stack
         }
 
     };
+    private final ColumnText westDataText = new ColumnText(dataModel.getExtraColumn2(), false);
     private final StringProperty westData = new StyleableStringProperty("") {
 
         @Override
         public void set(String s) {
-            dataModel.getExtraData2().clear();
-            if (!s.isEmpty()) {
-                List<String> items = Arrays.asList(s.split("\\s*,\\s*"));
-                items.forEach(x -> dataModel.getExtraData2().add(Double.valueOf(x)));
-            }
+            westDataText.set(s);
         }
 
         @Override
         public String get() {
-            return dataModel.getExtraData2().stream().map(x -> x.toString()).collect(Collectors.joining(", "));
+            return westDataText.get();
         }
 
         @Override
@@ -349,20 +361,17 @@ public abstract class AbstractPlot<T extends List<? extends Node>> extends Stack
         }
 
     };
+    private final ColumnText southDataText = new ColumnText(dataModel.getExtraColumn3(), false);
     private final StringProperty southData = new StyleableStringProperty("") {
 
         @Override
         public void set(String s) {
-            dataModel.getExtraData3().clear();
-            if (!s.isEmpty()) {
-                List<String> items = Arrays.asList(s.split("\\s*,\\s*"));
-                items.forEach(x -> dataModel.getExtraData3().add(Double.valueOf(x)));
-            }
+            southDataText.set(s);
         }
 
         @Override
         public String get() {
-            return dataModel.getExtraData3().stream().map(x -> x.toString()).collect(Collectors.joining(", "));
+            return southDataText.get();
         }
 
         @Override
@@ -474,6 +483,55 @@ public abstract class AbstractPlot<T extends List<? extends Node>> extends Stack
 
     };
 
+    /**
+     * When true, plots that support batching draw all their elements onto a
+     * single canvas instead of creating a node for each datum, so the node
+     * count stays constant regardless of the size of the data. Plots that do
+     * not support batching ignore this setting.
+     */
+    private final BooleanProperty batched = new StyleableBooleanProperty(false) {
+
+        @Override
+        protected void invalidated() {
+            update();
+        }
+
+        @Override
+        public Object getBean() {
+            return AbstractPlot.this;
+        }
+
+        @Override
+        public String getName() {
+            return "batched";
+        }
+
+        @Override
+        public CssMetaData<? extends Styleable, Boolean> getCssMetaData() {
+            return StyleableProperties.BATCHED;
+        }
+    };
+
+    /**
+     * Canvas used to render the plot when batched. Created on first use.
+     */
+    private Canvas batchCanvas;
+
+    /**
+     * Fraction of the elements drawn to the batch canvas so far.
+     */
+    private final ReadOnlyDoubleWrapper renderProgress = new ReadOnlyDoubleWrapper(this, "renderProgress", 1d);
+    /**
+     * Draws large batches across several pulses. Created on first use.
+     */
+    private ProgressiveRenderer progressiveRenderer;
+
+    /**
+     * Plots that support it will project their data on a background thread
+     * when the number of points is at least this value.
+     */
+    private int parallelThreshold = 100000;
+
     /**
      * Default constructor
      */
@@ -499,6 +557,16 @@ public abstract class AbstractPlot<T extends List<? extends Node>> extends Stack
         dataModel.getXData().addListener(this);
         dataModel.getYData().addListener(this);
 
+        // Style changes require the plot to be arranged again
+        InvalidationListener styleListener = o -> requestArrange();
+        visualModel.markerType.addListener(styleListener);
+        visualModel.markerRadius.addListener(styleListener);
+        visualModel.fill.addListener(styleListener);
+        visualModel.edgeColor.addListener(styleListener);
+        visualModel.edgeWidth.addListener(styleListener);
+        visualModel.lineColor.addListener(styleListener);
+        visualModel.lineWidth.addListener(styleListener);
+
         graphicsPane.getChildren().addListener((ListChangeListener.Change<? extends Node> c) -> {
             while (c.next()) {
                 List<? extends Node> list = c.getAddedSubList();
@@ -533,6 +601,19 @@ public abstract class AbstractPlot<T extends List<? extends Node>> extends Stack
         return AbstractPlot.StyleableProperties.STYLEABLES;
     }
 
+    /**
+     * Returns true for the CssMetaData of the properties that present the
+     * numeric data in the model as text.
+     *
+     * @param meta the CssMetaData
+     * @return true for the xData, yData and extra data properties
+     */
+    static boolean isDataCssMetaData(CssMetaData<?, ?> meta) {
+        return meta == StyleableProperties.XDATA || meta == StyleableProperties.YDATA
+                || meta == StyleableProperties.EASTDATA || meta == StyleableProperties.NORTHDATA
+                || meta == StyleableProperties.WESTDATA || meta == StyleableProperties.SOUTHDATA;
+    }
+
     public boolean isDataPolar() {
         return dataPolar.get();
     }
@@ -557,6 +638,208 @@ public abstract class AbstractPlot<T extends List<? extends Node>> extends Stack
         return baseValue;
     }
 
+    public boolean isBatched() {
+        return batched.get();
+    }
+
+    public void setBatched(boolean tf) {
+        batched.set(tf);
+    }
+
+    public BooleanProperty batchedProperty() {
+        return batched;
+    }
+
+    /**
+     * Returns true if the plot should be drawn to a canvas because
+     * {@code batched} is set. This does not change with the rendering quality
+     * so that the nodes of a plot are not rebuilt when a pan or zoom starts
+     * or ends.
+     *
+     * @return true to render to a canvas
+     */
+    protected final boolean isCanvasRendered() {
+        return batched.get();
+    }
+
+    /**
+     * Returns true if the chart has asked for cheaper rendering. Labels and
+     * the effects on markers created from the template are then hidden, and
+     * plots that return true from {@link #isQualitySensitive()} are arranged
+     * again and may decimate their data more coarsely.
+     *
+     * @return true for reduced quality
+     */
+    protected final boolean isReducedQuality() {
+        return reducedQuality;
+    }
+
+    /**
+     * Called by the chart's quality controller.
+     *
+     * @param flag true for reduced quality
+     */
+    void setReducedQuality(boolean flag) {
+        if (reducedQuality != flag) {
+            reducedQuality = flag;
+            annotationPane.setVisible(!flag);
+            visualModel.setMarkerEffects(flag);
+            if (isQualitySensitive()) {
+                qualityArrangeNeeded = true;
+                requestLayout();
+            }
+        }
+    }
+
+    /**
+     * Returns true if the plot needs to be arranged again when the rendering
+     * quality changes, i.e. if {@code arrangePlots} uses
+     * {@link #isReducedQuality()}. Other plots keep their nodes and
+     * projection. The default is false.
+     *
+     * @return true to be arranged when the quality changes
+     */
+    protected boolean isQualitySensitive() {
+        return false;
+    }
+
+    public int getParallelThreshold() {
+        return parallelThreshold;
+    }
+
+    /**
+     * Sets the number of data points at and above which the data will be
+     * projected to pixels in parallel on the common {@code ForkJoinPool}
+     * rather than on the FX Application Thread. Use
+     * {@code Integer.MAX_VALUE} to disable this.
+     *
+     * Currently supported by {@link LinePlot}.
+     *
+     * @param n the threshold
+     */
+    public void setParallelThreshold(int n) {
+        parallelThreshold = n;
+        requestArrange();
+    }
+
+    /**
+     * Returns the {@code GraphicsContext} for a canvas that fills the view of
+     * the chart, cleared ready for drawing. The canvas is added to the
+     * graphicsPane if required and is transparent to the mouse so hit-testing
+     * needs to be done against the data.
+     *
+     * @param chart the chart this plot is being drawn in
+     * @return the GraphicsContext
+     */
+    protected final GraphicsContext getBatchGraphics(Chart chart) {
+        double w = chart.getView().getWidth();
+        double h = chart.getView().getHeight();
+        if (batchCanvas == null) {
+            batchCanvas = new Canvas();
+            batchCanvas.setMouseTransparent(true);
+        }
+        if (batchCanvas.getParent() != graphicsPane) {
+            graphicsPane.getChildren().add(batchCanvas);
+        }
+        GraphicsContext g = chart.getCanvasGraphics(batchCanvas, w, h);
+        g.clearRect(0, 0, w, h);
+        return g;
+    }
+
+    /**
+     * Draws elements onto the batch canvas within the time budget set for the
+     * chart, continuing on later pulses if the budget is used up. A coarse
+     * subset of the elements is drawn first and refined on subsequent pulses:
+     * see {@link ProgressiveRenderer}. Any drawing already in progress for
+     * this plot is abandoned.
+     *
+     * @param chart the chart this plot is being drawn in
+     * @param count the number of elements
+     * @param painter draws the elements
+     */
+    final void paintProgressively(Chart chart, int count, ProgressiveRenderer.Painter painter) {
+        GraphicsContext g = getBatchGraphics(chart);
+        if (progressiveRenderer == null) {
+            progressiveRenderer = new ProgressiveRenderer(renderProgress);
+        }
+        double millis = chart.isRenderingOffscreen() ? Double.POSITIVE_INFINITY : chart.getProgressiveBudget();
+        long budget = millis * 1e6 >= Long.MAX_VALUE ? Long.MAX_VALUE : (long) (millis * 1e6);
+        progressiveRenderer.start(g, count, budget, painter);
+    }
+
+    public final double getRenderProgress() {
+        return renderProgress.get();
+    }
+
+    /**
+     * The fraction of the elements of this plot that have been drawn, from 0
+     * to 1. This is less than 1 only while a large batched plot is being
+     * drawn progressively.
+     *
+     * @return the property
+     */
+    public final ReadOnlyDoubleProperty renderProgressProperty() {
+        return renderProgress.getReadOnlyProperty();
+    }
+
+    /**
+     * Appends the outline of a marker to the current path of a
+     * {@code GraphicsContext}, centered at [x, y] and rotated about that point.
+     *
+     * Circles, Polygons (including ArrowHeads) and Paths made from MoveTo,
+     * LineTo and ClosePath elements are reproduced exactly. Other nodes are
+     * drawn as a circle that fits their layout bounds.
+     *
+     * @param g the GraphicsContext
+     * @param marker the marker providing the shape
+     * @param x the x pixel position
+     * @param y the y pixel position
+     * @param angle the rotation in degrees
+     */
+    protected static void appendMarker(GraphicsContext g, Node marker, double x, double y, double angle) {
+        double cos = Math.cos(Math.toRadians(angle));
+        double sin = Math.sin(Math.toRadians(angle));
+        if (marker instanceof Polygon) {
+            List<Double> points = ((Polygon) marker).getPoints();
+            for (int k = 0; k < points.size() - 1; k += 2) {
+                double px = points.get(k);
+                double py = points.get(k + 1);
+                if (k == 0) {
+                    g.moveTo(x + px * cos - py * sin, y + px * sin + py * cos);
+                } else {
+                    g.lineTo(x + px * cos - py * sin, y + px * sin + py * cos);
+                }
+            }
+            g.closePath();
+        } else if (marker instanceof Path) {
+            for (PathElement e : ((Path) marker).getElements()) {
+                if (e instanceof MoveTo) {
+                    double px = ((MoveTo) e).getX();
+                    double py = ((MoveTo) e).getY();
+                    g.moveTo(x + px * cos - py * sin, y + px * sin + py * cos);
+                } else if (e instanceof LineTo) {
+                    double px = ((LineTo) e).getX();
+                    double py = ((LineTo) e).getY();
+                    g.lineTo(x + px * cos - py * sin, y + px * sin + py * cos);
+                } else if (e instanceof ClosePath) {
+                    g.closePath();
+                }
+            }
+        } else {
+            double r;
+            if (marker instanceof Circle) {
+                r = ((Circle) marker).getRadius();
+            } else if (marker != null) {
+                r = Math.max(marker.getLayoutBounds().getWidth(), marker.getLayoutBounds().getHeight()) / 2d;
+            } else {
+                r = 5d;
+            }
+            g.moveTo(x + r, y);
+            g.arc(x, y, r, r, 0d, 360d);
+            g.closePath();
+        }
+    }
+
     /**
      * @return the graphicsPane
      */
@@ -702,9 +985,57 @@ public abstract class AbstractPlot<T extends List<? extends Node>> extends Stack
             return chart.getAxisSet().getData(x, y);
         } else {
             // The Plotting methods always use cartesian coordinates, so convert to those
-            final double[] xy = new double[]{Math.cos(x) * y, Math.sin(x) * y};
-            return chart.getAxisSet().getData(xy[0], xy[1]);
+            return chart.getAxisSet().getData(Math.cos(x) * y, Math.sin(x) * y);
+        }
+    }
+
+    /**
+     * Projects the data at indices from, from + step ... less than to to pixel
+     * coordinates in a single pass over the primitive data arrays, writing
+     * x,y pairs to {@code out} from the specified offset. Results are as for
+     * {@code chart.toPixel(getData(chart, x, y))} and may be non-finite.
+     *
+     * Polar data are converted to cartesian coordinates using the cosines and
+     * sines of the angles cached by the data model, so those are recomputed
+     * only when the angles change.
+     *
+     * @param chart the chart
+     * @param from the first index
+     * @param to the end index, which must not exceed the size of the data
+     * @param step the increment in the index
+     * @param out receives the pixel coordinates. Must have room for all the
+     * points projected.
+     * @param offset the index in out of the first value
+     * @return the number of values written to out, i.e. twice the number of
+     * points
+     */
+    final int projectData(Chart chart, int from, int to, int step, double[] out, int offset) {
+        DoubleBuffer x = dataModel.getXBuffer();
+        DoubleBuffer y = dataModel.getYBuffer();
+        AbstractTransform xTransform = chart.getAxisSet().getXTransform();
+        AbstractTransform yTransform = chart.getAxisSet().getYTransform();
+        double xLeft = chart.getXLeft();
+        double xRange = chart.getXRight() - xLeft;
+        double yBottom = chart.getYBottom();
+        double yRange = chart.getYTop() - yBottom;
+        double width = chart.getView().getWidth();
+        double height = chart.getView().getHeight();
+        int n = offset;
+        if (dataModel.isDataPolar()) {
+            double[] cos = dataModel.getCosArray();
+            double[] sin = dataModel.getSinArray();
+            for (int k = from; k < to; k += step) {
+                double r = y.get(k);
+                out[n++] = (xTransform.transform(cos[k] * r) - xLeft) * width / xRange;
+                out[n++] = height - ((yTransform.transform(sin[k] * r) - yBottom) * height / yRange);
+            }
+        } else {
+            for (int k = from; k < to; k += step) {
+                out[n++] = (xTransform.transform(x.get(k)) - xLeft) * width / xRange;
+                out[n++] = height - ((yTransform.transform(y.get(k)) - yBottom) * height / yRange);
+            }
         }
+        return n - offset;
     }
 
     //private final static Point2D zeroPoint = new Point2D(0,0);
@@ -729,11 +1060,48 @@ public abstract class AbstractPlot<T extends List<? extends Node>> extends Stack
      * plot that will update the display.
      */
     public final void update() {
-        Platform.runLater(() -> {
-            if (nodesNeedUpdate.compareAndSet(false, true)) {
-                requestLayout();
-            }
-        });
+        // Post at most one request until it has run
+        if (updatePending.compareAndSet(false, true)) {
+            Platform.runLater(() -> {
+                updatePending.set(false);
+                if (nodesNeedUpdate.compareAndSet(false, true)) {
+                    requestArrange();
+                }
+            });
+        }
+    }
+
+    /**
+     * Marks this plot as needing to be arranged in the next layout of the
+     * chart and requests that layout. Use this, rather than
+     * {@code requestLayout()}, when the data or a setting that affects the
+     * positions or appearance of the visual elements has changed.
+     */
+    protected final void requestArrange() {
+        arrangeNeeded = true;
+        requestLayout();
+    }
+
+    /**
+     * Returns true if this plot, or a plot that it parents, needs to be
+     * arranged because its data or style have changed.
+     *
+     * @return true if arrangePlot needs to be called
+     */
+    boolean isArrangeNeeded() {
+        return isArrangeNeeded(true);
+    }
+
+    /**
+     * As {@link #isArrangeNeeded()}, optionally ignoring plots that need to be
+     * arranged only because the rendering quality has changed.
+     *
+     * @param quality false to ignore changes of quality
+     * @return true if arrangePlot needs to be called
+     */
+    boolean isArrangeNeeded(boolean quality) {
+        return arrangeNeeded || (quality && qualityArrangeNeeded)
+                || getPlots().anyMatch(x -> ((AbstractPlot<?>) x).isArrangeNeeded(quality));
     }
 
     /**
@@ -769,12 +1137,21 @@ public abstract class AbstractPlot<T extends List<? extends Node>> extends Stack
      * @param chart
      */
     public void arrangePlot(Chart chart) {
+        arrangeNeeded = false;
+        qualityArrangeNeeded = false;
         if (nodesNeedUpdate.compareAndSet(true, false)) {
             //System.err.println("Updating visual element");
             visualElement.stream().forEach((node) -> {
                 graphicsPane.getChildren().remove(node);
             });
             visualElement.clear();
+            if (batchCanvas != null) {
+                graphicsPane.getChildren().remove(batchCanvas);
+            }
+            if (progressiveRenderer != null) {
+                progressiveRenderer.cancel();
+                renderProgress.set(1d);
+            }
             updateElements(chart);
         }
         arrangePlots(chart);
@@ -789,7 +1166,9 @@ public abstract class AbstractPlot<T extends List<? extends Node>> extends Stack
      */
     @Override
     public final void layoutChildren() {
-        arrangeLabels();
+        if (!reducedQuality) {
+            arrangeLabels();
+        }
         super.layoutChildren();
     }
 
@@ -1012,7 +1391,7 @@ public abstract class AbstractPlot<T extends List<? extends Node>> extends Stack
             }
         }
         // ... otherwise just request a layout
-        requestLayout();
+        requestArrange();
     }
 
     /**
@@ -1193,6 +1572,21 @@ public abstract class AbstractPlot<T extends List<? extends Node>> extends Stack
                     }
                 };
 
+        private static final CssMetaData<AbstractPlot<?>, Boolean> BATCHED
+                = new CssMetaData<AbstractPlot<?>, Boolean>("-w-plot-batched",
+                        StyleConverter.getBooleanConverter(), false) {
+
+                    @Override
+                    public boolean isSettable(AbstractPlot<?> n) {
+                        return !n.batched.isBound();
+                    }
+
+                    @Override
+                    public StyleableProperty<Boolean> getStyleableProperty(AbstractPlot<?> n) {
+                        return (StyleableProperty<Boolean>) n.batched;
+                    }
+                };
+
         private static final CssMetaData<AbstractPlot, String> EASTDATA
                 = new CssMetaData<AbstractPlot, String>("-w-plot-eastdata",
                         StyleConverter.getStringConverter(),
@@ -1293,6 +1687,8 @@ public abstract class AbstractPlot<T extends List<? extends Node>> extends Stack
 
             styleables.add(LINECOLOR);
             styleables.add(LINEWIDTH);
+
+            styleables.add(BATCHED);
             STYLEABLES = Collections.unmodifiableList(styleables);
 
         }
@@ -1550,6 +1946,34 @@ public abstract class AbstractPlot<T extends List<? extends Node>> extends Stack
             return markerArray.get(index);
         }
 
+        /**
+         * Returns the marker at the specified index if one has already been
+         * created or set, otherwise the marker template. Unlike
+         * {@code getMarker}, this never creates new markers.
+         *
+         * @param index of the marker to retrieve
+         * @return the marker or template
+         */
+        public Node getMarkerOrTemplate(int index) {
+            return index < markerArray.size() ? markerArray.get(index) : markerTemplate;
+        }
+
+        /**
+         * Removes the effect of the template from, or restores it to, the
+         * markers created from the template. Markers set by the user keep
+         * their own effects.
+         *
+         * @param reduced true to remove the effects
+         */
+        void setMarkerEffects(boolean reduced) {
+            Effect effect = markerTemplate == null ? null : markerTemplate.getEffect();
+            if (effect != null) {
+                markerArray.stream()
+                        .filter(node -> node.getProperties().containsKey(TEMPLATE_MARKER))
+                        .forEach(node -> node.setEffect(reduced ? null : effect));
+            }
+        }
+
         /**
          * Replaces the default marker at the specified index with a
          * user-supplied marker. Pads the marker array as required.
@@ -1733,7 +2157,8 @@ public abstract class AbstractPlot<T extends List<? extends Node>> extends Stack
                 ((Shape3D) node).setDrawMode(((Shape3D) markerTemplate).getDrawMode());
             }
 
-            node.setEffect(markerTemplate.getEffect());
+            node.setEffect(reducedQuality ? null : markerTemplate.getEffect());
+            node.getProperties().put(TEMPLATE_MARKER, Boolean.TRUE);
 
             return node;
         }
@@ -202,7 +202,9 @@ public class BarPlot extends AbstractBox<Rectangle> implements BaseValueSensitiv
                     dataModel.getXData().get(k),
                     barExtra.getBaseValue());
             p1 = chart.toPixel(p1);
-            if (Double.isFinite(p0.getX()) && Double.isFinite(p0.getY())
+            if (isCanvasRendered()) {
+                // Elements will be drawn on the batch canvas
+            } else if (Double.isFinite(p0.getX()) && Double.isFinite(p0.getY())
                     && Double.isFinite(p1.getX()) && Double.isFinite(p1.getY())) {
                 // Valid data so add rectangle
                 visualElement.add(new Rectangle());
@@ -228,6 +230,7 @@ public class BarPlot extends AbstractBox<Rectangle> implements BaseValueSensitiv
         // or STACKED collection but it makes no obvious sense if it is not.
         double bv = dataModel.getBaseValue();
 
+        clearBounds(dataModel.size());
         for (int k = 0; k < dataModel.size(); k++) {
 
             Point2D p0, p1;
@@ -312,27 +315,23 @@ public class BarPlot extends AbstractBox<Rectangle> implements BaseValueSensitiv
                     }
                 }
                 if (Double.isFinite(p0.getX()) && Double.isFinite(p0.getY()) && Double.isFinite(p1.getX()) && Double.isFinite(p1.getY())) {
-                    // Retrieve the bar
-                    Rectangle marker = (Rectangle) visualElement.get(k);
                     // Set the x-offset
+                    double x;
                     if (barExtra.getJustification() == BarExtra.JUSTIFICATION.CENTERED) {
-                        marker.setX(xoffset + p0.getX() - bw / 2d);
+                        x = xoffset + p0.getX() - bw / 2d;
                     } else {
-                        marker.setX(xoffset + p0.getX());
+                        x = xoffset + p0.getX();
                     }
                     // If stacking bars add the required y-offset to place this bar
                     // above/below those drawn for previous plots
+                    double y;
                     if (barExtra.getMode() == BarExtra.MODE.STACKED) {
-                        marker.setY(p0.getY() + yoffset);
+                        y = p0.getY() + yoffset;
                     } else {
-                        marker.setY(p0.getY());
+                        y = p0.getY();
                     }
-                    // Set this bar's properties
-                    marker.setWidth(bw);
-                    marker.setHeight(p1.getY() - p0.getY());
-                    marker.setStroke(visualModel.getEdgeColor());
-                    marker.setStrokeWidth(visualModel.getEdgeWidth());
-                    marker.setFill(getFill());
+                    // Record this bar's bounds
+                    setBounds(k, x, y, bw, p1.getY() - p0.getY());
                 }
             } else if (barExtra.getOrientation() == BarExtra.ORIENTATION.HORIZONTAL) {
                 // Coordinates of the corners for the rectangle to represent these data.
@@ -405,30 +404,27 @@ public class BarPlot extends AbstractBox<Rectangle> implements BaseValueSensitiv
                     }
                 }
                 if (Double.isFinite(p0.getX()) && Double.isFinite(p0.getY()) && Double.isFinite(p1.getX()) && Double.isFinite(p1.getY())) {
-                    // Retrieve the bar
-                    Rectangle marker = (Rectangle) visualElement.get(k);
                     // Set the y-offset
+                    double y;
                     if (barExtra.getJustification() == BarExtra.JUSTIFICATION.CENTERED) {
-                        marker.setY(yoffset + p0.getY() - barWidthY / 2d);
+                        y = yoffset + p0.getY() - barWidthY / 2d;
                     } else {
-                        marker.setY(yoffset + p0.getY());
+                        y = yoffset + p0.getY();
                     }
                     // If stacking bars add the required offset to place this bar
                     // to the left/right of those drawn for previous plots
+                    double x;
                     if (barExtra.getMode() == BarExtra.MODE.STACKED) {
-                        marker.setX(p0.getX() + xoffset);
+                        x = p0.getX() + xoffset;
                     } else {
-                        marker.setX(p0.getX());
+                        x = p0.getX();
                     }
-                    // Set this bar's properties
-                    marker.setHeight(barWidthY);
-                    marker.setWidth(p1.getX() - p0.getX());
-                    marker.setStroke(visualModel.getEdgeColor());
-                    marker.setStrokeWidth(visualModel.getEdgeWidth());
-                    marker.setFill(getFill());
+                    // Record this bar's bounds
+                    setBounds(k, x, y, p1.getX() - p0.getX(), barWidthY);
                 }
             }
         }
+        renderBounds(chart);
     }
 
     public BarExtra.ORIENTATION getOrientation() {
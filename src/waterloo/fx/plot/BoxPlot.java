@@ -59,6 +59,10 @@ public class BoxPlot extends AbstractBox<Rectangle> {
 
     @Override
     protected void updateElements(Chart chart) {
+        if (isCanvasRendered()) {
+            // Elements will be drawn on the batch canvas
+            return;
+        }
         for (int k = 0; k < dataModel.size(); k++) {
             // Upper-left Limits
             Point2D p0 = getData(chart,
@@ -82,6 +86,7 @@ public class BoxPlot extends AbstractBox<Rectangle> {
     @Override
     public void arrangePlot(Chart chart) {
         super.arrangePlot(chart);
+        clearBounds(dataModel.size());
         for (int k = 0; k < dataModel.size(); k++) {
             // Upper-left Limits
             Point2D p0 = getData(chart,
@@ -94,15 +99,9 @@ public class BoxPlot extends AbstractBox<Rectangle> {
                     dataModel.getYData().get(k) - dataModel.getExtraData3().get(k));
             p1 = chart.toPixel(p1);
             if (Double.isFinite(p0.getX()) && Double.isFinite(p0.getY()) && Double.isFinite(p1.getX()) && Double.isFinite(p1.getY())) {
-                Rectangle marker = (Rectangle) visualElement.get(k);
-                marker.setX(p0.getX());
-                marker.setY(p0.getY());
-                marker.setWidth(p1.getX() - p0.getX());
-                marker.setHeight(p1.getY() - p0.getY());
-                marker.setStroke(visualModel.getEdgeColor());
-                marker.setStrokeWidth(visualModel.getEdgeWidth());
-                marker.setFill(getFill());
+                setBounds(k, p0.getX(), p0.getY(), p1.getX() - p0.getX(), p1.getY() - p0.getY());
             }
         }
+        renderBounds(chart);
     }
 }
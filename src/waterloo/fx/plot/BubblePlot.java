@@ -22,6 +22,7 @@
  */
 package waterloo.fx.plot;
 
+import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.shape.Rectangle;
 
 /**
@@ -58,13 +59,15 @@ public class BubblePlot extends BoxPlot {
     }
 
     @Override
-    public void arrangePlot(Chart chart) {
-        super.arrangePlot(chart);
-        for (int k = 0; k < dataModel.size(); k++) {
-            Rectangle marker = (Rectangle) visualElement.get(k);
-            marker.setArcHeight(marker.getHeight() * 0.9);
-            marker.setArcWidth(marker.getWidth() * 0.9);
-        }
+    protected void applyShape(Rectangle marker) {
+        marker.setArcHeight(marker.getHeight() * 0.9);
+        marker.setArcWidth(marker.getWidth() * 0.9);
+    }
+
+    @Override
+    protected void drawElement(GraphicsContext g, double x, double y, double w, double h) {
+        g.fillRoundRect(x, y, w, h, w * 0.9, h * 0.9);
+        g.strokeRoundRect(x, y, w, h, w * 0.9, h * 0.9);
     }
 
 }
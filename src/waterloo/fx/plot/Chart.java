@@ -22,16 +22,28 @@
  */
 package waterloo.fx.plot;
 
+import java.lang.ref.WeakReference;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.function.Consumer;
+import javafx.animation.PauseTransition;
 import javafx.application.Platform;
+import javafx.beans.InvalidationListener;
+import javafx.beans.Observable;
 import javafx.beans.binding.ObjectBinding;
 import javafx.beans.binding.StringBinding;
 import javafx.beans.binding.StringExpression;
+import javafx.beans.property.BooleanProperty;
+import javafx.beans.property.DoubleProperty;
+import javafx.beans.property.ReadOnlyDoubleProperty;
+import javafx.beans.property.ReadOnlyDoubleWrapper;
+import javafx.beans.property.ReadOnlyObjectProperty;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.beans.property.SimpleBooleanProperty;
 import javafx.beans.property.SimpleDoubleProperty;
 import javafx.beans.property.SimpleObjectProperty;
 import javafx.beans.value.ChangeListener;
@@ -60,6 +72,7 @@ import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.input.MouseEvent;
 import javafx.scene.input.ScrollEvent;
+import javafx.scene.input.ZoomEvent;
 import javafx.scene.layout.Background;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.Pane;
@@ -72,7 +85,10 @@ import javafx.scene.shape.MoveTo;
 import javafx.scene.shape.Path;
 import javafx.scene.shape.Rectangle;
 import javafx.scene.text.Text;
+import javafx.scene.transform.Affine;
+import javafx.scene.transform.Scale;
 import javafx.stage.Stage;
+import javafx.util.Duration;
 import waterloo.fx.plot.axis.AbstractAxisRegion;
 import waterloo.fx.plot.axis.AxisBottom;
 import waterloo.fx.plot.axis.AxisLeft;
@@ -116,6 +132,11 @@ public final class Chart extends Pane {
     private static Insets defaultInsets = new Insets(30, 30, 30, 30);
 
     private static final Paint altFillColor = new Color(0f, 0f, 1f, 0.1f);
+    /**
+     * Key in the properties of a canvas for the transform added by
+     * {@code getCanvasGraphics}.
+     */
+    private static final String CANVAS_SCALE = "waterloo.canvasScale";
 
     /**
      * @return the defaultInsets
@@ -214,6 +235,63 @@ public final class Chart extends Pane {
      * Interval between major ticks/grids in axis coordinates for the y-axis
      */
     private final MajorTickIntervalBinding majorYInterval;
+    /**
+     * Coalesces the layout requests that follow changes to the axis limits
+     * and size.
+     */
+    private final RenderScheduler scheduler = new RenderScheduler(this);
+    /**
+     * Size of the view when the plots were last arranged.
+     */
+    private double renderedWidth = Double.NaN;
+    private double renderedHeight = Double.NaN;
+    /**
+     * The axis limits when the plots were last projected.
+     */
+    private Viewport projectedViewport;
+    /**
+     * True while the view is being panned or zoomed with the mouse or a
+     * gesture. The plots are then transformed rather than re-projected until
+     * the interaction ends or pauses.
+     */
+    private boolean previewing;
+    /**
+     * True while the chart is being rendered to an image by
+     * {@link ChartRenderer}. Plots are then drawn in full, at full quality,
+     * within the layout pass.
+     */
+    private boolean renderingOffscreen;
+    /**
+     * True while the chart is laid out only to be captured by
+     * {@link ChartRenderer#capture}: the canvas is not painted and the plots
+     * are not arranged.
+     */
+    private boolean layoutOnly;
+    /**
+     * Number of image pixels per unit of the chart coordinates at which the
+     * canvases of the chart are painted. See {@link #getCanvasGraphics}.
+     */
+    private final ReadOnlyDoubleWrapper renderScale = new ReadOnlyDoubleWrapper(this, "renderScale", 1d);
+    private final PauseTransition previewPause = new PauseTransition(Duration.millis(150));
+    /**
+     * Maps the pixel positions in the projected viewport to those in the
+     * present viewport while previewing. Shared by the plots in the view.
+     */
+    private final Affine previewTransform = new Affine();
+    /**
+     * Reduces the rendering quality of the plots while the chart is busy.
+     */
+    private final QualityController quality = new QualityController(this);
+    private final BooleanProperty adaptiveQuality = new SimpleBooleanProperty(this, "adaptiveQuality", true) {
+        @Override
+        protected void invalidated() {
+            if (!get()) {
+                quality.reset();
+            }
+        }
+    };
+    private final DoubleProperty frameBudget = new SimpleDoubleProperty(this, "frameBudget", 16d);
+    private final DoubleProperty progressiveBudget = new SimpleDoubleProperty(this, "progressiveBudget", 8d);
     /**
      * Number of minor ticks/grids in the majorXInterval.
      * <strong>This is a hint, not all AxesSets support its use.</strong>
@@ -433,6 +511,20 @@ public final class Chart extends Pane {
         }
 
     };
+    /**
+     * The four axis limits as a single value. This is updated once by
+     * {@code setViewport} and once for each change to an individual limit.
+     */
+    private final ReadOnlyObjectWrapper<Viewport> viewport = new ReadOnlyObjectWrapper<>(this, "viewport",
+            new Viewport(-1d, 1d, -1d, 1d));
+    /**
+     * True while {@code setViewport} is applying the limits.
+     */
+    private boolean settingViewport;
+    /**
+     * Links established by the addAxisLinkXX etc. methods.
+     */
+    private final ArrayList<AxisLink> axisLinks = new ArrayList<>();
     /**
      * Value for the origin of the x-axis (i.e where it intersects the y-axis).
      */
@@ -1203,6 +1295,9 @@ public final class Chart extends Pane {
         canvas.setLayoutY(0d);
         canvas.setHeight(view.getPrefHeight());
         canvas.setWidth(view.getPrefWidth());
+        // Positioned and sized by updateLayout: the canvas may be larger than
+        // the view while rendering an image
+        canvas.setManaged(false);
 
         // Populate the axisPane with the axes, and add them to the axisSet
         axisRight = new AxisRight(this);
@@ -1236,30 +1331,57 @@ public final class Chart extends Pane {
          *
          * The listener simple posts a layout request which will cause a repaint
          * of the canvas and a layout for tick marks, labels etc in the axes.
+         * Requests are coalesced by the scheduler so changing several limits
+         * together results in a single layout.
          */
         ChangeListener<Number> axisLimitListener = (ObservableValue<? extends Number> val, Number n0, Number n1) -> {
-            requestLayout();
+            scheduler.invalidate(RenderScheduler.LIMITS);
         };
         xLeftProperty().addListener(axisLimitListener);
         xRightProperty().addListener(axisLimitListener);
         yTopProperty().addListener(axisLimitListener);
         yBottomProperty().addListener(axisLimitListener);
-        xOriginProperty().addListener(axisLimitListener);
-        yOriginProperty().addListener(axisLimitListener);
+        // The origin affects only the inner axes painted on the canvas
+        ChangeListener<Number> originListener = (ObservableValue<? extends Number> val, Number n0, Number n1) -> {
+            scheduler.invalidate(RenderScheduler.GRID);
+        };
+        xOriginProperty().addListener(originListener);
+        yOriginProperty().addListener(originListener);
         // Also, bind to changes in the width/height as we need to recalculate
         // grid, tick  etc. pixel positions.
-        widthProperty().addListener(axisLimitListener);
-        heightProperty().addListener(axisLimitListener);
-        prefWidthProperty().addListener(axisLimitListener);
-        prefHeightProperty().addListener(axisLimitListener);
+        ChangeListener<Number> geometryListener = (ObservableValue<? extends Number> val, Number n0, Number n1) -> {
+            scheduler.invalidate(RenderScheduler.GEOMETRY);
+        };
+        widthProperty().addListener(geometryListener);
+        heightProperty().addListener(geometryListener);
+        prefWidthProperty().addListener(geometryListener);
+        prefHeightProperty().addListener(geometryListener);
+
+        // Any other styleable setting invalidates the stages it affects
+        getCssMetaData().forEach((CssMetaData<? extends Styleable, ?> meta) -> {
+            int bits = StyleableProperties.dirtyBits(meta);
+            if (bits != 0) {
+                ((Observable) getStyleableProperty(meta)).addListener(o -> scheduler.invalidate(bits));
+            }
+        });
+
+        // Keep the viewport in step with changes made to individual limits,
+        // e.g. via css.
+        InvalidationListener limitListener = o -> {
+            if (!settingViewport) {
+                viewport.set(new Viewport(getXLeft(), getXRight(), getYBottom(), getYTop()));
+            }
+        };
+        xLeftProperty().addListener(limitListener);
+        xRightProperty().addListener(limitListener);
+        yBottomProperty().addListener(limitListener);
+        yTopProperty().addListener(limitListener);
 
         /**
          * Create and add a listener to redo the layout on resizing
          */
         ChangeListener<Number> sizeListener = (ObservableValue<? extends Number> ov, Number t, Number t1) -> {
-            Platform.runLater(() -> {
-                requestLayout();
-            });
+            scheduler.invalidateLater(RenderScheduler.GEOMETRY);
         };
         widthProperty().addListener(sizeListener);
         heightProperty().addListener(sizeListener);
@@ -1351,9 +1473,7 @@ public final class Chart extends Pane {
         });
 
         view.getChildren().addListener((ListChangeListener.Change<? extends Node> c) -> {
-            while (c.next()) {
-                requestLayout();
-            }
+            scheduler.invalidate(RenderScheduler.GEOMETRY);
         });
 
         ChangeListener<Boolean> axisPaintedListener = (ObservableValue<? extends Boolean> ov, Boolean t, Boolean t1) -> {
@@ -1409,12 +1529,24 @@ public final class Chart extends Pane {
             } else {
                 double xdiff = Math.signum(t0.getDeltaY()) * (getXMax() - getXMin());
                 double ydiff = Math.signum(t0.getDeltaY()) * (getYMax() - getYMin());
-                setXLeft(getXLeft() - xdiff / 50.0);
-                setXRight(getXRight() + xdiff / 50.0);
-                setYBottom(getYBottom() - ydiff / 50.0);
-                setYTop(getYTop() + ydiff / 50.0);
+                beginPreview();
+                setViewport(new Viewport(getXLeft() - xdiff / 50.0, getXRight() + xdiff / 50.0,
+                        getYBottom() - ydiff / 50.0, getYTop() + ydiff / 50.0));
+            }
+        });
+
+        // Pinch zoom on touch-enabled devices, about the gesture location
+        view.setOnZoom((ZoomEvent z0) -> {
+            if (z0.getZoomFactor() <= 0d || !Double.isFinite(z0.getZoomFactor())) {
+                return;
             }
-            requestLayout();
+            double f = 1d / z0.getZoomFactor();
+            beginPreview();
+            setViewport(getViewport().scale(toPositionX(z0.getX()), toPositionY(z0.getY()), f, f));
+        });
+
+        view.setOnZoomFinished((ZoomEvent z1) -> {
+            endPreview();
         });
 
         view.setOnMousePressed((MouseEvent m0) -> {
@@ -1426,8 +1558,13 @@ public final class Chart extends Pane {
             dragXStart = Double.NaN;
             dragYStart = Double.NaN;
             view.setCursor(Cursor.DEFAULT);
+            endPreview();
         });
 
+        // Re-project the plots exactly when the user pauses while panning or
+        // zooming
+        previewPause.setOnFinished(e -> endPreview());
+
         view.setOnMouseMoved((MouseEvent m2) -> {
             if (m2.isStillSincePress()) {
                 return;
@@ -1477,18 +1614,10 @@ public final class Chart extends Pane {
                 dragYStart = m4.getY();
                 requestPaint();
             } else if (!onAxis(x, y)) {
-                double xl = getXLeft() + deltaX;
-                double xr = getXRight() + deltaX;
-                setXLeft(xl);
-                setXRight(xr);
+                beginPreview();
+                setViewport(getViewport().translate(deltaX, deltaY));
                 dragXStart = m4.getX();
-
-                double yt = getYTop() + deltaY;
-                double yb = getYBottom() + deltaY;
-                setYTop(yt);
-                setYBottom(yb);
                 dragYStart = m4.getY();
-                requestLayout();
 
             } else if (onXAxis(y)) {
                 if (x >= getXOrigin()) {
@@ -1791,6 +1920,9 @@ public final class Chart extends Pane {
      * Returns a set of insets with dimensions just adequate to accommodate the
      * contents of all display axis elements.
      *
+     * The axes cache their measured extents, so this is inexpensive unless
+     * the tick labels, fonts or axis labels have changed.
+     *
      * @return the Insets
      */
     private Insets computeRequiredInsets() {
@@ -2085,10 +2217,10 @@ public final class Chart extends Pane {
      *
      * @return the plot list.
      */
-    public final ArrayList<AbstractPlot> getPlots() {
-        ArrayList<AbstractPlot> arr = new ArrayList<>();
+    public final ArrayList<AbstractPlot<?>> getPlots() {
+        ArrayList<AbstractPlot<?>> arr = new ArrayList<>();
         view.getChildren().stream().filter((node) -> (node instanceof AbstractPlot)).forEach((node) -> {
-            arr.add((AbstractPlot) node);
+            arr.add((AbstractPlot<?>) node);
         });
         return arr;
     }
@@ -2097,40 +2229,317 @@ public final class Chart extends Pane {
      * Called by the parent's layout mechanism.
      *
      * This should not normally be called directly by the user - use
-     * {@code requestLayout()} instead.
+     * {@code requestLayout()} or, to force the canvas to be repainted and all
+     * plots re-projected, {@code refresh()} instead.
+     *
+     * Only the stages affected by the changes since the last layout are run:
+     * the view and axes are laid out if the size, insets, limits or style have
+     * changed, the canvas is painted if any of those or the grid settings have
+     * changed, and plots are re-projected only if the limits or view size have
+     * changed or their own data or style have changed.
      */
     @Override
     public final void layoutChildren() {
-        updateLayout();
-        super.layoutChildren();
-        // Layout has been called on the view so render its contents.
-        // This is a convenient place to set the layout constraints on the nodes
-        // for each plot: they will then have their layoutChildren() method called in
-        // the normal scene layout pass.
-        getLayers().stream().forEach((Chart g) -> {
-            g.paintCanvas();
-            g.arrangePlots();
+        long start = System.nanoTime();
+        int dirty = scheduler.beginLayout();
+        try {
+            Insets padding = computeRequiredInsets();
+            if (!padding.equals(getPadding())) {
+                dirty |= RenderScheduler.GEOMETRY;
+            }
+            if ((dirty & (RenderScheduler.GEOMETRY | RenderScheduler.LIMITS | RenderScheduler.STYLE)) != 0) {
+                updateLayout(padding);
+            }
+            super.layoutChildren();
+            // Layout has been called on the view so render its contents.
+            // This is a convenient place to set the layout constraints on the nodes
+            // for each plot: they will then have their layoutChildren() method called in
+            // the normal scene layout pass.
+            int layerDirty = dirty & RenderScheduler.GEOMETRY;
+            if (!layoutOnly) {
+                for (Chart g : getLayers()) {
+                    g.render(g == this ? dirty : layerDirty);
+                }
+            }
+        } finally {
+            scheduler.endLayout();
+            if (!renderingOffscreen) {
+                quality.record(System.nanoTime() - start, previewing);
+            }
+        }
+    }
+
+    /**
+     * Requests a layout that will repaint the canvas and re-project all plots.
+     */
+    public final void refresh() {
+        axisSet.invalidateGrid();
+        scheduler.invalidate(RenderScheduler.ALL);
+    }
+
+    public final boolean isAdaptiveQuality() {
+        return adaptiveQuality.get();
+    }
+
+    /**
+     * If true, the plots in this chart will be drawn at reduced quality while
+     * the user is panning or zooming, or while layouts are both frequent and
+     * slower than the frame budget. Full quality is restored when the chart
+     * is idle. The default is true.
+     *
+     * @param flag true to adapt the quality
+     */
+    public final void setAdaptiveQuality(boolean flag) {
+        adaptiveQuality.set(flag);
+    }
+
+    public final BooleanProperty adaptiveQualityProperty() {
+        return adaptiveQuality;
+    }
+
+    public final double getFrameBudget() {
+        return frameBudget.get();
+    }
+
+    /**
+     * Sets the time in milliseconds that a layout pass may take before the
+     * quality of the plots is reduced. The default is 16ms.
+     *
+     * @param millis the budget
+     */
+    public final void setFrameBudget(double millis) {
+        frameBudget.set(millis);
+    }
+
+    public final DoubleProperty frameBudgetProperty() {
+        return frameBudget;
+    }
+
+    public final double getProgressiveBudget() {
+        return progressiveBudget.get();
+    }
+
+    /**
+     * Sets the time in milliseconds that each batched plot may spend drawing
+     * its elements in a pulse. Plots that need longer are drawn progressively,
+     * coarsest first, over several pulses. The default is 8ms: use
+     * {@code Double.POSITIVE_INFINITY} to always draw plots in full.
+     *
+     * @param millis the budget
+     */
+    public final void setProgressiveBudget(double millis) {
+        progressiveBudget.set(millis);
+    }
+
+    public final DoubleProperty progressiveBudgetProperty() {
+        return progressiveBudget;
+    }
+
+    /**
+     * @return true while the chart is being rendered to an image
+     */
+    final boolean isRenderingOffscreen() {
+        return renderingOffscreen;
+    }
+
+    /**
+     * Sets the chart to render for an image, restoring full quality.
+     *
+     * @param flag true while rendering to an image
+     */
+    final void setRenderingOffscreen(boolean flag) {
+        renderingOffscreen = flag;
+        if (flag) {
+            endPreview();
+            quality.reset();
+        }
+    }
+
+    /**
+     * Lays out the axes without painting the canvas or arranging the plots,
+     * while the chart is captured. Everything is rendered in the next layout
+     * after this is cleared.
+     *
+     * @param flag true to lay out only
+     */
+    final void setLayoutOnly(boolean flag) {
+        layoutOnly = flag;
+        if (!flag) {
+            for (Chart layer : getLayers()) {
+                layer.scheduler.invalidate(RenderScheduler.ALL);
+            }
+        }
+    }
+
+    /**
+     * @return true if a layout has been requested, or changes made during the
+     * last layout pass have yet to be laid out
+     */
+    final boolean isLayoutPending() {
+        return scheduler.isDirty();
+    }
+
+    /**
+     * @return true while the user is panning or zooming the view
+     */
+    final boolean isInteracting() {
+        return previewing;
+    }
+
+    /**
+     * @return the property of this chart described by the CssMetaData, which
+     * must be one of those returned by {@code getCssMetaData()}
+     */
+    @SuppressWarnings("unchecked")
+    private StyleableProperty<?> getStyleableProperty(CssMetaData<? extends Styleable, ?> meta) {
+        return ((CssMetaData<Chart, ?>) meta).getStyleableProperty(this);
+    }
+
+    /**
+     * Applies an action to every plot in the view, including plots in plot
+     * collections and plots parented by other plots.
+     */
+    final void forEachPlot(Consumer<? super AbstractPlot<?>> action) {
+        view.getChildren().forEach(node -> {
+            if (node instanceof AbstractPlot) {
+                action.accept((AbstractPlot<?>) node);
+                ((AbstractPlot<?>) node).getAllPlots().forEach(x -> action.accept((AbstractPlot<?>) x));
+            } else if (node instanceof PlotCollection) {
+                ((PlotCollection<?>) node).getChildren().stream()
+                        .filter(x -> x instanceof AbstractPlot)
+                        .forEach(x -> {
+                            action.accept((AbstractPlot<?>) x);
+                            ((AbstractPlot<?>) x).getAllPlots().forEach(y -> action.accept((AbstractPlot<?>) y));
+                        });
+            }
         });
     }
 
-    private void arrangePlots() {
+    /**
+     * Paints the canvas and arranges the plots as required by the dirty bits.
+     */
+    private void render(int dirty) {
+        boolean resized = view.getWidth() != renderedWidth || view.getHeight() != renderedHeight;
+        boolean project = resized || (dirty & (RenderScheduler.GEOMETRY | RenderScheduler.LIMITS)) != 0;
+        renderedWidth = view.getWidth();
+        renderedHeight = view.getHeight();
+        if (project || dirty != 0) {
+            paintCanvas();
+        }
+        if (project && !resized && (dirty & RenderScheduler.GEOMETRY) == 0 && previewPlots()) {
+            return;
+        }
+        arrangePlots(project);
+        if (project) {
+            projectedViewport = getViewport();
+            setPlotPreview(false);
+        }
+    }
+
+    /**
+     * While panning or zooming, transforms the plots from the viewport they
+     * were projected for to the present viewport instead of re-projecting
+     * them. This is exact for the positions of the data but line widths and
+     * markers are scaled with the data while zooming. Plots that need to be
+     * arranged only because the rendering quality has changed are transformed
+     * too, and arranged when the preview ends.
+     *
+     * @return true if the plots were transformed, false if they need to be
+     * projected
+     */
+    private boolean previewPlots() {
+        if (!previewing || projectedViewport == null || getPlots().stream().anyMatch(plot -> plot.isArrangeNeeded(false))) {
+            return false;
+        }
+        Viewport vp = getViewport();
+        double w = view.getWidth();
+        double h = view.getHeight();
+        double sx = projectedViewport.getWidth() / vp.getWidth();
+        double sy = projectedViewport.getHeight() / vp.getHeight();
+        double tx = (projectedViewport.getXLeft() - vp.getXLeft()) * w / vp.getWidth();
+        double ty = h * (1d - sy) + (vp.getYBottom() - projectedViewport.getYBottom()) * h / vp.getHeight();
+        if (!Double.isFinite(sx) || !Double.isFinite(sy) || sx <= 0d || sy <= 0d
+                || !Double.isFinite(tx) || !Double.isFinite(ty)) {
+            return false;
+        }
+        previewTransform.setToTransform(sx, 0d, tx, 0d, sy, ty);
+        setPlotPreview(true);
+        return true;
+    }
+
+    /**
+     * Adds or removes the preview transform from the plots in the view.
+     */
+    private void setPlotPreview(boolean flag) {
+        view.getChildren().stream()
+                .filter(node -> node instanceof AbstractPlot || node instanceof PlotCollection
+                        || node instanceof AnnotationPane)
+                .forEach(node -> {
+                    if (flag && !node.getTransforms().contains(previewTransform)) {
+                        node.getTransforms().add(previewTransform);
+                    } else if (!flag) {
+                        node.getTransforms().remove(previewTransform);
+                    }
+                });
+    }
+
+    /**
+     * Called for each pan or zoom event. The plots will be previewed until
+     * the interaction ends or pauses.
+     */
+    private void beginPreview() {
+        previewing = true;
+        previewPause.playFromStart();
+    }
+
+    /**
+     * Ends a pan or zoom, requesting an exact projection of the plots if they
+     * have been previewed.
+     */
+    private void endPreview() {
+        previewPause.stop();
+        if (previewing) {
+            previewing = false;
+            if (!getViewport().equals(projectedViewport)) {
+                scheduler.invalidate(RenderScheduler.LIMITS);
+            } else if (getPlots().stream().anyMatch(plot -> plot.isArrangeNeeded())) {
+                // Arranges deferred for a change of quality
+                requestLayout();
+            }
+        }
+    }
+
+    /**
+     * Arranges the plots in the view.
+     *
+     * @param all if false, only plots whose data or style have changed are
+     * arranged and, unless a pan or zoom is being previewed, those affected
+     * by a change of the rendering quality
+     */
+    private void arrangePlots(boolean all) {
         view.getChildren().stream().forEach(x -> {
             if (x instanceof AbstractPlot) {
-                ((AbstractPlot) x).arrangePlot(this);
+                if (all || ((AbstractPlot) x).isArrangeNeeded(!previewing)) {
+                    ((AbstractPlot) x).arrangePlot(this);
+                }
             } else if (x instanceof PlotCollection) {
-                ((PlotCollection) x).arrangePlots(this);
+                if (all || ((PlotCollection) x).isArrangeNeeded(!previewing)) {
+                    ((PlotCollection) x).arrangePlots(this);
+                }
             }
         });
     }
 
     /**
      * Does much of the work required in the {@code layoutChildren()} method.
+     *
+     * @param padding the insets required by the axes
      */
-    private void updateLayout() {
-
-        Insets padding = computeRequiredInsets();
+    private void updateLayout(Insets padding) {
 
-        setPadding(padding);
+        if (!padding.equals(getPadding())) {
+            setPadding(padding);
+        }
 
         //Size the view
         double w = getPrefWidth() - getPadding().getLeft() - getPadding().getRight();
@@ -2186,8 +2595,7 @@ public final class Chart extends Pane {
         // Set the canvas to fill the view
         canvas.setLayoutX(0);
         canvas.setLayoutY(0);
-        canvas.setWidth(w);
-        canvas.setHeight(h);
+        getCanvasGraphics(canvas, w, h);
         // Resize any other nodes added to the view
         for (Node node : view.getChildrenUnmodifiable()) {
             node.resize(w, h);
@@ -2246,11 +2654,86 @@ public final class Chart extends Pane {
 
     /**
      * Paints the canvas that forms the background of the view. This contains
-     * the inner axes, grids and fills.
+     * the inner axes, grids and fills. The canvas is left as is if none of
+     * these have changed since it was last painted.
      */
     private void paintCanvas() {
         GraphicsContext g = canvas.getGraphicsContext2D();
-        axisSet.paintGrid(g);
+        axisSet.updateGrid(g);
+    }
+
+    /**
+     * Returns the number of image pixels per unit of the chart coordinates at
+     * which canvases in the chart are painted. This is 1 except while the
+     * chart is rendered to an image by {@link ChartRenderer}.
+     *
+     * @return the scale
+     */
+    public final double getRenderScale() {
+        return renderScale.get();
+    }
+
+    public final ReadOnlyDoubleProperty renderScaleProperty() {
+        return renderScale.getReadOnlyProperty();
+    }
+
+    /**
+     * Sets the render scale of this chart and its layers, requesting that the
+     * canvases be sized and painted again.
+     *
+     * @param scale the scale
+     */
+    final void setRenderScale(double scale) {
+        for (Chart layer : getLayers()) {
+            if (layer.renderScale.get() != scale) {
+                layer.renderScale.set(scale);
+                layer.axisSet.invalidateGrid();
+                layer.scheduler.invalidate(RenderScheduler.ALL);
+            }
+        }
+    }
+
+    /**
+     * Sizes a canvas to cover an area of the chart at the render scale, so
+     * that an image rendered at that scale uses one canvas pixel per image
+     * pixel. The canvas is scaled back to the size of the area by a transform
+     * and the returned {@code GraphicsContext} is scaled to draw in the
+     * coordinates of the area. The canvas is cleared only if its size has
+     * changed.
+     *
+     * @param canvas the canvas
+     * @param width the width of the area
+     * @param height the height of the area
+     * @return the GraphicsContext of the canvas
+     */
+    public final GraphicsContext getCanvasGraphics(Canvas canvas, double width, double height) {
+        double s = getRenderScale();
+        GraphicsContext g = canvas.getGraphicsContext2D();
+        if (canvas.getWidth() != width * s || canvas.getHeight() != height * s) {
+            // Clear whole pixels: the texture may be reused at the new size
+            // and would show through partly cleared pixels at the edges
+            g.setTransform(1d, 0d, 0d, 1d, 0d, 0d);
+            g.clearRect(0d, 0d, Math.ceil(Math.max(canvas.getWidth(), width * s)),
+                    Math.ceil(Math.max(canvas.getHeight(), height * s)));
+            canvas.setWidth(width * s);
+            canvas.setHeight(height * s);
+        }
+        Scale t = (Scale) canvas.getProperties().get(CANVAS_SCALE);
+        if (s == 1d) {
+            if (t != null) {
+                canvas.getProperties().remove(CANVAS_SCALE);
+                canvas.getTransforms().remove(t);
+            }
+        } else if (t == null) {
+            t = new Scale(1d / s, 1d / s);
+            canvas.getProperties().put(CANVAS_SCALE, t);
+            canvas.getTransforms().add(t);
+        } else {
+            t.setX(1d / s);
+            t.setY(1d / s);
+        }
+        g.setTransform(s, 0d, 0d, s, 0d, 0d);
+        return g;
     }
 
     /**
@@ -2365,6 +2848,47 @@ public final class Chart extends Pane {
         yTop.set(val);
     }
 
+    /**
+     * Returns the present axis limits.
+     *
+     * @return the viewport
+     */
+    public final Viewport getViewport() {
+        return viewport.get();
+    }
+
+    /**
+     * Sets all four axis limits. Listeners to the {@code viewportProperty()}
+     * are notified once, after all the limits have been set, and linked
+     * charts receive the complete viewport.
+     *
+     * @param vp the new limits
+     */
+    public final void setViewport(Viewport vp) {
+        if (vp.equals(getViewport())) {
+            return;
+        }
+        settingViewport = true;
+        try {
+            xLeft.set(vp.getXLeft());
+            xRight.set(vp.getXRight());
+            yBottom.set(vp.getYBottom());
+            yTop.set(vp.getYTop());
+        } finally {
+            settingViewport = false;
+        }
+        viewport.set(vp);
+    }
+
+    /**
+     * Read-only property containing the axis limits.
+     *
+     * @return the property
+     */
+    public final ReadOnlyObjectProperty<Viewport> viewportProperty() {
+        return viewport.getReadOnlyProperty();
+    }
+
     /**
      * Returns the {@code StackPane} that forms the view of this {@code Chart}.
      *
@@ -3029,91 +3553,181 @@ public final class Chart extends Pane {
     }
 
     /**
-     * Establishes a bi-directional binding between the x-axis limits of this
-     * chart and x-axis limits of the specified chart.
+     * Establishes a bi-directional link between the x-axis limits of this
+     * chart and x-axis limits of the specified chart. This chart takes the
+     * limits of the specified chart initially.
      *
      * @param chart
      */
     public final void addAxisLinkXX(Chart chart) {
-        xLeft.bindBidirectional(chart.xLeft);
-        xRight.bindBidirectional(chart.xRight);
+        addAxisLink(chart, AxisLink.Type.XX);
     }
 
     /**
-     * Establishes a bi-directional binding between the x-axis limits of this
+     * Establishes a bi-directional link between the x-axis limits of this
      * chart and y-axis limits of the specified chart.
      *
      * @param chart
      */
     public final void addAxisLinkXY(Chart chart) {
-        xLeft.bindBidirectional(chart.yBottom);
-        xRight.bindBidirectional(chart.yTop);
+        addAxisLink(chart, AxisLink.Type.XY);
     }
 
     /**
-     * Establishes a bi-directional binding between the y-axis limits of this
+     * Establishes a bi-directional link between the y-axis limits of this
      * chart and y-axis limits of the specified chart.
      *
      * @param chart
      */
     public final void addAxisLinkYY(Chart chart) {
-        yBottom.bindBidirectional(chart.yBottom);
-        yTop.bindBidirectional(chart.yTop);
+        addAxisLink(chart, AxisLink.Type.YY);
     }
 
     /**
-     * Establishes a bi-directional binding between the y-axis limits of this
+     * Establishes a bi-directional link between the y-axis limits of this
      * chart and x-axis limits of the specified chart.
      *
      * @param chart
      */
     public final void addAxisLinkYX(Chart chart) {
-        yBottom.bindBidirectional(chart.xLeft);
-        yTop.bindBidirectional(chart.xRight);
+        addAxisLink(chart, AxisLink.Type.YX);
     }
 
     /**
-     * Removes a bi-directional binding between the x-axis limits of this chart
+     * Removes a bi-directional link between the x-axis limits of this chart
      * and x-axis limits of the specified chart.
      *
      * @param chart
      */
     public final void removeAxisLinkXX(Chart chart) {
-        xLeft.unbindBidirectional(chart.xLeft);
-        xRight.unbindBidirectional(chart.xRight);
+        removeAxisLink(chart, AxisLink.Type.XX);
     }
 
     /**
-     * Removes a bi-directional binding between the x-axis limits of this chart
+     * Removes a bi-directional link between the x-axis limits of this chart
      * and y-axis limits of the specified chart.
      *
      * @param chart
      */
     public final void removeAxisLinkXY(Chart chart) {
-        xLeft.unbindBidirectional(chart.yBottom);
-        xRight.unbindBidirectional(chart.yTop);
+        removeAxisLink(chart, AxisLink.Type.XY);
     }
 
     /**
-     * Removes a bi-directional binding between the y-axis limits of this chart
+     * Removes a bi-directional link between the y-axis limits of this chart
      * and y-axis limits of the specified chart.
      *
      * @param chart
      */
     public final void removeAxisLinkYY(Chart chart) {
-        yBottom.unbindBidirectional(chart.yBottom);
-        yTop.unbindBidirectional(chart.yTop);
+        removeAxisLink(chart, AxisLink.Type.YY);
     }
 
     /**
-     * Removes a bi-directional binding between the y-axis limits of this chart
+     * Removes a bi-directional link between the y-axis limits of this chart
      * and x-axis limits of the specified chart.
      *
      * @param chart
      */
     public final void removeAxisLinkYX(Chart chart) {
-        yBottom.unbindBidirectional(chart.xLeft);
-        yTop.unbindBidirectional(chart.xRight);
+        removeAxisLink(chart, AxisLink.Type.YX);
+    }
+
+    private void addAxisLink(Chart chart, AxisLink.Type type) {
+        AxisLink link = new AxisLink(this, chart, type);
+        axisLinks.add(link);
+        viewport.addListener(link);
+        chart.viewport.addListener(link);
+        link.changed(chart.viewport, null, chart.getViewport());
+    }
+
+    private void removeAxisLink(Chart chart, AxisLink.Type type) {
+        for (AxisLink link : axisLinks) {
+            if (link.getOther() == chart && link.type == type) {
+                axisLinks.remove(link);
+                viewport.removeListener(link);
+                chart.viewport.removeListener(link);
+                return;
+            }
+        }
+        // The link may have been added from the other chart
+        AxisLink.Type inverse = type.inverse();
+        if (chart.axisLinks.stream().anyMatch(link -> link.getOther() == this && link.type == inverse)) {
+            chart.removeAxisLink(this, inverse);
+        }
+    }
+
+    /**
+     * Copies one range of the viewport from one chart to the other when either
+     * changes. The complete viewport is applied to the receiving chart, so it
+     * is updated once per change.
+     *
+     * As with the bidirectional bindings used previously, the charts are
+     * weakly referenced so a link does not keep either chart alive. When one
+     * chart has been collected, the link removes itself from the other the
+     * next time that chart's viewport changes.
+     */
+    private static final class AxisLink implements ChangeListener<Viewport> {
+
+        private enum Type {
+
+            XX(true, true), XY(true, false), YY(false, false), YX(false, true);
+
+            /**
+             * True if the linked range of the owner/other chart is the x
+             * range, false for the y range.
+             */
+            private final boolean ownerX;
+            private final boolean otherX;
+
+            Type(boolean ownerX, boolean otherX) {
+                this.ownerX = ownerX;
+                this.otherX = otherX;
+            }
+
+            /**
+             * @return the type of the same link seen from the other chart
+             */
+            Type inverse() {
+                return this == XY ? YX : this == YX ? XY : this;
+            }
+        }
+
+        private final WeakReference<Chart> owner;
+        private final WeakReference<Chart> other;
+        private final Type type;
+
+        AxisLink(Chart owner, Chart other, Type type) {
+            this.owner = new WeakReference<>(owner);
+            this.other = new WeakReference<>(other);
+            this.type = type;
+        }
+
+        Chart getOther() {
+            return other.get();
+        }
+
+        @Override
+        public void changed(ObservableValue<? extends Viewport> ov, Viewport t, Viewport vp) {
+            Chart ownerChart = owner.get();
+            Chart otherChart = other.get();
+            if (ownerChart == null || otherChart == null) {
+                ov.removeListener(this);
+                if (ownerChart != null) {
+                    ownerChart.axisLinks.remove(this);
+                }
+                return;
+            }
+            boolean fromOwner = ov == ownerChart.viewport;
+            Chart target = fromOwner ? otherChart : ownerChart;
+            // Is the source/target range x (true) or y (false)?
+            boolean sourceX = fromOwner ? type.ownerX : type.otherX;
+            boolean targetX = fromOwner ? type.otherX : type.ownerX;
+            double lo = sourceX ? vp.getXLeft() : vp.getYBottom();
+            double hi = sourceX ? vp.getXRight() : vp.getYTop();
+            Viewport current = target.getViewport();
+            target.setViewport(targetX ? current.withX(lo, hi) : current.withY(lo, hi));
+        }
     }
 
     /**
@@ -3314,12 +3928,12 @@ public final class Chart extends Pane {
     }
 
     /**
-     * Requests that the {@code Chart} is repainted.
+     * Requests that the {@code Chart} is repainted. The canvas will be
+     * painted in the next layout pass.
      *
      */
     final void requestPaint() {
-        requestLayout();
-        axisSet.paintGrid(canvas.getGraphicsContext2D());
+        scheduler.invalidate(RenderScheduler.GRID);
     }
 
     /**
@@ -4057,6 +4671,31 @@ public final class Chart extends Pane {
                     }
                 };
 
+        /**
+         * Returns the RenderScheduler dirty bits to set when the property for
+         * a CssMetaData instance changes. The axis limits and origin are
+         * handled by dedicated listeners, so return zero as do properties
+         * inherited from Pane.
+         */
+        static int dirtyBits(CssMetaData<? extends Styleable, ?> meta) {
+            if (meta == POLAR || meta == XTRANSFORMTYPE || meta == YTRANSFORMTYPE) {
+                return RenderScheduler.LIMITS;
+            } else if (meta == MINORGRIDSTROKEWIDTH || meta == MAJORGRIDSTROKEWIDTH
+                    || meta == MINORGRIDPAINTED || meta == MAJORGRIDPAINTED
+                    || meta == MINORGRIDCOLOR || meta == MAJORGRIDCOLOR
+                    || meta == INNERAXISCOLOR || meta == INNERAXISPAINTED
+                    || meta == INNERAXISLABELLED || meta == INNERAXISSTROKEWIDTH
+                    || meta == ALTFILLVERTICAL || meta == ALTFILLHORIZONTAL
+                    || meta == ALTFILLVERTICALPAINTED || meta == ALTFILLHORIZONTALPAINTED) {
+                return RenderScheduler.GRID;
+            } else if (meta == XLEFT || meta == XRIGHT || meta == YBOTTOM || meta == YTOP
+                    || meta == XORIGIN || meta == YORIGIN || meta == MOUSEPOSITION
+                    || Pane.getClassCssMetaData().contains(meta)) {
+                return 0;
+            }
+            return RenderScheduler.STYLE;
+        }
+
         static {
             final List<CssMetaData<? extends Styleable, ?>> styleables
                     = new ArrayList<>(Pane.getClassCssMetaData());
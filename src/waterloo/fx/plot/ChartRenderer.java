@@ -0,0 +1,359 @@
+/*
+*
+ * <http://sigtool.github.io/waterlooFX/>
+ *
+ * Copyright King's College London  2014. Copyright Ironduke Publishing Limited, UK 2014-.
+ *
+ * @author Malcolm Lidierth <a href="https://github.com/sigtool/waterlooFX/issues"> [Contact]</a>
+ *
+ * Project Waterloo is free software:  you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Project Waterloo is distributed in the hope that it will  be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package waterloo.fx.plot;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.FutureTask;
+import javafx.application.Platform;
+import javafx.geometry.Rectangle2D;
+import javafx.scene.Group;
+import javafx.scene.Scene;
+import javafx.scene.SnapshotParameters;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.scene.layout.Pane;
+import javafx.scene.transform.Transform;
+import waterloo.fx.util.PngEncoder;
+
+/**
+ * Renders a {@code Chart} to an image without showing it in a window.
+ *
+ * The chart is placed in a pane in an offscreen {@code Scene}, sized to the
+ * pane, laid out and
+ * rendered in full: batched plots are drawn completely rather than
+ * progressively, large line plots are projected before the image is taken and
+ * the rendering quality is not reduced. Canvases, e.g. for the grid and
+ * batched plots, are painted at the scale of the image so they are as sharp
+ * as the shapes and text. The scenes are pooled and reused. The
+ * chart is removed from the scene and its preferred size restored when the
+ * image has been taken, so a chart may be rendered repeatedly,
+ * e.g. after its data have been updated.
+ *
+ * The methods may be called from any thread and wait for the rendering to
+ * complete on the FX Application Thread. The JavaFX toolkit must have been
+ * started, e.g. by launching an {@code Application} or creating a
+ * {@code JFXPanel}. No window system is needed if the headless Monocle
+ * platform is used, e.g. with
+ * {@code -Dglass.platform=Monocle -Dmonocle.platform=Headless -Dprism.order=sw}
+ * and Monocle on the class path.
+ *
+ * @author Malcolm Lidierth
+ */
+public final class ChartRenderer {
+
+    /**
+     * Maximum number of idle scenes kept for reuse.
+     */
+    private static final int POOL_SIZE = 4;
+    /**
+     * Maximum number of layout passes used to settle the chart.
+     */
+    private static final int MAX_PASSES = 4;
+    /**
+     * Idle panes, each the only child of the root of its own scene.
+     */
+    private static final ArrayDeque<Pane> POOL = new ArrayDeque<>();
+    /**
+     * Maximum width and height of a tile, within the texture size limit of
+     * the hardware pipelines.
+     */
+    private static final int TILE_SIZE = 2048;
+    /**
+     * Target number of pixels in a band of tiles written by {@code writePng}.
+     */
+    private static final int TILE_PIXELS = 1 << 21;
+    private static final PngEncoder ENCODER = new PngEncoder();
+
+    private ChartRenderer() {
+    }
+
+    /**
+     * Renders the chart to an image.
+     *
+     * @param chart the chart. This must not have a parent or be in a scene.
+     * @param width the width of the chart
+     * @param height the height of the chart
+     * @param scale the scale factor from chart coordinates to image pixels,
+     * e.g. 2 for a high resolution image
+     * @return the image, ceil(width * scale) by ceil(height * scale) pixels
+     */
+    public static WritableImage render(Chart chart, double width, double height, double scale) {
+        checkDetached(chart);
+        if (!(width > 0d && height > 0d && scale > 0d)) {
+            throw new IllegalArgumentException("The size and scale must be positive");
+        }
+        if (Platform.isFxApplicationThread()) {
+            return renderNow(chart, width, height, scale);
+        }
+        return runOnFxThread(() -> renderNow(chart, width, height, scale));
+    }
+
+    /**
+     * Lays out the chart offscreen and captures it for drawing on other
+     * threads by a {@link SoftwareRenderer}. Style sheets are applied and the
+     * axes laid out as for {@code render}, but the canvas is not painted and
+     * the plots are not arranged, so the time taken does not depend on the
+     * size of the data.
+     *
+     * @param chart the chart. This must not have a parent or be in a scene.
+     * @param width the width of the chart
+     * @param height the height of the chart
+     * @return the renderer
+     * @throws IllegalArgumentException if the chart contains a plot of a type
+     * that the {@code SoftwareRenderer} cannot draw
+     */
+    public static SoftwareRenderer capture(Chart chart, double width, double height) {
+        checkDetached(chart);
+        if (!(width > 0d && height > 0d)) {
+            throw new IllegalArgumentException("The size must be positive");
+        }
+        if (Platform.isFxApplicationThread()) {
+            return captureNow(chart, width, height);
+        }
+        return runOnFxThread(() -> captureNow(chart, width, height));
+    }
+
+    /**
+     * Renders the chart to an array of non-premultiplied ARGB pixels.
+     *
+     * @param chart the chart. This must not have a parent or be in a scene.
+     * @param width the width of the chart
+     * @param height the height of the chart
+     * @param scale the scale factor from chart coordinates to image pixels
+     * @return the pixels, row by row, for an image ceil(width * scale) by
+     * ceil(height * scale) pixels
+     */
+    public static int[] renderToArgb(Chart chart, double width, double height, double scale) {
+        WritableImage image = render(chart, width, height, scale);
+        int w = (int) image.getWidth();
+        int h = (int) image.getHeight();
+        int[] pixels = new int[w * h];
+        image.getPixelReader().getPixels(0, 0, w, h, PixelFormat.getIntArgbInstance(), pixels, 0, w);
+        return pixels;
+    }
+
+    /**
+     * Renders the chart as a PNG image in tiles, without holding the whole
+     * image in memory or exceeding the maximum texture size. This allows
+     * images far larger than {@code render} can return, e.g. at 600 dpi for a
+     * poster.
+     *
+     * The chart is laid out once and each tile is a snapshot of a viewport
+     * of it. The snapshots are taken in turn on the FX Application Thread
+     * while earlier tiles are compressed and written on other threads. The
+     * threads of the common {@code ForkJoinPool} waiting for a snapshot are
+     * managed blockers, so they do not starve the pool. Use
+     * {@link SoftwareRenderer#writePng} to draw the tiles in parallel.
+     *
+     * @param chart the chart. This must not have a parent or be in a scene.
+     * @param width the width of the chart
+     * @param height the height of the chart
+     * @param scale the scale factor from chart coordinates to image pixels
+     * @param out the stream to write to. This is not closed.
+     * @throws IOException if the stream cannot be written
+     * @throws IllegalStateException if called on the FX Application Thread
+     */
+    public static void writePng(Chart chart, double width, double height, double scale, OutputStream out)
+            throws IOException {
+        if (Platform.isFxApplicationThread()) {
+            throw new IllegalStateException("Tiled rendering cannot be done on the FX Application Thread");
+        }
+        checkDetached(chart);
+        if (!(width > 0d && height > 0d && scale > 0d)) {
+            throw new IllegalArgumentException("The size and scale must be positive");
+        }
+        double prefWidth = chart.getPrefWidth();
+        double prefHeight = chart.getPrefHeight();
+        Pane pane = runOnFxThread(() -> attach(chart, width, height, scale));
+        try {
+            int w = (int) Math.ceil(width * scale);
+            int h = (int) Math.ceil(height * scale);
+            // The encoder also asks for the row above each band
+            int rows = Math.max(1, Math.min(TILE_SIZE - 1, Math.min(h, TILE_PIXELS / w)));
+            int columns = (w + TILE_SIZE - 1) / TILE_SIZE;
+            // Reused for each band, on the FX Application Thread only
+            WritableImage[] tiles = new WritableImage[columns];
+            ENCODER.encode(w, h, false, rows, (y, n, argb) -> runOnFxThread(() -> {
+                for (int c = 0; c < columns; c++) {
+                    int x = c * TILE_SIZE;
+                    int tw = Math.min(TILE_SIZE, w - x);
+                    if (tiles[c] == null) {
+                        tiles[c] = new WritableImage(tw, rows + 1);
+                    }
+                    WritableImage tile = snapshot(pane, scale, new Rectangle2D(x, y, tw, n), tiles[c]);
+                    tile.getPixelReader().getPixels(0, 0, tw, n, PixelFormat.getIntArgbInstance(), argb, x, w);
+                }
+                return null;
+            }), out);
+        } finally {
+            runOnFxThread(() -> {
+                detach(pane, chart, prefWidth, prefHeight);
+                return null;
+            });
+        }
+    }
+
+    private static WritableImage renderNow(Chart chart, double width, double height, double scale) {
+        double prefWidth = chart.getPrefWidth();
+        double prefHeight = chart.getPrefHeight();
+        Pane pane = attach(chart, width, height, scale);
+        try {
+            int w = (int) Math.ceil(width * scale);
+            int h = (int) Math.ceil(height * scale);
+            return snapshot(pane, scale, new Rectangle2D(0d, 0d, w, h), new WritableImage(w, h));
+        } finally {
+            detach(pane, chart, prefWidth, prefHeight);
+        }
+    }
+
+    private static SoftwareRenderer captureNow(Chart chart, double width, double height) {
+        double prefWidth = chart.getPrefWidth();
+        double prefHeight = chart.getPrefHeight();
+        chart.setLayoutOnly(true);
+        Pane pane = attach(chart, width, height, 1d);
+        try {
+            return SoftwareRenderer.capture(chart);
+        } finally {
+            detach(pane, chart, prefWidth, prefHeight);
+            chart.setLayoutOnly(false);
+        }
+    }
+
+    /**
+     * Rejects a chart that has a parent or is in a scene: attaching it to a
+     * pooled scene would take it from its parent without putting it back.
+     */
+    private static void checkDetached(Chart chart) {
+        if (chart.getParent() != null) {
+            throw new IllegalArgumentException("The chart already has a parent");
+        }
+        if (chart.getScene() != null) {
+            throw new IllegalArgumentException("The chart is already in a scene");
+        }
+    }
+
+    /**
+     * Runs a task on the FX Application Thread and waits for its result. On a
+     * thread of a {@code ForkJoinPool}, e.g. when the PNG encoder asks for a
+     * band, the wait is managed so the pool can run other tasks meanwhile.
+     */
+    private static <T> T runOnFxThread(Callable<T> callable) {
+        FutureTask<T> task = new FutureTask<>(callable);
+        Platform.runLater(task);
+        try {
+            ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+
+                @Override
+                public boolean block() throws InterruptedException {
+                    try {
+                        task.get();
+                    } catch (ExecutionException ex) {
+                        // Rethrown below
+                    }
+                    return true;
+                }
+
+                @Override
+                public boolean isReleasable() {
+                    return task.isDone();
+                }
+            });
+            return task.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw new IllegalStateException(ex.getCause());
+        }
+    }
+
+    /**
+     * Places the chart in a pooled scene and lays it out at the specified
+     * size, with its canvases painted at the scale of the image.
+     *
+     * @return the pane holding the chart
+     */
+    private static Pane attach(Chart chart, double width, double height, double scale) {
+        Pane pane = POOL.isEmpty() ? createPane() : POOL.pop();
+        chart.setRenderingOffscreen(true);
+        chart.setRenderScale(scale);
+        pane.setPrefSize(width, height);
+        pane.resize(width, height);
+        // The chart binds its preferred size to the size of its parent
+        pane.getChildren().setAll(chart);
+        Group root = (Group) pane.getParent();
+        for (int k = 0; k < MAX_PASSES; k++) {
+            chart.requestLayout();
+            root.applyCss();
+            root.layout();
+            if (!chart.isLayoutPending()) {
+                break;
+            }
+        }
+        return pane;
+    }
+
+    /**
+     * Removes the chart from its pane, restores its preferred size and
+     * returns the pane to the pool.
+     */
+    private static void detach(Pane pane, Chart chart, double prefWidth, double prefHeight) {
+        pane.getChildren().clear();
+        chart.prefWidthProperty().unbind();
+        chart.prefHeightProperty().unbind();
+        chart.setPrefSize(prefWidth, prefHeight);
+        chart.setRenderScale(1d);
+        chart.setRenderingOffscreen(false);
+        if (POOL.size() < POOL_SIZE) {
+            POOL.push(pane);
+        }
+    }
+
+    /**
+     * Takes a snapshot of a viewport, in image pixels, of the scaled pane.
+     */
+    private static WritableImage snapshot(Pane pane, double scale, Rectangle2D viewport, WritableImage image) {
+        SnapshotParameters params = new SnapshotParameters();
+        params.setTransform(Transform.scale(scale, scale));
+        params.setViewport(viewport);
+        return pane.snapshot(params, image);
+    }
+
+    /**
+     * Creates a pane in its own scene. The root of the scene is a
+     * {@code Group} so the scene does not resize the pane.
+     */
+    private static Pane createPane() {
+        Pane pane = new Pane();
+        new Scene(new Group(pane));
+        return pane;
+    }
+}
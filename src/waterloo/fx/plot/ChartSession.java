@@ -0,0 +1,619 @@
+/*
+*
+ * <http://sigtool.github.io/waterlooFX/>
+ *
+ * Copyright King's College London  2014. Copyright Ironduke Publishing Limited, UK 2014-.
+ *
+ * @author Malcolm Lidierth <a href="https://github.com/sigtool/waterlooFX/issues"> [Contact]</a>
+ *
+ * Project Waterloo is free software:  you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Project Waterloo is distributed in the hope that it will  be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package waterloo.fx.plot;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import javafx.beans.property.Property;
+import javafx.css.CssMetaData;
+import javafx.css.StyleOrigin;
+import javafx.css.Styleable;
+import javafx.css.StyleableProperty;
+import javafx.scene.Node;
+import javafx.scene.Parent;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+import javafx.scene.paint.LinearGradient;
+import javafx.scene.paint.Paint;
+import javafx.scene.paint.RadialGradient;
+import waterloo.fx.plot.model.DataModel;
+import waterloo.fx.plot.model.DoubleColumn;
+
+/**
+ * Saves a {@code Chart}, with its layers, plot collections and plots, to a
+ * binary session file and restores it.
+ *
+ * The structure of the chart and the styles of each node are written in a
+ * small header, followed by the columns of each plot's {@code DataModel} as
+ * blocks of little-endian doubles. When a session is loaded, the blocks are
+ * memory-mapped and the {@link DoubleColumn}s of the restored models read
+ * them in place, so a session is reopened in a time that does not depend on
+ * the size of the data. A column is copied to the heap only when it is
+ * modified. Columns of more than 2^28 values are too large to be mapped and
+ * are read into the heap.
+ *
+ * For each node the class, id, style classes, inline style and stylesheets
+ * are saved, together with the values of the waterlooFX styleable properties
+ * that have been set in code or differ from their initial values: those set
+ * by stylesheets are restored by the stylesheets. Enum, boolean, numeric,
+ * string, color and gradient values are supported. Other nodes, e.g.
+ * annotations, and state that is not styleable are not saved. Restored
+ * nodes are created using their public no-argument constructors.
+ *
+ * A chart should be saved on the FX Application Thread if it is showing. A
+ * session may be loaded on any thread, as the chart is not yet in a scene.
+ *
+ * <pre>
+ * ChartSession.save(chart, Paths.get("workspace.wfx"));
+ * Chart restored = ChartSession.load(Paths.get("workspace.wfx"));
+ * </pre>
+ *
+ * @author Malcolm Lidierth
+ */
+public final class ChartSession {
+
+    /**
+     * "WFXS", little-endian.
+     */
+    private static final int MAGIC = 0x53584657;
+    private static final int VERSION = 1;
+    /**
+     * Magic number, version, header length and a reserved word.
+     */
+    private static final int PRELUDE = 16;
+
+    private static final byte CHART = 0;
+    private static final byte COLLECTION = 1;
+    private static final byte PLOT = 2;
+
+    private static final byte BOOLEAN = 'B';
+    private static final byte NUMBER = 'N';
+    private static final byte STRING = 'S';
+    private static final byte ENUM = 'E';
+    private static final byte COLOR = 'C';
+    private static final byte GRADIENT = 'G';
+
+    /**
+     * The size of the buffer used to write columns.
+     */
+    private static final int CHUNK = 1 << 20;
+
+    private ChartSession() {
+    }
+
+    /**
+     * Saves a chart to a file, replacing any existing file.
+     *
+     * @param chart the chart
+     * @param file the file
+     * @throws IOException if the file cannot be written
+     */
+    public static void save(Chart chart, Path file) throws IOException {
+        Header header = new Header();
+        List<DoubleColumn> columns = new ArrayList<>();
+        writeChart(header, chart, columns);
+        ByteBuffer head = header.toBuffer();
+        long dataStart = align(PRELUDE + head.remaining());
+        ByteBuffer prelude = ByteBuffer.allocate(PRELUDE).order(ByteOrder.LITTLE_ENDIAN);
+        prelude.putInt(MAGIC).putInt(VERSION).putInt(head.remaining()).putInt(0).flip();
+        // The columns may be mapped from the file being replaced, so the
+        // session is written to a temporary file that is then moved into place
+        Path dir = file.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+        try {
+            write(temp, prelude, head, dataStart, columns);
+            try {
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static void write(Path file, ByteBuffer prelude, ByteBuffer head, long dataStart,
+            List<DoubleColumn> columns) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            writeFully(ch, prelude);
+            writeFully(ch, head);
+            ch.position(dataStart);
+            ByteBuffer chunk = ByteBuffer.allocateDirect(CHUNK).order(ByteOrder.LITTLE_ENDIAN);
+            for (DoubleColumn column : columns) {
+                DoubleBuffer src = column.asBuffer();
+                while (src.hasRemaining()) {
+                    int n = Math.min(src.remaining(), CHUNK / Double.BYTES);
+                    DoubleBuffer part = src.slice();
+                    part.limit(n);
+                    chunk.clear();
+                    chunk.asDoubleBuffer().put(part);
+                    chunk.limit(n * Double.BYTES);
+                    writeFully(ch, chunk);
+                    src.position(src.position() + n);
+                }
+            }
+        }
+    }
+
+    /**
+     * Loads a chart from a session file.
+     *
+     * @param file the file
+     * @return the chart
+     * @throws IOException if the file cannot be read or is not a valid session
+     */
+    public static Chart load(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer prelude = ByteBuffer.allocate(PRELUDE).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(ch, prelude);
+            prelude.flip();
+            if (prelude.getInt() != MAGIC) {
+                throw new IOException("Not a chart session file: " + file);
+            }
+            int version = prelude.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported chart session version: " + version);
+            }
+            int length = prelude.getInt();
+            if (length < 0 || PRELUDE + (long) length > ch.size()) {
+                throw new IOException("Corrupt chart session header: " + file);
+            }
+            ByteBuffer head = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(ch, head);
+            head.flip();
+            Reader reader = new Reader(head, ch, align(PRELUDE + length));
+            try {
+                if (head.get() != CHART) {
+                    throw new IOException("Corrupt chart session header: " + file);
+                }
+                return reader.readChart();
+            } catch (BufferUnderflowException ex) {
+                throw new IOException("Corrupt chart session header: " + file, ex);
+            }
+        }
+    }
+
+    private static void writeChart(Header header, Chart chart, List<DoubleColumn> columns) {
+        header.putByte(CHART);
+        writeNode(header, chart);
+        Viewport vp = chart.getViewport();
+        header.putDouble(vp.getXLeft());
+        header.putDouble(vp.getXRight());
+        header.putDouble(vp.getYBottom());
+        header.putDouble(vp.getYTop());
+        List<Chart> layers = chart.getLayers().subList(1, chart.getLayers().size());
+        header.putInt(layers.size());
+        layers.forEach(layer -> writeChart(header, layer, columns));
+        writeChildren(header, chart.getView(), columns);
+    }
+
+    private static void writeChildren(Header header, Parent parent, List<DoubleColumn> columns) {
+        List<Node> children = new ArrayList<>();
+        parent.getChildrenUnmodifiable().stream()
+                .filter(x -> x instanceof AbstractPlot || x instanceof PlotCollection)
+                .forEach(children::add);
+        header.putInt(children.size());
+        for (Node node : children) {
+            if (node instanceof PlotCollection) {
+                header.putByte(COLLECTION);
+                writeNode(header, (Parent) node);
+                writeChildren(header, (Parent) node, columns);
+            } else {
+                header.putByte(PLOT);
+                writeNode(header, (Parent) node);
+                DataModel model = ((AbstractPlot) node).getDataModel();
+                header.putDouble(model.getBaseValue());
+                header.putByte(model.isDataPolar() ? (byte) 1 : (byte) 0);
+                for (DoubleColumn column : columns(model)) {
+                    header.putInt(column.size());
+                    columns.add(column);
+                }
+                writeChildren(header, (Parent) node, columns);
+            }
+        }
+    }
+
+    private static DoubleColumn[] columns(DataModel model) {
+        return new DoubleColumn[]{model.getXColumn(), model.getYColumn(),
+            model.getExtraColumn0(), model.getExtraColumn1(),
+            model.getExtraColumn2(), model.getExtraColumn3()};
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void writeNode(Header header, Parent node) {
+        header.putString(node.getClass().getName());
+        header.putString(node.getId());
+        header.putStrings(node.getStyleClass());
+        header.putString(node.getStyle());
+        header.putStrings(node.getStylesheets());
+        Header props = new Header();
+        int count = 0;
+        for (CssMetaData<? extends Styleable, ?> m : node.getCssMetaData()) {
+            CssMetaData<Styleable, ?> meta = (CssMetaData<Styleable, ?>) m;
+            if (!meta.getProperty().startsWith("-w-") || AbstractPlot.isDataCssMetaData(meta)) {
+                continue;
+            }
+            StyleableProperty<?> sp = meta.getStyleableProperty(node);
+            if (sp == null || (sp instanceof Property && ((Property<?>) sp).isBound())) {
+                continue;
+            }
+            Object value = sp.getValue();
+            StyleOrigin origin = sp.getStyleOrigin();
+            if (origin != StyleOrigin.USER
+                    && (origin != null || Objects.equals(value, meta.getInitialValue(node)))) {
+                continue;
+            }
+            if (putValue(props, meta.getProperty(), value)) {
+                count++;
+            }
+        }
+        header.putInt(count);
+        header.putHeader(props);
+    }
+
+    private static boolean putValue(Header header, String name, Object value) {
+        if (value instanceof Boolean) {
+            header.putString(name);
+            header.putByte(BOOLEAN);
+            header.putByte((Boolean) value ? (byte) 1 : (byte) 0);
+        } else if (value instanceof Number) {
+            header.putString(name);
+            header.putByte(NUMBER);
+            header.putDouble(((Number) value).doubleValue());
+        } else if (value instanceof String) {
+            header.putString(name);
+            header.putByte(STRING);
+            header.putString((String) value);
+        } else if (value instanceof Enum) {
+            header.putString(name);
+            header.putByte(ENUM);
+            header.putString(((Enum<?>) value).name());
+        } else if (value instanceof Color) {
+            Color c = (Color) value;
+            header.putString(name);
+            header.putByte(COLOR);
+            header.putDouble(c.getRed());
+            header.putDouble(c.getGreen());
+            header.putDouble(c.getBlue());
+            header.putDouble(c.getOpacity());
+        } else if (value instanceof LinearGradient || value instanceof RadialGradient) {
+            // The string forms are parsed by Paint.valueOf
+            header.putString(name);
+            header.putByte(GRADIENT);
+            header.putString(value.toString());
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    private static long align(long position) {
+        return (position + 7L) & ~7L;
+    }
+
+    private static void writeFully(FileChannel ch, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            ch.write(buffer);
+        }
+    }
+
+    private static void readFully(FileChannel ch, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (ch.read(buffer) < 0) {
+                throw new EOFException();
+            }
+        }
+    }
+
+    /**
+     * A growable little-endian buffer for the header.
+     */
+    private static final class Header {
+
+        private ByteBuffer buffer = ByteBuffer.allocate(1024).order(ByteOrder.LITTLE_ENDIAN);
+
+        private void ensure(int n) {
+            if (buffer.remaining() < n) {
+                ByteBuffer b = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + n))
+                        .order(ByteOrder.LITTLE_ENDIAN);
+                buffer.flip();
+                b.put(buffer);
+                buffer = b;
+            }
+        }
+
+        void putByte(byte b) {
+            ensure(1);
+            buffer.put(b);
+        }
+
+        void putInt(int n) {
+            ensure(4);
+            buffer.putInt(n);
+        }
+
+        void putDouble(double d) {
+            ensure(8);
+            buffer.putDouble(d);
+        }
+
+        /**
+         * Writes a string as its UTF-8 length and bytes, with a length of -1
+         * for null.
+         */
+        void putString(String s) {
+            if (s == null) {
+                putInt(-1);
+                return;
+            }
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            putInt(bytes.length);
+            ensure(bytes.length);
+            buffer.put(bytes);
+        }
+
+        void putStrings(List<String> list) {
+            putInt(list.size());
+            list.forEach(this::putString);
+        }
+
+        void putHeader(Header h) {
+            ByteBuffer b = h.toBuffer();
+            ensure(b.remaining());
+            buffer.put(b);
+        }
+
+        ByteBuffer toBuffer() {
+            ByteBuffer b = buffer.duplicate();
+            b.flip();
+            return b;
+        }
+    }
+
+    /**
+     * Reads the header, creating the nodes and mapping their columns.
+     */
+    private static final class Reader {
+
+        private final ByteBuffer head;
+        private final FileChannel channel;
+        private long position;
+
+        Reader(ByteBuffer head, FileChannel channel, long dataStart) {
+            this.head = head;
+            this.channel = channel;
+            this.position = dataStart;
+        }
+
+        Chart readChart() throws IOException {
+            Chart chart = readNode(Chart.class);
+            Viewport vp = new Viewport(head.getDouble(), head.getDouble(),
+                    head.getDouble(), head.getDouble());
+            int layers = readCount();
+            for (int k = 0; k < layers; k++) {
+                if (head.get() != CHART) {
+                    throw new IOException("Corrupt chart session header");
+                }
+                chart.getChildren().add(readChart());
+            }
+            readChildren(chart.getView());
+            chart.setViewport(vp);
+            return chart;
+        }
+
+        private void readChildren(Parent parent) throws IOException {
+            int n = readCount();
+            for (int k = 0; k < n; k++) {
+                byte kind = head.get();
+                Node node;
+                if (kind == COLLECTION) {
+                    node = readNode(PlotCollection.class);
+                    readChildren((Parent) node);
+                } else if (kind == PLOT) {
+                    AbstractPlot<?> plot = readNode(AbstractPlot.class);
+                    DataModel model = plot.getDataModel();
+                    model.setBaseValue(head.getDouble());
+                    model.setDataPolar(head.get() != 0);
+                    for (DoubleColumn column : columns(model)) {
+                        column.setAll(readColumn(readCount()));
+                    }
+                    readChildren(plot);
+                    node = plot;
+                } else {
+                    throw new IOException("Corrupt chart session header");
+                }
+                if (parent instanceof AbstractPlot) {
+                    ((AbstractPlot<?>) parent).add((AbstractPlot<?>) node);
+                } else if (parent instanceof PlotCollection) {
+                    ((PlotCollection<?>) parent).getChildren().add(node);
+                } else {
+                    ((Pane) parent).getChildren().add(node);
+                }
+            }
+        }
+
+        private DoubleBuffer readColumn(int count) throws IOException {
+            long bytes = (long) count * Double.BYTES;
+            if (position + bytes > channel.size()) {
+                throw new EOFException("Chart session data truncated");
+            }
+            DoubleBuffer values;
+            if (bytes <= Integer.MAX_VALUE) {
+                values = channel.map(FileChannel.MapMode.READ_ONLY, position, bytes)
+                        .order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+            } else {
+                double[] arr = new double[count];
+                ByteBuffer chunk = ByteBuffer.allocateDirect(CHUNK).order(ByteOrder.LITTLE_ENDIAN);
+                long at = position;
+                for (int k = 0; k < count;) {
+                    int n = Math.min(count - k, CHUNK / Double.BYTES);
+                    chunk.clear().limit(n * Double.BYTES);
+                    while (chunk.hasRemaining()) {
+                        if (channel.read(chunk, at + chunk.position()) < 0) {
+                            throw new EOFException();
+                        }
+                    }
+                    chunk.flip();
+                    chunk.asDoubleBuffer().get(arr, k, n);
+                    at += n * Double.BYTES;
+                    k += n;
+                }
+                values = DoubleBuffer.wrap(arr);
+            }
+            position += bytes;
+            return values;
+        }
+
+        @SuppressWarnings("unchecked")
+        private <T extends Parent> T readNode(Class<T> type) throws IOException {
+            String name = readString();
+            if (name == null) {
+                throw new IOException("Corrupt chart session header");
+            }
+            T node;
+            try {
+                // The class is not initialized until it is known to be of the
+                // expected type
+                Class<?> cls = Class.forName(name, false, ChartSession.class.getClassLoader());
+                if (!type.isAssignableFrom(cls)) {
+                    throw new IOException(name + " is not a " + type.getSimpleName());
+                }
+                node = cls.asSubclass(type).getConstructor().newInstance();
+            } catch (ClassNotFoundException | NoSuchMethodException | InstantiationException
+                    | IllegalAccessException | InvocationTargetException ex) {
+                throw new IOException("Cannot create " + name, ex);
+            }
+            node.setId(readString());
+            node.getStyleClass().setAll(readStrings());
+            node.setStyle(readString());
+            node.getStylesheets().setAll(readStrings());
+            int count = readCount();
+            for (int k = 0; k < count; k++) {
+                String property = readString();
+                Object value = readValue();
+                for (CssMetaData<? extends Styleable, ?> meta : node.getCssMetaData()) {
+                    if (meta.getProperty().equals(property)) {
+                        applyValue(((CssMetaData<Styleable, ?>) meta).getStyleableProperty(node), value);
+                        break;
+                    }
+                }
+            }
+            return node;
+        }
+
+        private Object readValue() throws IOException {
+            byte tag = head.get();
+            switch (tag) {
+                case BOOLEAN:
+                    return head.get() != 0;
+                case NUMBER:
+                    return head.getDouble();
+                case STRING:
+                    return readString();
+                case ENUM:
+                    // Resolved against the class of the current value
+                    return new EnumName(readString());
+                case COLOR:
+                    return Color.color(head.getDouble(), head.getDouble(),
+                            head.getDouble(), head.getDouble());
+                case GRADIENT:
+                    return Paint.valueOf(readString());
+                default:
+                    throw new IOException("Corrupt chart session header");
+            }
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private static void applyValue(StyleableProperty<?> sp, Object value) {
+            if (sp == null || (sp instanceof Property && ((Property<?>) sp).isBound())) {
+                return;
+            }
+            if (value instanceof EnumName) {
+                Object current = sp.getValue();
+                if (!(current instanceof Enum)) {
+                    return;
+                }
+                try {
+                    value = Enum.valueOf(((Enum) current).getDeclaringClass(), ((EnumName) value).name);
+                } catch (IllegalArgumentException ex) {
+                    return;
+                }
+            }
+            ((StyleableProperty<Object>) sp).setValue(value);
+        }
+
+        private int readCount() throws IOException {
+            int n = head.getInt();
+            if (n < 0) {
+                throw new IOException("Corrupt chart session header");
+            }
+            return n;
+        }
+
+        private String readString() throws IOException {
+            int n = head.getInt();
+            if (n < 0) {
+                return null;
+            }
+            if (n > head.remaining()) {
+                throw new IOException("Corrupt chart session header");
+            }
+            byte[] bytes = new byte[n];
+            head.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        private List<String> readStrings() throws IOException {
+            int n = readCount();
+            List<String> list = new ArrayList<>(n);
+            for (int k = 0; k < n; k++) {
+                list.add(readString());
+            }
+            return list;
+        }
+    }
+
+    private static final class EnumName {
+
+        private final String name;
+
+        EnumName(String name) {
+            this.name = name;
+        }
+    }
+}
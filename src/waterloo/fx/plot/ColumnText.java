@@ -0,0 +1,202 @@
+/*
+*
+ * <http://sigtool.github.io/waterlooFX/>
+ *
+ * Copyright King's College London  2014. Copyright Ironduke Publishing Limited, UK 2014-.
+ *
+ * @author Malcolm Lidierth <a href="https://github.com/sigtool/waterlooFX/issues"> [Contact]</a>
+ *
+ * Project Waterloo is free software:  you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Project Waterloo is distributed in the hope that it will  be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package waterloo.fx.plot;
+
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.Base64;
+import javafx.beans.Observable;
+import waterloo.fx.plot.model.DoubleColumn;
+
+/**
+ * Converts a {@code DoubleColumn} to and from the strings used by the data
+ * properties of {@code AbstractPlot}, e.g. in FXML.
+ *
+ * Three forms are accepted:
+ * <ul>
+ * <li>comma-separated numbers, e.g. "1.0, 2.5, NaN";</li>
+ * <li>"f64:" or "f32:" followed by the base64 encoding of the values as
+ * little-endian 64- or 32-bit floating point numbers. Whitespace in the
+ * encoding is ignored. The values are decoded directly into the column;</li>
+ * <li>optionally, the base64 encoding of comma- or whitespace-separated
+ * numbers, detected by a leading letter, as for
+ * {@link AbstractPlot#decode(java.lang.String)}.</li>
+ * </ul>
+ *
+ * The string returned is created when it is first requested after the column
+ * changes. It uses the form last set, so binary data are returned in binary
+ * and can be written back compactly, e.g. by SceneBuilder. Values written as
+ * "f32:" are rounded to single precision.
+ *
+ * @author Malcolm Lidierth
+ */
+final class ColumnText {
+
+    static final String F64 = "f64:";
+    static final String F32 = "f32:";
+
+    private final DoubleColumn column;
+    private final boolean legacyBase64;
+    /**
+     * The prefix of the binary form in use, or null for text.
+     */
+    private String format;
+    private String text;
+
+    /**
+     * @param column the column
+     * @param legacyBase64 true if strings starting with a letter are the
+     * base64 encoding of text
+     */
+    ColumnText(DoubleColumn column, boolean legacyBase64) {
+        this.column = column;
+        this.legacyBase64 = legacyBase64;
+        column.addListener((Observable o) -> text = null);
+    }
+
+    /**
+     * @return the contents of the column as a string
+     */
+    String get() {
+        if (text == null) {
+            text = format == null ? toText(column) : encode(column.toDoubleArray(), F32.equals(format));
+        }
+        return text;
+    }
+
+    /**
+     * Replaces the contents of the column, notifying listeners of a single
+     * change.
+     *
+     * @param s the string
+     * @throws NumberFormatException if the string cannot be parsed
+     */
+    void set(String s) {
+        if (s.startsWith(F64) || s.startsWith(F32)) {
+            format = s.substring(0, F64.length());
+            column.setAll(decode(s));
+        } else {
+            format = null;
+            if (legacyBase64 && !s.isEmpty() && Character.isLetter(s.charAt(0))) {
+                try {
+                    s = AbstractPlot.decode(s);
+                } catch (UnsupportedEncodingException ex) {
+                }
+            }
+            column.setAll(parse(s));
+        }
+        // The form may have changed even if the values have not
+        text = null;
+    }
+
+    /**
+     * Decodes a string in either of the binary forms.
+     *
+     * @param s the string including its prefix
+     * @return a buffer containing the values
+     */
+    static DoubleBuffer decode(String s) {
+        byte[] bytes = Base64.getMimeDecoder().decode(s.substring(F64.length()));
+        ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        if (s.startsWith(F64)) {
+            if (bytes.length % Double.BYTES != 0) {
+                throw new NumberFormatException("f64 data length is not a multiple of 8: " + bytes.length);
+            }
+            return buffer.asDoubleBuffer();
+        }
+        if (bytes.length % Float.BYTES != 0) {
+            throw new NumberFormatException("f32 data length is not a multiple of 4: " + bytes.length);
+        }
+        FloatBuffer floats = buffer.asFloatBuffer();
+        double[] values = new double[floats.remaining()];
+        for (int k = 0; k < values.length; k++) {
+            values[k] = floats.get(k);
+        }
+        return DoubleBuffer.wrap(values);
+    }
+
+    /**
+     * Encodes values in one of the binary forms.
+     *
+     * @param values the values
+     * @param f32 true to write single precision values
+     * @return the encoding with its prefix
+     */
+    static String encode(double[] values, boolean f32) {
+        ByteBuffer buffer = ByteBuffer.allocate(values.length * (f32 ? Float.BYTES : Double.BYTES))
+                .order(ByteOrder.LITTLE_ENDIAN);
+        if (f32) {
+            FloatBuffer floats = buffer.asFloatBuffer();
+            for (double v : values) {
+                floats.put((float) v);
+            }
+        } else {
+            buffer.asDoubleBuffer().put(values);
+        }
+        return (f32 ? F32 : F64) + Base64.getEncoder().encodeToString(buffer.array());
+    }
+
+    /**
+     * Parses comma-separated numbers, ignoring whitespace around the numbers
+     * and empty items.
+     */
+    private static double[] parse(String s) {
+        int n = 1;
+        for (int k = 0; k < s.length(); k++) {
+            if (s.charAt(k) == ',') {
+                n++;
+            }
+        }
+        double[] values = new double[n];
+        int count = 0;
+        int start = 0;
+        while (start <= s.length()) {
+            int end = s.indexOf(',', start);
+            if (end < 0) {
+                end = s.length();
+            }
+            String item = s.substring(start, end).trim();
+            if (!item.isEmpty()) {
+                values[count++] = Double.parseDouble(item);
+            }
+            start = end + 1;
+        }
+        return count == n ? values : Arrays.copyOf(values, count);
+    }
+
+    private static String toText(DoubleColumn column) {
+        int n = column.size();
+        StringBuilder sb = new StringBuilder(n * 8);
+        for (int k = 0; k < n; k++) {
+            if (k > 0) {
+                sb.append(", ");
+            }
+            sb.append(column.getDouble(k));
+        }
+        return sb.toString();
+    }
+}
@@ -32,6 +32,7 @@ import javafx.css.Styleable;
 import javafx.css.StyleableBooleanProperty;
 import javafx.css.StyleableProperty;
 import javafx.geometry.Point2D;
+import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.shape.Path;
 import javafx.scene.transform.Rotate;
 import waterloo.fx.markers.BottomErrorBar;
@@ -115,6 +116,11 @@ public class ErrorBarPlot extends AbstractPlot<ArrayList<Path>> implements Marke
             return StyleableProperties.AUTODIRECT;
         }
 
+        @Override
+        protected void invalidated() {
+            requestArrange();
+        }
+
     };
 
     /**
@@ -180,6 +186,10 @@ public class ErrorBarPlot extends AbstractPlot<ArrayList<Path>> implements Marke
     @Override
     protected void updateElements(Chart chart) {
         bars.clear();
+        if (isCanvasRendered()) {
+            // Bars will be drawn on the batch canvas
+            return;
+        }
 
         for (int k = 0; k < dataModel.size(); k++) {
 
@@ -241,6 +251,11 @@ public class ErrorBarPlot extends AbstractPlot<ArrayList<Path>> implements Marke
         super.arrangePlot(chart);
         
         double bv = dataModel.getBaseValue();
+
+        if (isCanvasRendered()) {
+            arrangeBatch(chart, bv);
+            return;
+        }
         
         for (int k = 0; k < dataModel.size(); k++) {
 
@@ -292,6 +307,78 @@ public class ErrorBarPlot extends AbstractPlot<ArrayList<Path>> implements Marke
         }
     }
 
+    /**
+     * Draws every error bar and cap as a single stroked path on the batch
+     * canvas. The geometry matches that of the individual error bar markers.
+     */
+    private void arrangeBatch(Chart chart, double bv) {
+        GraphicsContext g = getBatchGraphics(chart);
+        double cap = visualModel.getEdgeWidth() * 5d / 2d;
+        g.beginPath();
+        for (int k = 0; k < dataModel.size(); k++) {
+
+            Point2D p0 = getData(chart, dataModel.getXData().get(k), dataModel.getYData().get(k));
+            p0 = chart.toPixel(p0);
+            double x = p0.getX();
+            double y = p0.getY();
+
+            if (Double.isFinite(x) && Double.isFinite(y)) {
+
+                if (k < dataModel.getExtraData1().size()) {
+                    Point2D p1 = getData(chart, dataModel.getXData().get(k),
+                            dataModel.getYData().get(k) - dataModel.getExtraData1().get(k));
+                    double h = chart.toPixelY(p1.getY()) - y;
+                    if (isAutoDirect() && dataModel.getYData().get(k) < bv) {
+                        h = -h;
+                    }
+                    appendBar(g, x, y, x, y - h, cap, true);
+                }
+
+                if (k < dataModel.getExtraData3().size()) {
+                    Point2D p1 = getData(chart, dataModel.getXData().get(k),
+                            dataModel.getYData().get(k) + dataModel.getExtraData3().get(k));
+                    double h = y - chart.toPixelY(p1.getY());
+                    appendBar(g, x, y, x, y + h, cap, true);
+                }
+
+                if (k < dataModel.getExtraData0().size()) {
+                    Point2D p1 = getData(chart, dataModel.getXData().get(k) + dataModel.getExtraData0().get(k),
+                            dataModel.getYData().get(k));
+                    double w = chart.toPixelX(p1.getX()) - x;
+                    if (isAutoDirect() && dataModel.getXData().get(k) < bv) {
+                        w = -w;
+                    }
+                    appendBar(g, x, y, x + w, y, cap, false);
+                }
+
+                if (k < dataModel.getExtraData2().size()) {
+                    Point2D p1 = getData(chart, dataModel.getXData().get(k) - dataModel.getExtraData2().get(k),
+                            dataModel.getYData().get(k));
+                    double w = x - chart.toPixelX(p1.getX());
+                    appendBar(g, x, y, x - w, y, cap, false);
+                }
+            }
+        }
+        g.setStroke(visualModel.getEdgeColor());
+        g.setLineWidth(visualModel.getEdgeWidth());
+        g.stroke();
+    }
+
+    private static void appendBar(GraphicsContext g, double x0, double y0, double x1, double y1, double cap, boolean vertical) {
+        if (!Double.isFinite(x1) || !Double.isFinite(y1)) {
+            return;
+        }
+        g.moveTo(x0, y0);
+        g.lineTo(x1, y1);
+        if (vertical) {
+            g.moveTo(x1 - cap, y1);
+            g.lineTo(x1 + cap, y1);
+        } else {
+            g.moveTo(x1, y1 - cap);
+            g.lineTo(x1, y1 + cap);
+        }
+    }
+
     @Override
     public boolean isValid() {
         return dataModel.getYData().size() > 0
@@ -24,6 +24,7 @@ package waterloo.fx.plot;
 
 import java.util.ArrayList;
 import javafx.geometry.Point2D;
+import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.shape.Line;
 import javafx.scene.shape.Shape;
 import waterloo.fx.markers.ArrowHead;
@@ -67,6 +68,10 @@ public class FeatherPlot extends AbstractPlot<ArrayList<Shape>> implements LineI
 
     @Override
     protected final void updateElements(Chart chart) {
+        if (isCanvasRendered()) {
+            // Lines and arrowheads will be drawn on the batch canvas
+            return;
+        }
         for (int k = 0; k < dataModel.size(); k++) {
             Point2D p0 = getData(chart,dataModel.getXData().get(k), dataModel.getYData().get(k));
             p0 = chart.toPixel(p0);
@@ -89,6 +94,11 @@ public class FeatherPlot extends AbstractPlot<ArrayList<Shape>> implements LineI
         // Call the super method to do house-keeping common to all plots
         super.arrangePlot(chart);
 
+        if (isCanvasRendered()) {
+            arrangeBatch(chart);
+            return;
+        }
+
         for (int k = 0; k < dataModel.getXData().size(); k++) {
             Point2D p0 = getData(chart,k, dataModel.getBaseValue());
             Point2D p1 = getData(chart,k + dataModel.getXData().get(k), dataModel.getYData().get(k));
@@ -117,4 +127,48 @@ public class FeatherPlot extends AbstractPlot<ArrayList<Shape>> implements LineI
 
     }
 
+    /**
+     * Draws all feathers as one stroked path and all arrowheads as one filled
+     * and stroked path on the batch canvas.
+     */
+    private void arrangeBatch(Chart chart) {
+        GraphicsContext g = getBatchGraphics(chart);
+        int n = dataModel.size();
+        // Tip position and rotation for each arrowhead
+        double[] tips = new double[3 * n];
+        g.beginPath();
+        for (int k = 0; k < n; k++) {
+            Point2D p0 = getData(chart, k, dataModel.getBaseValue());
+            Point2D p1 = getData(chart, k + dataModel.getXData().get(k), dataModel.getYData().get(k));
+            p0 = chart.toPixel(p0);
+            p1 = chart.toPixel(p1);
+            if (Double.isFinite(p0.getX()) && Double.isFinite(p0.getY())
+                    && Double.isFinite(p1.getX()) && Double.isFinite(p1.getY())) {
+                g.moveTo(p0.getX(), p0.getY());
+                g.lineTo(p1.getX(), p1.getY());
+                tips[3 * k] = p1.getX();
+                tips[3 * k + 1] = p1.getY();
+                tips[3 * k + 2] = Math.toDegrees(Math.atan2(p1.getY() - p0.getY(), p1.getX() - p0.getX()));
+            } else {
+                tips[3 * k] = Double.NaN;
+            }
+        }
+        g.setStroke(visualModel.getLineColor());
+        g.setLineWidth(visualModel.getLineWidth());
+        g.stroke();
+
+        g.beginPath();
+        for (int k = 0; k < n; k++) {
+            if (Double.isFinite(tips[3 * k])) {
+                // ArrowHeads point along the x-axis when rotated by a further 90 degrees
+                appendMarker(g, visualModel.getMarkerOrTemplate(k), tips[3 * k], tips[3 * k + 1], tips[3 * k + 2] + 90d);
+            }
+        }
+        g.setFill(visualModel.getFill());
+        g.fill();
+        g.setStroke(visualModel.getEdgeColor());
+        g.setLineWidth(visualModel.getEdgeWidth());
+        g.stroke();
+    }
+
 }
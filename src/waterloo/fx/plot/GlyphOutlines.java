@@ -0,0 +1,132 @@
+/*
+*
+ * <http://sigtool.github.io/waterlooFX/>
+ *
+ * Copyright King's College London  2014. Copyright Ironduke Publishing Limited, UK 2014-.
+ *
+ * @author Malcolm Lidierth <a href="https://github.com/sigtool/waterlooFX/issues"> [Contact]</a>
+ *
+ * Project Waterloo is free software:  you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Project Waterloo is distributed in the hope that it will  be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package waterloo.fx.plot;
+
+import java.awt.Font;
+import java.awt.Shape;
+import java.awt.font.FontRenderContext;
+import java.awt.font.LineMetrics;
+import java.util.concurrent.ConcurrentHashMap;
+import javafx.geometry.VPos;
+import javafx.scene.text.TextAlignment;
+
+/**
+ * Text metrics and glyph outlines for drawing text without JavaFX, using the
+ * AWT font system. AWT fonts are immutable so these methods may be called from
+ * any thread, and work in headless mode.
+ *
+ * @author Malcolm Lidierth
+ */
+final class GlyphOutlines {
+
+    /**
+     * Antialiased, fractional metrics in an untransformed space so sizes are in
+     * pixels as for JavaFX.
+     */
+    private static final FontRenderContext FRC = new FontRenderContext(null, true, true);
+    private static final ConcurrentHashMap<String, Font> FONTS = new ConcurrentHashMap<>();
+
+    private GlyphOutlines() {
+    }
+
+    /**
+     * Returns the AWT font for a JavaFX font family and size. The JavaFX
+     * "System" family is mapped to the logical sans serif font.
+     */
+    static Font getFont(String family, double size) {
+        String key = family + '@' + size;
+        Font font = FONTS.get(key);
+        if (font == null) {
+            String name = family == null || family.startsWith("System") ? Font.SANS_SERIF : family;
+            font = new Font(name, Font.PLAIN, 1).deriveFont((float) size);
+            FONTS.putIfAbsent(key, font);
+        }
+        return font;
+    }
+
+    /**
+     * @return the advance width of the text in pixels
+     */
+    static double getWidth(String text, String family, double size) {
+        return getFont(family, size).getStringBounds(text, FRC).getWidth();
+    }
+
+    /**
+     * @return the ascent plus descent of the font in pixels
+     */
+    static double getHeight(String family, double size) {
+        LineMetrics m = getFont(family, size).getLineMetrics("0", FRC);
+        return m.getAscent() + m.getDescent();
+    }
+
+    /**
+     * Returns the outline of the text with its origin at the position given
+     * by the alignment and baseline, as for {@code GraphicsContext.fillText}.
+     *
+     * @param text the text
+     * @param family the font family
+     * @param size the font size
+     * @param align the horizontal alignment
+     * @param baseline the vertical alignment
+     * @return the outline
+     */
+    static Shape getOutline(String text, String family, double size, TextAlignment align, VPos baseline) {
+        Font font = getFont(family, size);
+        float dx;
+        switch (align) {
+            case CENTER:
+                dx = (float) (-font.getStringBounds(text, FRC).getWidth() / 2d);
+                break;
+            case RIGHT:
+                dx = (float) -font.getStringBounds(text, FRC).getWidth();
+                break;
+            default:
+                dx = 0f;
+        }
+        float dy = (float) getBaselineOffset(family, size, baseline);
+        return font.createGlyphVector(FRC, text).getOutline(dx, dy);
+    }
+
+    /**
+     * Returns the distance from the position given for text to its baseline,
+     * downwards, as for {@code GraphicsContext.fillText}.
+     *
+     * @param family the font family
+     * @param size the font size
+     * @param baseline the vertical alignment
+     * @return the offset in pixels
+     */
+    static double getBaselineOffset(String family, double size, VPos baseline) {
+        LineMetrics m = getFont(family, size).getLineMetrics("0", FRC);
+        switch (baseline) {
+            case TOP:
+                return m.getAscent();
+            case CENTER:
+                return (m.getAscent() - m.getDescent()) / 2d;
+            case BOTTOM:
+                return -m.getDescent();
+            default:
+                return 0d;
+        }
+    }
+}
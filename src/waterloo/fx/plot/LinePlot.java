@@ -22,10 +22,13 @@
  */
 package waterloo.fx.plot;
 
+import java.nio.DoubleBuffer;
 import java.util.ArrayList;
-import javafx.geometry.Point2D;
+import java.util.Arrays;
+import javafx.collections.ListChangeListener.Change;
 import javafx.scene.Cursor;
 import javafx.scene.shape.Polyline;
+import waterloo.fx.transforms.AbstractTransform;
 
 /**
  * Line plot class.
@@ -43,6 +46,43 @@ import javafx.scene.shape.Polyline;
  */
 public class LinePlot extends AbstractPlot<ArrayList<Polyline>> implements LineInterface {
 
+    /**
+     * Pixel coordinates of the vertices in the polyline as x,y pairs.
+     */
+    private double[] vertices = new double[64];
+    /**
+     * Number of values in use in {@code vertices}.
+     */
+    private int vertexCount;
+    /**
+     * Number of data points that have already been projected into
+     * {@code vertices}.
+     */
+    private int projectedCount;
+    /**
+     * The polyline that {@code vertices} was last copied to.
+     */
+    private Polyline projectedLine;
+    /**
+     * Axis limits, view size, and transforms used for the last projection. If
+     * any of these change, every vertex must be recalculated.
+     */
+    private final double[] projectedLimits = new double[6];
+    private AbstractTransform projectedXTransform;
+    private AbstractTransform projectedYTransform;
+    private boolean projectedPolar;
+    /**
+     * Background projection for large data sets, and the line its result
+     * will be applied to.
+     */
+    private ProjectionTask pendingTask;
+    private Polyline pendingLine;
+    /**
+     * Width in pixels of the columns used to decimate large data sets when
+     * the chart has reduced the rendering quality.
+     */
+    private static final double COARSE_COLUMN_WIDTH = 4d;
+
     /**
      * Default constructor.
      *
@@ -63,54 +103,195 @@ public class LinePlot extends AbstractPlot<ArrayList<Polyline>> implements LineI
 
     @Override
     protected final void updateElements(Chart chart) {
-
-        Polyline line = new Polyline();
-        for (int k = 0; k < dataModel.size(); k++) {
-            Point2D p0 = getData(chart,dataModel.getXData().get(k), dataModel.getYData().get(k));
-            p0 = chart.toPixel(p0);
-            if (Double.isFinite(p0.getX()) && Double.isFinite(p0.getY())) {
-                // If this is the first entry for a new line, add that line to
-                // the visualElement list
-                if (!visualElement.contains(line)) {
-                    visualElement.add(line);
-                }
-            } else {
-                // Non - finite value: start a new line unless the exisiting one
-                // is empty - which it will be if we a skipping multiple non-finite
-                // values
-                if (line.getPoints().size() > 0) {
-                    line = new Polyline();
-                }
-            }
+        // The vertices are added in arrangePlot
+        if (dataModel.size() > 0) {
+            visualElement.add(new Polyline());
         }
         addElements();
     }
 
+    /**
+     * Large data are decimated more coarsely at reduced quality.
+     *
+     * @return true if the data size is at or above the parallel threshold
+     */
+    @Override
+    protected boolean isQualitySensitive() {
+        return dataModel.size() >= getParallelThreshold();
+    }
+
     @Override
     public final void arrangePlot(Chart chart) {
 
         // Call the super method to do house-keeping common to all plots
         super.arrangePlot(chart);
 
+        if (visualElement.isEmpty()) {
+            projectedLine = null;
+            return;
+        }
+
         // Create the first line
         Polyline line = visualElement.get(0);
-        line.getPoints().clear();
         line.setCursor(Cursor.CROSSHAIR);
         line.setStrokeWidth(visualModel.getLineWidth());
         line.setStroke(visualModel.getLineColor());
 
-        for (int k = 0; k < dataModel.size(); k++) {
-            Point2D p0 = getData(chart,dataModel.getXData().get(k), dataModel.getYData().get(k));
-            p0 = chart.toPixel(p0);
-            if (Double.isFinite(p0.getX()) && Double.isFinite(p0.getY())) {
-                line.getPoints().addAll(p0.getX(), p0.getY());
-            } else {
-//                if (line.getPoints().size() > 0) {
-//                    line = visualElement.get(k);
-//                    line.getPoints().clear();
-//                }
+        int n = dataModel.size();
+        if (n >= getParallelThreshold()) {
+            projectedLine = null;
+            arrangeLarge(chart, line, n);
+            return;
+        }
+        cancelPending();
+        if (line == projectedLine && n >= projectedCount && isProjectionCurrent(chart)) {
+            // Append-only: the vertices already in the line are still valid so
+            // project and add only the new ones
+            if (n > projectedCount) {
+                int start = vertexCount;
+                project(chart, projectedCount, n);
+                if (vertexCount > start) {
+                    line.getPoints().addAll(box(start, vertexCount));
+                }
+            }
+        } else {
+            // Limits, size or data have changed: rebuild every vertex and
+            // replace the points in one bulk operation
+            vertexCount = 0;
+            project(chart, 0, n);
+            line.getPoints().setAll(box(0, vertexCount));
+            projectedLine = line;
+            saveProjection(chart);
+        }
+        projectedCount = n;
+    }
+
+    /**
+     * Projects the data on the common ForkJoinPool. The line keeps its current
+     * vertices until the result is ready. Any projection already running for
+     * different limits or data is cancelled.
+     */
+    private void arrangeLarge(Chart chart, Polyline line, int n) {
+        ProjectionTask.Frame frame = ProjectionTask.Frame.of(chart, dataModel.isDataPolar(),
+                isReducedQuality() ? COARSE_COLUMN_WIDTH : 1d);
+        DoubleBuffer x = dataModel.getXBuffer();
+        DoubleBuffer y = dataModel.getYBuffer();
+        if (pendingTask != null && line == pendingLine && pendingTask.isFor(frame, x, y)
+                && !chart.isRenderingOffscreen()) {
+            return;
+        }
+        cancelPending();
+        ProjectionTask task = dataModel.isDataPolar()
+                ? new ProjectionTask(frame, x, y, dataModel.getCosArray(), dataModel.getSinArray(), n)
+                : new ProjectionTask(frame, x, y, null, null, n);
+        if (chart.isRenderingOffscreen()) {
+            // The image is taken after this layout so wait for the result
+            double[] result = task.invoke();
+            line.getPoints().setAll(box(result, 0, result.length));
+            return;
+        }
+        pendingTask = task;
+        pendingLine = line;
+        task.start((double[] result) -> {
+            if (pendingTask == task) {
+                line.getPoints().setAll(box(result, 0, result.length));
+            }
+        });
+    }
+
+    private void cancelPending() {
+        if (pendingTask != null) {
+            pendingTask.cancel();
+            pendingTask = null;
+            pendingLine = null;
+        }
+    }
+
+    /**
+     * Appends pixel coordinates for the data in the range [from, to) to the
+     * vertex buffer. Non-finite values are skipped.
+     */
+    private void project(Chart chart, int from, int to) {
+        if (vertices.length < vertexCount + 2 * (to - from)) {
+            vertices = Arrays.copyOf(vertices, Math.max(vertices.length * 2, vertexCount + 2 * (to - from)));
+        }
+        int end = vertexCount + projectData(chart, from, to, 1, vertices, vertexCount);
+        // Remove the non-finite vertices in place
+        for (int k = vertexCount; k < end; k += 2) {
+            if (Double.isFinite(vertices[k]) && Double.isFinite(vertices[k + 1])) {
+                vertices[vertexCount++] = vertices[k];
+                vertices[vertexCount++] = vertices[k + 1];
+            }
+        }
+    }
+
+    private Double[] box(int from, int to) {
+        return box(vertices, from, to);
+    }
+
+    private static Double[] box(double[] values, int from, int to) {
+        Double[] arr = new Double[to - from];
+        for (int k = from; k < to; k++) {
+            arr[k - from] = values[k];
+        }
+        return arr;
+    }
+
+    private boolean isProjectionCurrent(Chart chart) {
+        return projectedLimits[0] == chart.getXLeft()
+                && projectedLimits[1] == chart.getXRight()
+                && projectedLimits[2] == chart.getYBottom()
+                && projectedLimits[3] == chart.getYTop()
+                && projectedLimits[4] == chart.getView().getWidth()
+                && projectedLimits[5] == chart.getView().getHeight()
+                && projectedXTransform == chart.getAxisSet().getXTransform()
+                && projectedYTransform == chart.getAxisSet().getYTransform()
+                && projectedPolar == dataModel.isDataPolar();
+    }
+
+    private void saveProjection(Chart chart) {
+        projectedLimits[0] = chart.getXLeft();
+        projectedLimits[1] = chart.getXRight();
+        projectedLimits[2] = chart.getYBottom();
+        projectedLimits[3] = chart.getYTop();
+        projectedLimits[4] = chart.getView().getWidth();
+        projectedLimits[5] = chart.getView().getHeight();
+        projectedXTransform = chart.getAxisSet().getXTransform();
+        projectedYTransform = chart.getAxisSet().getYTransform();
+        projectedPolar = dataModel.isDataPolar();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Data added beyond the points that have already been projected do not
+     * require the nodes to be rebuilt: a layout is requested and only the new
+     * vertices are appended to the line. Any other change, or an append before
+     * the line has been created, requests a full update.
+     *
+     * When the data size is at or above the parallel threshold, the data are
+     * re-projected in the background and the existing line is reused.
+     *
+     * @param c the change
+     */
+    @Override
+    public void onChanged(Change<? extends Number> c) {
+        if (projectedLine == null && !visualElement.isEmpty()
+                && dataModel.size() >= getParallelThreshold()) {
+            // Large data are re-projected in full in the background without
+            // recreating the line
+            requestArrange();
+            return;
+        }
+        while (c.next()) {
+            if (projectedLine == null || c.wasRemoved() || c.wasPermutated() || c.wasUpdated()
+                    || (c.wasAdded() && c.getFrom() < projectedCount)) {
+                projectedLine = null;
+                update();
+                return;
             }
         }
+        requestArrange();
     }
 
 }
@@ -0,0 +1,540 @@
+/*
+*
+ * <http://sigtool.github.io/waterlooFX/>
+ *
+ * Copyright King's College London  2014. Copyright Ironduke Publishing Limited, UK 2014-.
+ *
+ * @author Malcolm Lidierth <a href="https://github.com/sigtool/waterlooFX/issues"> [Contact]</a>
+ *
+ * Project Waterloo is free software:  you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Project Waterloo is distributed in the hope that it will  be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package waterloo.fx.plot;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import javafx.scene.paint.Color;
+
+/**
+ * A {@code Surface} that writes a single page PDF document to a stream as it
+ * is drawn.
+ *
+ * The page content is compressed and written as it is drawn, so only the
+ * current path is held in memory however much is drawn. The page is the size
+ * of the surface with one point for each pixel. Text is written in the
+ * standard Helvetica font, which every viewer provides, using its metrics to
+ * align it. Superscript digits and signs, as in the labels of log axes, are
+ * written as smaller, raised characters; other characters outside the
+ * Latin-1 range are replaced. Transparent
+ * colors are written using graphics state parameters. Colors other than
+ * {@code Color} are written as for {@link Rasterizer}.
+ *
+ * <pre>
+ * PdfSurface pdf = new PdfSurface(out, 800, 600);
+ * renderer.draw(pdf, 800, 600, 1d);
+ * pdf.finish();
+ * </pre>
+ *
+ * @author Malcolm Lidierth
+ */
+public final class PdfSurface extends VectorSurface {
+
+    /**
+     * Advance widths of the Helvetica characters from 32 to 126, in
+     * thousandths of the font size.
+     */
+    private static final short[] HELVETICA_WIDTHS = {
+        278, 278, 355, 556, 556, 889, 667, 191, 333, 333, 389, 584, 278, 333, 278, 278,
+        556, 556, 556, 556, 556, 556, 556, 556, 556, 556, 278, 278, 584, 584, 584, 556,
+        1015, 667, 667, 722, 722, 667, 611, 778, 722, 278, 500, 667, 556, 833, 722, 778,
+        667, 778, 722, 667, 611, 722, 667, 944, 667, 667, 611, 278, 278, 278, 469, 556,
+        333, 556, 556, 500, 556, 556, 278, 556, 556, 222, 222, 500, 222, 833, 556, 556,
+        556, 556, 333, 500, 278, 556, 500, 722, 500, 500, 500, 334, 260, 334, 584};
+    private static final double HELVETICA_ASCENT = 0.718;
+    private static final double HELVETICA_DESCENT = 0.207;
+    /**
+     * Size and rise of superscripts as fractions of the font size.
+     */
+    private static final double SUPERSCRIPT_SIZE = 0.7;
+    private static final double SUPERSCRIPT_RISE = 0.35;
+    /**
+     * Control point distance for a quarter circle of unit radius drawn as a
+     * cubic Bezier curve.
+     */
+    private static final double KAPPA = 0.5522847498;
+
+    // Objects written before the content: the content stream is 4 and its
+    // length 5. The resources are 6, the font 7, and the graphics states
+    // follow.
+    private static final int CATALOG = 1, PAGES = 2, PAGE = 3, CONTENT = 4, LENGTH = 5, RESOURCES = 6, FONT = 7;
+
+    private final CountingStream out;
+    private final DeflaterOutputStream content;
+    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+    private final StringBuilder sb = new StringBuilder(256);
+    private final byte[] bytes = new byte[8192];
+    private long[] offsets = new long[16];
+    private final long contentStart;
+
+    /**
+     * Names of the graphics states for each alpha value, 0-255, for fills
+     * and strokes.
+     */
+    private final Map<Integer, String> fillAlphas = new LinkedHashMap<>();
+    private final Map<Integer, String> strokeAlphas = new LinkedHashMap<>();
+
+    // Graphics state last written, or -1 if unknown. The alpha values
+    // start opaque, as in the initial graphics state.
+    private int currentFill = -1, currentStroke = -1, currentFillAlpha = 255, currentStrokeAlpha = 255;
+    private double currentLineWidth = -1d;
+    private boolean clipped;
+
+    /**
+     * Creates a surface and writes the start of the document.
+     *
+     * @param out the stream to write to
+     * @param width the width of the page in points
+     * @param height the height of the page in points
+     * @throws IOException if the stream cannot be written
+     */
+    public PdfSurface(OutputStream out, double width, double height) throws IOException {
+        this.out = new CountingStream(out);
+        // A comment with high bytes marks the file as binary
+        this.out.write(new byte[]{'%', 'P', 'D', 'F', '-', '1', '.', '4', '\n', '%', (byte) 0xE2, (byte) 0xE3,
+            (byte) 0xCF, (byte) 0xD3, '\n'});
+        startObject(CATALOG);
+        sb.append("<< /Type /Catalog /Pages ").append(PAGES).append(" 0 R >>\nendobj\n");
+        startObject(PAGES);
+        sb.append("<< /Type /Pages /Kids [").append(PAGE).append(" 0 R] /Count 1 >>\nendobj\n");
+        startObject(PAGE);
+        sb.append("<< /Type /Page /Parent ").append(PAGES).append(" 0 R /MediaBox [0 0 ");
+        append(sb, width).append(' ');
+        append(sb, height).append("] /Contents ").append(CONTENT).append(" 0 R /Resources ")
+                .append(RESOURCES).append(" 0 R >>\nendobj\n");
+        startObject(CONTENT);
+        sb.append("<< /Length ").append(LENGTH).append(" 0 R /Filter /FlateDecode >>\nstream\n");
+        writeRaw(sb);
+        contentStart = this.out.count;
+        content = new DeflaterOutputStream(new FilterOutputStream(this.out) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void close() {
+                // The document continues after the stream
+            }
+        }, deflater, 1 << 16);
+        // Flip the page so y increases downwards as on a Surface, and use
+        // square caps as for a GraphicsContext
+        sb.append("1 0 0 -1 0 ");
+        append(sb, height).append(" cm 2 J 0 j 10 M\n");
+        writeContent(sb);
+    }
+
+    @Override
+    void appendMoveTo(double x, double y) {
+        append(append(path, x).append(' '), y).append(" m\n");
+    }
+
+    @Override
+    void appendLineTo(double x, double y) {
+        append(append(path, x).append(' '), y).append(" l\n");
+    }
+
+    @Override
+    void appendClose() {
+        path.append("h\n");
+    }
+
+    @Override
+    void appendEllipse(double x, double y, double rx, double ry) {
+        double kx = KAPPA * rx;
+        double ky = KAPPA * ry;
+        appendMoveTo(x + rx, y);
+        appendCurve(x + rx, y + ky, x + kx, y + ry, x, y + ry);
+        appendCurve(x - kx, y + ry, x - rx, y + ky, x - rx, y);
+        appendCurve(x - rx, y - ky, x - kx, y - ry, x, y - ry);
+        appendCurve(x + kx, y - ry, x + rx, y - ky, x + rx, y);
+        path.append("h\n");
+    }
+
+    private void appendCurve(double x1, double y1, double x2, double y2, double x3, double y3) {
+        append(path, x1).append(' ');
+        append(path, y1).append(' ');
+        append(path, x2).append(' ');
+        append(path, y2).append(' ');
+        append(path, x3).append(' ');
+        append(path, y3).append(" c\n");
+    }
+
+    @Override
+    void writePath(Color fill, Color stroke) {
+        if (fill != null) {
+            setFillState(fill);
+        }
+        if (stroke != null) {
+            setStrokeState(stroke);
+        }
+        writeContent(sb);
+        writeContent(path);
+        sb.append(fill == null ? "S\n" : stroke == null ? "f\n" : "B\n");
+        writeContent(sb);
+    }
+
+    @Override
+    public void fillRect(double x, double y, double w, double h) {
+        flush();
+        if (fillColor.getOpacity() == 0d) {
+            return;
+        }
+        setFillState(fillColor);
+        append(sb, x).append(' ');
+        append(sb, y).append(' ');
+        append(sb, w).append(' ');
+        append(sb, h).append(" re f\n");
+        writeContent(sb);
+    }
+
+    @Override
+    public void fillText(String text, double x, double y, double angle) {
+        flush();
+        if (text == null || text.isEmpty() || fillColor.getOpacity() == 0d) {
+            return;
+        }
+        double dx;
+        switch (textAlign) {
+            case CENTER:
+                dx = -getWidth(text) / 2d;
+                break;
+            case RIGHT:
+                dx = -getWidth(text);
+                break;
+            default:
+                dx = 0d;
+        }
+        double dy;
+        switch (textBaseline) {
+            case TOP:
+                dy = HELVETICA_ASCENT * fontSize;
+                break;
+            case CENTER:
+                dy = (HELVETICA_ASCENT - HELVETICA_DESCENT) * fontSize / 2d;
+                break;
+            case BOTTOM:
+                dy = -HELVETICA_DESCENT * fontSize;
+                break;
+            default:
+                dy = 0d;
+        }
+        double cos = Math.cos(Math.toRadians(angle));
+        double sin = Math.sin(Math.toRadians(angle));
+        setFillState(fillColor);
+        sb.append("BT /F1 ");
+        append(sb, fontSize).append(" Tf ");
+        // The text matrix turns the glyphs upright on the flipped page
+        append(sb, cos).append(' ');
+        append(sb, sin).append(' ');
+        append(sb, sin).append(' ');
+        append(sb, -cos).append(' ');
+        append(sb, x + dx * cos - dy * sin).append(' ');
+        append(sb, y + dx * sin + dy * cos).append(" Tm (");
+        boolean raised = false;
+        for (int k = 0; k < text.length(); k++) {
+            char c = text.charAt(k);
+            char base = fromSuperscript(c);
+            if ((base != 0) != raised) {
+                // Runs of superscripts are written in a smaller font with a
+                // text rise
+                raised = !raised;
+                sb.append(") Tj /F1 ");
+                append(sb, raised ? fontSize * SUPERSCRIPT_SIZE : fontSize).append(" Tf ");
+                append(sb, raised ? fontSize * SUPERSCRIPT_RISE : 0d).append(" Ts (");
+            }
+            c = raised ? base : toLatin1(c);
+            if (c == '(' || c == ')' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 32 || c > 126) {
+                sb.append('\\').append(Integer.toOctalString(c));
+            } else {
+                sb.append(c);
+            }
+        }
+        // The rise is part of the graphics state, so is not reset by ET
+        sb.append(raised ? ") Tj 0 Ts ET\n" : ") Tj ET\n");
+        writeContent(sb);
+    }
+
+    @Override
+    public void clipRect(double x, double y, double w, double h) {
+        resetClip();
+        sb.append("q ");
+        append(sb, x).append(' ');
+        append(sb, y).append(' ');
+        append(sb, w).append(' ');
+        append(sb, h).append(" re W n\n");
+        writeContent(sb);
+        clipped = true;
+    }
+
+    @Override
+    public void resetClip() {
+        flush();
+        if (clipped) {
+            sb.append("Q\n");
+            writeContent(sb);
+            clipped = false;
+            // Restoring the state also restores the colors and line width
+            currentFill = currentStroke = currentFillAlpha = currentStrokeAlpha = -1;
+            currentLineWidth = -1d;
+        }
+    }
+
+    @Override
+    public void finish() throws IOException {
+        try {
+            resetClip();
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+        content.finish();
+        deflater.end();
+        long length = out.count - contentStart;
+        sb.append("\nendstream\nendobj\n");
+        startObject(LENGTH);
+        sb.append(length).append("\nendobj\n");
+        startObject(RESOURCES);
+        sb.append("<< /Font << /F1 ").append(FONT).append(" 0 R >>");
+        int next = FONT + 1;
+        if (!fillAlphas.isEmpty() || !strokeAlphas.isEmpty()) {
+            sb.append(" /ExtGState <<");
+            for (String name : fillAlphas.values()) {
+                sb.append(" /").append(name).append(' ').append(next++).append(" 0 R");
+            }
+            for (String name : strokeAlphas.values()) {
+                sb.append(" /").append(name).append(' ').append(next++).append(" 0 R");
+            }
+            sb.append(" >>");
+        }
+        sb.append(" >>\nendobj\n");
+        startObject(FONT);
+        sb.append("<< /Type /Font /Subtype /Type1 /BaseFont /Helvetica /Encoding /WinAnsiEncoding >>\nendobj\n");
+        next = FONT + 1;
+        for (int alpha : fillAlphas.keySet()) {
+            startObject(next++);
+            sb.append("<< /Type /ExtGState /ca ").append(alpha / 255f).append(" >>\nendobj\n");
+        }
+        for (int alpha : strokeAlphas.keySet()) {
+            startObject(next++);
+            sb.append("<< /Type /ExtGState /CA ").append(alpha / 255f).append(" >>\nendobj\n");
+        }
+        writeRaw(sb);
+        long xref = out.count;
+        sb.append("xref\n0 ").append(next).append("\n0000000000 65535 f \n");
+        for (int k = 1; k < next; k++) {
+            String offset = Long.toString(offsets[k]);
+            for (int j = offset.length(); j < 10; j++) {
+                sb.append('0');
+            }
+            sb.append(offset).append(" 00000 n \n");
+        }
+        sb.append("trailer\n<< /Size ").append(next).append(" /Root ").append(CATALOG)
+                .append(" 0 R >>\nstartxref\n").append(xref).append("\n%%EOF\n");
+        writeRaw(sb);
+        out.flush();
+    }
+
+    private void setFillState(Color c) {
+        int rgb = toRgb(c);
+        if (rgb != currentFill) {
+            appendRgb(rgb).append(" rg\n");
+            currentFill = rgb;
+        }
+        int alpha = (int) Math.round(c.getOpacity() * 255d);
+        if (alpha != currentFillAlpha) {
+            String name = fillAlphas.computeIfAbsent(alpha, a -> "Fa" + fillAlphas.size());
+            sb.append('/').append(name).append(" gs\n");
+            currentFillAlpha = alpha;
+        }
+    }
+
+    private void setStrokeState(Color c) {
+        int rgb = toRgb(c);
+        if (rgb != currentStroke) {
+            appendRgb(rgb).append(" RG\n");
+            currentStroke = rgb;
+        }
+        int alpha = (int) Math.round(c.getOpacity() * 255d);
+        if (alpha != currentStrokeAlpha) {
+            String name = strokeAlphas.computeIfAbsent(alpha, a -> "Sa" + strokeAlphas.size());
+            sb.append('/').append(name).append(" gs\n");
+            currentStrokeAlpha = alpha;
+        }
+        if (lineWidth != currentLineWidth) {
+            append(sb, lineWidth).append(" w\n");
+            currentLineWidth = lineWidth;
+        }
+    }
+
+    private static int toRgb(Color c) {
+        return ((int) Math.round(c.getRed() * 255d) << 16)
+                | ((int) Math.round(c.getGreen() * 255d) << 8)
+                | (int) Math.round(c.getBlue() * 255d);
+    }
+
+    private StringBuilder appendRgb(int rgb) {
+        // Three decimal places to distinguish each 8-bit level
+        for (int shift = 16; shift >= 0; shift -= 8) {
+            sb.append(Math.round(((rgb >> shift) & 0xFF) / 0.255d) / 1000d);
+            if (shift > 0) {
+                sb.append(' ');
+            }
+        }
+        return sb;
+    }
+
+    private double getWidth(String text) {
+        double w = 0d;
+        for (int k = 0; k < text.length(); k++) {
+            char base = fromSuperscript(text.charAt(k));
+            if (base != 0) {
+                w += HELVETICA_WIDTHS[base - 32] * SUPERSCRIPT_SIZE;
+            } else {
+                char c = toLatin1(text.charAt(k));
+                w += c >= 32 && c <= 126 ? HELVETICA_WIDTHS[c - 32] : 556;
+            }
+        }
+        return w * fontSize / 1000d;
+    }
+
+    /**
+     * Returns the character written, raised, for a superscript digit or sign
+     * as produced by {@code GJUtilities.getSuperscripts}, or 0 if the
+     * character is not one.
+     */
+    private static char fromSuperscript(char c) {
+        switch (c) {
+            case '\u00B9':
+                return '1';
+            case '\u00B2':
+                return '2';
+            case '\u00B3':
+                return '3';
+            case '\u2070':
+                return '0';
+            case '\u207A':
+                return '+';
+            case '\u207B':
+                return '-';
+            case '\u207C':
+                return '=';
+            case '\u207D':
+                return '(';
+            case '\u207E':
+                return ')';
+            case '\u207F':
+                return 'n';
+            default:
+                return c >= '\u2074' && c <= '\u2079' ? (char) ('0' + c - '\u2070') : 0;
+        }
+    }
+
+    /**
+     * Maps a character to one that can be written in the WinAnsi encoding.
+     */
+    private static char toLatin1(char c) {
+        if (c < 128 || (c >= 160 && c <= 255)) {
+            return c;
+        }
+        // The minus sign is used in tick labels
+        return c == '\u2212' ? '-' : '?';
+    }
+
+    /**
+     * Records the offset of an object and starts it in the buffer.
+     */
+    private void startObject(int number) {
+        writeRaw(sb);
+        if (number >= offsets.length) {
+            offsets = Arrays.copyOf(offsets, 2 * number);
+        }
+        offsets[number] = out.count;
+        sb.append(number).append(" 0 obj\n");
+    }
+
+    /**
+     * Writes a buffer of ASCII text to the document outside the content
+     * stream and empties it.
+     */
+    private void writeRaw(StringBuilder b) {
+        write(b, out);
+    }
+
+    /**
+     * Writes a buffer of ASCII text to the content stream and empties it.
+     */
+    private void writeContent(StringBuilder b) {
+        write(b, content);
+    }
+
+    private void write(StringBuilder b, OutputStream stream) {
+        try {
+            for (int k = 0; k < b.length(); k += bytes.length) {
+                int n = Math.min(bytes.length, b.length() - k);
+                for (int j = 0; j < n; j++) {
+                    bytes[j] = (byte) b.charAt(k + j);
+                }
+                stream.write(bytes, 0, n);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        // The path is kept as it may be stroked after it is filled
+        if (b != path) {
+            b.setLength(0);
+        }
+    }
+
+    /**
+     * Counts the bytes written, for the cross-reference table.
+     */
+    private static final class CountingStream extends FilterOutputStream {
+
+        long count;
+
+        CountingStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
@@ -91,6 +91,25 @@ public class PlotCollection<T extends AbstractPlot> extends StackPane {
 //        });
 //    }
 
+    /**
+     * Returns true if any plot in the collection needs to be arranged because
+     * its data or style have changed.
+     *
+     * @return true if arrangePlots needs to be called
+     */
+    boolean isArrangeNeeded() {
+        return isArrangeNeeded(true);
+    }
+
+    /**
+     * @param quality false to ignore plots that need to be arranged only
+     * because the rendering quality has changed
+     * @return true if arrangePlots needs to be called
+     */
+    boolean isArrangeNeeded(boolean quality) {
+        return getChildren().stream().anyMatch(x -> x instanceof AbstractPlot && ((AbstractPlot<?>) x).isArrangeNeeded(quality));
+    }
+
     public void arrangePlots(Chart chart) {
         getChildren().forEach(x -> {
             ((AbstractPlot) x).arrangePlot(chart);
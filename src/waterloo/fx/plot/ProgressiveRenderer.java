@@ -0,0 +1,195 @@
+/*
+*
+ * <http://sigtool.github.io/waterlooFX/>
+ *
+ * Copyright King's College London  2014. Copyright Ironduke Publishing Limited, UK 2014-.
+ *
+ * @author Malcolm Lidierth <a href="https://github.com/sigtool/waterlooFX/issues"> [Contact]</a>
+ *
+ * Project Waterloo is free software:  you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Project Waterloo is distributed in the hope that it will  be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package waterloo.fx.plot;
+
+import javafx.animation.AnimationTimer;
+import javafx.beans.property.ReadOnlyDoubleWrapper;
+import javafx.scene.canvas.GraphicsContext;
+
+/**
+ * Paints the elements of a plot onto a canvas in time-boxed chunks spread
+ * across pulses.
+ *
+ * The elements are painted in a series of passes. The first pass paints every
+ * n'th element, where n is chosen so that the pass paints no more than
+ * {@code COARSE_COUNT} elements, and each subsequent pass paints the elements
+ * half way between those already painted. A coarse but evenly spread subset of
+ * the data is therefore shown in the first frame and refined in later frames.
+ * When there are no more than {@code COARSE_COUNT} elements, a single pass
+ * paints them in index order.
+ *
+ * Each call to {@code start} abandons any painting in progress, so a plot
+ * that is re-arranged because the axis limits changed restarts from the
+ * coarse pass.
+ *
+ * Use only on the FX Application Thread.
+ *
+ * @author Malcolm Lidierth
+ */
+final class ProgressiveRenderer extends AnimationTimer {
+
+    /**
+     * Paints the elements from, from + step, from + 2 * step ... that are
+     * less than to.
+     */
+    interface Painter {
+
+        void paint(GraphicsContext g, int from, int to, int step);
+    }
+
+    /**
+     * Maximum number of elements painted by the first pass.
+     */
+    private static final int COARSE_COUNT = 4096;
+    /**
+     * Number of elements painted by the first chunk. Later chunks are sized
+     * from the time taken by earlier ones.
+     */
+    private static final int INITIAL_CHUNK = 256;
+    /**
+     * Maximum number of elements painted by a chunk. Each chunk is drawn as a
+     * single path and very long paths are slow to rasterize.
+     */
+    private static final int MAX_CHUNK = 4096;
+
+    private final ReadOnlyDoubleWrapper progress;
+    private GraphicsContext g;
+    private Painter painter;
+    private int count;
+    private long budget;
+    /**
+     * Spacing of the elements added by the present pass, or zero when
+     * painting is complete.
+     */
+    private int step;
+    private boolean firstPass;
+    /**
+     * Index of the next element to paint in the present pass.
+     */
+    private int next;
+    private long painted;
+    private int chunk;
+
+    /**
+     * @param progress receives the fraction of the elements painted
+     */
+    ProgressiveRenderer(ReadOnlyDoubleWrapper progress) {
+        this.progress = progress;
+    }
+
+    /**
+     * Starts painting. Elements are painted until the budget has been used,
+     * then on subsequent pulses until all have been painted.
+     *
+     * @param g the GraphicsContext, already cleared
+     * @param count the number of elements
+     * @param budgetNanos the maximum time to spend painting per pulse
+     * @param painter paints the elements
+     */
+    void start(GraphicsContext g, int count, long budgetNanos, Painter painter) {
+        this.g = g;
+        this.count = count;
+        this.budget = budgetNanos;
+        this.painter = painter;
+        step = 1;
+        while (count / step > COARSE_COUNT) {
+            step <<= 1;
+        }
+        next = 0;
+        firstPass = true;
+        painted = 0;
+        chunk = INITIAL_CHUNK;
+        progress.set(count == 0 ? 1d : 0d);
+        if (paint()) {
+            finish();
+        } else {
+            start();
+        }
+    }
+
+    /**
+     * Abandons any painting in progress.
+     */
+    void cancel() {
+        stop();
+        finish();
+    }
+
+    /**
+     * @return true while elements remain to be painted
+     */
+    boolean isRunning() {
+        return painter != null;
+    }
+
+    @Override
+    public void handle(long now) {
+        if (painter == null || paint()) {
+            cancel();
+        }
+    }
+
+    private void finish() {
+        g = null;
+        painter = null;
+    }
+
+    /**
+     * Paints chunks until the budget is used or all elements are painted.
+     *
+     * @return true when all elements have been painted
+     */
+    private boolean paint() {
+        long start = System.nanoTime();
+        while (step > 0) {
+            // The first pass starts at zero, later ones fill in the gaps
+            int stride = firstPass ? step : 2 * step;
+            if (next >= count) {
+                step >>= 1;
+                firstPass = false;
+                next = step;
+                continue;
+            }
+            long t0 = System.nanoTime();
+            int to = (int) Math.min((long) next + (long) chunk * stride, count);
+            painter.paint(g, next, to, stride);
+            int n = (to - next + stride - 1) / stride;
+            next += n * stride;
+            painted += n;
+            progress.set(Math.min(1d, (double) painted / count));
+            long t1 = System.nanoTime();
+            if (t1 - start >= budget) {
+                return false;
+            }
+            // Aim for chunks of about a quarter of the budget
+            long dt = Math.max(1L, t1 - t0);
+            if (dt < budget / 8 && chunk < MAX_CHUNK) {
+                chunk *= 2;
+            } else if (dt > budget / 2 && chunk > 1) {
+                chunk /= 2;
+            }
+        }
+        progress.set(1d);
+        return true;
+    }
+}
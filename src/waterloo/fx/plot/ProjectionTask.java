@@ -0,0 +1,402 @@
+/*
+*
+ * <http://sigtool.github.io/waterlooFX/>
+ *
+ * Copyright King's College London  2014. Copyright Ironduke Publishing Limited, UK 2014-.
+ *
+ * @author Malcolm Lidierth <a href="https://github.com/sigtool/waterlooFX/issues"> [Contact]</a>
+ *
+ * Project Waterloo is free software:  you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Project Waterloo is distributed in the hope that it will  be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package waterloo.fx.plot;
+
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import javafx.application.Platform;
+import waterloo.fx.transforms.AbstractTransform;
+
+/**
+ * Projects x,y data to pixel coordinates for a polyline on the common
+ * {@code ForkJoinPool}.
+ *
+ * The data are split into chunks that are projected, culled and decimated
+ * independently then joined in order. The result is a primitive array of
+ * pixel x,y pairs ready to be copied to the points of a {@code Polyline}.
+ *
+ * <ul>
+ * <li>Culling: a vertex is dropped if it, the previous vertex that was kept
+ * and the next vertex all lie beyond the same edge of the view.</li>
+ * <li>Decimation: consecutive vertices that fall in the same pixel column are
+ * reduced to the first, minimum, maximum and last of them.</li>
+ * </ul>
+ *
+ * Non-finite values are skipped as in {@link LinePlot}. Polar data are
+ * converted to cartesian coordinates using the cosines and sines of the
+ * angles supplied by the caller.
+ *
+ * The x and y data are read from buffers, so data mapped from a file are
+ * projected in place without being copied to the heap. The inputs must not
+ * be modified while the task runs: the views from
+ * {@link waterloo.fx.plot.model.DataModel#getXBuffer()} satisfy this.
+ *
+ * @author Malcolm Lidierth
+ */
+final class ProjectionTask extends RecursiveTask<double[]> {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Number of data points projected by a single task without forking.
+     */
+    private static final int LEAF_SIZE = 65536;
+    /**
+     * Cancellation is checked once per this number of points.
+     */
+    private static final int CHECK_INTERVAL = 4096;
+    /**
+     * Vertices within this many pixels of the view are never culled, so that
+     * line joins and caps at the edge are drawn correctly.
+     */
+    private static final double MARGIN = 8d;
+    private static final double[] EMPTY = new double[0];
+
+    private static final int LEFT = 1;
+    private static final int RIGHT = 2;
+    private static final int TOP = 4;
+    private static final int BOTTOM = 8;
+
+    private final Frame frame;
+    private final DoubleBuffer x;
+    private final DoubleBuffer y;
+    private final double[] cos;
+    private final double[] sin;
+    private final int size;
+    private final int from;
+    private final int to;
+    private final AtomicBoolean cancelled;
+
+    private double[] out = EMPTY;
+    private int count;
+    private final double[] pt = new double[2];
+
+    // State of the current decimation run
+    private long runColumn = Long.MIN_VALUE;
+    private int runFirst, runMin, runMax, runLast;
+    private double runFirstY, runMinY, runMaxY, runLastY;
+    private double runFirstX, runMinX, runMaxX, runLastX;
+
+    /**
+     * Creates a task to project the first {@code size} points.
+     *
+     * @param frame the axis limits etc. to project to
+     * @param x the x data
+     * @param y the y data
+     * @param cos the cosines of the x data if the frame is polar, else null
+     * @param sin the sines of the x data if the frame is polar, else null
+     * @param size the number of points
+     */
+    ProjectionTask(Frame frame, DoubleBuffer x, DoubleBuffer y, double[] cos, double[] sin, int size) {
+        this(frame, x, y, cos, sin, size, 0, size, new AtomicBoolean());
+    }
+
+    private ProjectionTask(Frame frame, DoubleBuffer x, DoubleBuffer y, double[] cos, double[] sin,
+            int size, int from, int to, AtomicBoolean cancelled) {
+        this.frame = frame;
+        this.x = x;
+        this.y = y;
+        this.cos = cos;
+        this.sin = sin;
+        this.size = size;
+        this.from = from;
+        this.to = to;
+        this.cancelled = cancelled;
+    }
+
+    /**
+     * Returns true if this task projects the specified buffers using the
+     * specified frame.
+     */
+    boolean isFor(Frame f, DoubleBuffer xb, DoubleBuffer yb) {
+        return frame.equals(f) && x == xb && y == yb;
+    }
+
+    /**
+     * Requests that this task stop. A cancelled task does not deliver a
+     * result.
+     */
+    void cancel() {
+        cancelled.set(true);
+    }
+
+    /**
+     * Runs the task on the common ForkJoinPool and passes the result to the
+     * consumer on the FX Application Thread unless the task has been
+     * cancelled.
+     *
+     * @param consumer the consumer for the vertices
+     */
+    void start(Consumer<double[]> consumer) {
+        ForkJoinPool.commonPool().execute(() -> {
+            double[] result = invoke();
+            if (!cancelled.get()) {
+                Platform.runLater(() -> {
+                    if (!cancelled.get()) {
+                        consumer.accept(result);
+                    }
+                });
+            }
+        });
+    }
+
+    @Override
+    protected double[] compute() {
+        if (to - from <= LEAF_SIZE) {
+            return projectRange();
+        }
+        int mid = (from + to) >>> 1;
+        ProjectionTask left = new ProjectionTask(frame, x, y, cos, sin, size, from, mid, cancelled);
+        ProjectionTask right = new ProjectionTask(frame, x, y, cos, sin, size, mid, to, cancelled);
+        right.fork();
+        double[] a = left.compute();
+        double[] b = right.join();
+        if (cancelled.get()) {
+            return EMPTY;
+        }
+        double[] result = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, result, a.length, b.length);
+        return result;
+    }
+
+    private double[] projectRange() {
+        out = new double[Math.min(2 * (to - from), 4096)];
+        count = 0;
+        boolean havePrev = false;
+        int prevCode = 0;
+        boolean haveNext = from < to && project(from);
+        double nx = pt[0], ny = pt[1];
+        for (int k = from; k < to; k++) {
+            if ((k - from) % CHECK_INTERVAL == 0 && cancelled.get()) {
+                return EMPTY;
+            }
+            boolean haveCurrent = haveNext;
+            double cx = nx, cy = ny;
+            haveNext = k + 1 < size && project(k + 1);
+            nx = pt[0];
+            ny = pt[1];
+            if (!haveCurrent) {
+                continue;
+            }
+            int code = outcode(cx, cy);
+            // The first point in a chunk is always kept so that chunks can be
+            // culled independently
+            if (havePrev && haveNext && (prevCode & code & outcode(nx, ny)) != 0) {
+                continue;
+            }
+            add(k, cx, cy);
+            havePrev = true;
+            prevCode = code;
+        }
+        flush();
+        return count == out.length ? out : Arrays.copyOf(out, count);
+    }
+
+    /**
+     * Projects point k into pt, returning false if the result is not finite.
+     */
+    private boolean project(int k) {
+        double dx = x.get(k);
+        double dy = y.get(k);
+        if (frame.polar) {
+            double r = dy;
+            dx = cos[k] * r;
+            dy = sin[k] * r;
+        }
+        pt[0] = (frame.xTransform.transform(dx) - frame.xLeft) * frame.width / (frame.xRight - frame.xLeft);
+        pt[1] = frame.height - ((frame.yTransform.transform(dy) - frame.yBottom) * frame.height / (frame.yTop - frame.yBottom));
+        return Double.isFinite(pt[0]) && Double.isFinite(pt[1]);
+    }
+
+    private int outcode(double px, double py) {
+        int code = 0;
+        if (px < -MARGIN) {
+            code |= LEFT;
+        } else if (px > frame.width + MARGIN) {
+            code |= RIGHT;
+        }
+        if (py < -MARGIN) {
+            code |= TOP;
+        } else if (py > frame.height + MARGIN) {
+            code |= BOTTOM;
+        }
+        return code;
+    }
+
+    private void add(int k, double px, double py) {
+        if (frame.columnWidth <= 0d) {
+            emit(px, py);
+            return;
+        }
+        long column = (long) Math.floor(px / frame.columnWidth);
+        if (column != runColumn) {
+            flush();
+            runColumn = column;
+            runFirst = runMin = runMax = k;
+            runFirstX = runMinX = runMaxX = px;
+            runFirstY = runMinY = runMaxY = py;
+        } else if (py < runMinY) {
+            runMin = k;
+            runMinX = px;
+            runMinY = py;
+        } else if (py > runMaxY) {
+            runMax = k;
+            runMaxX = px;
+            runMaxY = py;
+        }
+        runLast = k;
+        runLastX = px;
+        runLastY = py;
+    }
+
+    /**
+     * Emits the vertices of the current decimation run in index order.
+     */
+    private void flush() {
+        if (runColumn == Long.MIN_VALUE) {
+            return;
+        }
+        emit(runFirstX, runFirstY);
+        if (runMin < runMax) {
+            emitIfInside(runMin, runMinX, runMinY);
+            emitIfInside(runMax, runMaxX, runMaxY);
+        } else {
+            emitIfInside(runMax, runMaxX, runMaxY);
+            emitIfInside(runMin, runMinX, runMinY);
+        }
+        // The last vertex is not emitted above even if it is the min or max
+        if (runLast != runFirst) {
+            emit(runLastX, runLastY);
+        }
+        runColumn = Long.MIN_VALUE;
+    }
+
+    private void emitIfInside(int k, double px, double py) {
+        if (k != runFirst && k != runLast) {
+            emit(px, py);
+        }
+    }
+
+    private void emit(double px, double py) {
+        if (count + 2 > out.length) {
+            out = Arrays.copyOf(out, Math.max(out.length * 2, 16));
+        }
+        out[count++] = px;
+        out[count++] = py;
+    }
+
+    /**
+     * Immutable description of the mapping from data to pixels.
+     */
+    static final class Frame {
+
+        private final double xLeft, xRight, yBottom, yTop;
+        private final double width, height;
+        private final AbstractTransform xTransform, yTransform;
+        private final boolean polar;
+        private final double columnWidth;
+
+        private Frame(double xLeft, double xRight, double yBottom, double yTop,
+                double width, double height, AbstractTransform xTransform, AbstractTransform yTransform,
+                boolean polar, double columnWidth) {
+            this.xLeft = xLeft;
+            this.xRight = xRight;
+            this.yBottom = yBottom;
+            this.yTop = yTop;
+            this.width = width;
+            this.height = height;
+            this.xTransform = xTransform;
+            this.yTransform = yTransform;
+            this.polar = polar;
+            this.columnWidth = columnWidth;
+        }
+
+        /**
+         * Captures the current state of a chart.
+         *
+         * @param chart the chart
+         * @param polar true if the data are polar
+         * @param columnWidth the width in pixels of the columns used for
+         * decimation. Use zero to disable decimation.
+         * @return the frame
+         */
+        static Frame of(Chart chart, boolean polar, double columnWidth) {
+            return new Frame(chart.getXLeft(), chart.getXRight(), chart.getYBottom(), chart.getYTop(),
+                    chart.getView().getWidth(), chart.getView().getHeight(),
+                    chart.getAxisSet().getXTransform(), chart.getAxisSet().getYTransform(),
+                    polar, columnWidth);
+        }
+
+        /**
+         * Creates a frame for the specified axis limits and view size, e.g.
+         * for a chart being rendered off the FX Application Thread.
+         *
+         * @param xLeft the x value at the left of the view
+         * @param xRight the x value at the right of the view
+         * @param yBottom the y value at the bottom of the view
+         * @param yTop the y value at the top of the view
+         * @param width the width of the view in pixels
+         * @param height the height of the view in pixels
+         * @param xTransform the x-axis transform
+         * @param yTransform the y-axis transform
+         * @param polar true if the data are polar
+         * @param columnWidth the width in pixels of the columns used for
+         * decimation. Use zero to disable decimation.
+         * @return the frame
+         */
+        static Frame of(double xLeft, double xRight, double yBottom, double yTop,
+                double width, double height, AbstractTransform xTransform, AbstractTransform yTransform,
+                boolean polar, double columnWidth) {
+            return new Frame(xLeft, xRight, yBottom, yTop, width, height, xTransform, yTransform,
+                    polar, columnWidth);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Frame)) {
+                return false;
+            }
+            Frame f = (Frame) o;
+            return xLeft == f.xLeft && xRight == f.xRight
+                    && yBottom == f.yBottom && yTop == f.yTop
+                    && width == f.width && height == f.height
+                    && xTransform == f.xTransform && yTransform == f.yTransform
+                    && polar == f.polar && columnWidth == f.columnWidth;
+        }
+
+        @Override
+        public int hashCode() {
+            long h = Double.doubleToLongBits(xLeft);
+            h = 31 * h + Double.doubleToLongBits(xRight);
+            h = 31 * h + Double.doubleToLongBits(yBottom);
+            h = 31 * h + Double.doubleToLongBits(yTop);
+            h = 31 * h + Double.doubleToLongBits(width);
+            h = 31 * h + Double.doubleToLongBits(height);
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+}
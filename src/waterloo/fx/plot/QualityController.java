@@ -0,0 +1,103 @@
+/*
+*
+ * <http://sigtool.github.io/waterlooFX/>
+ *
+ * Copyright King's College London  2014. Copyright Ironduke Publishing Limited, UK 2014-.
+ *
+ * @author Malcolm Lidierth <a href="https://github.com/sigtool/waterlooFX/issues"> [Contact]</a>
+ *
+ * Project Waterloo is free software:  you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Project Waterloo is distributed in the hope that it will  be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package waterloo.fx.plot;
+
+import javafx.animation.PauseTransition;
+import javafx.util.Duration;
+
+/**
+ * Steps the plots of a {@code Chart} down to cheaper rendering while the
+ * chart is busy and restores full quality when it is idle.
+ *
+ * The chart is busy while the user is panning or zooming, or when a layout
+ * pass takes longer than the frame budget and follows the previous pass
+ * within the idle period, e.g. when data are being streamed to a plot. A
+ * single slow layout of a static chart does not reduce the quality.
+ *
+ * At reduced quality, plots omit marker effects and labels, and large line
+ * plots are decimated more coarsely. The nodes of the plots are not rebuilt.
+ * See
+ * {@link AbstractPlot#isReducedQuality()}.
+ *
+ * @author Malcolm Lidierth
+ */
+final class QualityController {
+
+    /**
+     * Full quality is restored when there has been no busy layout for this
+     * period.
+     */
+    private static final double IDLE_MILLIS = 300d;
+    private static final long IDLE_NANOS = (long) (IDLE_MILLIS * 1e6);
+
+    private final Chart chart;
+    private final PauseTransition idle = new PauseTransition(Duration.millis(IDLE_MILLIS));
+    private long lastPass;
+    private boolean reduced;
+
+    QualityController(Chart chart) {
+        this.chart = chart;
+        idle.setOnFinished(e -> {
+            if (chart.isInteracting()) {
+                idle.playFromStart();
+            } else {
+                setReduced(false);
+            }
+        });
+    }
+
+    /**
+     * Records the cost of a layout pass.
+     *
+     * @param nanos the time taken by the pass
+     * @param interacting true if the user is panning or zooming
+     */
+    void record(long nanos, boolean interacting) {
+        long now = System.nanoTime();
+        boolean busy = interacting
+                || (nanos > chart.getFrameBudget() * 1e6 && now - lastPass < IDLE_NANOS);
+        lastPass = now;
+        if (busy && chart.isAdaptiveQuality()) {
+            setReduced(true);
+            idle.playFromStart();
+        }
+    }
+
+    /**
+     * Restores full quality immediately, e.g. when adaptive quality is
+     * turned off.
+     */
+    void reset() {
+        idle.stop();
+        setReduced(false);
+    }
+
+    boolean isReduced() {
+        return reduced;
+    }
+
+    private void setReduced(boolean flag) {
+        reduced = flag;
+        chart.forEachPlot(plot -> plot.setReducedQuality(flag));
+    }
+}
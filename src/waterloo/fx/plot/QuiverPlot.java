@@ -35,6 +35,8 @@ import javafx.css.StyleableBooleanProperty;
 import javafx.css.StyleableDoubleProperty;
 import javafx.css.StyleableProperty;
 import javafx.geometry.Point2D;
+import javafx.scene.Node;
+import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.shape.Line;
 import javafx.scene.shape.QuadCurve;
 import javafx.scene.shape.Shape;
@@ -62,6 +64,11 @@ public class QuiverPlot extends AbstractPlot<ArrayList<Shape>> implements LineIn
             return StyleableProperties.SCALE;
         }
 
+        @Override
+        protected void invalidated() {
+            requestArrange();
+        }
+
     };
     private final BooleanProperty useQuad = new StyleableBooleanProperty(false) {
 
@@ -80,6 +87,11 @@ public class QuiverPlot extends AbstractPlot<ArrayList<Shape>> implements LineIn
             return StyleableProperties.USEQUAD;
         }
 
+        @Override
+        protected void invalidated() {
+            requestArrange();
+        }
+
     };
     private double scaleFactor;
 
@@ -139,6 +151,11 @@ public class QuiverPlot extends AbstractPlot<ArrayList<Shape>> implements LineIn
 
     @Override
     protected final void updateElements(Chart chart) {
+        if (isCanvasRendered()) {
+            // Vectors and arrowheads will be drawn on the batch canvas
+            scaleFactor = getFinalScaleFactor();
+            return;
+        }
         for (int k = 0; k < dataModel.size(); k++) {
             Point2D p0 = getData(chart,dataModel.getXData().get(k), dataModel.getYData().get(k));
             p0 = chart.toPixel(p0);
@@ -166,6 +183,11 @@ public class QuiverPlot extends AbstractPlot<ArrayList<Shape>> implements LineIn
         // Call the super method to do house-keeping common to all plots
         super.arrangePlot(chart);
 
+        if (isCanvasRendered()) {
+            arrangeBatch(chart);
+            return;
+        }
+
         for (int k = 0; k < dataModel.size(); k++) {
             Point2D p0 = getData(chart,dataModel.getXData().get(k), dataModel.getYData().get(k));
             Point2D p1 = getData(chart,dataModel.getXData().get(k) + dataModel.getExtraData0().get(k) * scaleFactor,
@@ -215,7 +237,63 @@ public class QuiverPlot extends AbstractPlot<ArrayList<Shape>> implements LineIn
         }
     }
 
-    private double getFinalScaleFactor() {
+    /**
+     * Draws all vectors as one stroked path and all arrowheads as one filled
+     * and stroked path on the batch canvas.
+     */
+    private void arrangeBatch(Chart chart) {
+        GraphicsContext g = getBatchGraphics(chart);
+        int n = dataModel.size();
+        // Tip position and rotation for each arrowhead
+        double[] tips = new double[3 * n];
+        g.beginPath();
+        for (int k = 0; k < n; k++) {
+            Point2D p0 = getData(chart, dataModel.getXData().get(k), dataModel.getYData().get(k));
+            Point2D p1 = getData(chart, dataModel.getXData().get(k) + dataModel.getExtraData0().get(k) * scaleFactor,
+                    dataModel.getYData().get(k) + dataModel.getExtraData1().get(k) * scaleFactor);
+            p0 = chart.toPixel(p0);
+            p1 = chart.toPixel(p1);
+            if (Double.isFinite(p0.getX()) && Double.isFinite(p0.getY())
+                    && Double.isFinite(p1.getX()) && Double.isFinite(p1.getY())) {
+                double rot;
+                g.moveTo(p0.getX(), p0.getY());
+                if (useQuad.get()) {
+                    double ax = p0.getX() + (p1.getX() - p0.getX()) / 2d;
+                    double ay = p0.getY() + (p1.getY() - p0.getY()) * 0.667d;
+                    g.quadraticCurveTo(ax, ay, p1.getX(), p1.getY());
+                    rot = Math.atan2(p1.getY() - ay, p1.getX() - ax);
+                } else {
+                    g.lineTo(p1.getX(), p1.getY());
+                    rot = Math.atan2(p1.getY() - p0.getY(), p1.getX() - p0.getX());
+                }
+                tips[3 * k] = p1.getX();
+                tips[3 * k + 1] = p1.getY();
+                tips[3 * k + 2] = Math.toDegrees(rot);
+            } else {
+                tips[3 * k] = Double.NaN;
+            }
+        }
+        g.setStroke(visualModel.getLineColor());
+        g.setLineWidth(visualModel.getLineWidth());
+        g.stroke();
+
+        g.beginPath();
+        for (int k = 0; k < n; k++) {
+            if (Double.isFinite(tips[3 * k])) {
+                Node marker = visualModel.getMarkerOrTemplate(k);
+                // Only ArrowHeads are rotated to follow the vector
+                double angle = marker instanceof ArrowHead ? tips[3 * k + 2] + 90d : 0d;
+                appendMarker(g, marker, tips[3 * k], tips[3 * k + 1], angle);
+            }
+        }
+        g.setFill(visualModel.getFill());
+        g.fill();
+        g.setStroke(visualModel.getEdgeColor());
+        g.setLineWidth(visualModel.getEdgeWidth());
+        g.stroke();
+    }
+
+    double getFinalScaleFactor() {
 
         double spacingX = Double.NEGATIVE_INFINITY;
         for (int k = 0; k < dataModel.getXData().size() - 1; k++) {
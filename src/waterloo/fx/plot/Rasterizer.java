@@ -0,0 +1,633 @@
+/*
+*
+ * <http://sigtool.github.io/waterlooFX/>
+ *
+ * Copyright King's College London  2014. Copyright Ironduke Publishing Limited, UK 2014-.
+ *
+ * @author Malcolm Lidierth <a href="https://github.com/sigtool/waterlooFX/issues"> [Contact]</a>
+ *
+ * Project Waterloo is free software:  you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Project Waterloo is distributed in the hope that it will  be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package waterloo.fx.plot;
+
+import java.awt.geom.AffineTransform;
+import java.awt.geom.PathIterator;
+import java.util.Arrays;
+import javafx.geometry.VPos;
+import javafx.scene.paint.Color;
+import javafx.scene.paint.LinearGradient;
+import javafx.scene.paint.Paint;
+import javafx.scene.paint.RadialGradient;
+import javafx.scene.text.TextAlignment;
+
+/**
+ * A {@code Surface} that draws into an array of ARGB pixels in pure Java, so
+ * that charts can be rendered on any thread and many at once.
+ *
+ * Paths are flattened to line segments and filled with exact area coverage
+ * antialiasing: the signed area of each edge is accumulated in a buffer
+ * covering the bounds of the path, and the running sum along each row gives
+ * the coverage of each pixel. Strokes are drawn by filling a rectangle for
+ * each segment, extended by half the line width at each end, which gives
+ * square caps and closes the joins. Text is drawn from the glyph outlines of
+ * the AWT font system.
+ *
+ * Colors other than {@code Color} are drawn using a single color: the first
+ * stop of a gradient or gray for other paints.
+ *
+ * An instance must be used by one thread at a time.
+ *
+ * @author Malcolm Lidierth
+ */
+public final class Rasterizer implements Surface {
+
+    /**
+     * Coverage below this is not drawn.
+     */
+    private static final float MIN_COVERAGE = 1f / 512f;
+    /**
+     * Distance in pixels that curves in glyph outlines may deviate from the
+     * true outline.
+     */
+    private static final double FLATNESS = 0.1;
+
+    private final int width;
+    private final int height;
+    private final int[] pixels;
+
+    // Transform from chart to image pixels
+    private double scale = 1d;
+    private double translateX;
+    private double translateY;
+
+    // Clip in image pixels, exclusive at the right and bottom
+    private int clipX0, clipY0, clipX1, clipY1;
+
+    private final PathBuffer path = new PathBuffer();
+    private final PathBuffer textPath = new PathBuffer();
+
+    private Color fillColor = Color.BLACK;
+    private Color strokeColor = Color.BLACK;
+    private double lineWidth = 1d;
+    private String fontFamily = "System";
+    private double fontSize = 12d;
+    private TextAlignment textAlign = TextAlignment.LEFT;
+    private VPos textBaseline = VPos.BASELINE;
+
+    // Coverage accumulation over the bounds of the path being drawn
+    private float[] acc = new float[0];
+    private int[] rowMin = new int[0];
+    private int[] rowMax = new int[0];
+    private int originX, originY, boundsW, boundsH, stride;
+
+    // Unit circle used for the last ellipse
+    private double[] unitCos = new double[0];
+    private double[] unitSin = new double[0];
+
+    /**
+     * Creates a transparent surface.
+     *
+     * @param width the width in pixels
+     * @param height the height in pixels
+     */
+    public Rasterizer(int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("The size must be positive");
+        }
+        this.width = width;
+        this.height = height;
+        pixels = new int[width * height];
+        resetClip();
+    }
+
+    /**
+     * @return the width in pixels
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return the height in pixels
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns the pixels as non-premultiplied ARGB values, row by row. The
+     * array is that drawn into, not a copy.
+     *
+     * @return the pixels
+     */
+    public int[] getPixels() {
+        return pixels;
+    }
+
+    /**
+     * Sets the transform from the chart coordinates passed to the drawing
+     * methods to image pixels: {@code px = x * scale + translateX}.
+     *
+     * @param scale the scale factor
+     * @param translateX the offset along x in image pixels
+     * @param translateY the offset along y in image pixels
+     */
+    public void setTransform(double scale, double translateX, double translateY) {
+        this.scale = scale;
+        this.translateX = translateX;
+        this.translateY = translateY;
+    }
+
+    /**
+     * Sets every pixel to the specified color, ignoring the clip.
+     *
+     * @param color the color
+     */
+    public void clear(Color color) {
+        Arrays.fill(pixels, toArgb(color, 1d));
+    }
+
+    @Override
+    public void setFill(Paint paint) {
+        fillColor = toColor(paint);
+    }
+
+    @Override
+    public void setStroke(Paint paint) {
+        strokeColor = toColor(paint);
+    }
+
+    @Override
+    public void setLineWidth(double width) {
+        lineWidth = width;
+    }
+
+    @Override
+    public void beginPath() {
+        path.reset();
+    }
+
+    @Override
+    public void moveTo(double x, double y) {
+        path.moveTo(x * scale + translateX, y * scale + translateY);
+    }
+
+    @Override
+    public void lineTo(double x, double y) {
+        path.lineTo(x * scale + translateX, y * scale + translateY);
+    }
+
+    @Override
+    public void closePath() {
+        path.close();
+    }
+
+    @Override
+    public void ellipse(double x, double y, double rx, double ry) {
+        double cx = x * scale + translateX;
+        double cy = y * scale + translateY;
+        double sx = rx * scale;
+        double sy = ry * scale;
+        // Segments for a deviation of about 1/8 pixel from the true curve
+        int n = (int) Math.min(256, Math.max(8, Math.ceil(2d * Math.PI * Math.sqrt(Math.max(Math.abs(sx), Math.abs(sy))))));
+        if (unitCos.length != n) {
+            unitCos = new double[n];
+            unitSin = new double[n];
+            for (int k = 0; k < n; k++) {
+                unitCos[k] = Math.cos(2d * Math.PI * k / n);
+                unitSin[k] = Math.sin(2d * Math.PI * k / n);
+            }
+        }
+        path.moveTo(cx + sx, cy);
+        for (int k = 1; k < n; k++) {
+            path.lineTo(cx + sx * unitCos[k], cy + sy * unitSin[k]);
+        }
+        path.close();
+    }
+
+    @Override
+    public void fill() {
+        fill(path, fillColor);
+    }
+
+    @Override
+    public void stroke() {
+        double w = lineWidth * scale;
+        if (!(w > 0d) || strokeColor.getOpacity() == 0d || path.count < 4) {
+            return;
+        }
+        double hw = w / 2d;
+        if (!setBounds(path, w)) {
+            return;
+        }
+        for (int s = 0; s < path.subCount; s++) {
+            int start = path.starts[s];
+            int end = s + 1 < path.subCount ? path.starts[s + 1] : path.count;
+            for (int k = start; k + 3 < end; k += 2) {
+                strokeSegment(path.coords[k], path.coords[k + 1], path.coords[k + 2], path.coords[k + 3], hw);
+            }
+            if (path.closed[s] && end - start > 4) {
+                strokeSegment(path.coords[end - 2], path.coords[end - 1], path.coords[start], path.coords[start + 1], hw);
+            }
+        }
+        composite(strokeColor);
+    }
+
+    @Override
+    public void fillRect(double x, double y, double w, double h) {
+        textPath.reset();
+        double x0 = x * scale + translateX;
+        double y0 = y * scale + translateY;
+        double x1 = (x + w) * scale + translateX;
+        double y1 = (y + h) * scale + translateY;
+        textPath.moveTo(x0, y0);
+        textPath.lineTo(x1, y0);
+        textPath.lineTo(x1, y1);
+        textPath.lineTo(x0, y1);
+        textPath.close();
+        fill(textPath, fillColor);
+    }
+
+    @Override
+    public void setFont(String family, double size) {
+        fontFamily = family;
+        fontSize = size;
+    }
+
+    @Override
+    public void setTextAlign(TextAlignment align) {
+        textAlign = align;
+    }
+
+    @Override
+    public void setTextBaseline(VPos baseline) {
+        textBaseline = baseline;
+    }
+
+    @Override
+    public void fillText(String text, double x, double y, double angle) {
+        if (text == null || text.isEmpty()) {
+            return;
+        }
+        AffineTransform at = new AffineTransform();
+        at.translate(x * scale + translateX, y * scale + translateY);
+        at.rotate(Math.toRadians(angle));
+        at.scale(scale, scale);
+        PathIterator it = GlyphOutlines.getOutline(text, fontFamily, fontSize, textAlign, textBaseline)
+                .getPathIterator(at, FLATNESS);
+        double[] c = new double[6];
+        textPath.reset();
+        while (!it.isDone()) {
+            switch (it.currentSegment(c)) {
+                case PathIterator.SEG_MOVETO:
+                    textPath.moveTo(c[0], c[1]);
+                    break;
+                case PathIterator.SEG_LINETO:
+                    textPath.lineTo(c[0], c[1]);
+                    break;
+                case PathIterator.SEG_CLOSE:
+                    textPath.close();
+                    break;
+            }
+            it.next();
+        }
+        fill(textPath, fillColor);
+    }
+
+    @Override
+    public void clipRect(double x, double y, double w, double h) {
+        resetClip();
+        clipX0 = Math.max(clipX0, (int) Math.floor(x * scale + translateX));
+        clipY0 = Math.max(clipY0, (int) Math.floor(y * scale + translateY));
+        clipX1 = Math.min(clipX1, (int) Math.ceil((x + w) * scale + translateX));
+        clipY1 = Math.min(clipY1, (int) Math.ceil((y + h) * scale + translateY));
+    }
+
+    @Override
+    public void resetClip() {
+        clipX0 = 0;
+        clipY0 = 0;
+        clipX1 = width;
+        clipY1 = height;
+    }
+
+    private void fill(PathBuffer p, Color color) {
+        if (color.getOpacity() == 0d || p.count < 6 || !setBounds(p, 0d)) {
+            return;
+        }
+        for (int s = 0; s < p.subCount; s++) {
+            int start = p.starts[s];
+            int end = s + 1 < p.subCount ? p.starts[s + 1] : p.count;
+            if (end - start < 6) {
+                continue;
+            }
+            for (int k = start; k + 3 < end; k += 2) {
+                edge(p.coords[k], p.coords[k + 1], p.coords[k + 2], p.coords[k + 3]);
+            }
+            // Sub-paths are always closed when filled
+            edge(p.coords[end - 2], p.coords[end - 1], p.coords[start], p.coords[start + 1]);
+        }
+        composite(color);
+    }
+
+    /**
+     * Adds the edges of the rectangle covering a stroked segment, extended at
+     * each end by half the line width. The rectangle always has the same
+     * orientation so overlapping segments do not cancel.
+     */
+    private void strokeSegment(double x0, double y0, double x1, double y1, double hw) {
+        double dx = x1 - x0;
+        double dy = y1 - y0;
+        double len = Math.sqrt(dx * dx + dy * dy);
+        if (!(len > 0d)) {
+            return;
+        }
+        dx *= hw / len;
+        dy *= hw / len;
+        double ax = x0 - dx - dy, ay = y0 - dy + dx;
+        double bx = x1 + dx - dy, by = y1 + dy + dx;
+        double cx = x1 + dx + dy, cy = y1 + dy - dx;
+        double ex = x0 - dx + dy, ey = y0 - dy - dx;
+        edge(ax, ay, bx, by);
+        edge(bx, by, cx, cy);
+        edge(cx, cy, ex, ey);
+        edge(ex, ey, ax, ay);
+    }
+
+    /**
+     * Sets the accumulation buffer to cover the bounds of the path, grown by
+     * the specified amount and clipped.
+     *
+     * @return false if nothing of the path would be visible
+     */
+    private boolean setBounds(PathBuffer p, double grow) {
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for (int k = 0; k < p.count; k += 2) {
+            double x = p.coords[k];
+            double y = p.coords[k + 1];
+            if (x < minX) {
+                minX = x;
+            }
+            if (x > maxX) {
+                maxX = x;
+            }
+            if (y < minY) {
+                minY = y;
+            }
+            if (y > maxY) {
+                maxY = y;
+            }
+        }
+        if (!(minX <= maxX && minY <= maxY)) {
+            return false;
+        }
+        int x0 = (int) Math.max(clipX0, Math.floor(minX - grow));
+        int y0 = (int) Math.max(clipY0, Math.floor(minY - grow));
+        int x1 = (int) Math.min(clipX1, Math.ceil(maxX + grow));
+        int y1 = (int) Math.min(clipY1, Math.ceil(maxY + grow));
+        if (x1 <= x0 || y1 <= y0) {
+            return false;
+        }
+        originX = x0;
+        originY = y0;
+        boundsW = x1 - x0;
+        boundsH = y1 - y0;
+        // Two extra cells per row take the contributions of edges at or
+        // beyond the right of the bounds
+        stride = boundsW + 2;
+        if (acc.length < stride * boundsH) {
+            acc = new float[stride * boundsH];
+        }
+        if (rowMin.length < boundsH) {
+            rowMin = new int[boundsH];
+            rowMax = new int[boundsH];
+        }
+        Arrays.fill(rowMin, 0, boundsH, Integer.MAX_VALUE);
+        Arrays.fill(rowMax, 0, boundsH, -1);
+        return true;
+    }
+
+    /**
+     * Accumulates the signed area contributed by an edge, given in image
+     * pixels. Parts of the edge left or right of the bounds are moved onto
+     * the boundary, which leaves the coverage inside the bounds unchanged.
+     */
+    private void edge(double px0, double py0, double px1, double py1) {
+        double x0 = px0 - originX, y0 = py0 - originY;
+        double x1 = px1 - originX, y1 = py1 - originY;
+        if (y0 == y1 || !(Double.isFinite(x0) && Double.isFinite(y0) && Double.isFinite(x1) && Double.isFinite(y1))) {
+            return;
+        }
+        float dir = 1f;
+        if (y0 > y1) {
+            double t = x0;
+            x0 = x1;
+            x1 = t;
+            t = y0;
+            y0 = y1;
+            y1 = t;
+            dir = -1f;
+        }
+        int rowStart = (int) Math.max(0d, Math.floor(y0));
+        int rowEnd = (int) Math.min(boundsH, Math.ceil(y1));
+        double dxdy = (x1 - x0) / (y1 - y0);
+        double x = x0 + (Math.max(y0, rowStart) - y0) * dxdy;
+        for (int r = rowStart; r < rowEnd; r++) {
+            double dy = Math.min(r + 1d, y1) - Math.max(r, y0);
+            double xnext = x + dxdy * dy;
+            float d = (float) dy * dir;
+            double xa = Math.max(0d, Math.min(boundsW, Math.min(x, xnext)));
+            double xb = Math.max(0d, Math.min(boundsW, Math.max(x, xnext)));
+            int row = r * stride;
+            double xaFloor = Math.floor(xa);
+            int xai = (int) xaFloor;
+            double xbCeil = Math.ceil(xb);
+            int xbi = (int) xbCeil;
+            if (xbi <= xai + 1) {
+                float xmf = (float) (0.5d * (xa + xb) - xaFloor);
+                acc[row + xai] += d - d * xmf;
+                acc[row + xai + 1] += d * xmf;
+                xbi = xai + 1;
+            } else {
+                float s = (float) (1d / (xb - xa));
+                float xaf = (float) (xa - xaFloor);
+                float a0 = 0.5f * s * (1f - xaf) * (1f - xaf);
+                float xbf = (float) (xb - xbCeil + 1d);
+                float am = 0.5f * s * xbf * xbf;
+                acc[row + xai] += d * a0;
+                if (xbi == xai + 2) {
+                    acc[row + xai + 1] += d * (1f - a0 - am);
+                } else {
+                    float a1 = s * (1.5f - xaf);
+                    acc[row + xai + 1] += d * (a1 - a0);
+                    for (int xi = xai + 2; xi < xbi - 1; xi++) {
+                        acc[row + xi] += d * s;
+                    }
+                    float a2 = a1 + (xbi - xai - 3) * s;
+                    acc[row + xbi - 1] += d * (1f - a2 - am);
+                }
+                acc[row + xbi] += d * am;
+            }
+            if (xai < rowMin[r]) {
+                rowMin[r] = xai;
+            }
+            if (xbi > rowMax[r]) {
+                rowMax[r] = xbi;
+            }
+            x = xnext;
+        }
+    }
+
+    /**
+     * Blends the color into the pixels with the accumulated coverage and
+     * clears the accumulation buffer.
+     */
+    private void composite(Color color) {
+        float r = (float) color.getRed();
+        float g = (float) color.getGreen();
+        float b = (float) color.getBlue();
+        float a = (float) color.getOpacity();
+        int opaque = toArgb(color, 1d);
+        for (int y = 0; y < boundsH; y++) {
+            int min = rowMin[y];
+            if (min == Integer.MAX_VALUE) {
+                continue;
+            }
+            int max = Math.min(rowMax[y], boundsW + 1);
+            int row = y * stride;
+            int out = (originY + y) * width + originX;
+            float sum = 0f;
+            for (int x = min; x <= max; x++) {
+                sum += acc[row + x];
+                acc[row + x] = 0f;
+                if (x < boundsW) {
+                    float cov = Math.min(1f, Math.abs(sum));
+                    if (cov >= MIN_COVERAGE) {
+                        pixels[out + x] = cov == 1f && a == 1f ? opaque : blend(pixels[out + x], r, g, b, a * cov);
+                    }
+                }
+            }
+            // The sum is constant beyond the last edge in the row
+            float cov = Math.min(1f, Math.abs(sum));
+            if (cov >= MIN_COVERAGE) {
+                for (int x = max + 1; x < boundsW; x++) {
+                    pixels[out + x] = cov == 1f && a == 1f ? opaque : blend(pixels[out + x], r, g, b, a * cov);
+                }
+            }
+        }
+    }
+
+    /**
+     * Source-over blend of a non-premultiplied color into a non-premultiplied
+     * ARGB pixel.
+     */
+    private static int blend(int dst, float r, float g, float b, float sa) {
+        int da = dst >>> 24;
+        if (da == 0) {
+            return ((int) (sa * 255f + 0.5f) << 24)
+                    | ((int) (r * 255f + 0.5f) << 16)
+                    | ((int) (g * 255f + 0.5f) << 8)
+                    | (int) (b * 255f + 0.5f);
+        }
+        float dr = ((dst >> 16) & 0xff) / 255f;
+        float dg = ((dst >> 8) & 0xff) / 255f;
+        float db = (dst & 0xff) / 255f;
+        float dw = da / 255f * (1f - sa);
+        float oa = sa + dw;
+        float or = (r * sa + dr * dw) / oa;
+        float og = (g * sa + dg * dw) / oa;
+        float ob = (b * sa + db * dw) / oa;
+        return ((int) (oa * 255f + 0.5f) << 24)
+                | ((int) (or * 255f + 0.5f) << 16)
+                | ((int) (og * 255f + 0.5f) << 8)
+                | (int) (ob * 255f + 0.5f);
+    }
+
+    private static int toArgb(Color c, double coverage) {
+        return ((int) Math.round(c.getOpacity() * coverage * 255d) << 24)
+                | ((int) Math.round(c.getRed() * 255d) << 16)
+                | ((int) Math.round(c.getGreen() * 255d) << 8)
+                | (int) Math.round(c.getBlue() * 255d);
+    }
+
+    /**
+     * Returns the single color used to draw a paint.
+     *
+     * @param paint the paint, which may be null
+     * @return the color
+     */
+    static Color toColor(Paint paint) {
+        if (paint instanceof Color) {
+            return (Color) paint;
+        } else if (paint instanceof LinearGradient) {
+            return ((LinearGradient) paint).getStops().get(0).getColor();
+        } else if (paint instanceof RadialGradient) {
+            return ((RadialGradient) paint).getStops().get(0).getColor();
+        } else if (paint == null) {
+            return Color.TRANSPARENT;
+        }
+        return Color.GRAY;
+    }
+
+    /**
+     * A path of line segments in image pixels.
+     */
+    private static final class PathBuffer {
+
+        private double[] coords = new double[256];
+        private int count;
+        private int[] starts = new int[16];
+        private boolean[] closed = new boolean[16];
+        private int subCount;
+
+        void reset() {
+            count = 0;
+            subCount = 0;
+        }
+
+        void moveTo(double x, double y) {
+            if (subCount == starts.length) {
+                starts = Arrays.copyOf(starts, 2 * subCount);
+                closed = Arrays.copyOf(closed, 2 * subCount);
+            }
+            starts[subCount] = count;
+            closed[subCount++] = false;
+            add(x, y);
+        }
+
+        void lineTo(double x, double y) {
+            if (subCount == 0) {
+                moveTo(x, y);
+            } else {
+                add(x, y);
+            }
+        }
+
+        void close() {
+            if (subCount > 0) {
+                closed[subCount - 1] = true;
+            }
+        }
+
+        private void add(double x, double y) {
+            if (count + 2 > coords.length) {
+                coords = Arrays.copyOf(coords, 2 * coords.length);
+            }
+            coords[count++] = x;
+            coords[count++] = y;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/*
+*
+ * <http://sigtool.github.io/waterlooFX/>
+ *
+ * Copyright King's College London  2014. Copyright Ironduke Publishing Limited, UK 2014-.
+ *
+ * @author Malcolm Lidierth <a href="https://github.com/sigtool/waterlooFX/issues"> [Contact]</a>
+ *
+ * Project Waterloo is free software:  you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Project Waterloo is distributed in the hope that it will  be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package waterloo.fx.plot;
+
+import javafx.application.Platform;
+
+/**
+ * Coalesces the layout requests made for a {@code Chart} and records what
+ * needs to be redone in the next layout pass.
+ *
+ * Changing the axis limits, origin, size or style of a chart sets one of the
+ * dirty bits below. Only the first change after a layout pass posts a layout
+ * request, so a scroll event that sets all four limits results in a single
+ * layout - and so a single computation of ticks and projection of the plots -
+ * in the next pulse. The chart uses the bits to run only the stages of the
+ * layout that are affected. Changes to the data of a plot are recorded by the
+ * plot itself.
+ *
+ * The scheduler should be used only on the FX Application Thread.
+ *
+ * @author Malcolm Lidierth
+ */
+final class RenderScheduler {
+
+    /**
+     * The size or insets of the chart, or the nodes in its view, have changed:
+     * the view and axes must be laid out, the canvas painted and all plots
+     * re-projected.
+     */
+    static final int GEOMETRY = 1;
+    /**
+     * The axis limits, transforms or polar setting have changed: as for
+     * GEOMETRY.
+     */
+    static final int LIMITS = 2;
+    /**
+     * A style setting that may alter the axes has changed: the view and axes
+     * must be laid out and the canvas painted. Plots are re-projected only if
+     * the size of the view changes as a result.
+     */
+    static final int STYLE = 4;
+    /**
+     * A setting affecting only the grid or inner axes has changed: the canvas
+     * must be painted.
+     */
+    static final int GRID = 8;
+    static final int ALL = GEOMETRY | LIMITS | STYLE | GRID;
+
+    private final Chart chart;
+    /**
+     * True when a layout has been requested but has not yet been performed.
+     */
+    private boolean layoutPending;
+    /**
+     * True when a deferred request has been posted via
+     * {@code Platform.runLater}.
+     */
+    private boolean deferredPending;
+    /**
+     * True while the chart is being laid out. Requests made then would be
+     * discarded by the layout pass so are not made.
+     */
+    private boolean inLayout;
+    private int dirty = ALL;
+
+    RenderScheduler(Chart chart) {
+        this.chart = chart;
+    }
+
+    /**
+     * Marks the chart dirty and requests a layout unless one is already
+     * pending.
+     *
+     * @param bits the dirty bits to set
+     */
+    void invalidate(int bits) {
+        dirty |= bits;
+        if (!layoutPending && !inLayout) {
+            layoutPending = true;
+            chart.requestLayout();
+        }
+    }
+
+    /**
+     * Marks the chart dirty and requests a layout after the events presently
+     * queued on the FX Application Thread have run. This is used for changes
+     * made during a layout pass, e.g. resizing, when a request made
+     * immediately would be lost. Only one such request is posted at a time.
+     *
+     * @param bits the dirty bits to set
+     */
+    void invalidateLater(int bits) {
+        dirty |= bits;
+        if (!deferredPending) {
+            deferredPending = true;
+            Platform.runLater(() -> {
+                deferredPending = false;
+                layoutPending = true;
+                chart.requestLayout();
+            });
+        }
+    }
+
+    /**
+     * @return true if any dirty bits are set
+     */
+    boolean isDirty() {
+        return dirty != 0;
+    }
+
+    /**
+     * Called at the start of a layout pass.
+     *
+     * @return the dirty bits set since the last pass
+     */
+    int beginLayout() {
+        inLayout = true;
+        layoutPending = false;
+        int bits = dirty;
+        dirty = 0;
+        return bits;
+    }
+
+    /**
+     * Called at the end of a layout pass. Subsequent changes will post a new
+     * layout request. If the chart was invalidated during the pass, a deferred
+     * request is posted so those changes are laid out.
+     */
+    void endLayout() {
+        inLayout = false;
+        if (dirty != 0 && !layoutPending) {
+            invalidateLater(0);
+        }
+    }
+}
@@ -26,6 +26,7 @@ import java.util.ArrayList;
 import javafx.geometry.Point2D;
 import javafx.scene.Node;
 import javafx.scene.shape.Shape;
+import javafx.scene.text.Text;
 
 /**
  * Scatter plot class.
@@ -39,6 +40,10 @@ import javafx.scene.shape.Shape;
  * A common css styling may therefore be applied to family of plots by declaring
  * styles for ".plot-0", ".plot-1" etc. in the style sheet.
  *
+ * When batched, the markers are drawn onto a canvas instead of being added as
+ * nodes. Large batches are drawn progressively: see
+ * {@link Chart#setProgressiveBudget(double)}.
+ *
  * @author Malcolm Lidierth
  */
 public class ScatterPlot extends AbstractPlot<ArrayList<Node>> implements MarkerInterface {
@@ -79,8 +84,21 @@ public class ScatterPlot extends AbstractPlot<ArrayList<Node>> implements Marker
         add(p1);
     }
 
+    /**
+     * Pixel positions of the points as [x0, y0, x1, y1...] when batched,
+     * projected when the plot is arranged.
+     */
+    private double[] positions = new double[0];
+    /**
+     * Number of labels that have positions.
+     */
+    private int labelCount;
+
     @Override
     protected final void updateElements(Chart chart) {
+        if (isCanvasRendered()) {
+            return;
+        }
 
         for (int k = 0; k < dataModel.size(); k++) {
             Point2D p0 = getData(chart,dataModel.getXData().get(k),
@@ -102,7 +120,12 @@ public class ScatterPlot extends AbstractPlot<ArrayList<Node>> implements Marker
     public final void arrangePlot(Chart chart) {
 
         super.arrangePlot(chart);
-        
+
+        if (isCanvasRendered()) {
+            arrangeBatch(chart);
+            return;
+        }
+
         for (int k = 0; k < dataModel.size(); k++) {
             Point2D p0 = getData(chart,dataModel.getXData().get(k), dataModel.getYData().get(k));
             p0 = chart.toPixel(p0);
@@ -121,4 +144,56 @@ public class ScatterPlot extends AbstractPlot<ArrayList<Node>> implements Marker
         }
     }
 
+    /**
+     * Projects the points and draws the markers onto the batch canvas. The
+     * points are all projected here, so chunks drawn on later pulses use the
+     * limits in force when the plot was arranged: a pan or zoom preview then
+     * transforms them with the rest of the canvas. Only the drawing is spread
+     * over pulses to stay within the time budget.
+     */
+    private void arrangeBatch(Chart chart) {
+        int n = Math.min(dataModel.getXBuffer().limit(), dataModel.getYBuffer().limit());
+        if (positions.length < 2 * n) {
+            positions = new double[2 * n];
+        }
+        double[] p = positions;
+        projectData(chart, 0, n, 1, p, 0);
+        paintProgressively(chart, n, (g, from, to, step) -> {
+            g.beginPath();
+            for (int k = from; k < to; k += step) {
+                if (Double.isFinite(p[2 * k]) && Double.isFinite(p[2 * k + 1])) {
+                    appendMarker(g, visualModel.getMarkerOrTemplate(k), p[2 * k], p[2 * k + 1], 0d);
+                }
+            }
+            g.setFill(visualModel.getFill());
+            g.fill();
+            g.setStroke(visualModel.getEdgeColor());
+            g.setLineWidth(visualModel.getEdgeWidth());
+            g.stroke();
+        });
+        labelCount = Math.min(visualModel.getLabels().size(), n);
+    }
+
+    /**
+     * Centers the labels on the points when batched.
+     */
+    @Override
+    protected void arrangeLabels() {
+        if (!isCanvasRendered()) {
+            super.arrangeLabels();
+            return;
+        }
+        for (int k = 0; k < visualModel.getLabels().size(); k++) {
+            Text text = visualModel.getLabels().get(k);
+            if (k < labelCount && Double.isFinite(positions[2 * k])
+                    && Double.isFinite(positions[2 * k + 1])) {
+                text.setX(positions[2 * k] - text.prefWidth(-1d) / 2d);
+                text.setY(positions[2 * k + 1]);
+                text.setVisible(true);
+            } else {
+                text.setVisible(false);
+            }
+        }
+    }
+
 }
@@ -0,0 +1,1649 @@
+/*
+*
+ * <http://sigtool.github.io/waterlooFX/>
+ *
+ * Copyright King's College London  2014. Copyright Ironduke Publishing Limited, UK 2014-.
+ *
+ * @author Malcolm Lidierth <a href="https://github.com/sigtool/waterlooFX/issues"> [Contact]</a>
+ *
+ * Project Waterloo is free software:  you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Project Waterloo is distributed in the hope that it will  be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package waterloo.fx.plot;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.DoubleBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import javafx.collections.ObservableList;
+import javafx.geometry.Insets;
+import javafx.geometry.VPos;
+import javafx.scene.Node;
+import javafx.scene.paint.Color;
+import javafx.scene.paint.Paint;
+import javafx.scene.shape.Circle;
+import javafx.scene.shape.ClosePath;
+import javafx.scene.shape.LineTo;
+import javafx.scene.shape.MoveTo;
+import javafx.scene.shape.Path;
+import javafx.scene.shape.PathElement;
+import javafx.scene.shape.Polygon;
+import javafx.scene.text.Font;
+import javafx.scene.text.TextAlignment;
+import waterloo.fx.markers.ArrowHead;
+import waterloo.fx.plot.axis.AbstractAxisRegion;
+import waterloo.fx.transforms.AbstractTransform;
+import waterloo.fx.util.PngEncoder;
+
+/**
+ * Renders a {@code Chart} without JavaFX rendering, so that charts can be drawn
+ * on any thread and many at once.
+ *
+ * A renderer is created by {@link #capture(Chart)}, which records the axis
+ * limits, ticks and tick labels, the styles of the chart and its plots and
+ * references to read-only views of the data in the plots' data models, which
+ * read data mapped from a session file in place. That is quick and does not
+ * depend on the number of data points, apart from the extra data of error
+ * bar, box and quiver plots and the colors of bars and boxes, which are
+ * copied. The renderer is immutable and may then be drawn any number of
+ * times, from any number of threads at once, to a {@link Surface} such as a {@link Rasterizer}: the
+ * projection of the data and all of the drawing is done by the calling
+ * thread. Large line plots are decimated to the resolution of the output as
+ * on screen.
+ *
+ * The grid, inner axes, the four axes with their tick labels and titles, and
+ * the plots of each type in the {@code waterloo.fx.plot} package are drawn,
+ * including plots parented by other plots and in plot collections. Data
+ * labels and annotations are not drawn, and {@code capture} throws an
+ * {@code IllegalArgumentException} for a chart holding a plot of any other
+ * type, such as a custom subclass of {@code AbstractPlot}, rather than leave
+ * it out. Markers are drawn using the marker template of each plot. Text is
+ * drawn using the AWT font of the same family and size as the axis font, so
+ * the layout of the axes can differ slightly from that on screen.
+ *
+ * <pre>
+ * SoftwareRenderer renderer = SoftwareRenderer.capture(chart);
+ * // on any thread:
+ * int[] argb = renderer.render(800, 600, 2d);
+ * </pre>
+ *
+ * Images too large to hold in memory, e.g. for posters, can be written with
+ * {@link #writePng}, which draws the chart in horizontal tiles in parallel.
+ * Vector graphics are written by {@link #writeSvg} and {@link #writePdf},
+ * which stream the drawing to the output as it is done, so the memory used
+ * does not depend on the size of the data.
+ *
+ * @author Malcolm Lidierth
+ */
+public final class SoftwareRenderer {
+
+    private static final Color BACKGROUND = Color.WHITE;
+    /**
+     * Space in pixels between a tick mark and its label, and between labels
+     * and titles.
+     */
+    private static final double GAP = 2d;
+    /**
+     * Maximum number of markers or bars added to a path before it is drawn.
+     */
+    private static final int CHUNK = 65536;
+    private static final int RAY_COUNT = 12;
+    /**
+     * Number of lines used for each quadratic curve in a quiver plot.
+     */
+    private static final int CURVE_SEGMENTS = 16;
+    /**
+     * Space in pixels left outside the view where an axis is not painted.
+     */
+    private static final double UNPAINTED_INSET = 7d;
+    /**
+     * Target number of pixels in a tile drawn by {@code writePng}.
+     */
+    private static final int TILE_PIXELS = 1 << 21;
+    private static final PngEncoder ENCODER = new PngEncoder();
+
+    private final double xLeft, xRight, yBottom, yTop;
+    private final double xOrigin, yOrigin;
+    private final double majorXInterval, majorYInterval;
+    private final AbstractTransform xTransform, yTransform;
+    private final boolean polar;
+    private final double[] xMajor, xMinor, yMajor, yMinor;
+    /**
+     * Labels for the major ticks: null where a tick is not labelled.
+     */
+    private final String[] xLabels, yLabels;
+    private final String[] xInnerLabels, yInnerLabels;
+
+    private final boolean majorGridPainted, minorGridPainted;
+    private final Paint majorGridColor, minorGridColor;
+    private final double majorGridWidth, minorGridWidth;
+    private final boolean innerAxisPainted, innerAxisLabelled;
+    private final Paint innerAxisColor;
+    private final double innerAxisWidth;
+    private final Paint altFillVertical, altFillHorizontal;
+    private final boolean leftPainted, rightPainted, topPainted, bottomPainted;
+    private final boolean leftLabelled, rightLabelled, topLabelled, bottomLabelled;
+    private final String leftTitle, rightTitle, topTitle, bottomTitle;
+    private final double leftTick, rightTick, topTick, bottomTick;
+    private final Paint axisColor;
+    private final double axisWidth;
+    private final String fontFamily;
+    private final double fontSize;
+    private final Insets defaultInsets;
+
+    private final List<PlotImage> plots;
+
+    private SoftwareRenderer(Chart chart) {
+        xLeft = chart.getXLeft();
+        xRight = chart.getXRight();
+        yBottom = chart.getYBottom();
+        yTop = chart.getYTop();
+        xOrigin = chart.getXOrigin();
+        yOrigin = chart.getYOrigin();
+        majorXInterval = chart.getMajorXInterval();
+        majorYInterval = chart.getMajorYInterval();
+        xTransform = chart.getAxisSet().getXTransform();
+        yTransform = chart.getAxisSet().getYTransform();
+        polar = chart.isPolar();
+        xMajor = xTransform.getMajorTickArray().clone();
+        xMinor = xTransform.getMinorTickArray().clone();
+        yMajor = yTransform.getMajorTickArray().clone();
+        yMinor = yTransform.getMinorTickArray().clone();
+        xLabels = tickLabels(chart.getAxisSet().getBottomAxis(), xTransform, xMajor,
+                chart.getXMin(), chart.getXMax());
+        yLabels = tickLabels(chart.getAxisSet().getLeftAxis(), yTransform, yMajor,
+                chart.getYMin(), chart.getYMax());
+        xInnerLabels = new String[xMajor.length];
+        for (int k = 0; k < xMajor.length; k++) {
+            xInnerLabels[k] = xTransform.getTickLabel(xMajor[k]);
+        }
+        yInnerLabels = new String[yMajor.length];
+        for (int k = 0; k < yMajor.length; k++) {
+            yInnerLabels[k] = yTransform.getTickLabel(yMajor[k]);
+        }
+
+        majorGridPainted = chart.isMajorGridPainted();
+        minorGridPainted = chart.isMinorGridPainted();
+        majorGridColor = chart.getMajorGridColor();
+        minorGridColor = chart.getMinorGridColor();
+        majorGridWidth = chart.getMajorGridStrokeWidth();
+        minorGridWidth = chart.getMinorGridStrokeWidth();
+        innerAxisPainted = chart.isInnerAxisPainted();
+        innerAxisLabelled = chart.isInnerAxisLabelled();
+        innerAxisColor = chart.getInnerAxisColor();
+        innerAxisWidth = chart.getInnerAxisStrokeWidth();
+        altFillVertical = chart.isAltFillVerticalPainted() ? chart.getAltFillVertical() : null;
+        altFillHorizontal = chart.isAltFillHorizontalPainted() ? chart.getAltFillHorizontal() : null;
+        leftPainted = chart.isLeftAxisPainted();
+        rightPainted = chart.isRightAxisPainted();
+        topPainted = chart.isTopAxisPainted();
+        bottomPainted = chart.isBottomAxisPainted();
+        leftLabelled = chart.isLeftAxisLabelled();
+        rightLabelled = chart.isRightAxisLabelled();
+        topLabelled = chart.isTopAxisLabelled();
+        bottomLabelled = chart.isBottomAxisLabelled();
+        leftTitle = chart.getLeftAxisTitle();
+        rightTitle = chart.getRightAxisTitle();
+        topTitle = chart.getTopAxisTitle();
+        bottomTitle = chart.getBottomAxisTitle();
+        leftTick = chart.xLeftTickLength;
+        rightTick = chart.xRightTickLength;
+        topTick = chart.yTopTickLength;
+        bottomTick = chart.yBottomTickLength;
+        axisColor = chart.getAxisColor();
+        axisWidth = chart.getAxisStrokeWidth();
+        Font font = chart.getAxisSet().getBottomAxis().getAxisLabel().getFont();
+        fontFamily = font.getFamily();
+        fontSize = font.getSize();
+        defaultInsets = Chart.getDefaultInsets();
+
+        List<PlotImage> list = new ArrayList<>();
+        chart.forEachPlot(plot -> list.add(PlotImage.of(plot)));
+        plots = Collections.unmodifiableList(list);
+    }
+
+    /**
+     * Records the state of a chart for rendering. Call on the FX Application
+     * Thread, or on the thread that owns the chart if it is not in a showing
+     * window. The chart may be changed after this returns without affecting
+     * the renderer.
+     *
+     * @param chart the chart
+     * @return the renderer
+     * @throws IllegalArgumentException if the chart contains a plot of a type
+     * that cannot be drawn
+     */
+    public static SoftwareRenderer capture(Chart chart) {
+        return new SoftwareRenderer(chart);
+    }
+
+    /**
+     * Renders the chart to an array of non-premultiplied ARGB pixels. May be
+     * called on any thread.
+     *
+     * @param width the width of the chart
+     * @param height the height of the chart
+     * @param scale the number of image pixels per chart pixel
+     * @return the pixels, row by row, for an image ceil(width * scale) by
+     * ceil(height * scale) pixels
+     */
+    public int[] render(double width, double height, double scale) {
+        if (!(width > 0d && height > 0d && scale > 0d)) {
+            throw new IllegalArgumentException("The size and scale must be positive");
+        }
+        Rasterizer r = new Rasterizer((int) Math.ceil(width * scale), (int) Math.ceil(height * scale));
+        r.setTransform(scale, 0d, 0d);
+        draw(r, width, height, scale);
+        return r.getPixels();
+    }
+
+    /**
+     * Renders the chart as a PNG image without holding the whole image in
+     * memory. The chart is drawn in tiles spanning the width of the image,
+     * on the threads of the common {@code ForkJoinPool}, and each tile is
+     * compressed and written as it is completed, so images far larger than
+     * the heap can be written, e.g. at 600 dpi for a poster. May be called on
+     * any thread.
+     *
+     * @param width the width of the chart
+     * @param height the height of the chart
+     * @param scale the number of image pixels per chart pixel
+     * @param out the stream to write to. This is not closed.
+     * @throws IOException if the stream cannot be written
+     */
+    public void writePng(double width, double height, double scale, OutputStream out) throws IOException {
+        if (!(width > 0d && height > 0d && scale > 0d)) {
+            throw new IllegalArgumentException("The size and scale must be positive");
+        }
+        int w = (int) Math.ceil(width * scale);
+        int h = (int) Math.ceil(height * scale);
+        int rows = Math.max(1, Math.min(h, TILE_PIXELS / w));
+        // One rasterizer per thread drawing a tile, reused for later tiles
+        ConcurrentLinkedQueue<Rasterizer> idle = new ConcurrentLinkedQueue<>();
+        ENCODER.encode(w, h, false, rows, (y, n, argb) -> {
+            Rasterizer r = idle.poll();
+            if (r == null) {
+                // The encoder also asks for the row above each tile
+                r = new Rasterizer(w, rows + 1);
+            }
+            r.clear(Color.TRANSPARENT);
+            r.setTransform(scale, 0d, -y);
+            draw(r, width, height, scale);
+            System.arraycopy(r.getPixels(), 0, argb, 0, n * w);
+            idle.add(r);
+        }, out);
+    }
+
+    /**
+     * Writes the chart as an SVG document, one pixel per SVG user unit. Large
+     * line plots are decimated as on screen at this size. May be called on
+     * any thread.
+     *
+     * @param width the width of the chart
+     * @param height the height of the chart
+     * @param out the stream to write to. This is not closed.
+     * @throws IOException if the stream cannot be written
+     */
+    public void writeSvg(double width, double height, OutputStream out) throws IOException {
+        writeVector(new SvgSurface(out, width, height), width, height);
+    }
+
+    /**
+     * Writes the chart as a single page PDF document, one pixel per point.
+     * Large line plots are decimated as on screen at this size. May be called
+     * on any thread.
+     *
+     * @param width the width of the chart
+     * @param height the height of the chart
+     * @param out the stream to write to. This is not closed.
+     * @throws IOException if the stream cannot be written
+     */
+    public void writePdf(double width, double height, OutputStream out) throws IOException {
+        writeVector(new PdfSurface(out, width, height), width, height);
+    }
+
+    private void writeVector(VectorSurface surface, double width, double height) throws IOException {
+        if (!(width > 0d && height > 0d)) {
+            throw new IllegalArgumentException("The size must be positive");
+        }
+        try {
+            draw(surface, width, height, 1d);
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+        surface.finish();
+    }
+
+    /**
+     * Draws the chart onto a surface. May be called on any thread.
+     *
+     * @param surface the surface
+     * @param width the width of the chart
+     * @param height the height of the chart
+     * @param scale the number of output pixels per chart pixel, which sets
+     * the resolution to which large line plots are decimated
+     */
+    public void draw(Surface surface, double width, double height, double scale) {
+        surface.resetClip();
+        surface.setFill(BACKGROUND);
+        surface.fillRect(0d, 0d, width, height);
+
+        double fh = GlyphOutlines.getHeight(fontFamily, fontSize);
+        double left = inset(leftPainted, leftLabelled, leftTick, maxWidth(yLabels) + GAP, leftTitle, fh,
+                defaultInsets.getLeft());
+        double right = inset(rightPainted, rightLabelled, rightTick, maxWidth(yLabels) + GAP, rightTitle, fh,
+                defaultInsets.getRight());
+        double top = inset(topPainted, topLabelled, topTick, fh + GAP, topTitle, fh, defaultInsets.getTop());
+        double bottom = inset(bottomPainted, bottomLabelled, bottomTick, fh + GAP, bottomTitle, fh,
+                defaultInsets.getBottom());
+        View v = new View(left, top, width - left - right, height - top - bottom, scale);
+        if (!(v.w > 0d && v.h > 0d)) {
+            return;
+        }
+
+        surface.clipRect(v.x, v.y, v.w, v.h);
+        if (polar) {
+            drawPolarGrid(surface, v);
+        } else {
+            drawGrid(surface, v);
+        }
+        for (PlotImage plot : plots) {
+            plot.draw(surface, v);
+        }
+        surface.resetClip();
+        drawAxes(surface, v, fh);
+    }
+
+    /**
+     * Returns the space needed outside the view for an axis, as
+     * {@code Chart} allows.
+     */
+    private double inset(boolean painted, boolean labelled, double tick, double labels, String title,
+            double fh, double defaultInset) {
+        if (!painted) {
+            return UNPAINTED_INSET;
+        }
+        double w = tick + GAP;
+        if (labelled) {
+            w += labels;
+            if (title != null && !title.isEmpty()) {
+                w += fh + GAP;
+            }
+        }
+        return Math.max(w, defaultInset);
+    }
+
+    private double maxWidth(String[] labels) {
+        double w = 0d;
+        for (String s : labels) {
+            if (s != null) {
+                w = Math.max(w, GlyphOutlines.getWidth(s, fontFamily, fontSize));
+            }
+        }
+        return w;
+    }
+
+    private void drawGrid(Surface s, View v) {
+        double yt = v.py(yTop), yb = v.py(yBottom);
+        double xl = v.px(xLeft), xr = v.px(xRight);
+        if (altFillVertical != null && altFillVertical != Color.TRANSPARENT) {
+            s.setFill(altFillVertical);
+            for (int k = 1; k < xMajor.length - 1; k += 2) {
+                double x0 = v.px(xMajor[k]);
+                double x1 = v.px(xMajor[k + 1]);
+                s.fillRect(Math.min(x0, x1), v.y, Math.abs(x1 - x0), v.h);
+            }
+        }
+        if (altFillHorizontal != null && altFillHorizontal != Color.TRANSPARENT) {
+            s.setFill(altFillHorizontal);
+            for (int k = yMajor.length - 2; k > 1; k -= 2) {
+                double y0 = v.py(yMajor[k - 1]);
+                double y1 = v.py(yMajor[k]);
+                s.fillRect(v.x, Math.min(y0, y1), v.w, Math.abs(y1 - y0));
+            }
+        }
+        if (majorGridPainted) {
+            s.beginPath();
+            addVertical(s, v, xMajor, yb, yt);
+            addHorizontal(s, v, yMajor, xl, xr);
+            s.setStroke(majorGridColor);
+            s.setLineWidth(majorGridWidth);
+            s.stroke();
+        }
+        if (minorGridPainted) {
+            s.beginPath();
+            addVertical(s, v, xMinor, yb, yt);
+            addHorizontal(s, v, yMinor, xl, xr);
+            s.setStroke(minorGridColor);
+            s.setLineWidth(minorGridWidth);
+            s.stroke();
+        }
+        double x0 = v.px(xOrigin);
+        double y0 = v.py(yOrigin);
+        if (innerAxisPainted) {
+            s.beginPath();
+            s.moveTo(xl, y0);
+            s.lineTo(xr, y0);
+            s.moveTo(x0, yt);
+            s.lineTo(x0, yb);
+            addVertical(s, v, xMajor, y0 - 4d, y0 + 4d);
+            addHorizontal(s, v, yMajor, x0 - 4d, x0 + 4d);
+            s.setStroke(innerAxisColor);
+            s.setLineWidth(innerAxisWidth);
+            s.stroke();
+        }
+        if (innerAxisLabelled) {
+            s.setFill(innerAxisColor);
+            s.setFont(fontFamily, fontSize - 2d);
+            s.setTextAlign(TextAlignment.CENTER);
+            s.setTextBaseline(VPos.TOP);
+            for (int k = 0; k < xMajor.length; k++) {
+                if (Math.abs(xMajor[k] - xOrigin) > majorXInterval / 4d) {
+                    s.fillText(xInnerLabels[k], v.px(xMajor[k]), y0 + 5d, 0d);
+                }
+            }
+            s.setTextAlign(TextAlignment.RIGHT);
+            s.setTextBaseline(VPos.CENTER);
+            for (int k = 0; k < yMajor.length; k++) {
+                if (Math.abs(yMajor[k] - yOrigin) > majorYInterval / 4d) {
+                    s.fillText(yInnerLabels[k], x0 - 7d, v.py(yMajor[k]), 0d);
+                }
+            }
+        }
+    }
+
+    private void drawPolarGrid(Surface s, View v) {
+        if (!majorGridPainted && !innerAxisLabelled) {
+            return;
+        }
+        double cx = v.px(0d), cy = v.py(0d);
+        double rx = v.w / 2d, ry = v.h / 2d;
+        if (majorGridPainted) {
+            s.beginPath();
+            s.ellipse(v.x + rx, v.y + ry, rx, ry);
+            for (int k = 0; k < RAY_COUNT; k++) {
+                double theta = 2d * Math.PI * k / RAY_COUNT;
+                s.moveTo(cx, cy);
+                s.lineTo(cx + Math.cos(theta) * rx, cy - Math.sin(theta) * ry);
+            }
+            double sx = v.w / Math.abs(xRight - xLeft);
+            double sy = v.h / Math.abs(yTop - yBottom);
+            for (double x : xMajor) {
+                s.ellipse(cx, cy, Math.abs(x) * sx, Math.abs(x) * sy);
+            }
+            for (double y : yMajor) {
+                s.ellipse(cx, cy, Math.abs(y) * sx, Math.abs(y) * sy);
+            }
+            s.setStroke(majorGridColor);
+            s.setLineWidth(majorGridWidth);
+            s.stroke();
+        }
+        if (innerAxisLabelled) {
+            s.setFill(innerAxisColor);
+            s.setFont(fontFamily, fontSize - 2d);
+            s.setTextAlign(TextAlignment.CENTER);
+            s.setTextBaseline(VPos.CENTER);
+            double lx = rx - fontSize, ly = ry - fontSize;
+            for (int k = 0; k < RAY_COUNT; k++) {
+                double theta = 2d * Math.PI * k / RAY_COUNT;
+                s.fillText(String.format("%3.0f°", theta * 180d / Math.PI),
+                        cx + Math.cos(theta) * lx, cy - Math.sin(theta) * ly, 0d);
+            }
+        }
+    }
+
+    private void drawAxes(Surface s, View v, double fh) {
+        double xMin = Math.min(xLeft, xRight), xMax = Math.max(xLeft, xRight);
+        double yMin = Math.min(yBottom, yTop), yMax = Math.max(yBottom, yTop);
+        double l = v.x, r = v.x + v.w, t = v.y, b = v.y + v.h;
+        s.beginPath();
+        if (bottomPainted) {
+            s.moveTo(l, b);
+            s.lineTo(r, b);
+            addXTicks(s, v, xMajor, b, bottomTick, xMin, xMax);
+            addXTicks(s, v, xMinor, b, bottomTick * 0.7, xMin, xMax);
+        }
+        if (topPainted) {
+            s.moveTo(l, t);
+            s.lineTo(r, t);
+            addXTicks(s, v, xMajor, t, -topTick, xMin, xMax);
+            addXTicks(s, v, xMinor, t, -topTick * 0.7, xMin, xMax);
+        }
+        if (leftPainted) {
+            s.moveTo(l, b);
+            s.lineTo(l, t);
+            addYTicks(s, v, yMajor, l, -leftTick, yMin, yMax);
+            addYTicks(s, v, yMinor, l, -leftTick * 0.7, yMin, yMax);
+        }
+        if (rightPainted) {
+            s.moveTo(r, b);
+            s.lineTo(r, t);
+            addYTicks(s, v, yMajor, r, rightTick, yMin, yMax);
+            addYTicks(s, v, yMinor, r, rightTick * 0.7, yMin, yMax);
+        }
+        s.setStroke(axisColor);
+        s.setLineWidth(axisWidth);
+        s.stroke();
+
+        s.setFill(axisColor);
+        s.setFont(fontFamily, fontSize);
+        double yLabelWidth = maxWidth(yLabels);
+        if (bottomLabelled) {
+            s.setTextAlign(TextAlignment.CENTER);
+            s.setTextBaseline(VPos.TOP);
+            double y = b + bottomTick + GAP;
+            for (int k = 0; k < xMajor.length; k++) {
+                if (xLabels[k] != null) {
+                    s.fillText(xLabels[k], v.px(xMajor[k]), y, 0d);
+                }
+            }
+            s.fillText(bottomTitle, l + v.w / 2d, y + fh + GAP, 0d);
+        }
+        if (topLabelled) {
+            s.setTextAlign(TextAlignment.CENTER);
+            s.setTextBaseline(VPos.BOTTOM);
+            double y = t - topTick - GAP;
+            for (int k = 0; k < xMajor.length; k++) {
+                if (xLabels[k] != null) {
+                    s.fillText(xLabels[k], v.px(xMajor[k]), y, 0d);
+                }
+            }
+            s.fillText(topTitle, l + v.w / 2d, y - fh - GAP, 0d);
+        }
+        if (leftLabelled) {
+            s.setTextAlign(TextAlignment.RIGHT);
+            s.setTextBaseline(VPos.CENTER);
+            double x = l - leftTick - GAP;
+            for (int k = 0; k < yMajor.length; k++) {
+                if (yLabels[k] != null) {
+                    s.fillText(yLabels[k], x, v.py(yMajor[k]), 0d);
+                }
+            }
+            s.setTextAlign(TextAlignment.CENTER);
+            s.fillText(leftTitle, x - yLabelWidth - GAP - fh / 2d, t + v.h / 2d, -90d);
+        }
+        if (rightLabelled) {
+            s.setTextAlign(TextAlignment.LEFT);
+            s.setTextBaseline(VPos.CENTER);
+            double x = r + rightTick + GAP;
+            for (int k = 0; k < yMajor.length; k++) {
+                if (yLabels[k] != null) {
+                    s.fillText(yLabels[k], x, v.py(yMajor[k]), 0d);
+                }
+            }
+            s.setTextAlign(TextAlignment.CENTER);
+            s.fillText(rightTitle, x + yLabelWidth + GAP + fh / 2d, t + v.h / 2d, 90d);
+        }
+    }
+
+    private static void addVertical(Surface s, View v, double[] values, double y0, double y1) {
+        for (double value : values) {
+            double x = v.px(value);
+            s.moveTo(x, y0);
+            s.lineTo(x, y1);
+        }
+    }
+
+    private static void addHorizontal(Surface s, View v, double[] values, double x0, double x1) {
+        for (double value : values) {
+            double y = v.py(value);
+            s.moveTo(x0, y);
+            s.lineTo(x1, y);
+        }
+    }
+
+    private static void addXTicks(Surface s, View v, double[] ticks, double base, double length,
+            double min, double max) {
+        for (double x : ticks) {
+            if (x >= min && x <= max) {
+                double px = v.px(x);
+                s.moveTo(px, base);
+                s.lineTo(px, base + length);
+            }
+        }
+    }
+
+    private static void addYTicks(Surface s, View v, double[] ticks, double base, double length,
+            double min, double max) {
+        for (double y : ticks) {
+            if (y >= min && y <= max) {
+                double py = v.py(y);
+                s.moveTo(base, py);
+                s.lineTo(base + length, py);
+            }
+        }
+    }
+
+    /**
+     * Returns the labels for the major ticks within the axis limits, as shown
+     * by an axis.
+     */
+    private static String[] tickLabels(AbstractAxisRegion axis, AbstractTransform transform, double[] ticks,
+            double min, double max) {
+        String[] labels = new String[ticks.length];
+        for (int k = 0; k < ticks.length; k++) {
+            double value = ticks[k];
+            if (value >= min && value <= max) {
+                if (axis.isCategorical()) {
+                    labels[k] = axis.getCategories().get((int) value);
+                } else {
+                    labels[k] = transform.getTickLabel(value);
+                }
+            }
+        }
+        return labels;
+    }
+
+    /**
+     * The position of the view within the chart and the mapping of axis
+     * values to chart pixels, for one call to {@code draw}.
+     */
+    private final class View {
+
+        private final double x, y, w, h, scale;
+        /**
+         * Running totals for stacked bars in each plot collection.
+         */
+        private final Map<Object, double[][]> stacks = new IdentityHashMap<>();
+
+        private View(double x, double y, double w, double h, double scale) {
+            this.x = x;
+            this.y = y;
+            this.w = w;
+            this.h = h;
+            this.scale = scale;
+        }
+
+        double px(double axisValue) {
+            return x + (axisValue - xLeft) * w / (xRight - xLeft);
+        }
+
+        double py(double axisValue) {
+            return y + h - ((axisValue - yBottom) * h / (yTop - yBottom));
+        }
+
+        /**
+         * Projects a data point, writing the pixel position to out.
+         */
+        void project(double dx, double dy, boolean polarData, double[] out) {
+            if (polarData) {
+                double r = dy;
+                dy = Math.sin(dx) * r;
+                dx = Math.cos(dx) * r;
+            }
+            out[0] = px(xTransform.transform(dx));
+            out[1] = py(yTransform.transform(dy));
+        }
+
+        ProjectionTask.Frame frame(boolean polarData) {
+            // Decimate to columns one output pixel wide
+            return ProjectionTask.Frame.of(xLeft, xRight, yBottom, yTop, w, h, xTransform, yTransform,
+                    polarData, 1d / scale);
+        }
+    }
+
+    /**
+     * The recorded state of a plot.
+     */
+    private abstract static class PlotImage {
+
+        final DoubleBuffer x;
+        final DoubleBuffer y;
+        final boolean polarData;
+
+        PlotImage(AbstractPlot<?> plot) {
+            x = plot.getDataModel().getXBuffer();
+            y = plot.getDataModel().getYBuffer();
+            polarData = plot.getDataModel().isDataPolar();
+        }
+
+        int size() {
+            return Math.min(x.limit(), y.limit());
+        }
+
+        abstract void draw(Surface s, View v);
+
+        static PlotImage of(AbstractPlot<?> plot) {
+            if (plot instanceof LinePlot) {
+                return new LineImage(plot);
+            } else if (plot instanceof ScatterPlot) {
+                return new ScatterImage(plot);
+            } else if (plot instanceof BarPlot) {
+                return new BarImage((BarPlot) plot);
+            } else if (plot instanceof ErrorBarPlot) {
+                return new ErrorBarImage((ErrorBarPlot) plot);
+            } else if (plot instanceof StemPlot) {
+                return new StemImage(plot);
+            } else if (plot instanceof FeatherPlot) {
+                return new FeatherImage(plot);
+            } else if (plot instanceof QuiverPlot) {
+                return new QuiverImage((QuiverPlot) plot);
+            } else if (plot instanceof BoxPlot) {
+                return new BoxImage((BoxPlot) plot);
+            } else if (plot instanceof StairPlot) {
+                return new StairImage(plot);
+            } else if (plot instanceof CloudPlot) {
+                return new CloudImage(plot);
+            } else if (plot instanceof NOPPlot) {
+                return new EmptyImage(plot);
+            }
+            throw new IllegalArgumentException("Plots of type " + plot.getClass().getName()
+                    + " cannot be drawn by the software renderer");
+        }
+    }
+
+    private static final class LineImage extends PlotImage {
+
+        private final double[] cos, sin;
+        private final Paint color;
+        private final double width;
+
+        LineImage(AbstractPlot<?> plot) {
+            super(plot);
+            cos = polarData ? plot.getDataModel().getCosArray() : null;
+            sin = polarData ? plot.getDataModel().getSinArray() : null;
+            color = plot.getVisualModel().getLineColor();
+            width = plot.getVisualModel().getLineWidth();
+        }
+
+        @Override
+        void draw(Surface s, View v) {
+            double[] p = new ProjectionTask(v.frame(polarData), x, y, cos, sin, size()).invoke();
+            if (p.length < 4) {
+                return;
+            }
+            s.beginPath();
+            s.moveTo(v.x + p[0], v.y + p[1]);
+            for (int k = 2; k < p.length; k += 2) {
+                s.lineTo(v.x + p[k], v.y + p[k + 1]);
+            }
+            s.setStroke(color);
+            s.setLineWidth(width);
+            s.stroke();
+        }
+    }
+
+    private static final class ScatterImage extends PlotImage {
+
+        private final MarkerShape marker;
+        private final Paint fill, edgeColor;
+        private final double edgeWidth;
+
+        ScatterImage(AbstractPlot<?> plot) {
+            super(plot);
+            marker = MarkerShape.of(plot.getVisualModel().getMarkerTemplate());
+            fill = plot.getVisualModel().getFill();
+            edgeColor = plot.getVisualModel().getEdgeColor();
+            edgeWidth = plot.getVisualModel().getEdgeWidth();
+        }
+
+        @Override
+        void draw(Surface s, View v) {
+            double margin = marker.extent + edgeWidth;
+            double[] p = new double[2];
+            int n = size();
+            int count = 0;
+            s.beginPath();
+            for (int k = 0; k < n; k++) {
+                v.project(x.get(k), y.get(k), polarData, p);
+                if (p[0] >= v.x - margin && p[0] <= v.x + v.w + margin
+                        && p[1] >= v.y - margin && p[1] <= v.y + v.h + margin) {
+                    marker.append(s, p[0], p[1]);
+                    if (++count == CHUNK) {
+                        paint(s);
+                        s.beginPath();
+                        count = 0;
+                    }
+                }
+            }
+            if (count > 0) {
+                paint(s);
+            }
+        }
+
+        private void paint(Surface s) {
+            s.setFill(fill);
+            s.fill();
+            s.setStroke(edgeColor);
+            s.setLineWidth(edgeWidth);
+            s.stroke();
+        }
+    }
+
+    private static final class BarImage extends PlotImage {
+
+        private final double baseValue;
+        private final double barWidth;
+        private final BarExtra.ORIENTATION orientation;
+        private final BarExtra.JUSTIFICATION justification;
+        private final BarExtra.MODE mode;
+        /**
+         * The plot collection holding the plot, or null.
+         */
+        private final Object collection;
+        private final int index, collectionSize, barCount;
+        private final Paint[] fills, edgeColors;
+        private final double edgeWidth;
+
+        BarImage(BarPlot plot) {
+            super(plot);
+            BarExtra extra = (BarExtra) plot.getDataModel().getExtraObject();
+            baseValue = plot.getDataModel().getBaseValue();
+            barWidth = extra.getBarWidth();
+            orientation = extra.getOrientation();
+            justification = extra.getJustification();
+            mode = extra.getMode();
+            if (plot.getParent() instanceof PlotCollection) {
+                ObservableList<Node> children = ((PlotCollection<?>) plot.getParent()).getChildren();
+                collection = plot.getParent();
+                index = children.indexOf(plot);
+                collectionSize = children.size();
+                barCount = (int) children.stream().filter(c -> c instanceof BarPlot).count();
+            } else {
+                collection = null;
+                index = 0;
+                collectionSize = 1;
+                barCount = 1;
+            }
+            int n = size();
+            fills = new Paint[n];
+            edgeColors = new Paint[n];
+            for (int k = 0; k < n; k++) {
+                fills[k] = plot.getElementFill(k);
+                edgeColors[k] = plot.getElementEdgeColor(k);
+            }
+            edgeWidth = plot.getVisualModel().getEdgeWidth();
+        }
+
+        /**
+         * Computes the bounds of each bar as {@code BarPlot.arrangePlot} does,
+         * and draws runs of bars with the same colors as one path.
+         */
+        @Override
+        void draw(Surface s, View v) {
+            int n = size();
+            if (n < 2) {
+                return;
+            }
+            boolean vertical = orientation == BarExtra.ORIENTATION.VERTICAL;
+            boolean stacked = collection != null && mode == BarExtra.MODE.STACKED;
+            boolean grouped = collection != null && mode == BarExtra.MODE.GROUPED;
+            double[][] stack = null;
+            if (stacked) {
+                stack = v.stacks.get(collection);
+                if (stack == null || index == 0) {
+                    stack = new double[2][n];
+                    v.stacks.put(collection, stack);
+                }
+            }
+            double[] p0 = new double[2];
+            double[] p1 = new double[2];
+            int count = 0;
+            Paint runFill = null, runEdge = null;
+            s.beginPath();
+            for (int k = 0; k < n; k++) {
+                double x0 = x.get(k);
+                double x1 = k < n - 1 ? x.get(k + 1) : x.get(k) + (x.get(k) - x.get(k - 1));
+                boolean up = baseValue <= y.get(k);
+                double bx, by, bw, bh;
+                if (vertical) {
+                    v.project(x0, up ? y.get(k) : baseValue, polarData, p0);
+                    v.project(x1, up ? baseValue : y.get(k), polarData, p1);
+                    double w = (p1[0] - p0[0]) * barWidth;
+                    double offset = 0d, stackOffset = 0d;
+                    if (grouped) {
+                        w /= collectionSize;
+                        offset = w * index - w * barCount / 2d;
+                        if (justification == BarExtra.JUSTIFICATION.CENTERED) {
+                            offset += w / 2d;
+                        }
+                    } else if (stacked && k < stack[0].length) {
+                        stackOffset = stack(stack, k, up, p0[1] - p1[1], p1[1] - p0[1]);
+                    }
+                    bx = offset + p0[0] - (justification == BarExtra.JUSTIFICATION.CENTERED ? w / 2d : 0d);
+                    by = p0[1] + stackOffset;
+                    bw = w;
+                    bh = p1[1] - p0[1];
+                } else {
+                    v.project(up ? baseValue : y.get(k), x0, polarData, p0);
+                    v.project(up ? y.get(k) : baseValue, x1, polarData, p1);
+                    double h = (p0[1] - p1[1]) * barWidth;
+                    double offset = 0d, stackOffset = 0d;
+                    if (grouped) {
+                        h /= collectionSize;
+                        offset = h * index - h * barCount / 2d;
+                        if (justification == BarExtra.JUSTIFICATION.CENTERED) {
+                            offset += h / 2d;
+                        }
+                    } else if (stacked && k < stack[0].length) {
+                        stackOffset = stack(stack, k, up, p1[0] - p0[0], p0[0] - p1[0]);
+                    }
+                    by = offset + p0[1] - (justification == BarExtra.JUSTIFICATION.CENTERED ? h / 2d : 0d);
+                    bx = p0[0] + stackOffset;
+                    bw = p1[0] - p0[0];
+                    bh = h;
+                }
+                if (!(Double.isFinite(bx) && Double.isFinite(by) && Double.isFinite(bw) && Double.isFinite(bh))) {
+                    continue;
+                }
+                if (count > 0 && (count == CHUNK || !Objects.equals(fills[k], runFill)
+                        || !Objects.equals(edgeColors[k], runEdge))) {
+                    paint(s, runFill, runEdge);
+                    s.beginPath();
+                    count = 0;
+                }
+                runFill = fills[k];
+                runEdge = edgeColors[k];
+                s.moveTo(bx, by);
+                s.lineTo(bx + bw, by);
+                s.lineTo(bx + bw, by + bh);
+                s.lineTo(bx, by + bh);
+                s.closePath();
+                count++;
+            }
+            if (count > 0) {
+                paint(s, runFill, runEdge);
+            }
+        }
+
+        /**
+         * Returns the offset of a stacked bar and adds its extent to the
+         * running total.
+         */
+        private double stack(double[][] stack, int k, boolean up, double neg, double pos) {
+            double offset;
+            if (up) {
+                offset = index == 0 ? 0d : stack[0][k];
+                stack[0][k] = offset + neg;
+            } else {
+                offset = index == 0 ? 0d : stack[1][k];
+                stack[1][k] = offset + pos;
+            }
+            return offset;
+        }
+
+        private void paint(Surface s, Paint fill, Paint edge) {
+            s.setFill(fill);
+            s.fill();
+            s.setStroke(edge);
+            s.setLineWidth(edgeWidth);
+            s.stroke();
+        }
+    }
+
+    private static final class ErrorBarImage extends PlotImage {
+
+        private final double[] right, up, left, down;
+        private final boolean autoDirect;
+        private final double baseValue;
+        private final Paint edgeColor;
+        private final double edgeWidth;
+
+        ErrorBarImage(ErrorBarPlot plot) {
+            super(plot);
+            right = plot.getDataModel().getExtraColumn0().toDoubleArray();
+            up = plot.getDataModel().getExtraColumn1().toDoubleArray();
+            left = plot.getDataModel().getExtraColumn2().toDoubleArray();
+            down = plot.getDataModel().getExtraColumn3().toDoubleArray();
+            autoDirect = plot.isAutoDirect();
+            baseValue = plot.getDataModel().getBaseValue();
+            edgeColor = plot.getVisualModel().getEdgeColor();
+            edgeWidth = plot.getVisualModel().getEdgeWidth();
+        }
+
+        /**
+         * Draws the bars as {@code ErrorBarPlot} does when batched.
+         */
+        @Override
+        void draw(Surface s, View v) {
+            double cap = edgeWidth * 5d / 2d;
+            double[] p0 = new double[2];
+            double[] p1 = new double[2];
+            int n = size();
+            int count = 0;
+            s.beginPath();
+            for (int k = 0; k < n; k++) {
+                v.project(x.get(k), y.get(k), polarData, p0);
+                double px = p0[0], py = p0[1];
+                if (!(Double.isFinite(px) && Double.isFinite(py))) {
+                    continue;
+                }
+                if (k < up.length) {
+                    v.project(x.get(k), y.get(k) - up[k], polarData, p1);
+                    double h = p1[1] - py;
+                    if (autoDirect && y.get(k) < baseValue) {
+                        h = -h;
+                    }
+                    addBar(s, px, py, px, py - h, cap, true);
+                }
+                if (k < down.length) {
+                    v.project(x.get(k), y.get(k) + down[k], polarData, p1);
+                    addBar(s, px, py, px, py + py - p1[1], cap, true);
+                }
+                if (k < right.length) {
+                    v.project(x.get(k) + right[k], y.get(k), polarData, p1);
+                    double w = p1[0] - px;
+                    if (autoDirect && x.get(k) < baseValue) {
+                        w = -w;
+                    }
+                    addBar(s, px, py, px + w, py, cap, false);
+                }
+                if (k < left.length) {
+                    v.project(x.get(k) - left[k], y.get(k), polarData, p1);
+                    addBar(s, px, py, px - (px - p1[0]), py, cap, false);
+                }
+                if (++count == CHUNK) {
+                    paint(s);
+                    s.beginPath();
+                    count = 0;
+                }
+            }
+            paint(s);
+        }
+
+        private static void addBar(Surface s, double x0, double y0, double x1, double y1, double cap,
+                boolean vertical) {
+            if (!Double.isFinite(x1) || !Double.isFinite(y1)) {
+                return;
+            }
+            s.moveTo(x0, y0);
+            s.lineTo(x1, y1);
+            if (vertical) {
+                s.moveTo(x1 - cap, y1);
+                s.lineTo(x1 + cap, y1);
+            } else {
+                s.moveTo(x1, y1 - cap);
+                s.lineTo(x1, y1 + cap);
+            }
+        }
+
+        private void paint(Surface s) {
+            s.setStroke(edgeColor);
+            s.setLineWidth(edgeWidth);
+            s.stroke();
+        }
+    }
+
+    /**
+     * Base class for plots drawing a line from a base to a tip for each datum,
+     * with a marker at the tip.
+     */
+    private abstract static class TipImage extends PlotImage {
+
+        private final MarkerShape marker;
+        private final Paint lineColor, fill, edgeColor;
+        private final double lineWidth, edgeWidth;
+
+        TipImage(AbstractPlot<?> plot) {
+            super(plot);
+            marker = MarkerShape.of(plot.getVisualModel().getMarkerTemplate());
+            lineColor = plot.getVisualModel().getLineColor();
+            lineWidth = plot.getVisualModel().getLineWidth();
+            fill = plot.getVisualModel().getFill();
+            edgeColor = plot.getVisualModel().getEdgeColor();
+            edgeWidth = plot.getVisualModel().getEdgeWidth();
+        }
+
+        /**
+         * Projects the base and tip of an element to p0 and p1.
+         *
+         * @return false if the element is not drawn
+         */
+        abstract boolean project(View v, int k, double[] p0, double[] p1);
+
+        /**
+         * Returns the rotation of the marker at the tip in degrees.
+         */
+        abstract double angle(double[] p0, double[] p1);
+
+        void addLine(Surface s, double[] p0, double[] p1) {
+            s.moveTo(p0[0], p0[1]);
+            s.lineTo(p1[0], p1[1]);
+        }
+
+        /**
+         * Draws all lines, then all markers, as the plots do when batched.
+         */
+        @Override
+        void draw(Surface s, View v) {
+            double[] p0 = new double[2];
+            double[] p1 = new double[2];
+            int n = size();
+            int count = 0;
+            s.beginPath();
+            for (int k = 0; k < n; k++) {
+                if (project(v, k, p0, p1)) {
+                    addLine(s, p0, p1);
+                    if (++count == CHUNK) {
+                        strokeLines(s);
+                        s.beginPath();
+                        count = 0;
+                    }
+                }
+            }
+            if (count > 0) {
+                strokeLines(s);
+            }
+            count = 0;
+            s.beginPath();
+            for (int k = 0; k < n; k++) {
+                if (project(v, k, p0, p1)) {
+                    marker.append(s, p1[0], p1[1], angle(p0, p1));
+                    if (++count == CHUNK) {
+                        paintMarkers(s);
+                        s.beginPath();
+                        count = 0;
+                    }
+                }
+            }
+            if (count > 0) {
+                paintMarkers(s);
+            }
+        }
+
+        static boolean isFinite(double[] p0, double[] p1) {
+            return Double.isFinite(p0[0]) && Double.isFinite(p0[1])
+                    && Double.isFinite(p1[0]) && Double.isFinite(p1[1]);
+        }
+
+        private void strokeLines(Surface s) {
+            s.setStroke(lineColor);
+            s.setLineWidth(lineWidth);
+            s.stroke();
+        }
+
+        private void paintMarkers(Surface s) {
+            s.setFill(fill);
+            s.fill();
+            s.setStroke(edgeColor);
+            s.setLineWidth(edgeWidth);
+            s.stroke();
+        }
+    }
+
+    private static final class StemImage extends TipImage {
+
+        private final double baseValue;
+
+        StemImage(AbstractPlot<?> plot) {
+            super(plot);
+            baseValue = plot.getDataModel().getBaseValue();
+        }
+
+        @Override
+        boolean project(View v, int k, double[] p0, double[] p1) {
+            v.project(x.get(k), baseValue, polarData, p0);
+            v.project(x.get(k), y.get(k), polarData, p1);
+            return isFinite(p0, p1);
+        }
+
+        @Override
+        double angle(double[] p0, double[] p1) {
+            return 0d;
+        }
+    }
+
+    private static final class FeatherImage extends TipImage {
+
+        private final double baseValue;
+
+        FeatherImage(AbstractPlot<?> plot) {
+            super(plot);
+            baseValue = plot.getDataModel().getBaseValue();
+        }
+
+        /**
+         * Feathers start from the index of each datum on the base line.
+         */
+        @Override
+        boolean project(View v, int k, double[] p0, double[] p1) {
+            v.project(k, baseValue, polarData, p0);
+            v.project(k + x.get(k), y.get(k), polarData, p1);
+            return isFinite(p0, p1);
+        }
+
+        @Override
+        double angle(double[] p0, double[] p1) {
+            // ArrowHeads point along the x-axis when rotated by a further 90 degrees
+            return Math.toDegrees(Math.atan2(p1[1] - p0[1], p1[0] - p0[0])) + 90d;
+        }
+    }
+
+    private static final class QuiverImage extends TipImage {
+
+        private final double[] u, v;
+        private final double scaleFactor;
+        private final boolean useQuad, arrowHead;
+
+        QuiverImage(QuiverPlot plot) {
+            super(plot);
+            u = plot.getDataModel().getExtraColumn0().toDoubleArray();
+            v = plot.getDataModel().getExtraColumn1().toDoubleArray();
+            scaleFactor = u.length > 0 && v.length > 0 ? plot.getFinalScaleFactor() : 1d;
+            useQuad = plot.isUseQuad();
+            arrowHead = plot.getVisualModel().getMarkerTemplate() instanceof ArrowHead;
+        }
+
+        @Override
+        boolean project(View view, int k, double[] p0, double[] p1) {
+            if (k >= u.length || k >= v.length) {
+                return false;
+            }
+            view.project(x.get(k), y.get(k), polarData, p0);
+            view.project(x.get(k) + u[k] * scaleFactor, y.get(k) + v[k] * scaleFactor, polarData, p1);
+            return isFinite(p0, p1);
+        }
+
+        /**
+         * Adds a straight vector or, flattened, the quadratic curve drawn by
+         * {@code QuiverPlot}.
+         */
+        @Override
+        void addLine(Surface s, double[] p0, double[] p1) {
+            s.moveTo(p0[0], p0[1]);
+            if (useQuad) {
+                double ax = anchorX(p0, p1), ay = anchorY(p0, p1);
+                for (int j = 1; j <= CURVE_SEGMENTS; j++) {
+                    double t = (double) j / CURVE_SEGMENTS;
+                    double a = (1d - t) * (1d - t), b = 2d * t * (1d - t), c = t * t;
+                    s.lineTo(a * p0[0] + b * ax + c * p1[0], a * p0[1] + b * ay + c * p1[1]);
+                }
+            } else {
+                s.lineTo(p1[0], p1[1]);
+            }
+        }
+
+        @Override
+        double angle(double[] p0, double[] p1) {
+            if (!arrowHead) {
+                // Only ArrowHeads are rotated to follow the vector
+                return 0d;
+            }
+            double rot = useQuad
+                    ? Math.atan2(p1[1] - anchorY(p0, p1), p1[0] - anchorX(p0, p1))
+                    : Math.atan2(p1[1] - p0[1], p1[0] - p0[0]);
+            return Math.toDegrees(rot) + 90d;
+        }
+
+        private static double anchorX(double[] p0, double[] p1) {
+            return p0[0] + (p1[0] - p0[0]) / 2d;
+        }
+
+        private static double anchorY(double[] p0, double[] p1) {
+            return p0[1] + (p1[1] - p0[1]) * 0.667d;
+        }
+    }
+
+    private static final class BoxImage extends PlotImage {
+
+        private final double[] right, up, left, down;
+        private final Paint[] fills, edgeColors;
+        private final double edgeWidth;
+        /**
+         * True for a {@code BubblePlot}, which inscribes an ellipse-like
+         * rounded rectangle in each box.
+         */
+        private final boolean rounded;
+
+        BoxImage(BoxPlot plot) {
+            super(plot);
+            right = plot.getDataModel().getExtraColumn0().toDoubleArray();
+            up = plot.getDataModel().getExtraColumn1().toDoubleArray();
+            left = plot.getDataModel().getExtraColumn2().toDoubleArray();
+            down = plot.getDataModel().getExtraColumn3().toDoubleArray();
+            int n = size();
+            fills = new Paint[n];
+            edgeColors = new Paint[n];
+            for (int k = 0; k < n; k++) {
+                fills[k] = plot.getElementFill(k);
+                edgeColors[k] = plot.getElementEdgeColor(k);
+            }
+            edgeWidth = plot.getVisualModel().getEdgeWidth();
+            rounded = plot instanceof BubblePlot;
+        }
+
+        /**
+         * Computes the bounds of each box as {@code BoxPlot.arrangePlot} does,
+         * and draws runs of boxes with the same colors as one path.
+         */
+        @Override
+        void draw(Surface s, View v) {
+            double[] p0 = new double[2];
+            double[] p1 = new double[2];
+            int n = size();
+            int count = 0;
+            Paint runFill = null, runEdge = null;
+            s.beginPath();
+            for (int k = 0; k < n; k++) {
+                v.project(x.get(k) - extra(left, k), y.get(k) + extra(up, k), polarData, p0);
+                v.project(x.get(k) + extra(right, k), y.get(k) - extra(down, k), polarData, p1);
+                if (!TipImage.isFinite(p0, p1)) {
+                    continue;
+                }
+                if (count > 0 && (count == CHUNK || !Objects.equals(fills[k], runFill)
+                        || !Objects.equals(edgeColors[k], runEdge))) {
+                    paint(s, runFill, runEdge);
+                    s.beginPath();
+                    count = 0;
+                }
+                runFill = fills[k];
+                runEdge = edgeColors[k];
+                double bx = Math.min(p0[0], p1[0]), by = Math.min(p0[1], p1[1]);
+                double bw = Math.abs(p1[0] - p0[0]), bh = Math.abs(p1[1] - p0[1]);
+                if (rounded) {
+                    addRoundRect(s, bx, by, bw, bh, bw * 0.45, bh * 0.45, v.scale);
+                } else {
+                    s.moveTo(bx, by);
+                    s.lineTo(bx + bw, by);
+                    s.lineTo(bx + bw, by + bh);
+                    s.lineTo(bx, by + bh);
+                    s.closePath();
+                }
+                count++;
+            }
+            if (count > 0) {
+                paint(s, runFill, runEdge);
+            }
+        }
+
+        /**
+         * Returns an element of an extra data column, or zero if the column
+         * is empty or short.
+         */
+        private static double extra(double[] column, int k) {
+            return k < column.length ? column[k] : 0d;
+        }
+
+        /**
+         * Adds a rectangle with elliptical corners of radii rx and ry,
+         * flattened to about a quarter of an output pixel.
+         */
+        private static void addRoundRect(Surface s, double x, double y, double w, double h,
+                double rx, double ry, double scale) {
+            int n = (int) Math.min(64, Math.max(2, Math.ceil(Math.PI * Math.sqrt(Math.max(rx, ry) * scale) / 2d)));
+            double[] cx = {x + w - rx, x + w - rx, x + rx, x + rx};
+            double[] cy = {y + ry, y + h - ry, y + h - ry, y + ry};
+            s.moveTo(x + w - rx, y);
+            for (int corner = 0; corner < 4; corner++) {
+                // Corners in turn from the top-right, clockwise on screen
+                double start = -Math.PI / 2d + corner * Math.PI / 2d;
+                for (int j = 0; j <= n; j++) {
+                    double a = start + j * (Math.PI / 2d) / n;
+                    s.lineTo(cx[corner] + Math.cos(a) * rx, cy[corner] + Math.sin(a) * ry);
+                }
+            }
+            s.closePath();
+        }
+
+        private void paint(Surface s, Paint fill, Paint edge) {
+            s.setFill(fill);
+            s.fill();
+            s.setStroke(edge);
+            s.setLineWidth(edgeWidth);
+            s.stroke();
+        }
+    }
+
+    private static final class StairImage extends PlotImage {
+
+        private final Paint color;
+        private final double width;
+
+        StairImage(AbstractPlot<?> plot) {
+            super(plot);
+            color = plot.getVisualModel().getLineColor();
+            width = plot.getVisualModel().getLineWidth();
+        }
+
+        /**
+         * Draws a horizontal step from each point to the x position of the
+         * next, then a vertical step to its y position. The line is broken at
+         * non-finite points.
+         */
+        @Override
+        void draw(Surface s, View v) {
+            double[] p = new double[2];
+            int n = size();
+            int count = 0;
+            boolean drawing = false;
+            double lastY = 0d;
+            s.beginPath();
+            for (int k = 0; k < n; k++) {
+                v.project(x.get(k), y.get(k), polarData, p);
+                if (!(Double.isFinite(p[0]) && Double.isFinite(p[1]))) {
+                    drawing = false;
+                    continue;
+                }
+                if (drawing) {
+                    s.lineTo(p[0], lastY);
+                    s.lineTo(p[0], p[1]);
+                    if (++count == CHUNK) {
+                        paint(s);
+                        s.beginPath();
+                        s.moveTo(p[0], p[1]);
+                        count = 0;
+                    }
+                } else {
+                    s.moveTo(p[0], p[1]);
+                    drawing = true;
+                }
+                lastY = p[1];
+            }
+            paint(s);
+        }
+
+        private void paint(Surface s) {
+            s.setStroke(color);
+            s.setLineWidth(width);
+            s.stroke();
+        }
+    }
+
+    private static final class CloudImage extends PlotImage {
+
+        private final Paint color;
+
+        CloudImage(AbstractPlot<?> plot) {
+            super(plot);
+            color = plot.getFill();
+        }
+
+        /**
+         * Draws each point as the square, one pixel wide, that
+         * {@code CloudPlot} draws with a zero-length line.
+         */
+        @Override
+        void draw(Surface s, View v) {
+            double[] p = new double[2];
+            int n = size();
+            int count = 0;
+            s.beginPath();
+            for (int k = 0; k < n; k++) {
+                v.project(x.get(k), y.get(k), polarData, p);
+                if (p[0] >= v.x - 1d && p[0] <= v.x + v.w + 1d
+                        && p[1] >= v.y - 1d && p[1] <= v.y + v.h + 1d) {
+                    s.moveTo(p[0] - 0.5, p[1] - 0.5);
+                    s.lineTo(p[0] + 0.5, p[1] - 0.5);
+                    s.lineTo(p[0] + 0.5, p[1] + 0.5);
+                    s.lineTo(p[0] - 0.5, p[1] + 0.5);
+                    s.closePath();
+                    if (++count == CHUNK) {
+                        paint(s);
+                        s.beginPath();
+                        count = 0;
+                    }
+                }
+            }
+            if (count > 0) {
+                paint(s);
+            }
+        }
+
+        private void paint(Surface s) {
+            s.setFill(color);
+            s.fill();
+        }
+    }
+
+    /**
+     * A {@code NOPPlot}, which takes space in a plot collection but draws
+     * nothing.
+     */
+    private static final class EmptyImage extends PlotImage {
+
+        EmptyImage(AbstractPlot<?> plot) {
+            super(plot);
+        }
+
+        @Override
+        void draw(Surface s, View v) {
+        }
+    }
+
+    /**
+     * The outline of a marker, recorded as for
+     * {@code AbstractPlot.appendMarker}.
+     */
+    private static final class MarkerShape {
+
+        /**
+         * Radius of a circular marker, or NaN.
+         */
+        private final double radius;
+        /**
+         * Sub-paths of x,y pairs relative to the center.
+         */
+        private final double[][] rings;
+        private final boolean[] closed;
+        /**
+         * Maximum distance of the outline from the center.
+         */
+        private final double extent;
+
+        private MarkerShape(double radius, List<double[]> rings, List<Boolean> closed) {
+            this.radius = radius;
+            this.rings = rings.toArray(new double[rings.size()][]);
+            this.closed = new boolean[closed.size()];
+            double e = Double.isNaN(radius) ? 0d : radius;
+            for (int k = 0; k < this.rings.length; k++) {
+                this.closed[k] = closed.get(k);
+                for (int j = 0; j + 1 < this.rings[k].length; j += 2) {
+                    e = Math.max(e, Math.hypot(this.rings[k][j], this.rings[k][j + 1]));
+                }
+            }
+            extent = e;
+        }
+
+        private MarkerShape(double radius) {
+            this(radius, Collections.emptyList(), Collections.emptyList());
+        }
+
+        static MarkerShape of(Node marker) {
+            if (marker instanceof Polygon) {
+                List<Double> points = ((Polygon) marker).getPoints();
+                double[] ring = new double[points.size() & ~1];
+                for (int k = 0; k < ring.length; k++) {
+                    ring[k] = points.get(k);
+                }
+                return new MarkerShape(Double.NaN, Collections.singletonList(ring), Collections.singletonList(true));
+            } else if (marker instanceof Path) {
+                List<double[]> rings = new ArrayList<>();
+                List<Boolean> closed = new ArrayList<>();
+                double[] ring = new double[16];
+                int n = 0;
+                for (PathElement e : ((Path) marker).getElements()) {
+                    if (e instanceof MoveTo && n > 0) {
+                        rings.add(Arrays.copyOf(ring, n));
+                        closed.add(false);
+                        n = 0;
+                    }
+                    if (e instanceof MoveTo || e instanceof LineTo) {
+                        if (n + 2 > ring.length) {
+                            ring = Arrays.copyOf(ring, 2 * ring.length);
+                        }
+                        ring[n++] = e instanceof MoveTo ? ((MoveTo) e).getX() : ((LineTo) e).getX();
+                        ring[n++] = e instanceof MoveTo ? ((MoveTo) e).getY() : ((LineTo) e).getY();
+                    } else if (e instanceof ClosePath && n > 0) {
+                        rings.add(Arrays.copyOf(ring, n));
+                        closed.add(true);
+                        n = 0;
+                    }
+                }
+                if (n > 0) {
+                    rings.add(Arrays.copyOf(ring, n));
+                    closed.add(false);
+                }
+                return new MarkerShape(Double.NaN, rings, closed);
+            } else if (marker instanceof Circle) {
+                return new MarkerShape(((Circle) marker).getRadius());
+            } else if (marker != null) {
+                return new MarkerShape(Math.max(marker.getLayoutBounds().getWidth(),
+                        marker.getLayoutBounds().getHeight()) / 2d);
+            }
+            return new MarkerShape(5d);
+        }
+
+        void append(Surface s, double x, double y) {
+            if (!Double.isNaN(radius)) {
+                s.ellipse(x, y, radius, radius);
+                return;
+            }
+            for (int j = 0; j < rings.length; j++) {
+                double[] ring = rings[j];
+                s.moveTo(x + ring[0], y + ring[1]);
+                for (int k = 2; k + 1 < ring.length; k += 2) {
+                    s.lineTo(x + ring[k], y + ring[k + 1]);
+                }
+                if (closed[j]) {
+                    s.closePath();
+                }
+            }
+        }
+
+        /**
+         * Appends the marker rotated about its center by an angle in degrees.
+         */
+        void append(Surface s, double x, double y, double angle) {
+            if (angle == 0d || !Double.isNaN(radius)) {
+                append(s, x, y);
+                return;
+            }
+            double cos = Math.cos(Math.toRadians(angle));
+            double sin = Math.sin(Math.toRadians(angle));
+            for (int j = 0; j < rings.length; j++) {
+                double[] ring = rings[j];
+                for (int k = 0; k + 1 < ring.length; k += 2) {
+                    double px = x + ring[k] * cos - ring[k + 1] * sin;
+                    double py = y + ring[k] * sin + ring[k + 1] * cos;
+                    if (k == 0) {
+                        s.moveTo(px, py);
+                    } else {
+                        s.lineTo(px, py);
+                    }
+                }
+                if (closed[j]) {
+                    s.closePath();
+                }
+            }
+        }
+    }
+}
@@ -24,6 +24,7 @@ package waterloo.fx.plot;
 
 import java.util.ArrayList;
 import javafx.geometry.Point2D;
+import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.shape.Line;
 import javafx.scene.shape.Shape;
 
@@ -66,6 +67,10 @@ public class StemPlot extends AbstractPlot<ArrayList<Shape>> implements LineInte
 
     @Override
     protected final void updateElements(Chart chart) {
+        if (isCanvasRendered()) {
+            // Stems and markers will be drawn on the batch canvas
+            return;
+        }
         for (int k = 0; k < dataModel.size(); k++) {
             Point2D p0 = getData(chart,dataModel.getXData().get(k), dataModel.getYData().get(k));
             p0 = chart.toPixel(p0);
@@ -88,6 +93,11 @@ public class StemPlot extends AbstractPlot<ArrayList<Shape>> implements LineInte
         // Call the super method to do house-keeping common to all plots
         super.arrangePlot(chart);
 
+        if (isCanvasRendered()) {
+            arrangeBatch(chart);
+            return;
+        }
+
         for (int k = 0; k < dataModel.getXData().size(); k++) {
             Point2D p0 = getData(chart,dataModel.getXData().get(k), dataModel.getBaseValue());
             Point2D p1 = getData(chart,dataModel.getXData().get(k), dataModel.getYData().get(k));
@@ -114,4 +124,45 @@ public class StemPlot extends AbstractPlot<ArrayList<Shape>> implements LineInte
 
     }
 
+    /**
+     * Draws all stems as one stroked path and all markers as one filled and
+     * stroked path on the batch canvas.
+     */
+    private void arrangeBatch(Chart chart) {
+        GraphicsContext g = getBatchGraphics(chart);
+        int n = dataModel.size();
+        double[] tips = new double[2 * n];
+        g.beginPath();
+        for (int k = 0; k < n; k++) {
+            Point2D p0 = getData(chart, dataModel.getXData().get(k), dataModel.getBaseValue());
+            Point2D p1 = getData(chart, dataModel.getXData().get(k), dataModel.getYData().get(k));
+            p0 = chart.toPixel(p0);
+            p1 = chart.toPixel(p1);
+            tips[2 * k] = p1.getX();
+            tips[2 * k + 1] = p1.getY();
+            if (Double.isFinite(p0.getX()) && Double.isFinite(p0.getY())
+                    && Double.isFinite(p1.getX()) && Double.isFinite(p1.getY())) {
+                g.moveTo(p0.getX(), p0.getY());
+                g.lineTo(p1.getX(), p1.getY());
+            } else {
+                tips[2 * k] = Double.NaN;
+            }
+        }
+        g.setStroke(visualModel.getLineColor());
+        g.setLineWidth(visualModel.getLineWidth());
+        g.stroke();
+
+        g.beginPath();
+        for (int k = 0; k < n; k++) {
+            if (Double.isFinite(tips[2 * k])) {
+                appendMarker(g, visualModel.getMarkerOrTemplate(k), tips[2 * k], tips[2 * k + 1], 0d);
+            }
+        }
+        g.setFill(visualModel.getFill());
+        g.fill();
+        g.setStroke(visualModel.getEdgeColor());
+        g.setLineWidth(visualModel.getEdgeWidth());
+        g.stroke();
+    }
+
 }
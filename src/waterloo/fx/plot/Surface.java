@@ -0,0 +1,169 @@
+/*
+*
+ * <http://sigtool.github.io/waterlooFX/>
+ *
+ * Copyright King's College London  2014. Copyright Ironduke Publishing Limited, UK 2014-.
+ *
+ * @author Malcolm Lidierth <a href="https://github.com/sigtool/waterlooFX/issues"> [Contact]</a>
+ *
+ * Project Waterloo is free software:  you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Project Waterloo is distributed in the hope that it will  be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package waterloo.fx.plot;
+
+import javafx.geometry.VPos;
+import javafx.scene.paint.Paint;
+import javafx.scene.text.TextAlignment;
+
+/**
+ * A drawing target for the {@link SoftwareRenderer}.
+ *
+ * The methods follow those of the JavaFX {@code GraphicsContext} of the same
+ * name, but a {@code Surface} is not tied to the FX Application Thread: an
+ * instance is used by one thread at a time but different instances may be
+ * drawn to concurrently. Coordinates are in chart pixels with the origin at
+ * the top-left and y increasing downwards. Paths are filled using the
+ * non-zero winding rule.
+ *
+ * @author Malcolm Lidierth
+ */
+public interface Surface {
+
+    /**
+     * Sets the paint used by {@code fill}, {@code fillRect} and
+     * {@code fillText}.
+     *
+     * @param paint the paint
+     */
+    void setFill(Paint paint);
+
+    /**
+     * Sets the paint used by {@code stroke}.
+     *
+     * @param paint the paint
+     */
+    void setStroke(Paint paint);
+
+    /**
+     * Sets the width of the lines drawn by {@code stroke}.
+     *
+     * @param width the width in pixels
+     */
+    void setLineWidth(double width);
+
+    /**
+     * Empties the current path.
+     */
+    void beginPath();
+
+    /**
+     * Starts a new sub-path at the specified point.
+     *
+     * @param x the x position
+     * @param y the y position
+     */
+    void moveTo(double x, double y);
+
+    /**
+     * Adds a line from the current point to the specified point.
+     *
+     * @param x the x position
+     * @param y the y position
+     */
+    void lineTo(double x, double y);
+
+    /**
+     * Closes the current sub-path.
+     */
+    void closePath();
+
+    /**
+     * Adds an ellipse to the current path as a closed sub-path.
+     *
+     * @param x the x position of the center
+     * @param y the y position of the center
+     * @param rx the radius along x
+     * @param ry the radius along y
+     */
+    void ellipse(double x, double y, double rx, double ry);
+
+    /**
+     * Fills the current path with the fill paint.
+     */
+    void fill();
+
+    /**
+     * Strokes the current path with the stroke paint and line width.
+     */
+    void stroke();
+
+    /**
+     * Fills a rectangle with the fill paint. The current path is not changed.
+     *
+     * @param x the x position of the upper-left corner
+     * @param y the y position of the upper-left corner
+     * @param w the width
+     * @param h the height
+     */
+    void fillRect(double x, double y, double w, double h);
+
+    /**
+     * Sets the font used by {@code fillText}.
+     *
+     * @param family the font family
+     * @param size the size in points
+     */
+    void setFont(String family, double size);
+
+    /**
+     * Sets the horizontal alignment of text relative to the position given to
+     * {@code fillText}.
+     *
+     * @param align the alignment
+     */
+    void setTextAlign(TextAlignment align);
+
+    /**
+     * Sets the vertical alignment of text relative to the position given to
+     * {@code fillText}.
+     *
+     * @param baseline the alignment
+     */
+    void setTextBaseline(VPos baseline);
+
+    /**
+     * Fills text with the fill paint, rotated about the specified position.
+     *
+     * @param text the text
+     * @param x the x position
+     * @param y the y position
+     * @param angle the rotation in degrees, clockwise
+     */
+    void fillText(String text, double x, double y, double angle);
+
+    /**
+     * Restricts drawing to a rectangle until {@code resetClip} is called.
+     *
+     * @param x the x position of the upper-left corner
+     * @param y the y position of the upper-left corner
+     * @param w the width
+     * @param h the height
+     */
+    void clipRect(double x, double y, double w, double h);
+
+    /**
+     * Removes the clip set by {@code clipRect}.
+     */
+    void resetClip();
+}
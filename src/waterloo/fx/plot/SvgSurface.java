@@ -0,0 +1,289 @@
+/*
+*
+ * <http://sigtool.github.io/waterlooFX/>
+ *
+ * Copyright King's College London  2014. Copyright Ironduke Publishing Limited, UK 2014-.
+ *
+ * @author Malcolm Lidierth <a href="https://github.com/sigtool/waterlooFX/issues"> [Contact]</a>
+ *
+ * Project Waterloo is free software:  you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Project Waterloo is distributed in the hope that it will  be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package waterloo.fx.plot;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import javafx.scene.paint.Color;
+
+/**
+ * A {@code Surface} that writes an SVG document to a stream as it is drawn.
+ *
+ * One SVG element is written for each path, rectangle and text drawn, so
+ * only the current path is held in memory however much is drawn. Text is
+ * written as text elements using the font family and size set, with the
+ * horizontal alignment left to the viewer. Colors other than {@code Color}
+ * are written as for {@link Rasterizer}.
+ *
+ * <pre>
+ * SvgSurface svg = new SvgSurface(out, 800, 600);
+ * renderer.draw(svg, 800, 600, 1d);
+ * svg.finish();
+ * </pre>
+ *
+ * @author Malcolm Lidierth
+ */
+public final class SvgSurface extends VectorSurface {
+
+    private final Writer writer;
+    private final StringBuilder sb = new StringBuilder(256);
+    private final char[] chars = new char[8192];
+    private int clipCount;
+    private boolean clipped;
+
+    /**
+     * Creates a surface and writes the start of the document.
+     *
+     * @param out the stream to write to
+     * @param width the width of the document in pixels
+     * @param height the height of the document in pixels
+     * @throws IOException if the stream cannot be written
+     */
+    public SvgSurface(OutputStream out, double width, double height) throws IOException {
+        writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16);
+        sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        sb.append("<svg xmlns=\"http://www.w3.org/2000/svg\" version=\"1.1\" width=\"");
+        append(sb, width).append("\" height=\"");
+        append(sb, height).append("\" viewBox=\"0 0 ");
+        append(sb, width).append(' ');
+        append(sb, height).append("\">\n");
+        // Square caps and mitred joins as for a GraphicsContext
+        sb.append("<g stroke-linecap=\"square\" stroke-linejoin=\"miter\" stroke-miterlimit=\"10\">\n");
+        writer.write(sb.toString());
+        sb.setLength(0);
+    }
+
+    @Override
+    void appendMoveTo(double x, double y) {
+        append(append(path.append('M'), x).append(' '), y);
+    }
+
+    @Override
+    void appendLineTo(double x, double y) {
+        append(append(path.append('L'), x).append(' '), y);
+    }
+
+    @Override
+    void appendClose() {
+        path.append('Z');
+    }
+
+    @Override
+    void appendEllipse(double x, double y, double rx, double ry) {
+        appendMoveTo(x + rx, y);
+        for (int k = 0; k < 2; k++) {
+            path.append('A');
+            append(path, rx).append(' ');
+            append(path, ry).append(" 0 1 0 ");
+            append(path, k == 0 ? x - rx : x + rx).append(' ');
+            append(path, y);
+        }
+        path.append('Z');
+    }
+
+    @Override
+    void writePath(Color fill, Color stroke) {
+        sb.append("<path d=\"");
+        emit();
+        write(path);
+        appendPaint("fill", fill);
+        appendPaint("stroke", stroke);
+        if (stroke != null) {
+            append(sb.append("\" stroke-width=\""), lineWidth);
+        }
+        sb.append("\"/>\n");
+        emit();
+    }
+
+    @Override
+    public void fillRect(double x, double y, double w, double h) {
+        flush();
+        if (fillColor.getOpacity() == 0d) {
+            return;
+        }
+        appendRect(x, y, w, h);
+        appendPaint("fill", fillColor);
+        sb.append("\"/>\n");
+        emit();
+    }
+
+    @Override
+    public void fillText(String text, double x, double y, double angle) {
+        flush();
+        if (text == null || text.isEmpty() || fillColor.getOpacity() == 0d) {
+            return;
+        }
+        // The vertical alignment is applied here, as viewers differ in their
+        // support for dominant-baseline
+        double dy = GlyphOutlines.getBaselineOffset(fontFamily, fontSize, textBaseline);
+        double rad = Math.toRadians(angle);
+        double tx = x - dy * Math.sin(rad);
+        double ty = y + dy * Math.cos(rad);
+        sb.append("<text x=\"");
+        append(sb, tx).append("\" y=\"");
+        append(sb, ty).append('"');
+        if (angle != 0d) {
+            sb.append(" transform=\"rotate(");
+            append(sb, angle).append(' ');
+            append(sb, tx).append(' ');
+            append(sb, ty).append(")\"");
+        }
+        sb.append(" font-family=\"");
+        if (fontFamily == null || fontFamily.startsWith("System")) {
+            sb.append("sans-serif");
+        } else {
+            escape(fontFamily);
+            sb.append(", sans-serif");
+        }
+        append(sb.append("\" font-size=\""), fontSize);
+        switch (textAlign) {
+            case CENTER:
+                sb.append("\" text-anchor=\"middle");
+                break;
+            case RIGHT:
+                sb.append("\" text-anchor=\"end");
+                break;
+            default:
+                break;
+        }
+        appendPaint("fill", fillColor);
+        sb.append("\">");
+        escape(text);
+        sb.append("</text>\n");
+        emit();
+    }
+
+    @Override
+    public void clipRect(double x, double y, double w, double h) {
+        resetClip();
+        String id = "clip" + clipCount++;
+        sb.append("<clipPath id=\"").append(id).append("\">");
+        appendRect(x, y, w, h);
+        sb.append("\"/></clipPath>\n<g clip-path=\"url(#").append(id).append(")\">\n");
+        emit();
+        clipped = true;
+    }
+
+    @Override
+    public void resetClip() {
+        flush();
+        if (clipped) {
+            sb.append("</g>\n");
+            emit();
+            clipped = false;
+        }
+    }
+
+    @Override
+    public void finish() throws IOException {
+        try {
+            resetClip();
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+        writer.write("</g>\n</svg>\n");
+        writer.flush();
+    }
+
+    private void appendRect(double x, double y, double w, double h) {
+        // Normalize negative sizes, which SVG does not allow
+        double x0 = Math.min(x, x + w);
+        double y0 = Math.min(y, y + h);
+        sb.append("<rect x=\"");
+        append(sb, x0).append("\" y=\"");
+        append(sb, y0).append("\" width=\"");
+        append(sb, Math.abs(w)).append("\" height=\"");
+        append(sb, Math.abs(h));
+    }
+
+    /**
+     * Appends a paint attribute, closing the previous attribute value.
+     */
+    private void appendPaint(String name, Color c) {
+        sb.append("\" ").append(name).append("=\"");
+        if (c == null) {
+            sb.append("none");
+            return;
+        }
+        int rgb = ((int) Math.round(c.getRed() * 255d) << 16)
+                | ((int) Math.round(c.getGreen() * 255d) << 8)
+                | (int) Math.round(c.getBlue() * 255d);
+        sb.append('#');
+        String hex = Integer.toHexString(rgb);
+        for (int k = hex.length(); k < 6; k++) {
+            sb.append('0');
+        }
+        sb.append(hex);
+        if (c.getOpacity() < 1d) {
+            sb.append("\" ").append(name).append("-opacity=\"");
+            sb.append(Math.round(c.getOpacity() * 1000d) / 1000d);
+        }
+    }
+
+    private void escape(String s) {
+        for (int k = 0; k < s.length(); k++) {
+            char c = s.charAt(k);
+            switch (c) {
+                case '&':
+                    sb.append("&amp;");
+                    break;
+                case '<':
+                    sb.append("&lt;");
+                    break;
+                case '>':
+                    sb.append("&gt;");
+                    break;
+                case '"':
+                    sb.append("&quot;");
+                    break;
+                default:
+                    sb.append(c);
+            }
+        }
+    }
+
+    /**
+     * Writes the contents of the element buffer and empties it.
+     */
+    private void emit() {
+        write(sb);
+        sb.setLength(0);
+    }
+
+    private void write(StringBuilder b) {
+        try {
+            for (int k = 0; k < b.length(); k += chars.length) {
+                int n = Math.min(chars.length, b.length() - k);
+                b.getChars(k, k + n, chars, 0);
+                writer.write(chars, 0, n);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+}
@@ -0,0 +1,219 @@
+/*
+*
+ * <http://sigtool.github.io/waterlooFX/>
+ *
+ * Copyright King's College London  2014. Copyright Ironduke Publishing Limited, UK 2014-.
+ *
+ * @author Malcolm Lidierth <a href="https://github.com/sigtool/waterlooFX/issues"> [Contact]</a>
+ *
+ * Project Waterloo is free software:  you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Project Waterloo is distributed in the hope that it will  be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package waterloo.fx.plot;
+
+import java.io.IOException;
+import javafx.geometry.VPos;
+import javafx.scene.paint.Color;
+import javafx.scene.paint.Paint;
+import javafx.scene.text.TextAlignment;
+
+/**
+ * Base class for surfaces that write vector graphics to a stream as they are
+ * drawn.
+ *
+ * Path data are written into a buffer in the syntax of the output format as
+ * the path is built, and the buffer is written out when the path is filled or
+ * stroked, so only the current path is held in memory. A fill followed by a
+ * stroke of the same path is written once, as a single filled and stroked
+ * path. Coordinates are written with two decimal places.
+ *
+ * The {@code Surface} methods cannot throw checked exceptions, so errors
+ * writing the stream are thrown as {@code UncheckedIOException}s.
+ *
+ * @author Malcolm Lidierth
+ */
+abstract class VectorSurface implements Surface {
+
+    /**
+     * The current path, in the syntax of the output format.
+     */
+    final StringBuilder path = new StringBuilder(1024);
+    /**
+     * True when the path has a current point.
+     */
+    private boolean open;
+
+    Color fillColor = Color.BLACK;
+    Color strokeColor = Color.BLACK;
+    double lineWidth = 1d;
+    String fontFamily = "System";
+    double fontSize = 12d;
+    TextAlignment textAlign = TextAlignment.LEFT;
+    VPos textBaseline = VPos.BASELINE;
+
+    /**
+     * The fill color of a path that has been filled but not yet written, or
+     * null.
+     */
+    private Color pendingFill;
+
+    @Override
+    public void setFill(Paint paint) {
+        fillColor = Rasterizer.toColor(paint);
+    }
+
+    @Override
+    public void setStroke(Paint paint) {
+        strokeColor = Rasterizer.toColor(paint);
+    }
+
+    @Override
+    public void setLineWidth(double width) {
+        lineWidth = width;
+    }
+
+    @Override
+    public void beginPath() {
+        flush();
+        path.setLength(0);
+        open = false;
+    }
+
+    @Override
+    public void moveTo(double x, double y) {
+        flush();
+        appendMoveTo(x, y);
+        open = true;
+    }
+
+    @Override
+    public void lineTo(double x, double y) {
+        flush();
+        if (open) {
+            appendLineTo(x, y);
+        } else {
+            appendMoveTo(x, y);
+            open = true;
+        }
+    }
+
+    @Override
+    public void closePath() {
+        flush();
+        if (open) {
+            appendClose();
+        }
+    }
+
+    @Override
+    public void ellipse(double x, double y, double rx, double ry) {
+        flush();
+        appendEllipse(x, y, rx, ry);
+        open = false;
+    }
+
+    @Override
+    public void fill() {
+        flush();
+        if (path.length() > 0 && fillColor.getOpacity() > 0d) {
+            pendingFill = fillColor;
+        }
+    }
+
+    @Override
+    public void stroke() {
+        Color fill = pendingFill;
+        pendingFill = null;
+        boolean stroked = path.length() > 0 && lineWidth > 0d && strokeColor.getOpacity() > 0d;
+        if (fill != null || stroked) {
+            writePath(fill, stroked ? strokeColor : null);
+        }
+    }
+
+    @Override
+    public void setFont(String family, double size) {
+        fontFamily = family;
+        fontSize = size;
+    }
+
+    @Override
+    public void setTextAlign(TextAlignment align) {
+        textAlign = align;
+    }
+
+    @Override
+    public void setTextBaseline(VPos baseline) {
+        textBaseline = baseline;
+    }
+
+    /**
+     * Writes any pending fill of the current path.
+     */
+    final void flush() {
+        if (pendingFill != null) {
+            Color fill = pendingFill;
+            pendingFill = null;
+            writePath(fill, null);
+        }
+    }
+
+    /**
+     * Completes the output and flushes the stream, which is not closed. No
+     * more drawing may be done.
+     *
+     * @throws IOException if the stream cannot be written
+     */
+    public abstract void finish() throws IOException;
+
+    abstract void appendMoveTo(double x, double y);
+
+    abstract void appendLineTo(double x, double y);
+
+    abstract void appendClose();
+
+    abstract void appendEllipse(double x, double y, double rx, double ry);
+
+    /**
+     * Writes the current path.
+     *
+     * @param fill the fill color or null if not filled
+     * @param stroke the stroke color or null if not stroked, using the current
+     * line width
+     */
+    abstract void writePath(Color fill, Color stroke);
+
+    /**
+     * Appends a number with at most two decimal places.
+     */
+    static StringBuilder append(StringBuilder sb, double value) {
+        // Beyond this the value is far outside any page
+        double v = Double.isNaN(value) ? 0d : Math.max(-1e9, Math.min(1e9, value));
+        long n = Math.round(v * 100d);
+        if (n < 0L) {
+            sb.append('-');
+            n = -n;
+        }
+        sb.append(n / 100L);
+        int f = (int) (n % 100L);
+        if (f != 0) {
+            sb.append('.');
+            if (f < 10) {
+                sb.append('0').append(f);
+            } else {
+                sb.append(f % 10 == 0 ? f / 10 : f);
+            }
+        }
+        return sb;
+    }
+}
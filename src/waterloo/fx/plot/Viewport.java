@@ -0,0 +1,168 @@
+/*
+*
+ * <http://sigtool.github.io/waterlooFX/>
+ *
+ * Copyright King's College London  2014. Copyright Ironduke Publishing Limited, UK 2014-.
+ *
+ * @author Malcolm Lidierth <a href="https://github.com/sigtool/waterlooFX/issues"> [Contact]</a>
+ *
+ * Project Waterloo is free software:  you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Project Waterloo is distributed in the hope that it will  be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package waterloo.fx.plot;
+
+/**
+ * Immutable description of the axis limits of a {@code Chart}.
+ *
+ * The limits are in axis coordinates, as for {@link Chart#getXLeft()} etc.,
+ * and the left limit may be greater than the right (or the bottom greater
+ * than the top) for a reversed axis.
+ *
+ * All four limits may be applied to a chart together using
+ * {@link Chart#setViewport(waterloo.fx.plot.Viewport)}.
+ *
+ * @author Malcolm Lidierth
+ */
+public final class Viewport {
+
+    private final double xLeft;
+    private final double xRight;
+    private final double yBottom;
+    private final double yTop;
+
+    /**
+     * Creates a viewport.
+     *
+     * @param xLeft the x-axis value at the left of the view
+     * @param xRight the x-axis value at the right of the view
+     * @param yBottom the y-axis value at the bottom of the view
+     * @param yTop the y-axis value at the top of the view
+     */
+    public Viewport(double xLeft, double xRight, double yBottom, double yTop) {
+        this.xLeft = xLeft;
+        this.xRight = xRight;
+        this.yBottom = yBottom;
+        this.yTop = yTop;
+    }
+
+    public double getXLeft() {
+        return xLeft;
+    }
+
+    public double getXRight() {
+        return xRight;
+    }
+
+    public double getYBottom() {
+        return yBottom;
+    }
+
+    public double getYTop() {
+        return yTop;
+    }
+
+    /**
+     * @return the x-axis range, xRight - xLeft
+     */
+    public double getWidth() {
+        return xRight - xLeft;
+    }
+
+    /**
+     * @return the y-axis range, yTop - yBottom
+     */
+    public double getHeight() {
+        return yTop - yBottom;
+    }
+
+    /**
+     * Returns a viewport with the same y-axis limits and the specified x-axis
+     * limits.
+     *
+     * @param left the x-axis value at the left
+     * @param right the x-axis value at the right
+     * @return the viewport
+     */
+    public Viewport withX(double left, double right) {
+        return new Viewport(left, right, yBottom, yTop);
+    }
+
+    /**
+     * Returns a viewport with the same x-axis limits and the specified y-axis
+     * limits.
+     *
+     * @param bottom the y-axis value at the bottom
+     * @param top the y-axis value at the top
+     * @return the viewport
+     */
+    public Viewport withY(double bottom, double top) {
+        return new Viewport(xLeft, xRight, bottom, top);
+    }
+
+    /**
+     * Returns a viewport shifted by the specified amounts.
+     *
+     * @param dx the shift along the x-axis
+     * @param dy the shift along the y-axis
+     * @return the viewport
+     */
+    public Viewport translate(double dx, double dy) {
+        return new Viewport(xLeft + dx, xRight + dx, yBottom + dy, yTop + dy);
+    }
+
+    /**
+     * Returns a viewport scaled about the specified point. Factors greater
+     * than 1 zoom out.
+     *
+     * @param x the x-axis value to scale about
+     * @param y the y-axis value to scale about
+     * @param xFactor the scale factor for the x-axis range
+     * @param yFactor the scale factor for the y-axis range
+     * @return the viewport
+     */
+    public Viewport scale(double x, double y, double xFactor, double yFactor) {
+        return new Viewport(x + (xLeft - x) * xFactor, x + (xRight - x) * xFactor,
+                y + (yBottom - y) * yFactor, y + (yTop - y) * yFactor);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Viewport)) {
+            return false;
+        }
+        Viewport v = (Viewport) o;
+        return Double.compare(xLeft, v.xLeft) == 0
+                && Double.compare(xRight, v.xRight) == 0
+                && Double.compare(yBottom, v.yBottom) == 0
+                && Double.compare(yTop, v.yTop) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        long h = Double.doubleToLongBits(xLeft);
+        h = 31 * h + Double.doubleToLongBits(xRight);
+        h = 31 * h + Double.doubleToLongBits(yBottom);
+        h = 31 * h + Double.doubleToLongBits(yTop);
+        return (int) (h ^ (h >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        return "Viewport [xLeft=" + xLeft + ", xRight=" + xRight
+                + ", yBottom=" + yBottom + ", yTop=" + yTop + "]";
+    }
+}
@@ -21,8 +21,11 @@
  */
 package waterloo.fx.plot.axis;
 
+import java.text.NumberFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import javafx.beans.binding.ObjectBinding;
@@ -32,19 +35,24 @@ import javafx.beans.value.ChangeListener;
 import javafx.beans.value.ObservableValue;
 import javafx.css.CssMetaData;
 import javafx.css.Styleable;
+import javafx.geometry.BoundingBox;
+import javafx.geometry.Bounds;
 import javafx.geometry.Point2D;
 import javafx.scene.Cursor;
 import javafx.scene.Scene;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.input.MouseEvent;
 import javafx.scene.layout.Region;
-import javafx.scene.shape.Polyline;
 import javafx.scene.text.Font;
 import javafx.scene.text.Text;
+import javafx.scene.transform.Transform;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.ParserConfigurationException;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import waterloo.fx.plot.Chart;
+import waterloo.fx.transforms.AbstractTransform;
 import waterloo.fx.web.Browsable;
 
 /**
@@ -106,6 +114,28 @@ public abstract class AbstractAxisRegion extends Region {
      */
     private final BooleanProperty categoricalProperty = new SimpleBooleanProperty(Boolean.FALSE);
 
+    /**
+     * The {@code TickLabel}s created for this axis. The first
+     * {@code tickLabelCount} are children of the region and are in use. The
+     * remainder are kept for reuse so that panning and zooming do not create
+     * new nodes.
+     */
+    private final ArrayList<TickLabel> tickLabelPool = new ArrayList<>();
+    private int tickLabelCount;
+    /**
+     * Formatted tick labels keyed by tick value. Valid for labelTransform and
+     * labelFormatter only.
+     */
+    private final HashMap<Double, String> labelText = new HashMap<>();
+    private AbstractTransform labelTransform;
+    private NumberFormat labelFormatter;
+    /**
+     * The measured extent of this axis normal to the view, or NaN when the
+     * tick label texts or fonts or the axis label have changed since it was
+     * measured.
+     */
+    private double extent = Double.NaN;
+
     private double dragXStart = Double.NaN;
     private double dragYStart = Double.NaN;
     private double deltaX;
@@ -141,6 +171,8 @@ public abstract class AbstractAxisRegion extends Region {
 
         // Create a binding betqeen the axisLabel color and the axis color.
         axisLabel.fillProperty().bind(layer.axisColorProperty());
+        axisLabel.textProperty().addListener(o -> invalidateExtent());
+        axisLabel.fontProperty().addListener(o -> invalidateExtent());
 
         // For convenience, we add mouse listeners here with behaviour 
         // that depends on the position of the axis relative to the view rather than in the subclasses.
@@ -224,9 +256,8 @@ public abstract class AbstractAxisRegion extends Region {
 
     /**
      * Return the line used to render this axis. This is a subclass of
-     * {@code ObjectBinding<Polyline>}. The stroke color and width are bound in
-     * the constructor to the axis stroke width and color properties of the
-     * layer. The position and length of the line is also bound to match that of
+     * {@code ObjectBinding<Canvas>}. The binding is invalidated when the axis
+     * stroke width or color properties of the layer change. The position and length of the line is also bound to match that of
      * the appropriate dimension of the layer, which corresponds to that of the
      * view area in the {@code Chart}. For example, for an axis at the bottom of
      * the chart, the left and right positions of the line will match those of
@@ -294,17 +325,135 @@ public abstract class AbstractAxisRegion extends Region {
     }
 
     /**
-     * Returns an an {@code ArrayList<TickLabel>} containing references to the
-     * TickLabels for this axis.
+     * Returns a list containing references to the TickLabels presently in use
+     * for this axis. The list is a view that is valid until the labels are
+     * next updated.
      *
      * @return the tickLabels
      */
-    ArrayList<TickLabel> getTickLabels() {
-        ArrayList<TickLabel> arr = new ArrayList<>();
-        getChildren().filtered(x -> x instanceof TickLabel).forEach((x) -> {
-            arr.add((TickLabel) x);
-        });
-        return arr;
+    List<TickLabel> getTickLabels() {
+        return Collections.unmodifiableList(tickLabelPool.subList(0, tickLabelCount));
+    }
+
+    /**
+     * Starts an update of the tick labels. Labels are then requested in order
+     * using {@code nextTickLabel} and the update completed by calling
+     * {@code endTickLabels}.
+     */
+    void beginTickLabels() {
+        tickLabelCount = 0;
+    }
+
+    /**
+     * Returns the next tick label, reusing one from an earlier update if
+     * possible, with its text, font and fill set and added to this region.
+     *
+     * @param text the label text
+     * @return the label
+     */
+    TickLabel nextTickLabel(String text) {
+        TickLabel label;
+        if (tickLabelCount < tickLabelPool.size()) {
+            label = tickLabelPool.get(tickLabelCount);
+            if (!text.equals(label.getText())) {
+                label.setText(text);
+                invalidateExtent();
+            }
+        } else {
+            label = new TickLabel(text);
+            tickLabelPool.add(label);
+        }
+        if (label.getParent() != this) {
+            getChildren().add(label);
+            invalidateExtent();
+        }
+        if (label.getFont() != getFont()) {
+            label.setFont(getFont());
+            invalidateExtent();
+        }
+        label.setFill(layer.getAxisColor());
+        tickLabelCount++;
+        return label;
+    }
+
+    /**
+     * Completes an update of the tick labels, removing those not needed from
+     * this region.
+     */
+    void endTickLabels() {
+        for (int k = tickLabelCount; k < tickLabelPool.size(); k++) {
+            TickLabel label = tickLabelPool.get(k);
+            if (label.getParent() == this) {
+                getChildren().remove(label);
+                invalidateExtent();
+            }
+        }
+    }
+
+    /**
+     * Returns the extent of this axis normal to the view as last stored by
+     * {@code setExtent}. Measuring the extent requires the tick labels and
+     * axis label to be measured so subclasses cache it here and re-measure
+     * only when the labels change.
+     *
+     * @return the extent, or NaN if the tick label texts or fonts or the axis
+     * label have changed since it was stored
+     */
+    final double getExtent() {
+        return extent;
+    }
+
+    /**
+     * Stores the measured extent of this axis normal to the view.
+     *
+     * @param extent the extent
+     * @return the extent
+     */
+    final double setExtent(double extent) {
+        this.extent = extent;
+        return extent;
+    }
+
+    /**
+     * Discards the stored extent so that it is re-measured when next
+     * required.
+     */
+    final void invalidateExtent() {
+        extent = Double.NaN;
+    }
+
+    /**
+     * Returns the label for a tick, reusing the string formatted for the same
+     * value previously unless the transform or its formatter has changed.
+     *
+     * @param transform the transform for the axis
+     * @param value the tick value
+     * @return the label text
+     */
+    String formatTickLabel(AbstractTransform transform, double value) {
+        if (transform != labelTransform || transform.getFormatter() != labelFormatter
+                || labelText.size() > 256) {
+            labelText.clear();
+            labelTransform = transform;
+            labelFormatter = transform.getFormatter();
+        }
+        String text = labelText.get(value);
+        if (text == null) {
+            text = transform.getTickLabel(value);
+            labelText.put(value, text);
+        }
+        return text;
+    }
+
+    /**
+     * Returns the width of a tick label in the font of this axis, using cached
+     * measurements.
+     *
+     * @param label the label
+     * @return the width in pixels
+     */
+    double getTickLabelWidth(TickLabel label) {
+        return TextMetrics.getWidth(label.getText(), label.getFont());
     }
 
     double calcTickLabelWidth() {
@@ -352,13 +501,32 @@ public abstract class AbstractAxisRegion extends Region {
     }
 
     /**
-     * {@code ObjectBinding<Polyline>} used to represent the axis.
+     * {@code ObjectBinding<Canvas>} used to represent the axis.
+     *
+     * The axis line and tick marks are stroked as a single path onto a canvas
+     * sized to fit them, using the primitive tick arrays of the transform. The
+     * path vertices are retained in a primitive array for export via
+     * {@code Browsable}.
      */
-    public final class LineClass extends ObjectBinding<Polyline> implements Browsable {
+    public final class LineClass extends ObjectBinding<Canvas> implements Browsable {
 
         private final Chart layer;
 
-        private final Polyline value = new Polyline();
+        private final Canvas value = new Canvas();
+
+        /**
+         * Vertices of the path as x,y pairs: the two ends of the axis line
+         * followed by a (base, tip, base) triple for each tick mark.
+         */
+        private double[] points = new double[64];
+        private int count;
+        private Bounds bounds = new BoundingBox(0d, 0d, -1d, -1d);
+        /**
+         * The fractional parts of the scene position of the axis origin for
+         * which the canvas was last aligned.
+         */
+        private double alignedX = Double.NaN;
+        private double alignedY = Double.NaN;
 
         DocumentBuilder docBuilder = null;
 
@@ -366,9 +534,9 @@ public abstract class AbstractAxisRegion extends Region {
             super();
             this.layer = layer;
 
-            value.strokeProperty().bind(layer.axisColorProperty());
-            value.strokeWidthProperty().bind(layer.axisStrokeWidthProperty());
-
+            bind(layer.axisColorProperty());
+            bind(layer.axisStrokeWidthProperty());
+            bind(layer.renderScaleProperty());
             bind(layer.widthProperty());
             bind(layer.heightProperty());
             switch (getAxisPosition()) {
@@ -394,104 +562,167 @@ public abstract class AbstractAxisRegion extends Region {
                 });
             };
             sceneProperty().addListener(addedToScene);
+
+            // Moving the axis by a fraction of a pixel, e.g. when the chart
+            // is re-laid out, changes the alignment of the canvas. Whole-pixel
+            // moves need no repaint.
+            localToSceneTransformProperty().addListener((ObservableValue<? extends Transform> ov, Transform t, Transform t1) -> {
+                Point2D origin = t1.transform(0d, 0d);
+                if (count > 0 && (fraction(origin.getX()) != alignedX || fraction(origin.getY()) != alignedY)) {
+                    invalidate();
+                    requestLayout();
+                }
+            });
         }
 
         @Override
-        public Polyline computeValue() {
+        public Canvas computeValue() {
+            count = 0;
             if (layer.getAxisSet() != null) {
-                value.getPoints().clear();
-
+                AbstractTransform xt = layer.getAxisSet().getXTransform();
+                AbstractTransform yt = layer.getAxisSet().getYTransform();
                 switch (getAxisPosition()) {
                     case TOP:
                         if (layer.isTopAxisPainted()) {
                             double h = layer.getAxisSet().getTopAxis().computePrefHeight(-1d);
-                            value.getPoints().addAll(new Double[]{0d, h});
-                            value.getPoints().addAll(new Double[]{getWidth(), h});
-                            layer.getAxisSet().getXTransform().get().stream().filter((Double x) -> x >= layer.getXMin() && x <= layer.getXMax()).forEach((Double x) -> {
-                                Point2D p1 = layer.toPixel(x, 0);
-                                value.getPoints().addAll(new Double[]{p1.getX(), h});
-                                value.getPoints().addAll(new Double[]{p1.getX(), h - layer.yTopTickLength});
-                                value.getPoints().addAll(new Double[]{p1.getX(), h});
-                            });
-                            layer.getAxisSet().getXTransform().getMinorTicks().stream().filter((Double x) -> x >= layer.getXMin() && x <= layer.getXMax()).forEach((Double x) -> {
-                                Point2D p1 = layer.toPixel(x, 0);
-                                value.getPoints().addAll(new Double[]{p1.getX(), h});
-                                value.getPoints().addAll(new Double[]{p1.getX(), h - layer.yTopTickLength * 0.7});
-                                value.getPoints().addAll(new Double[]{p1.getX(), h});
-                            });
+                            add(0d, h);
+                            add(getWidth(), h);
+                            addXTicks(xt.getMajorTickArray(), h, -layer.yTopTickLength);
+                            addXTicks(xt.getMinorTickArray(), h, -layer.yTopTickLength * 0.7);
                         }
                         break;
                     case BOTTOM:
                         if (layer.isBottomAxisPainted()) {
-                            value.getPoints().addAll(new Double[]{0d, 0d});
-                            value.getPoints().addAll(new Double[]{getWidth(), 0d});
-                            layer.getAxisSet().getXTransform().get().stream().filter((Double x) -> x >= layer.getXMin() && x <= layer.getXMax()).forEach((Double x) -> {
-                                Point2D p1 = layer.toPixel(x, 0d);
-                                value.getPoints().addAll(new Double[]{p1.getX(), 0d});
-                                value.getPoints().addAll(new Double[]{p1.getX(), layer.yBottomTickLength});
-                                value.getPoints().addAll(new Double[]{p1.getX(), 0d});
-                            });
-                            layer.getAxisSet().getXTransform().getMinorTicks().stream().filter((Double x) -> x >= layer.getXMin() && x <= layer.getXMax()).forEach((Double x) -> {
-                                Point2D p1 = layer.toPixel(x, 0d);
-                                value.getPoints().addAll(new Double[]{p1.getX(), 0d});
-                                value.getPoints().addAll(new Double[]{p1.getX(), layer.yBottomTickLength * 0.7});
-                                value.getPoints().addAll(new Double[]{p1.getX(), 0d});
-                            });
+                            add(0d, 0d);
+                            add(getWidth(), 0d);
+                            addXTicks(xt.getMajorTickArray(), 0d, layer.yBottomTickLength);
+                            addXTicks(xt.getMinorTickArray(), 0d, layer.yBottomTickLength * 0.7);
                         }
                         break;
                     case LEFT:
                         if (layer.isLeftAxisPainted()) {
-                            Point2D p0 = layer.toPixel(0, layer.getYBottom());
                             double w = computePrefWidth(-1d);
-                            value.getPoints().addAll(new Double[]{w, p0.getY()});
-                            p0 = layer.toPixel(0, layer.getYTop());
-                            value.getPoints().addAll(new Double[]{w, p0.getY()});
-                            layer.getAxisSet().getYTransform().get().stream().filter((Double y) -> y >= layer.getYMin() && y <= layer.getYMax()).forEach((Double y) -> {
-                                Point2D p1 = layer.toPixel(0, y);
-                                value.getPoints().addAll(new Double[]{w, p1.getY()});
-                                value.getPoints().addAll(new Double[]{w - layer.xLeftTickLength, p1.getY()});
-                                value.getPoints().addAll(new Double[]{w, p1.getY()});
-                            });
-                            layer.getAxisSet().getYTransform().getMinorTicks().stream().filter((Double y) -> y >= layer.getYMin() && y <= layer.getYMax()).forEach((Double y) -> {
-                                Point2D p1 = layer.toPixel(0, y);
-                                value.getPoints().addAll(new Double[]{w, p1.getY()});
-                                value.getPoints().addAll(new Double[]{w - layer.xLeftTickLength * 0.7, p1.getY()});
-                                value.getPoints().addAll(new Double[]{w, p1.getY()});
-                            });
+                            add(w, layer.toPixelY(layer.getYBottom()));
+                            add(w, layer.toPixelY(layer.getYTop()));
+                            addYTicks(yt.getMajorTickArray(), w, -layer.xLeftTickLength);
+                            addYTicks(yt.getMinorTickArray(), w, -layer.xLeftTickLength * 0.7);
                         }
                         break;
                     case RIGHT:
                         if (layer.isRightAxisPainted()) {
-                            Point2D p0 = layer.toPixel(layer.getXLeft(), layer.getYBottom());
-                            value.getPoints().addAll(new Double[]{p0.getX(), p0.getY()});
-                            p0 = layer.toPixel(layer.getXLeft(), layer.getYTop());
-                            value.getPoints().addAll(new Double[]{p0.getX(), p0.getY()});
-                            layer.getAxisSet().getYTransform().get().stream().filter((Double y) -> y >= layer.getYMin() && y <= layer.getYMax()).forEach((Double y) -> {
-                                Point2D p1 = layer.toPixel(layer.getXLeft(), y);
-                                value.getPoints().addAll(new Double[]{p1.getX(), p1.getY()});
-                                value.getPoints().addAll(new Double[]{p1.getX() + layer.xRightTickLength, p1.getY()});
-                                value.getPoints().addAll(new Double[]{p1.getX(), p1.getY()});
-                            });
-                            layer.getAxisSet().getYTransform().getMinorTicks().stream().filter((Double y) -> y >= layer.getYMin() && y <= layer.getYMax()).forEach((Double y) -> {
-                                Point2D p1 = layer.toPixel(layer.getXLeft(), y);
-                                value.getPoints().addAll(new Double[]{p1.getX(), p1.getY()});
-                                value.getPoints().addAll(new Double[]{p1.getX() + layer.xRightTickLength * 0.7, p1.getY()});
-                                value.getPoints().addAll(new Double[]{p1.getX(), p1.getY()});
-                            });
+                            double x = layer.toPixelX(layer.getXLeft());
+                            add(x, layer.toPixelY(layer.getYBottom()));
+                            add(x, layer.toPixelY(layer.getYTop()));
+                            addYTicks(yt.getMajorTickArray(), x, layer.xRightTickLength);
+                            addYTicks(yt.getMinorTickArray(), x, layer.xRightTickLength * 0.7);
                         }
                         break;
                 }
             }
+            paint();
             return value;
         }
 
+        /**
+         * Returns the bounds of the axis line and tick marks, including the
+         * stroke, in the coordinates of the axis. The bounds are empty if the
+         * axis is not painted.
+         *
+         * @return the bounds
+         */
+        public Bounds getBounds() {
+            return bounds;
+        }
+
+        private void addXTicks(double[] ticks, double base, double length) {
+            double min = layer.getXMin(), max = layer.getXMax();
+            for (double x : ticks) {
+                if (x >= min && x <= max) {
+                    double px = layer.toPixelX(x);
+                    add(px, base);
+                    add(px, base + length);
+                    add(px, base);
+                }
+            }
+        }
+
+        private void addYTicks(double[] ticks, double base, double length) {
+            double min = layer.getYMin(), max = layer.getYMax();
+            for (double y : ticks) {
+                if (y >= min && y <= max) {
+                    double py = layer.toPixelY(y);
+                    add(base, py);
+                    add(base + length, py);
+                    add(base, py);
+                }
+            }
+        }
+
+        private void add(double x, double y) {
+            if (count + 2 > points.length) {
+                points = Arrays.copyOf(points, points.length * 2);
+            }
+            points[count++] = x;
+            points[count++] = y;
+        }
+
+        /**
+         * Sizes the canvas to the path, aligning it with the pixels of the
+         * scene so that the path is rasterized as it would be if drawn
+         * directly in the axis, and strokes the path.
+         */
+        private void paint() {
+            if (count == 0) {
+                value.getGraphicsContext2D().clearRect(0d, 0d, value.getWidth(), value.getHeight());
+                bounds = new BoundingBox(0d, 0d, -1d, -1d);
+                value.setWidth(0d);
+                value.setHeight(0d);
+                return;
+            }
+            double minX = points[0], maxX = points[0];
+            double minY = points[1], maxY = points[1];
+            for (int k = 2; k < count; k += 2) {
+                minX = Math.min(minX, points[k]);
+                maxX = Math.max(maxX, points[k]);
+                minY = Math.min(minY, points[k + 1]);
+                maxY = Math.max(maxY, points[k + 1]);
+            }
+            double sw = layer.getAxisStrokeWidth();
+            bounds = new BoundingBox(minX - sw / 2d, minY - sw / 2d, maxX - minX + sw, maxY - minY + sw);
+            Point2D origin = localToScene(0d, 0d);
+            double fx = fraction(origin.getX());
+            double fy = fraction(origin.getY());
+            alignedX = fx;
+            alignedY = fy;
+            double ox = Math.floor(bounds.getMinX() + fx) - 1d - fx;
+            double oy = Math.floor(bounds.getMinY() + fy) - 1d - fy;
+            value.setLayoutX(ox);
+            value.setLayoutY(oy);
+            double w = Math.ceil(bounds.getMaxX()) + 1d - ox;
+            double h = Math.ceil(bounds.getMaxY()) + 1d - oy;
+            GraphicsContext g = layer.getCanvasGraphics(value, w, h);
+            g.clearRect(0d, 0d, w, h);
+            g.setStroke(layer.getAxisColor());
+            g.setLineWidth(sw);
+            g.beginPath();
+            g.moveTo(points[0] - ox, points[1] - oy);
+            for (int k = 2; k < count; k += 2) {
+                g.lineTo(points[k] - ox, points[k + 1] - oy);
+            }
+            g.stroke();
+        }
+
+        private double fraction(double v) {
+            return v - Math.floor(v);
+        }
+
         @Override
         public Element getElementModel(Element element, StringBuilder strBldr) {
             strBldr.setLength(0);
-            value.getPoints().stream().forEach((x) -> {
-                strBldr.append(x.toString());
+            for (int k = 0; k < count; k++) {
+                strBldr.append(Double.toString(points[k]));
                 strBldr.append(",");
-            });
+            }
             if (element.getTagName().toLowerCase().equals("none")
                     && element.getOwnerDocument() != null) {
                 element.getOwnerDocument().renameNode(element,
@@ -500,9 +731,10 @@ public abstract class AbstractAxisRegion extends Region {
             }
             if (strBldr.length() > 0) {
                 strBldr.delete(strBldr.length() - 1, strBldr.length());
-                element.setAttribute("class", value.getClass().toString().replace("class ", ""));
-                element.setAttribute("strokeWidth", Double.toString(value.strokeWidthProperty().get()));
-                element.setAttribute("color", value.strokeProperty().get().toString());
+                // Exported as the polyline formerly used to draw the axis
+                element.setAttribute("class", "javafx.scene.shape.Polyline");
+                element.setAttribute("strokeWidth", Double.toString(layer.getAxisStrokeWidth()));
+                element.setAttribute("color", layer.getAxisColor().toString());
                 element.setAttribute("pixelData", strBldr.toString());
             }
             return element;
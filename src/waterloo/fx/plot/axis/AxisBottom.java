@@ -24,9 +24,9 @@ package waterloo.fx.plot.axis;
 import javafx.geometry.Point2D;
 import javafx.geometry.VPos;
 import javafx.scene.Cursor;
-import javafx.scene.Node;
 import javafx.scene.text.TextAlignment;
 import waterloo.fx.plot.Chart;
+import waterloo.fx.transforms.AbstractTransform;
 
 /**
  * Implementation of the {@code AbstractAxisRegion} for a bottom axis.
@@ -58,8 +58,14 @@ public class AxisBottom extends AbstractAxisRegion {
     @Override
     public double computePrefHeight(double w) {
         if (getTickLabels().size() > 0) {
-            return getTickLabels().get(0).getBoundsInParent().getMaxY()
-                    + getAxisLabel().prefHeight(-1);
+            // The labels are positioned below the ticks in doLayout so only
+            // their local bounds are cached
+            TickLabel text = getTickLabels().get(0);
+            double h = getExtent();
+            if (Double.isNaN(h)) {
+                h = setExtent(text.getBoundsInLocal().getMaxY() + getAxisLabel().prefHeight(-1));
+            }
+            return text.getLayoutY() + h;
         } else {
             return Chart.getDefaultInsets().getBottom();
         }
@@ -68,15 +74,13 @@ public class AxisBottom extends AbstractAxisRegion {
     private void doLayout() {
         getLine().get();
         computeValue();
-        double p = getLine().get().getBoundsInParent().getMaxY();
+        double p = getLine().getBounds().getMaxY();
         if (getLayer().isBottomAxisLabelled()) {
             if (getTickLabels().size() > 0) {
-                getChildren().stream().filter(x -> x instanceof TickLabel).forEach((Node x) -> {
-                    TickLabel text = (TickLabel) x;
-                    //text.setFont(getFont());
+                for (TickLabel text : getTickLabels()) {
                     text.setLayoutX(text.getXpos());
                     text.setLayoutY(p);
-                });
+                }
             }
             addAxisLabel();
             if (getTickLabels().size() > 0) {
@@ -86,7 +90,6 @@ public class AxisBottom extends AbstractAxisRegion {
                         - getAxisLabel().getBoundsInParent().getWidth() / 2d);
             }
         } else {
-            getTickLabels().stream().forEach(x -> getChildren().remove(x));
             removeAxisLabel();
         }
     }
@@ -102,37 +105,31 @@ public class AxisBottom extends AbstractAxisRegion {
     }
 
     private void computeValue() {
-        getTickLabels().stream().forEach((TickLabel x) -> {
-            getChildren().remove(x);
-        });
-
+        beginTickLabels();
         if (getLayer().isBottomAxisLabelled()) {
-            final double w = this.calcTickLabelWidth();
-            getLayer().getAxisSet().getXTransform().get().stream()
-                    .filter(x -> x >= getLayer().getXMin() && x <= getLayer().getXMax())
-                    .forEach((Double x) -> {
-                        Point2D p1;
-                        TickLabel text = null;
-                        if (isCategorical()) {
-                            if (getCategories().containsKey(x.intValue())) {
-                                text = new TickLabel(getCategories().get(x.intValue()));
-                            }
-                        } else {
-                            text = new TickLabel(getLayer().getAxisSet().getXTransform().getTickLabel(x));
-                        }
-                        if (text != null) {
-                            p1 = getLayer().toPixel(x, getLayer().getYBottom());
-                            p1 = getLayer().getView().localToParent(p1);
-                            p1 = parentToLocal(p1);
-                            text.setFont(getFont());
-                            text.setFill(getLayer().getAxisColor());
-                            text.setXpos(p1.getX() - text.prefWidth(0) / 2d);
-                            text.setTextOrigin(VPos.TOP);
-                            getChildren().add(text);
-
-                        }
-                    });
+            AbstractTransform transform = getLayer().getAxisSet().getXTransform();
+            for (double x : transform.getMajorTickArray()) {
+                if (!(x >= getLayer().getXMin() && x <= getLayer().getXMax())) {
+                    continue;
+                }
+                TickLabel text = null;
+                if (isCategorical()) {
+                    if (getCategories().containsKey((int) x)) {
+                        text = nextTickLabel(getCategories().get((int) x));
+                    }
+                } else {
+                    text = nextTickLabel(formatTickLabel(transform, x));
+                }
+                if (text != null) {
+                    Point2D p1 = getLayer().toPixel(x, getLayer().getYBottom());
+                    p1 = getLayer().getView().localToParent(p1);
+                    p1 = parentToLocal(p1);
+                    text.setXpos(p1.getX() - getTickLabelWidth(text) / 2d);
+                    text.setTextOrigin(VPos.TOP);
+                }
+            }
         }
+        endTickLabels();
     }
 
 }
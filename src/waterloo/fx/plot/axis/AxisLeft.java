@@ -24,9 +24,9 @@ package waterloo.fx.plot.axis;
 import javafx.geometry.Point2D;
 import javafx.geometry.VPos;
 import javafx.scene.Cursor;
-import javafx.scene.Node;
 import javafx.scene.text.Text;
 import waterloo.fx.plot.Chart;
+import waterloo.fx.transforms.AbstractTransform;
 
 /**
  * Implementation of the {@code AbstractAxisRegion} for a left axis.
@@ -58,17 +58,20 @@ public class AxisLeft extends AbstractAxisRegion {
      */
     @Override
     public final double computePrefWidth(double h) {
-        double w = Double.NEGATIVE_INFINITY;
-        if (getTickLabels().size() > 0) {
-            for (TickLabel text : getTickLabels()) {
-                w = Math.max(w, text.getBoundsInParent().getWidth());
+        double w = getExtent();
+        if (Double.isNaN(w)) {
+            w = Double.NEGATIVE_INFINITY;
+            if (getTickLabels().size() > 0) {
+                for (TickLabel text : getTickLabels()) {
+                    w = Math.max(w, getTickLabelWidth(text));
+                }
+            } else {
+                Text t = new Text("000");
+                t.setFont(getFont());
+                w = t.prefWidth(-1d);
             }
-        } else {
-            Text t = new Text("000");
-            t.setFont(getFont());
-            w = t.prefWidth(-1d);
+            w = setExtent(w + getAxisLabel().prefHeight(-1d) + 5d);
         }
-        w += getAxisLabel().prefHeight(-1d) + 5d;
         return Math.max(w, Chart.getDefaultInsets().getLeft());
     }
 
@@ -78,21 +81,18 @@ public class AxisLeft extends AbstractAxisRegion {
         if (getLayer().isLeftAxisLabelled()) {
             if (getTickLabels().size() > 0) {
                 double p = getLayer().isLeftAxisPainted()
-                        ? getLine().get().getBoundsInParent().getMinX()
+                        ? getLine().getBounds().getMinX()
                         : getWidth() - 2d;
-                getChildren().stream().filter(x -> x instanceof TickLabel).forEach((Node x) -> {
-                    TickLabel text = (TickLabel) x;
-                    //text.setFont(getFont());
-                    text.setLayoutX(p - text.getBoundsInParent().getWidth());
+                for (TickLabel text : getTickLabels()) {
+                    text.setLayoutX(p - getTickLabelWidth(text));
                     text.setLayoutY(text.getYpos());
-                });
+                }
             }
             addAxisLabel();
             getAxisLabel().setFont(getFont());
             getAxisLabel().setLayoutY(getHeight() / 2d);
             getAxisLabel().setLayoutX(findMinX() - (getAxisLabel().prefWidth(0) / 2d));
         } else {
-            getTickLabels().stream().forEach(x -> getChildren().remove(x));
             removeAxisLabel();
         }
     }
@@ -109,41 +109,37 @@ public class AxisLeft extends AbstractAxisRegion {
 
     private double findMinX() {
         double minx = Double.POSITIVE_INFINITY;
-        for (Text text : getTickLabels()) {
-            minx = Math.min(minx, text.prefWidth(-1d));
+        for (TickLabel text : getTickLabels()) {
+            minx = Math.min(minx, getTickLabelWidth(text));
         }
         return minx;
     }
 
     private void computeValue() {
-        getTickLabels().stream().forEach((TickLabel x) -> {
-            getChildren().remove(x);
-        });
-
+        beginTickLabels();
         if (getLayer().isLeftAxisLabelled()) {
-            getLayer().getAxisSet().getYTransform().get().stream()
-                    .filter(y -> y >= getLayer().getYMin() && y <= getLayer().getYMax())
-                    .forEach((Double y) -> {
-                        TickLabel text = null;
-                        if (isCategorical()) {
-                            if (getCategories().containsKey(y.intValue())) {
-                                text = new TickLabel(getCategories().get(y.intValue()));
-                            }
-                        } else {
-                            text = new TickLabel(getLayer().getAxisSet().getYTransform().getTickLabel(y));
-                        }
-                        if (text != null) {
-                            Point2D p1;
-                            p1 = getLayer().toPixel(getLayer().getXLeft(), y);
-                            p1 = getLayer().getView().localToParent(p1);
-                            p1 = parentToLocal(p1);
-                            text.setFont(getFont());
-                            text.setFill(getLayer().getAxisColor());
-                            text.setYpos(p1.getY());
-                            getChildren().add(text);
-                        }
-                    });
+            AbstractTransform transform = getLayer().getAxisSet().getYTransform();
+            for (double y : transform.getMajorTickArray()) {
+                if (!(y >= getLayer().getYMin() && y <= getLayer().getYMax())) {
+                    continue;
+                }
+                TickLabel text = null;
+                if (isCategorical()) {
+                    if (getCategories().containsKey((int) y)) {
+                        text = nextTickLabel(getCategories().get((int) y));
+                    }
+                } else {
+                    text = nextTickLabel(formatTickLabel(transform, y));
+                }
+                if (text != null) {
+                    Point2D p1 = getLayer().toPixel(getLayer().getXLeft(), y);
+                    p1 = getLayer().getView().localToParent(p1);
+                    p1 = parentToLocal(p1);
+                    text.setYpos(p1.getY());
+                }
+            }
         }
+        endTickLabels();
     }
 
     @Override
@@ -23,9 +23,9 @@ package waterloo.fx.plot.axis;
 
 import javafx.geometry.Point2D;
 import javafx.scene.Cursor;
-import javafx.scene.Node;
 import javafx.scene.text.Text;
 import waterloo.fx.plot.Chart;
+import waterloo.fx.transforms.AbstractTransform;
 
 /**
  * Implementation of the {@code AbstractAxisRegion} for a right axis.
@@ -57,17 +57,20 @@ public class AxisRight extends AbstractAxisRegion {
      */
     @Override
     public final double computePrefWidth(double h) {
-        double w = findMinX();
-        if (getTickLabels().size() > 0) {
-            for (TickLabel text : getTickLabels()) {
-                w = Math.max(w, text.getBoundsInParent().getWidth());
+        double w = getExtent();
+        if (Double.isNaN(w)) {
+            w = findMinX();
+            if (getTickLabels().size() > 0) {
+                for (TickLabel text : getTickLabels()) {
+                    w = Math.max(w, getTickLabelWidth(text));
+                }
+            } else {
+                Text t = new Text("000");
+                t.setFont(getFont());
+                w = t.prefWidth(-1d);
             }
-        } else {
-            Text t = new Text("000");
-            t.setFont(getFont());
-            w = t.prefWidth(-1d);
+            w = setExtent(w + getAxisLabel().prefHeight(-1d) + 5d);
         }
-        w += getAxisLabel().prefHeight(-1d) + 5d;
         return Math.max(w, Chart.getDefaultInsets().getRight());
     }
 
@@ -75,21 +78,18 @@ public class AxisRight extends AbstractAxisRegion {
         getLine().get();
         computeValue();
         if (getLayer().isRightAxisLabelled()) {
-            double p = getLine().get().getBoundsInParent().getMaxX();
+            double p = getLine().getBounds().getMaxX();
             if (getTickLabels().size() > 0) {
-                getChildren().stream().filter(x -> x instanceof TickLabel).forEach((Node x) -> {
-                    TickLabel text = (TickLabel) x;
-                    //text.setFont(getFont());
+                for (TickLabel text : getTickLabels()) {
                     text.setLayoutX(p);
                     text.setLayoutY(text.getYpos());
-                });
+                }
                 addAxisLabel();
                 getAxisLabel().setFont(getFont());
                 getAxisLabel().setLayoutX(5d + findMinX() - getAxisLabel().prefWidth(-1d) / 2d + getAxisLabel().prefHeight(-1d));
                 getAxisLabel().setLayoutY(getHeight() / 2d);
             }
         } else {
-            getTickLabels().stream().forEach(x -> getChildren().remove(x));
             removeAxisLabel();
         }
     }
@@ -106,8 +106,8 @@ public class AxisRight extends AbstractAxisRegion {
     
     private double findMinX() {
         double minx = Double.POSITIVE_INFINITY;
-        for (Text text : getTickLabels()) {
-            minx = Math.min(minx, text.prefWidth(-1d));
+        for (TickLabel text : getTickLabels()) {
+            minx = Math.min(minx, getTickLabelWidth(text));
         }
         return minx;
     }
@@ -127,34 +127,31 @@ public class AxisRight extends AbstractAxisRegion {
 //    }
 
     private void computeValue() {
-        getTickLabels().stream().forEach((TickLabel x) -> {
-            getChildren().remove(x);
-        });
+        beginTickLabels();
         if (getLayer().isRightAxisLabelled()) {
-            getLayer().getAxisSet().getYTransform().get().stream()
-                    .filter(y -> y >= getLayer().getYMin() && y <= getLayer().getYMax())
-                    .forEach((Double y) -> {
-                        TickLabel text = null;
-                        if (isCategorical()) {
-                            if (getCategories().containsKey(y.intValue())) {
-                                text = new TickLabel(getCategories().get(y.intValue()));
-                            }
-                        } else {
-                            text = new TickLabel(getLayer().getAxisSet().getYTransform().getTickLabel(y));
-                        }
-                        if (text != null) {
-                            Point2D p1;
-                            p1 = getLayer().toPixel(getLayer().getXLeft(), y);
-                            p1 = getLayer().getView().localToParent(p1);
-                            p1 = parentToLocal(p1);
-                            getChildren().add(text);
-                            text.setFont(getFont());
-                            text.setFill(getLayer().getAxisColor());
-                            text.setX(0d);
-                            text.setYpos(p1.getY());
-                        }
-                    });
+            AbstractTransform transform = getLayer().getAxisSet().getYTransform();
+            for (double y : transform.getMajorTickArray()) {
+                if (!(y >= getLayer().getYMin() && y <= getLayer().getYMax())) {
+                    continue;
+                }
+                TickLabel text = null;
+                if (isCategorical()) {
+                    if (getCategories().containsKey((int) y)) {
+                        text = nextTickLabel(getCategories().get((int) y));
+                    }
+                } else {
+                    text = nextTickLabel(formatTickLabel(transform, y));
+                }
+                if (text != null) {
+                    Point2D p1 = getLayer().toPixel(getLayer().getXLeft(), y);
+                    p1 = getLayer().getView().localToParent(p1);
+                    p1 = parentToLocal(p1);
+                    text.setX(0d);
+                    text.setYpos(p1.getY());
+                }
+            }
         }
+        endTickLabels();
     }
 
 }
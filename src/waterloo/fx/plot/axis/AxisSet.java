@@ -21,6 +21,7 @@
  */
 package waterloo.fx.plot.axis;
 
+import java.util.Arrays;
 import javafx.geometry.Point2D;
 import javafx.geometry.VPos;
 import javafx.scene.canvas.GraphicsContext;
@@ -56,6 +57,30 @@ public class AxisSet {
     private final Chart layer;
     private AbstractTransform xTransform = new NOPTransform();
     private AbstractTransform yTransform = new NOPTransform();
+    /**
+     * The state of the chart when the grid was last painted by
+     * {@code updateGrid}, or null if it needs to be painted.
+     */
+    private GridKey paintedGrid;
+
+    /**
+     * Cosines and sines of the angles of the rays in the polar grid, which are
+     * at 30 degree intervals, and the labels for the rays.
+     */
+    private static final int RAY_COUNT = 12;
+    private static final double[] RAY_COS = new double[RAY_COUNT];
+    private static final double[] RAY_SIN = new double[RAY_COUNT];
+    private static final String[] RAY_LABELS = new String[RAY_COUNT];
+
+    static {
+        double theta = 0d;
+        for (int k = 0; k < RAY_COUNT; k++) {
+            RAY_COS[k] = Math.cos(theta);
+            RAY_SIN[k] = Math.sin(theta);
+            RAY_LABELS[k] = String.format("%3.0f\u00b0", theta * 180 / Math.PI);
+            theta += Math.PI / 6;
+        }
+    }
 
     /**
      * Constructs the axis set.
@@ -164,6 +189,32 @@ public class AxisSet {
         this.yTransform = yTransform;
     }
 
+    /**
+     * Paints the grid unless nothing that affects it has changed since it was
+     * last painted by this method. The axis limits, size of the view, tick
+     * values, origin, polar setting and grid styles are compared.
+     *
+     * @param g the GraphicsContext retrieved from the canvas instance.
+     * @return true if the grid was painted
+     */
+    public boolean updateGrid(GraphicsContext g) {
+        GridKey key = new GridKey();
+        if (key.equals(paintedGrid)) {
+            return false;
+        }
+        paintGrid(g);
+        paintedGrid = key;
+        return true;
+    }
+
+    /**
+     * Forces the next call to {@code updateGrid} to paint the grid, e.g. after
+     * a change to a tick label formatter.
+     */
+    public void invalidateGrid() {
+        paintedGrid = null;
+    }
+
     /**
      * Renders the canvas for this chart view. This includes the grid, internal
      * axes etc.
@@ -186,13 +237,14 @@ public class AxisSet {
             g.setFill(layer.getAltFillVertical());
             Point2D p2;
             Point2D p3;
-            for (int k = 1; k < xTransform.get().size() - 1; k += 2) {
+            double[] xTicks = xTransform.getMajorTickArray();
+            for (int k = 1; k < xTicks.length - 1; k += 2) {
                 if (layer.isReverseX()) {
-                    p2 = layer.toPixel(xTransform.get().get(k + 1), layer.getYTop());
-                    p3 = layer.toPixel(xTransform.get().get(k), layer.getYBottom());
+                    p2 = layer.toPixel(xTicks[k + 1], layer.getYTop());
+                    p3 = layer.toPixel(xTicks[k], layer.getYBottom());
                 } else {
-                    p2 = layer.toPixel(xTransform.get().get(k), layer.getYTop());
-                    p3 = layer.toPixel(xTransform.get().get(k + 1), layer.getYBottom());
+                    p2 = layer.toPixel(xTicks[k], layer.getYTop());
+                    p3 = layer.toPixel(xTicks[k + 1], layer.getYBottom());
                 }
                 g.fillRect(p2.getX(), p2.getY(), p3.getX() - p2.getX(), p3.getY() - p2.getY());
             }
@@ -202,13 +254,14 @@ public class AxisSet {
             g.setFill(layer.getAltFillHorizontal());
             Point2D p2;
             Point2D p3;
-            for (int k = yTransform.get().size() - 2; k > 1; k -= 2) {
+            double[] yTicks = yTransform.getMajorTickArray();
+            for (int k = yTicks.length - 2; k > 1; k -= 2) {
                 if (layer.isReverseY()) {
-                    p2 = layer.toPixel(layer.getXLeft(), yTransform.get().get(k - 1));
-                    p3 = layer.toPixel(layer.getXRight(), yTransform.get().get(k));
+                    p2 = layer.toPixel(layer.getXLeft(), yTicks[k - 1]);
+                    p3 = layer.toPixel(layer.getXRight(), yTicks[k]);
                 } else {
-                    p2 = layer.toPixel(layer.getXLeft(), yTransform.get().get(k));
-                    p3 = layer.toPixel(layer.getXRight(), yTransform.get().get(k - 1));
+                    p2 = layer.toPixel(layer.getXLeft(), yTicks[k]);
+                    p3 = layer.toPixel(layer.getXRight(), yTicks[k - 1]);
                 }
                 g.fillRect(p2.getX(), p2.getY(), p3.getX() - p2.getX(), p3.getY() - p2.getY());
             }
@@ -234,11 +287,10 @@ public class AxisSet {
                 g.arc(layer.getView().getWidth() / 2d, layer.getView().getHeight() / 2d,
                         layer.getView().getWidth() / 2d, layer.getView().getHeight() / 2d, 0, 360);
 
-                for (double theta = 0; theta < 2 * Math.PI; theta += Math.PI / 6) {
-                    Point2D p1 = layer.toPixel(Math.cos(theta) * layer.getView().getWidth() / 2d,
-                            Math.sin(theta) * layer.getView().getHeight() / 2d);
+                for (int k = 0; k < RAY_COUNT; k++) {
                     g.moveTo(p0.getX(), p0.getY());
-                    g.lineTo(p1.getX(), p1.getY());
+                    g.lineTo(layer.toPixelX(RAY_COS[k] * layer.getView().getWidth() / 2d),
+                            layer.toPixelY(RAY_SIN[k] * layer.getView().getHeight() / 2d));
                 }
                 g.stroke();
 
@@ -249,12 +301,10 @@ public class AxisSet {
                  * to be the same.
                  */
                 g.beginPath();
-                for (int k = 0; k < xTransform.get().size(); k++) {
-                    double x = xTransform.get().get(k);
+                for (double x : xTransform.getMajorTickArray()) {
                     g.arc(p0.getX(), p0.getY(), x / layer.getPixelWidth(), x / layer.getPixelHeight(), 0d, 360d);
                 }
-                for (int k = 0; k < yTransform.get().size(); k++) {
-                    double y = yTransform.get().get(k);
+                for (double y : yTransform.getMajorTickArray()) {
                     g.arc(p0.getX(), p0.getY(), y / layer.getPixelWidth(), y / layer.getPixelHeight(), 0d, 360d);
                 }
                 g.stroke();
@@ -274,11 +324,10 @@ public class AxisSet {
                 ry -= g.getFont().getSize();
                 // Unit circle
                 Ellipse e0 = new Ellipse(0, 0, rx, ry);
-                for (double theta = 0; theta < 2 * Math.PI; theta += Math.PI / 6) {
-                    Point2D p2 = layer.toPixel(Math.cos(theta) * rx, Math.sin(theta) * ry);
-                    Point2D p = getIntersection(e0, p2.getX(), p2.getY());
+                for (int k = 0; k < RAY_COUNT; k++) {
+                    Point2D p = getIntersection(e0, layer.toPixelX(RAY_COS[k] * rx), layer.toPixelY(RAY_SIN[k] * ry));
                     if (p != null) {
-                        g.fillText(String.format("%3.0f\u00b0", theta * 180 / Math.PI),
+                        g.fillText(RAY_LABELS[k],
                                 p0.getX() + p.getX(),
                                 p0.getY() + p.getY());
                     }
@@ -290,62 +339,34 @@ public class AxisSet {
         } else {
 
             // MAJOR GRID 
+            double top = layer.toPixelY(layer.getYTop());
+            double bottom = layer.toPixelY(layer.getYBottom());
+            double left = Math.min(layer.toPixelX(layer.getXMin()), layer.toPixelX(layer.getXMax()));
+            double right = Math.max(layer.toPixelX(layer.getXMin()), layer.toPixelX(layer.getXMax()));
+            double x0 = layer.toPixelX(layer.getXOrigin());
+            double y0 = layer.toPixelY(layer.getYOrigin());
             if (layer.isMajorGridPainted()) {
                 g.setStroke(layer.getMajorGridColor());
                 g.setLineWidth(layer.getMajorGridStrokeWidth());
-                xTransform.get().stream().forEach((Double x) -> {
-                    Point2D p0 = layer.toPixel(x, layer.getYBottom());
-                    Point2D p1 = layer.toPixel(x, layer.getYTop());
-                    g.strokeLine(p0.getX(), p0.getY(), p1.getX(), p1.getY());
-                });
-
-                yTransform.get().stream().forEach((Double y) -> {
-                    Point2D p0 = layer.toPixel(layer.getXMin(), y);
-                    Point2D p1 = layer.toPixel(layer.getXMax(), y);
-                    g.strokeLine(p0.getX(), p0.getY(), p1.getX(), p1.getY());
-                });
-
+                strokeVertical(g, xTransform.getMajorTickArray(), bottom, top);
+                strokeHorizontal(g, yTransform.getMajorTickArray(), left, right);
             }
 
             //MINOR GRID
             if (layer.isMinorGridPainted()) {
                 g.setStroke(layer.getMinorGridColor());
                 g.setLineWidth(layer.getMinorGridStrokeWidth());
-                xTransform.getMinorTicks().stream().forEach((Double x) -> {
-                    Point2D p0 = layer.toPixel(x, layer.getYBottom());
-                    Point2D p1 = layer.toPixel(x, layer.getYTop());
-                    g.strokeLine(p0.getX(), p0.getY(), p1.getX(), p1.getY());
-                });
-
-                yTransform.getMinorTicks().stream().forEach((Double y) -> {
-                    Point2D p0 = layer.toPixel(layer.getXMin(), y);
-                    Point2D p1 = layer.toPixel(layer.getXMax(), y);
-                    g.strokeLine(p0.getX(), p0.getY(), p1.getX(), p1.getY());
-                });
-
+                strokeVertical(g, xTransform.getMinorTickArray(), bottom, top);
+                strokeHorizontal(g, yTransform.getMinorTickArray(), left, right);
             }
 
             if (layer.isInnerAxisPainted()) {
                 g.setStroke(layer.getInnerAxisColor());
                 g.setLineWidth(layer.getInnerAxisStrokeWidth());
-                Point2D p0 = layer.toPixel(layer.getXLeft(), layer.getYOrigin());
-                Point2D p1 = layer.toPixel(layer.getXRight(), layer.getYOrigin());
-                g.strokeLine(p0.getX(), p0.getY(), p1.getX(), p1.getY());
-                p0 = layer.toPixel(layer.getXOrigin(), layer.getYTop());
-                p1 = layer.toPixel(layer.getXOrigin(), layer.getYBottom());
-                g.strokeLine(p0.getX(), p0.getY(), p1.getX(), p1.getY());
-
-                xTransform.get().stream().forEach((Double x) -> {
-                    Point2D p2 = layer.toPixel(x, layer.getYOrigin());
-                    Point2D p3 = layer.toPixel(x, layer.getYOrigin());
-                    g.strokeLine(p2.getX(), p2.getY() - 4, p3.getX(), p3.getY() + 4);
-                });
-
-                yTransform.get().stream().forEach((Double y) -> {
-                    Point2D p4 = layer.toPixel(layer.getXOrigin(), y);
-                    Point2D p5 = layer.toPixel(layer.getXOrigin(), y);
-                    g.strokeLine(p4.getX() - 4, p4.getY(), p5.getX() + 4, p5.getY());
-                });
+                g.strokeLine(layer.toPixelX(layer.getXLeft()), y0, layer.toPixelX(layer.getXRight()), y0);
+                g.strokeLine(x0, top, x0, bottom);
+                strokeVertical(g, xTransform.getMajorTickArray(), y0 - 4, y0 + 4);
+                strokeHorizontal(g, yTransform.getMajorTickArray(), x0 - 4, x0 + 4);
             }
 
             if (layer.isInnerAxisLabelled()) {
@@ -353,26 +374,44 @@ public class AxisSet {
                 g.setFill(layer.getInnerAxisColor());
                 g.setTextBaseline(VPos.TOP);
                 g.setFont(Font.font(font.getFamily(), font.getSize()-2));
-                xTransform.get().stream().forEach((Double x) -> {
-                    Point2D p2 = layer.toPixel(x, layer.getYOrigin());
-                    Point2D p3 = layer.toPixel(x, layer.getYOrigin());
+                for (double x : xTransform.getMajorTickArray()) {
                     if (Math.abs(x - layer.getXOrigin()) > layer.getMajorXInterval() / 4d) {
-                        g.fillText(xTransform.getTickLabel(x), p2.getX(), p3.getY() + 5);
+                        g.fillText(xTransform.getTickLabel(x), layer.toPixelX(x), y0 + 5);
                     }
-                });
+                }
                 g.setTextAlign(TextAlignment.RIGHT);
                 g.setTextBaseline(VPos.CENTER);
-                yTransform.get().stream().forEach((Double y) -> {
-                    Point2D p4 = layer.toPixel(layer.getXOrigin(), y);
-                    Point2D p5 = layer.toPixel(layer.getXOrigin(), y);
+                for (double y : yTransform.getMajorTickArray()) {
                     if (Math.abs(y - layer.getYOrigin()) > layer.getMajorYInterval() / 4d) {
-                        g.fillText(yTransform.getTickLabel(y), p4.getX() - 7, p5.getY());
+                        g.fillText(yTransform.getTickLabel(y), x0 - 7, layer.toPixelY(y));
                     }
-                });
+                }
             }
         }
     }
 
+    /**
+     * Strokes a vertical line between the pixel rows y0 and y1 at each of the
+     * x values.
+     */
+    private void strokeVertical(GraphicsContext g, double[] values, double y0, double y1) {
+        for (double value : values) {
+            double x = layer.toPixelX(value);
+            g.strokeLine(x, y0, x, y1);
+        }
+    }
+
+    /**
+     * Strokes a horizontal line between the pixel columns x0 and x1 at each of
+     * the y values.
+     */
+    private void strokeHorizontal(GraphicsContext g, double[] values, double x0, double x1) {
+        for (double value : values) {
+            double y = layer.toPixelY(value);
+            g.strokeLine(x0, y, x1, y);
+        }
+    }
+
     private static Point2D getIntersection(Ellipse e0, double x0, double y0) {
         //See: http://mathworld.wolfram.com/Ellipse-LineIntersection.html
         double a = e0.getRadiusX();
@@ -381,4 +420,73 @@ public class AxisSet {
         double y = a * b * y0 / (Math.sqrt(a * a * y0 * y0 + b * b * x0 * x0));
         return new Point2D(x, y);
     }
+
+    /**
+     * Captures the settings of the chart that determine the content of the
+     * grid.
+     */
+    private final class GridKey {
+
+        private final double[] values;
+        private final Object[] styles;
+
+        private GridKey() {
+            double[] xTicks = xTransform.getMajorTickArray();
+            double[] yTicks = yTransform.getMajorTickArray();
+            double[] xMinor = xTransform.getMinorTickArray();
+            double[] yMinor = yTransform.getMinorTickArray();
+            values = new double[18 + xTicks.length + yTicks.length + xMinor.length + yMinor.length];
+            int n = 0;
+            values[n++] = layer.getView().getWidth();
+            values[n++] = layer.getView().getHeight();
+            values[n++] = layer.getXLeft();
+            values[n++] = layer.getXRight();
+            values[n++] = layer.getYBottom();
+            values[n++] = layer.getYTop();
+            values[n++] = layer.getXOrigin();
+            values[n++] = layer.getYOrigin();
+            values[n++] = layer.getMajorXInterval();
+            values[n++] = layer.getMajorYInterval();
+            values[n++] = layer.getMajorGridStrokeWidth();
+            values[n++] = layer.getMinorGridStrokeWidth();
+            values[n++] = layer.getInnerAxisStrokeWidth();
+            values[n++] = (layer.isPolar() ? 1 : 0)
+                    | (layer.isAltFillVerticalPainted() ? 2 : 0)
+                    | (layer.isAltFillHorizontalPainted() ? 4 : 0)
+                    | (layer.isMajorGridPainted() ? 8 : 0)
+                    | (layer.isMinorGridPainted() ? 16 : 0)
+                    | (layer.isInnerAxisPainted() ? 32 : 0)
+                    | (layer.isInnerAxisLabelled() ? 64 : 0)
+                    | (layer.getParent() instanceof Chart ? 128 : 0)
+                    | (layer.isReverseX() ? 256 : 0)
+                    | (layer.isReverseY() ? 512 : 0);
+            n = add(n, xTicks);
+            n = add(n, yTicks);
+            n = add(n, xMinor);
+            add(n, yMinor);
+            styles = new Object[]{layer.getAltFillVertical(), layer.getAltFillHorizontal(),
+                layer.getMajorGridColor(), layer.getMinorGridColor(), layer.getInnerAxisColor(),
+                getBottomAxis().getAxisLabel().getFont(), xTransform, yTransform};
+        }
+
+        private int add(int n, double[] ticks) {
+            values[n++] = ticks.length;
+            System.arraycopy(ticks, 0, values, n, ticks.length);
+            return n + ticks.length;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof GridKey)) {
+                return false;
+            }
+            GridKey key = (GridKey) o;
+            return Arrays.equals(values, key.values) && Arrays.equals(styles, key.styles);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(values);
+        }
+    }
 }
@@ -24,9 +24,9 @@ package waterloo.fx.plot.axis;
 import javafx.geometry.Point2D;
 import javafx.geometry.VPos;
 import javafx.scene.Cursor;
-import javafx.scene.Node;
 import javafx.scene.text.TextAlignment;
 import waterloo.fx.plot.Chart;
+import waterloo.fx.transforms.AbstractTransform;
 
 /**
  * Implementation of the {@code AbstractAxisRegion} for a top axis.
@@ -59,7 +59,8 @@ public class AxisTop extends AbstractAxisRegion {
     @Override
     public double computePrefHeight(double w) {
         if (getTickLabels().size() > 0) {
-            return getAxisLabel().prefHeight(-1d) * 3d;
+            double h = getExtent();
+            return Double.isNaN(h) ? setExtent(getAxisLabel().prefHeight(-1d) * 3d) : h;
         } else {
             return Chart.getDefaultInsets().getTop();
         }
@@ -70,14 +71,13 @@ public class AxisTop extends AbstractAxisRegion {
         computeValue();
         if (getLayer().isTopAxisLabelled()) {
             double p = getLayer().isTopAxisPainted()
-                    ? getLine().get().getBoundsInParent().getMinY()
+                    ? getLine().getBounds().getMinY()
                     : getHeight() - 2d;
             if (getTickLabels().size() > 0) {
-                getChildren().stream().filter(x -> x instanceof TickLabel).forEach((Node x) -> {
-                    TickLabel text = (TickLabel) x;
+                for (TickLabel text : getTickLabels()) {
                     text.setLayoutX(text.getXpos());
                     text.setLayoutY(p);
-                });
+                }
             }
             addAxisLabel();
             if (getTickLabels().size() > 0) {
@@ -87,7 +87,6 @@ public class AxisTop extends AbstractAxisRegion {
                         - getAxisLabel().prefWidth(0d) / 2d);
             }
         } else {
-            getTickLabels().stream().forEach(x -> getChildren().remove(x));
             removeAxisLabel();
         }
     }
@@ -106,34 +105,31 @@ public class AxisTop extends AbstractAxisRegion {
         /**
          * Add or remove text as per the present settings
          */
-        getTickLabels().stream().forEach((TickLabel x) -> {
-            getChildren().remove(x);
-        });
-
+        beginTickLabels();
         if (getLayer().isTopAxisLabelled()) {
-            getLayer().getAxisSet().getXTransform().get().stream()
-                    .filter(x -> x >= getLayer().getXMin() && x <= getLayer().getXMax())
-                    .forEach((Double x) -> {
-                        TickLabel text = null;
-                        if (isCategorical()) {
-                            if (getCategories().containsKey(x.intValue())) {
-                                text = new TickLabel(getCategories().get(x.intValue()));
-                            }
-                        } else {
-                            text = new TickLabel(getLayer().getAxisSet().getXTransform().getTickLabel(x));
-                        }
-                        if (text != null) {
-                            Point2D p1 = getLayer().toPixel(x, getLayer().getYTop());
-                            p1 = getLayer().getView().localToParent(p1);
-                            p1 = parentToLocal(p1);
-                            text.setFont(getFont());
-                            text.setFill(getLayer().getAxisColor());
-                            text.setXpos(p1.getX() - text.prefWidth(0) / 2d);
-                            text.setTextOrigin(VPos.BOTTOM);
-                            getChildren().add(text);
-                        }
-                    });
+            AbstractTransform transform = getLayer().getAxisSet().getXTransform();
+            for (double x : transform.getMajorTickArray()) {
+                if (!(x >= getLayer().getXMin() && x <= getLayer().getXMax())) {
+                    continue;
+                }
+                TickLabel text = null;
+                if (isCategorical()) {
+                    if (getCategories().containsKey((int) x)) {
+                        text = nextTickLabel(getCategories().get((int) x));
+                    }
+                } else {
+                    text = nextTickLabel(formatTickLabel(transform, x));
+                }
+                if (text != null) {
+                    Point2D p1 = getLayer().toPixel(x, getLayer().getYTop());
+                    p1 = getLayer().getView().localToParent(p1);
+                    p1 = parentToLocal(p1);
+                    text.setXpos(p1.getX() - getTickLabelWidth(text) / 2d);
+                    text.setTextOrigin(VPos.BOTTOM);
+                }
+            }
         }
+        endTickLabels();
     }
 
 }
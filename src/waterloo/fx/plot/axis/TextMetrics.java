@@ -0,0 +1,78 @@
+/*
+*
+ * <http://sigtool.github.io/waterlooFX/>
+ *
+ * Copyright King's College London  2014. Copyright Ironduke Publishing Limited, UK 2014-.
+ *
+ * @author Malcolm Lidierth <a href="https://github.com/sigtool/waterlooFX/issues"> [Contact]</a>
+ *
+ * Project Waterloo is free software:  you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Project Waterloo is distributed in the hope that it will  be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package waterloo.fx.plot.axis;
+
+import java.util.HashMap;
+import java.util.Map;
+import javafx.scene.text.Font;
+import javafx.scene.text.Text;
+
+/**
+ * Cache of the widths of strings rendered in a given font, so that tick labels
+ * can be positioned without laying out their text on every pass.
+ *
+ * The cache is shared by all axes and is cleared when it grows beyond
+ * {@code MAX_ENTRIES}. Use only on the FX Application Thread.
+ *
+ * @author Malcolm Lidierth
+ */
+final class TextMetrics {
+
+    private static final int MAX_ENTRIES = 2048;
+    private static final Map<Font, Map<String, Double>> WIDTHS = new HashMap<>();
+    private static final Text MEASURE = new Text();
+    private static int size;
+
+    private TextMetrics() {
+    }
+
+    /**
+     * Returns the width of the text, as given by {@code Text.prefWidth}.
+     *
+     * @param text the text
+     * @param font the font
+     * @return the width in pixels
+     */
+    static double getWidth(String text, Font font) {
+        Map<String, Double> widths = WIDTHS.get(font);
+        if (widths == null) {
+            widths = new HashMap<>();
+            WIDTHS.put(font, widths);
+        }
+        Double w = widths.get(text);
+        if (w == null) {
+            if (size >= MAX_ENTRIES) {
+                WIDTHS.clear();
+                size = 0;
+                widths = new HashMap<>();
+                WIDTHS.put(font, widths);
+            }
+            MEASURE.setFont(font);
+            MEASURE.setText(text);
+            w = MEASURE.prefWidth(-1d);
+            widths.put(text, w);
+            size++;
+        }
+        return w;
+    }
+}
@@ -22,14 +22,16 @@
  */
 package waterloo.fx.plot.model;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import javafx.collections.FXCollections;
+import java.nio.DoubleBuffer;
+import javafx.beans.Observable;
 import javafx.collections.ObservableList;
 
 /**
  * Data model used by all plot classes.
  *
+ * The data are held in {@link DoubleColumn}s, which store primitive values
+ * and may be backed by memory-mapped files.
+ *
  * Security: Note that data within the model is exposed by reference via the
  * setter and getter methods.
  *
@@ -42,29 +44,29 @@ public final class DataModel {
      * Vector of values of X for display. Values are plotted in sequence /
      * together with the corresponding element from yData and/or Marker
      */
-    private final ObservableList<Double> xData;
+    private final DoubleColumn xData;
     /**
      * Vector of Y-values corresponding element-by-element to the values in
      * xData. yData must have the same length as xData. Missing values can be
      * set to NaN.
      */
-    private final ObservableList<Double> yData;
+    private final DoubleColumn yData;
     /**
      * A double[] array. Use is plot type specific.
      */
-    private final ObservableList<Double> extraData0;//EAST, RIGHT
+    private final DoubleColumn extraData0;//EAST, RIGHT
     /**
      * A double[] array. Use is plot type specific.
      */
-    private final ObservableList<Double> extraData1;//NORTH, UPPER
+    private final DoubleColumn extraData1;//NORTH, UPPER
     /**
      * A double[] array. Use is plot type specific.
      */
-    private final ObservableList<Double> extraData2;//WEST, LEFT
+    private final DoubleColumn extraData2;//WEST, LEFT
     /**
      * A double[] array. Use is plot type specific.
      */
-    private final ObservableList<Double> extraData3;//SOUTH, LOWER
+    private final DoubleColumn extraData3;//SOUTH, LOWER
 
     private double baseValue = 0d;
 
@@ -75,20 +77,166 @@ public final class DataModel {
      */
     private Object extraObject;
 
+    /**
+     * Primitive copies of xData and yData, created on demand and discarded
+     * when the data change. Columns backed by a buffer are not copied.
+     */
+    private double[] xArray;
+    private double[] yArray;
+    /**
+     * Read-only views of xData and yData, created on demand and discarded
+     * when the data change.
+     */
+    private DoubleBuffer xBuffer;
+    private DoubleBuffer yBuffer;
+    /**
+     * Cosines and sines of the xArray values for polar data, created on
+     * demand and discarded when the xData change.
+     */
+    private double[] cosArray;
+    private double[] sinArray;
+
     /**
      * Constructor 
      */
     public DataModel() {
-        xData = FXCollections.observableArrayList(new ArrayList<Double>());
-        yData = FXCollections.observableArrayList(new ArrayList<Double>());
-        extraData0 = FXCollections.observableArrayList(new ArrayList<Double>());
-        extraData1 = FXCollections.observableArrayList(new ArrayList<Double>());
-        extraData2 = FXCollections.observableArrayList(new ArrayList<Double>());
-        extraData3 = FXCollections.observableArrayList(new ArrayList<Double>());
-        for (double k = -5d; k <= 5d; k++) {
-            xData.add(k);
-            yData.add(k);
+        xData = new DoubleColumn();
+        yData = new DoubleColumn();
+        extraData0 = new DoubleColumn();
+        extraData1 = new DoubleColumn();
+        extraData2 = new DoubleColumn();
+        extraData3 = new DoubleColumn();
+        double[] init = new double[11];
+        for (int k = 0; k < init.length; k++) {
+            init[k] = k - 5d;
+        }
+        xData.setAll(init);
+        yData.setAll(init);
+        xData.addListener((Observable o) -> {
+            xArray = null;
+            xBuffer = null;
+            cosArray = null;
+            sinArray = null;
+        });
+        yData.addListener((Observable o) -> {
+            yArray = null;
+            yBuffer = null;
+        });
+    }
+
+    /**
+     * Returns the xData as a primitive array. The array is cached until the
+     * xData change, when a new array will be created, so callers must not
+     * modify it. An array that has been returned is never altered and may
+     * therefore be safely read from other threads.
+     *
+     * When the xData are backed by a buffer, e.g. one mapped from a session
+     * file, a new copy is returned on each call rather than being cached:
+     * use {@link #getXBuffer()} to read those data in place.
+     *
+     * This method should be called on the thread that modifies the data.
+     *
+     * @return the xData values
+     */
+    public double[] getXArray() {
+        if (xArray != null) {
+            return xArray;
+        }
+        double[] arr = xData.toDoubleArray();
+        if (!xData.isBuffered()) {
+            xArray = arr;
+        }
+        return arr;
+    }
+
+    /**
+     * Returns the yData as a primitive array, cached in the same way as
+     * {@link #getXArray()}.
+     *
+     * @return the yData values
+     */
+    public double[] getYArray() {
+        if (yArray != null) {
+            return yArray;
+        }
+        double[] arr = yData.toDoubleArray();
+        if (!yData.isBuffered()) {
+            yArray = arr;
+        }
+        return arr;
+    }
+
+    /**
+     * Returns a read-only view of the xData, positioned at zero with its
+     * limit at the size of the data. When the xData are backed by a buffer,
+     * e.g. one mapped from a session file, the view reads that buffer in
+     * place; otherwise it wraps the array from {@link #getXArray()}. Either
+     * way, the view is cached until the xData change and its contents are
+     * never altered, so it may be safely read from other threads.
+     *
+     * This method should be called on the thread that modifies the data.
+     *
+     * @return the xData values
+     */
+    public DoubleBuffer getXBuffer() {
+        if (xBuffer == null) {
+            xBuffer = xData.isBuffered() ? xData.asBuffer() : DoubleBuffer.wrap(getXArray()).asReadOnlyBuffer();
+        }
+        return xBuffer;
+    }
+
+    /**
+     * Returns a read-only view of the yData, cached in the same way as
+     * {@link #getXBuffer()}.
+     *
+     * @return the yData values
+     */
+    public DoubleBuffer getYBuffer() {
+        if (yBuffer == null) {
+            yBuffer = yData.isBuffered() ? yData.asBuffer() : DoubleBuffer.wrap(getYArray()).asReadOnlyBuffer();
+        }
+        return yBuffer;
+    }
+
+    /**
+     * Returns the cosines of the xData values as a primitive array. For polar
+     * data, where the xData are angles in radians, this allows data to be
+     * converted to cartesian coordinates without evaluating trigonometric
+     * functions when only the yData (radii) or the axis limits change. The
+     * array is cached in the same way as {@link #getXArray()}.
+     *
+     * @return the cosines
+     */
+    public double[] getCosArray() {
+        if (cosArray == null) {
+            computeTrigArrays();
+        }
+        return cosArray;
+    }
+
+    /**
+     * Returns the sines of the xData values as a primitive array, cached in
+     * the same way as {@link #getCosArray()}.
+     *
+     * @return the sines
+     */
+    public double[] getSinArray() {
+        if (sinArray == null) {
+            computeTrigArrays();
+        }
+        return sinArray;
+    }
+
+    private void computeTrigArrays() {
+        DoubleBuffer x = getXBuffer();
+        double[] cos = new double[x.limit()];
+        double[] sin = new double[x.limit()];
+        for (int k = 0; k < cos.length; k++) {
+            cos[k] = Math.cos(x.get(k));
+            sin[k] = Math.sin(x.get(k));
         }
+        cosArray = cos;
+        sinArray = sin;
     }
 
     public final void setExtraObject(Object o) {
@@ -99,42 +247,42 @@ public final class DataModel {
      * @param data the extraData0 to set
      */
     public final void setExtraData0(double... data) {
-        setData(getExtraData0(), data);
+        setData(extraData0, data);
     }
 
     /**
      * @param data the extraData1 to set
      */
     public final void setExtraData1(double... data) {
-        setData(getExtraData1(), data);
+        setData(extraData1, data);
     }
 
     /**
      * @param data the extraData2 to set
      */
     public final void setExtraData2(double... data) {
-        setData(getExtraData2(), data);
+        setData(extraData2, data);
     }
 
     /**
      * @param data the extraData3 to set
      */
     public final void setExtraData3(double... data) {
-        setData(getExtraData3(), data);
+        setData(extraData3, data);
     }
 
     /**
      * @param data
      */
     public final void setXData(double... data) {
-        setData(getXData(), data);
+        setData(xData, data);
     }
 
     /**
      * @param data
      */
     public final void setYData(double... data) {
-        setData(getYData(), data);
+        setData(yData, data);
     }
 
     /**
@@ -159,9 +307,8 @@ public final class DataModel {
         return Math.min(getXData().size(), getYData().size());
     }
 
-    private void setData(ObservableList<Double> arr, double[] data) {
-        arr.clear();
-        Arrays.stream(data).forEach((y) -> arr.add(y));
+    private void setData(DoubleColumn arr, double[] data) {
+        arr.setAll(data);
     }
 
 //    public DoubleSummaryStatistics xSummary(){
@@ -206,6 +353,16 @@ public final class DataModel {
         return xData;
     }
 
+    /**
+     * Returns the xData as a {@link DoubleColumn}, which gives access to the
+     * values without boxing them.
+     *
+     * @return the xData
+     */
+    public DoubleColumn getXColumn() {
+        return xData;
+    }
+
     /**
      * @return the yData
      */
@@ -213,6 +370,16 @@ public final class DataModel {
         return yData;
     }
 
+    /**
+     * Returns the yData as a {@link DoubleColumn}, which gives access to the
+     * values without boxing them.
+     *
+     * @return the yData
+     */
+    public DoubleColumn getYColumn() {
+        return yData;
+    }
+
     /**
      * @return the extraData0
      */
@@ -220,6 +387,16 @@ public final class DataModel {
         return extraData0;
     }
 
+    /**
+     * Returns the extraData0 as a {@link DoubleColumn}, which gives access to the
+     * values without boxing them.
+     *
+     * @return the extraData0
+     */
+    public DoubleColumn getExtraColumn0() {
+        return extraData0;
+    }
+
     /**
      * @return the extraData1
      */
@@ -227,6 +404,16 @@ public final class DataModel {
         return extraData1;
     }
 
+    /**
+     * Returns the extraData1 as a {@link DoubleColumn}, which gives access to the
+     * values without boxing them.
+     *
+     * @return the extraData1
+     */
+    public DoubleColumn getExtraColumn1() {
+        return extraData1;
+    }
+
     /**
      * @return the extraData2
      */
@@ -234,6 +421,16 @@ public final class DataModel {
         return extraData2;
     }
 
+    /**
+     * Returns the extraData2 as a {@link DoubleColumn}, which gives access to the
+     * values without boxing them.
+     *
+     * @return the extraData2
+     */
+    public DoubleColumn getExtraColumn2() {
+        return extraData2;
+    }
+
     /**
      * @return the extraData3
      */
@@ -241,6 +438,16 @@ public final class DataModel {
         return extraData3;
     }
 
+    /**
+     * Returns the extraData3 as a {@link DoubleColumn}, which gives access to the
+     * values without boxing them.
+     *
+     * @return the extraData3
+     */
+    public DoubleColumn getExtraColumn3() {
+        return extraData3;
+    }
+
     /**
      * @return the extraObject
      */
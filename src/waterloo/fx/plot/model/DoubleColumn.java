@@ -0,0 +1,317 @@
+/*
+*
+ * <http://sigtool.github.io/waterlooFX/>
+ *
+ * Copyright King's College London  2014. Copyright Ironduke Publishing Limited, UK 2014-.
+ *
+ * @author Malcolm Lidierth <a href="https://github.com/sigtool/waterlooFX/issues"> [Contact]</a>
+ *
+ * Project Waterloo is free software:  you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Project Waterloo is distributed in the hope that it will  be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package waterloo.fx.plot.model;
+
+import java.nio.DoubleBuffer;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import javafx.collections.ModifiableObservableListBase;
+
+/**
+ * An observable list of doubles that stores its values in a primitive array
+ * rather than as boxed {@code Double}s.
+ *
+ * A column may also be backed by a {@code DoubleBuffer}, e.g. one mapped from
+ * a file, that is read in place. The buffer is copied to an array the first
+ * time the column is modified, so it is never written to.
+ *
+ * Null elements are stored as NaN.
+ *
+ * @author Malcolm Lidierth
+ */
+public final class DoubleColumn extends ModifiableObservableListBase<Double> {
+
+    private static final double[] EMPTY = new double[0];
+
+    /**
+     * The values, when the column is not backed by a buffer.
+     */
+    private double[] array = EMPTY;
+    /**
+     * The buffer backing the column, or null.
+     */
+    private DoubleBuffer buffer;
+    private int size;
+
+    /**
+     * Creates an empty column.
+     */
+    public DoubleColumn() {
+    }
+
+    /**
+     * Creates a column containing a copy of the values.
+     *
+     * @param values the values
+     */
+    public DoubleColumn(double... values) {
+        array = values.clone();
+        size = array.length;
+    }
+
+    @Override
+    public Double get(int index) {
+        return getDouble(index);
+    }
+
+    /**
+     * Returns an element without boxing it.
+     *
+     * @param index the index of the element
+     * @return the value
+     */
+    public double getDouble(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return buffer == null ? array[index] : buffer.get(index);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns a copy of the values.
+     *
+     * @return a new array
+     */
+    public double[] toDoubleArray() {
+        if (buffer == null) {
+            return Arrays.copyOf(array, size);
+        }
+        double[] arr = new double[size];
+        buffer.duplicate().get(arr);
+        return arr;
+    }
+
+    /**
+     * Returns a read-only view of the values, positioned at zero with its
+     * limit at the size of the column. The view reflects later modifications
+     * of the column only until its size changes or it is next replaced.
+     *
+     * @return the view
+     */
+    public DoubleBuffer asBuffer() {
+        DoubleBuffer b = buffer == null ? DoubleBuffer.wrap(array, 0, size) : buffer.duplicate();
+        return b.asReadOnlyBuffer();
+    }
+
+    /**
+     * @return true if the column reads its values from a buffer in place
+     */
+    boolean isBuffered() {
+        return buffer != null;
+    }
+
+    /**
+     * Replaces the contents of the column with a copy of the values, notifying
+     * listeners of a single change.
+     *
+     * @param values the values
+     */
+    public void setAll(double... values) {
+        replace(values.clone(), null, values.length);
+    }
+
+    /**
+     * Replaces the contents of the column with the remaining values in a
+     * buffer, notifying listeners of a single change. The buffer is not
+     * copied: the column reads it in place until the column is next modified,
+     * so the caller must not change the buffer contents. This allows a column
+     * to be backed by a memory-mapped file.
+     *
+     * @param values the buffer
+     */
+    public void setAll(DoubleBuffer values) {
+        DoubleBuffer b = values.slice();
+        replace(EMPTY, b, b.capacity());
+    }
+
+    @Override
+    public boolean setAll(Collection<? extends Double> col) {
+        double[] arr = new double[col.size()];
+        int k = 0;
+        for (Double d : col) {
+            arr[k++] = valueOf(d);
+        }
+        replace(arr, null, arr.length);
+        return true;
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends Double> col) {
+        return addAll(size, col);
+    }
+
+    @Override
+    public boolean addAll(int index, Collection<? extends Double> col) {
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        int n = col.size();
+        if (n == 0) {
+            return false;
+        }
+        beginChange();
+        try {
+            ensureCapacity(size + n);
+            System.arraycopy(array, index, array, index + n, size - index);
+            int k = index;
+            for (Double d : col) {
+                array[k++] = valueOf(d);
+            }
+            size += n;
+            nextAdd(index, index + n);
+            modCount++;
+        } finally {
+            endChange();
+        }
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        if (size > 0) {
+            replace(EMPTY, null, 0);
+        }
+    }
+
+    @Override
+    protected void removeRange(int fromIndex, int toIndex) {
+        if (fromIndex < 0 || toIndex > size || fromIndex > toIndex) {
+            throw new IndexOutOfBoundsException(fromIndex + ", " + toIndex);
+        }
+        if (fromIndex == toIndex) {
+            return;
+        }
+        if (fromIndex == 0 && toIndex == size) {
+            clear();
+            return;
+        }
+        beginChange();
+        try {
+            ensureCapacity(size);
+            double[] removed = Arrays.copyOfRange(array, fromIndex, toIndex);
+            System.arraycopy(array, toIndex, array, fromIndex, size - toIndex);
+            size -= toIndex - fromIndex;
+            nextRemove(fromIndex, view(DoubleBuffer.wrap(removed)));
+            modCount++;
+        } finally {
+            endChange();
+        }
+    }
+
+    @Override
+    protected void doAdd(int index, Double element) {
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        ensureCapacity(size + 1);
+        System.arraycopy(array, index, array, index + 1, size - index);
+        array[index] = valueOf(element);
+        size++;
+    }
+
+    @Override
+    protected Double doSet(int index, Double element) {
+        double old = getDouble(index);
+        ensureCapacity(size);
+        array[index] = valueOf(element);
+        return old;
+    }
+
+    @Override
+    protected Double doRemove(int index) {
+        double old = getDouble(index);
+        ensureCapacity(size);
+        System.arraycopy(array, index + 1, array, index, size - index - 1);
+        size--;
+        return old;
+    }
+
+    /**
+     * Replaces the contents, reporting the old values as removed through a
+     * view of the old array or buffer, which are not altered after this call.
+     */
+    private void replace(double[] newArray, DoubleBuffer newBuffer, int newSize) {
+        List<Double> removed = size == 0 ? null
+                : view(buffer == null ? DoubleBuffer.wrap(array, 0, size) : buffer);
+        beginChange();
+        try {
+            array = newArray;
+            buffer = newBuffer;
+            size = newSize;
+            if (removed == null) {
+                if (newSize > 0) {
+                    nextAdd(0, newSize);
+                }
+            } else if (newSize > 0) {
+                nextReplace(0, newSize, removed);
+            } else {
+                nextRemove(0, removed);
+            }
+            modCount++;
+        } finally {
+            endChange();
+        }
+    }
+
+    /**
+     * Ensures the values are in an array of at least the given length, copying
+     * them from the buffer if the column is backed by one.
+     */
+    private void ensureCapacity(int capacity) {
+        if (buffer != null) {
+            double[] arr = new double[Math.max(capacity, size)];
+            buffer.duplicate().get(arr, 0, size);
+            array = arr;
+            buffer = null;
+        } else if (capacity > array.length) {
+            array = Arrays.copyOf(array, Math.max(capacity, Math.max(10, array.length + (array.length >> 1))));
+        }
+    }
+
+    private static double valueOf(Double d) {
+        return d == null ? Double.NaN : d;
+    }
+
+    private static List<Double> view(DoubleBuffer b) {
+        DoubleBuffer values = b.slice();
+        return new AbstractList<Double>() {
+
+            @Override
+            public Double get(int index) {
+                return values.get(index);
+            }
+
+            @Override
+            public int size() {
+                return values.capacity();
+            }
+        };
+    }
+}
@@ -52,6 +52,14 @@ public abstract class AbstractTransform extends ObjectBinding<ArrayList<Double>>
     private NumberFormat formatter = new DecimalFormat();
     final ArrayList<Double> majorTicks = new ArrayList<>();
     private final MinorTickLocatorClass minorTicks = new MinorTickLocatorClass();
+    /**
+     * Computes and caches the tick positions.
+     */
+    final TickEngine tickEngine = new TickEngine();
+    /**
+     * The ticks presently held in majorTicks and minorTicks.
+     */
+    private TickEngine.Ticks ticks;
     Chart layer;
     private AXIS axis;
 
@@ -101,10 +109,74 @@ public abstract class AbstractTransform extends ObjectBinding<ArrayList<Double>>
         return minorTicks;
     }
 
+    /**
+     * Returns the positions of the major ticks in axis space, computing them
+     * if the axis limits have changed. The array is shared and must not be
+     * modified.
+     *
+     * @return the major tick positions
+     */
+    public double[] getMajorTickArray() {
+        get();
+        return ticks == null ? TickEngine.Ticks.EMPTY.major : ticks.major;
+    }
+
+    /**
+     * Returns the positions of the minor ticks in axis space, computing them
+     * if the axis limits have changed. The array is shared and must not be
+     * modified.
+     *
+     * @return the minor tick positions
+     */
+    public double[] getMinorTickArray() {
+        get();
+        if (!minorTicks.isAutoUpdate()) {
+            return minorTicks.stream().mapToDouble(Double::doubleValue).toArray();
+        }
+        return ticks == null ? TickEngine.Ticks.EMPTY.minor : ticks.minor;
+    }
+
+    /**
+     * Updates the major tick list, and the minor tick list if it is updated
+     * automatically, unless the ticks are those already held.
+     *
+     * @param t the ticks from the tick engine
+     * @return the major tick list
+     */
+    final ArrayList<Double> setTicks(TickEngine.Ticks t) {
+        if (t != ticks) {
+            ticks = t;
+            majorTicks.clear();
+            for (double v : t.major) {
+                majorTicks.add(v);
+            }
+            minorTicks.setValues(t.minor);
+        }
+        return majorTicks;
+    }
+
     abstract public Point2D getData(double x, double y);
 
     abstract public Point2D getInverse(double x, double y);
 
+    /**
+     * Returns the transformed value of a single coordinate along the axis of
+     * this transform. Unlike {@code getData}, this does not create a
+     * {@code Point2D} so it is suitable for bulk projection of large data sets.
+     * The transforms supplied here are stateless so this may be called from
+     * worker threads.
+     *
+     * @param val the value in data space
+     * @return the value in axis space
+     */
+    public double transform(double val) {
+        if (getAxis() == AXIS.HORIZONTAL) {
+            return getData(val, Double.NaN).getX();
+        } else {
+            return getData(Double.NaN, val).getY();
+        }
+    }
+
     abstract public String getTickLabel(double val);
 
     /**
@@ -160,6 +232,21 @@ public abstract class AbstractTransform extends ObjectBinding<ArrayList<Double>>
             }
         }
 
+        /**
+         * Replaces the minor tick values unless autoUpdate is false.
+         *
+         * @param values the new values
+         */
+        void setValues(double[] values) {
+            if (isAutoUpdate()) {
+                clear();
+                ensureCapacity(values.length);
+                for (double v : values) {
+                    add(v);
+                }
+            }
+        }
+
         /**
          * @return the autoUpdate setting
          */
@@ -48,6 +48,11 @@ public class Log10Transform extends AbstractTransform {
         return new Point2D(x, y);
     }
 
+    @Override
+    public double transform(double val) {
+        return Math.log10(val);
+    }
+
     @Override
     public Point2D getInverse(double x, double y) {
         if (getAxis().equals(AXIS.HORIZONTAL)) {
@@ -68,19 +73,11 @@ public class Log10Transform extends AbstractTransform {
 
     @Override
     protected ArrayList<Double> computeValue() {
-        majorTicks.clear();     
-        for (double k = -15; k < 15; k++) {
-            if (getAxis().equals(AXIS.HORIZONTAL)) {
-                if (k >= layer.getXMin() && k <= layer.getXMax()) {
-                    majorTicks.add(k);
-                }
-            } else {
-                if (k >= layer.getXMin() && k <= layer.getYMax()) {
-                    majorTicks.add(k);
-                }
-            }
+        if (getAxis().equals(AXIS.HORIZONTAL)) {
+            return setTicks(tickEngine.log(layer.getXMin(), layer.getXMax(), 10d));
+        } else {
+            return setTicks(tickEngine.log(layer.getYMin(), layer.getYMax(), 10d));
         }
-        return majorTicks;
     }
 
 }
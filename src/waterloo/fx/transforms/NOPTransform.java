@@ -43,6 +43,11 @@ public class NOPTransform extends AbstractTransform {
         return new Point2D(x, y);
     }
 
+    @Override
+    public double transform(double val) {
+        return val;
+    }
+
     @Override
     public Point2D getInverse(double x, double y) {
         return new Point2D(x, y);
@@ -58,35 +63,13 @@ public class NOPTransform extends AbstractTransform {
 
     @Override
     protected ArrayList<Double> computeValue() {
-        majorTicks.clear();
         if (getAxis().equals(AXIS.HORIZONTAL)) {
-            double start = layer.getXMin();
-            double inc = layer.getMajorXInterval();
-            start = Math.floor(start / inc) * inc;
-            double stop = layer.getXMax() + layer.getMajorXInterval();
-            if ((stop - start) / inc > 200) {
-                return majorTicks;
-            }
-            for (double s = start; s <= stop; s += inc) {
-                majorTicks.add(s);
-            }
-            majorTicks.replaceAll((Double t) -> (t < Math.ulp(stop) && t > -Math.ulp(stop)) ? 0d : t);
-            getMinorTicks().computeValue(start, stop, layer.getMajorXInterval() / layer.getMinorCountXHint());
+            return setTicks(tickEngine.linear(layer.getXMin(), layer.getXMax(),
+                    layer.getMajorXInterval(), layer.getMinorCountXHint()));
         } else {
-            double start = layer.getYMin();
-            double inc = layer.getMajorYInterval();
-            start = Math.floor(start / inc) * inc;
-            double stop = layer.getYMax() + layer.getMajorYInterval();
-            if ((stop - start) / inc > 200) {
-                return majorTicks;
-            }
-            for (double s = start; s <= stop; s += inc) {
-                majorTicks.add(s);
-            }
-            getMinorTicks().computeValue(start, stop, layer.getMajorYInterval() / layer.getMinorCountYHint());
-            majorTicks.replaceAll((Double t) -> (t < Math.ulp(stop) && t > -Math.ulp(stop)) ? 0d : t);
+            return setTicks(tickEngine.linear(layer.getYMin(), layer.getYMax(),
+                    layer.getMajorYInterval(), layer.getMinorCountYHint()));
         }
-        return majorTicks;
     }
 
 }
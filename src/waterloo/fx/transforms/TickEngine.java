@@ -0,0 +1,220 @@
+/*
+*
+ * <http://sigtool.github.io/waterlooFX/>
+ *
+ * Copyright King's College London  2014. Copyright Ironduke Publishing Limited, UK 2014-.
+ *
+ * @author Malcolm Lidierth <a href="https://github.com/sigtool/waterlooFX/issues"> [Contact]</a>
+ *
+ * Project Waterloo is free software:  you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Project Waterloo is distributed in the hope that it will  be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package waterloo.fx.transforms;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Computes the major and minor tick positions for an axis as primitive
+ * arrays.
+ *
+ * Results are memoized in a small least-recently-used cache so that panning
+ * back and forth, or repeatedly laying out a chart whose limits have not
+ * changed, reuses the arrays computed previously. The major tick interval
+ * used for linear scales is derived by the chart from the axis range and its
+ * extent in pixels so the pixel extent is accounted for through the interval.
+ *
+ * Each transform has its own engine. Use only on the FX Application Thread.
+ *
+ * @author Malcolm Lidierth
+ */
+final class TickEngine {
+
+    /**
+     * Maximum number of major ticks. Ranges that would need more return no
+     * ticks.
+     */
+    static final int MAX_TICKS = 200;
+    private static final int CACHE_SIZE = 16;
+    private static final int LINEAR = 0;
+    private static final int LOG = 1;
+
+    private final Map<Key, Ticks> cache = new LinkedHashMap<Key, Ticks>(CACHE_SIZE, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Ticks> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    /**
+     * Returns the ticks for a linear scale. Major ticks are placed at
+     * multiples of the interval from below min to one interval beyond max,
+     * and minor ticks at multiples of interval / minorCount over the same
+     * range. Values within an ulp of zero are set to zero.
+     *
+     * @param min the axis minimum
+     * @param max the axis maximum
+     * @param interval the major tick interval
+     * @param minorCount the number of minor intervals per major interval
+     * @return the ticks
+     */
+    Ticks linear(double min, double max, double interval, int minorCount) {
+        Key key = new Key(LINEAR, min, max, interval, minorCount);
+        Ticks ticks = cache.get(key);
+        if (ticks == null) {
+            ticks = computeLinear(min, max, interval, minorCount);
+            cache.put(key, ticks);
+        }
+        return ticks;
+    }
+
+    /**
+     * Returns the ticks for a logarithmic scale where the axis values are
+     * logarithms to the specified base. Major ticks are placed at the integer
+     * values between min and max, i.e. at integer powers of the base in data
+     * space, and minor ticks at the logarithms of 2, 3 ... times those
+     * powers.
+     *
+     * @param min the axis minimum
+     * @param max the axis maximum
+     * @param base the base of the logarithm
+     * @return the ticks
+     */
+    Ticks log(double min, double max, double base) {
+        Key key = new Key(LOG, min, max, base, 0);
+        Ticks ticks = cache.get(key);
+        if (ticks == null) {
+            ticks = computeLog(min, max, base);
+            cache.put(key, ticks);
+        }
+        return ticks;
+    }
+
+    private static Ticks computeLinear(double min, double max, double inc, int minorCount) {
+        double start = Math.floor(min / inc) * inc;
+        double stop = max + inc;
+        if (!((stop - start) / inc <= MAX_TICKS)) {
+            return Ticks.EMPTY;
+        }
+        double zero = Math.ulp(stop);
+        double[] major = new double[(int) ((stop - start) / inc) + 2];
+        int n = 0;
+        for (int k = 0; n < major.length; k++) {
+            double s = start + k * inc;
+            if (s > stop) {
+                break;
+            }
+            major[n++] = s < zero && s > -zero ? 0d : s;
+        }
+        double[] minor = new double[0];
+        if (minorCount > 0) {
+            double minc = inc / minorCount;
+            double mstart = Math.floor(start / minc) * minc;
+            minor = new double[(int) ((stop - mstart) / minc) + 2];
+            int m = 0;
+            for (int k = 0; m < minor.length; k++) {
+                double s = mstart + k * minc;
+                if (s > stop) {
+                    break;
+                }
+                minor[m++] = s;
+            }
+            minor = Arrays.copyOf(minor, m);
+        }
+        return new Ticks(Arrays.copyOf(major, n), minor);
+    }
+
+    private static Ticks computeLog(double min, double max, double base) {
+        double first = Math.ceil(min);
+        double last = Math.floor(max);
+        if (!(last - first <= MAX_TICKS)) {
+            return Ticks.EMPTY;
+        }
+        int count = Math.max(0, (int) (last - first) + 1);
+        double[] major = new double[count];
+        for (int k = 0; k < count; k++) {
+            major[k] = first + k;
+        }
+        // Minor ticks at 2, 3 ... (base - 1) times each power of the base,
+        // including the decade below the first major tick
+        int multiples = (int) Math.ceil(base) - 2;
+        double[] minor = new double[Math.max(0, (count + 1) * multiples)];
+        int n = 0;
+        double logBase = Math.log(base);
+        for (double p = first - 1; p <= last; p++) {
+            for (int m = 2; m < base; m++) {
+                double v = p + Math.log(m) / logBase;
+                if (v >= min && v <= max && n < minor.length) {
+                    minor[n++] = v;
+                }
+            }
+        }
+        return new Ticks(major, Arrays.copyOf(minor, n));
+    }
+
+    /**
+     * Immutable major and minor tick positions in axis space. The arrays must
+     * not be modified.
+     */
+    static final class Ticks {
+
+        static final Ticks EMPTY = new Ticks(new double[0], new double[0]);
+
+        final double[] major;
+        final double[] minor;
+
+        private Ticks(double[] major, double[] minor) {
+            this.major = major;
+            this.minor = minor;
+        }
+    }
+
+    private static final class Key {
+
+        private final int scale;
+        private final double min, max, param;
+        private final int count;
+
+        private Key(int scale, double min, double max, double param, int count) {
+            this.scale = scale;
+            this.min = min;
+            this.max = max;
+            this.param = param;
+            this.count = count;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key k = (Key) o;
+            return scale == k.scale && count == k.count
+                    && Double.compare(min, k.min) == 0
+                    && Double.compare(max, k.max) == 0
+                    && Double.compare(param, k.param) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            long h = Double.doubleToLongBits(min);
+            h = 31 * h + Double.doubleToLongBits(max);
+            h = 31 * h + Double.doubleToLongBits(param);
+            return (int) (h ^ (h >>> 32)) + 31 * (scale + 31 * count);
+        }
+    }
+}
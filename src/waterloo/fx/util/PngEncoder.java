@@ -0,0 +1,826 @@
+/*
+*
+ * <http://sigtool.github.io/waterlooFX/>
+ *
+ * Copyright King's College London  2014. Copyright Ironduke Publishing Limited, UK 2014-.
+ *
+ * @author Malcolm Lidierth <a href="https://github.com/sigtool/waterlooFX/issues"> [Contact]</a>
+ *
+ * Project Waterloo is free software:  you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Project Waterloo is distributed in the hope that it will  be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package waterloo.fx.util;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
+
+/**
+ * Encodes ARGB pixels as a PNG image, without AWT or {@code ImageIO}.
+ *
+ * The rows of the image are divided into stripes that are filtered and
+ * compressed in parallel on the common {@code ForkJoinPool}. Each stripe is
+ * compressed independently and ended with a sync flush, so the compressed
+ * stripes join to form a single zlib stream and are written, in order, as
+ * they complete. Only a few stripes are in progress at once and the
+ * {@code Deflater} and buffers used for them are reused, so memory use does
+ * not grow with the size of the image.
+ *
+ * Images with no more than 256 colours, as is common for charts drawn without
+ * antialiasing, are written with a palette at the smallest bit depth that
+ * holds it. Other images are written as 8-bit RGB, or RGBA if any pixel is
+ * not opaque, using the adaptive row filter recommended by the PNG
+ * specification.
+ *
+ * An encoder is immutable and may be used from several threads at once.
+ *
+ * @author Malcolm Lidierth
+ */
+public final class PngEncoder {
+
+    private static final byte[] SIGNATURE = {(byte) 137, 80, 78, 71, 13, 10, 26, 10};
+    private static final int MAX_PALETTE = 256;
+    /**
+     * Target number of uncompressed bytes in a stripe.
+     */
+    private static final int STRIPE_BYTES = 1 << 20;
+    /**
+     * Size of the buffers passed to and from the {@code Deflater}.
+     */
+    private static final int BUFFER_BYTES = 1 << 16;
+    private static final int ADLER_BASE = 65521;
+
+    private final int level;
+    private final boolean palette;
+    /**
+     * Idle workspaces, reused between stripes and images.
+     */
+    private final ConcurrentLinkedQueue<Workspace> workspaces = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Creates an encoder using the default compression level that writes low
+     * colour images with a palette.
+     */
+    public PngEncoder() {
+        this(Deflater.DEFAULT_COMPRESSION, true);
+    }
+
+    /**
+     * @param level the compression level, 0-9 or
+     * {@code Deflater.DEFAULT_COMPRESSION}. Lower levels are faster.
+     * @param palette true to write images with no more than 256 colours using
+     * a palette
+     */
+    public PngEncoder(int level, boolean palette) {
+        if (level != Deflater.DEFAULT_COMPRESSION && (level < 0 || level > 9)) {
+            throw new IllegalArgumentException("Invalid compression level: " + level);
+        }
+        this.level = level;
+        this.palette = palette;
+    }
+
+    /**
+     * Encodes non-premultiplied ARGB pixels, as returned by
+     * {@code ChartRenderer.renderToArgb} or a {@code PixelReader} using
+     * {@code PixelFormat.getIntArgbInstance()}.
+     *
+     * @param argb the pixels, row by row
+     * @param width the width of the image
+     * @param height the height of the image
+     * @param out the stream to write to. This is not closed.
+     * @throws IOException if the stream cannot be written
+     */
+    public void encode(int[] argb, int width, int height, OutputStream out) throws IOException {
+        if (width < 1 || height < 1) {
+            throw new IllegalArgumentException("The size must be positive");
+        }
+        if (argb.length < (long) width * height) {
+            throw new IllegalArgumentException("Too few pixels for the size");
+        }
+        Format format = Format.of(argb, width * height, palette);
+        long rowBytes = 1L + ((long) width * format.bitsPerPixel + 7L) / 8L;
+        if (rowBytes > Integer.MAX_VALUE / 2) {
+            throw new IllegalArgumentException("The image is too wide");
+        }
+        int rowsPerStripe = (int) Math.max(1L, Math.min(height, STRIPE_BYTES / rowBytes));
+        encode(format, width, height, rowsPerStripe, argb, null, out);
+    }
+
+    /**
+     * Encodes an image supplied a band of rows at a time, so that the whole
+     * image is never held in memory. The bands are requested in parallel and
+     * compressed as they arrive. Palettes are not used, as the colours are not
+     * known in advance.
+     *
+     * @param width the width of the image
+     * @param height the height of the image
+     * @param alpha true to keep the alpha channel, false to write the image as
+     * opaque RGB
+     * @param bandRows the maximum number of rows requested at once
+     * @param source supplies the pixels. This is called concurrently on
+     * threads of the common {@code ForkJoinPool}.
+     * @param out the stream to write to. This is not closed.
+     * @throws IOException if the stream cannot be written
+     */
+    public void encode(int width, int height, boolean alpha, int bandRows, BandSource source, OutputStream out)
+            throws IOException {
+        if (width < 1 || height < 1 || bandRows < 1) {
+            throw new IllegalArgumentException("The size and band must be positive");
+        }
+        Format format = alpha ? Format.RGBA : Format.RGB;
+        // Each band also holds the row before it, for filtering
+        if ((long) width * (Math.min(bandRows, height) + 1) > Integer.MAX_VALUE / 4) {
+            throw new IllegalArgumentException("The band is too large");
+        }
+        encode(format, width, height, Math.min(bandRows, height), null, source, out);
+    }
+
+    private void encode(Format format, int width, int height, int rowsPerStripe, int[] argb, BandSource source,
+            OutputStream out) throws IOException {
+        out.write(SIGNATURE);
+        byte[] header = new byte[13];
+        putInt(header, 0, width);
+        putInt(header, 4, height);
+        header[8] = (byte) format.bitDepth;
+        header[9] = (byte) format.colorType;
+        writeChunk(out, "IHDR", header, 0, header.length);
+        if (format.colors != null) {
+            byte[] plte = new byte[3 * format.colors.length];
+            for (int k = 0; k < format.colors.length; k++) {
+                int c = format.colors[k];
+                plte[3 * k] = (byte) (c >>> 16);
+                plte[3 * k + 1] = (byte) (c >>> 8);
+                plte[3 * k + 2] = (byte) c;
+            }
+            writeChunk(out, "PLTE", plte, 0, plte.length);
+            // The palette is sorted with translucent colours first, so only
+            // those need an alpha value
+            int translucent = 0;
+            while (translucent < format.colors.length && format.colors[translucent] >>> 24 != 0xFF) {
+                translucent++;
+            }
+            if (translucent > 0) {
+                byte[] trns = new byte[translucent];
+                for (int k = 0; k < translucent; k++) {
+                    trns[k] = (byte) (format.colors[k] >>> 24);
+                }
+                writeChunk(out, "tRNS", trns, 0, trns.length);
+            }
+        }
+        int stripeCount = (height + rowsPerStripe - 1) / rowsPerStripe;
+        // zlib header: deflate with a 32K window and no preset dictionary
+        byte[] zlib = {0x78, (byte) 0x9C};
+        writeChunk(out, "IDAT", zlib, 0, zlib.length);
+        long adler = 1L;
+        // Band buffers are only needed while a stripe is being filtered, and
+        // are released with the encoding
+        Bands bands = source == null ? null : new Bands(source, width);
+        if (stripeCount == 1) {
+            Stripe stripe = new Stripe(argb, bands, width, format, 0, height, true);
+            stripe.compute();
+            adler = stripe.adler;
+            writeStripe(out, stripe);
+        } else {
+            ForkJoinPool pool = ForkJoinPool.commonPool();
+            // Bands from a source are large, so fewer are held at once
+            int window = (source == null ? 2 : 1) * pool.getParallelism() + 1;
+            ArrayDeque<Stripe> pending = new ArrayDeque<>(window);
+            int next = 0;
+            try {
+                while (next < stripeCount || !pending.isEmpty()) {
+                    while (next < stripeCount && pending.size() < window) {
+                        int y0 = next * rowsPerStripe;
+                        int y1 = Math.min(height, y0 + rowsPerStripe);
+                        Stripe stripe = new Stripe(argb, bands, width, format, y0, y1, next == stripeCount - 1);
+                        pool.execute(stripe);
+                        pending.add(stripe);
+                        next++;
+                    }
+                    Stripe stripe = pending.poll();
+                    stripe.join();
+                    adler = combineAdler(adler, stripe.adler, stripe.length);
+                    writeStripe(out, stripe);
+                }
+            } finally {
+                for (Stripe stripe : pending) {
+                    stripe.cancel(false);
+                    if (stripe.isCompletedNormally()) {
+                        release(stripe.workspace);
+                    }
+                }
+            }
+        }
+        byte[] trailer = new byte[4];
+        putInt(trailer, 0, (int) adler);
+        writeChunk(out, "IDAT", trailer, 0, trailer.length);
+        writeChunk(out, "IEND", trailer, 0, 0);
+        out.flush();
+    }
+
+    /**
+     * Encodes an image.
+     *
+     * @param image the image
+     * @param out the stream to write to. This is not closed.
+     * @throws IOException if the stream cannot be written
+     */
+    public void encode(Image image, OutputStream out) throws IOException {
+        int w = (int) image.getWidth();
+        int h = (int) image.getHeight();
+        int[] argb = new int[w * h];
+        image.getPixelReader().getPixels(0, 0, w, h, PixelFormat.getIntArgbInstance(), argb, 0, w);
+        encode(argb, w, h, out);
+    }
+
+    /**
+     * Encodes non-premultiplied ARGB pixels to a file.
+     *
+     * @param argb the pixels, row by row
+     * @param width the width of the image
+     * @param height the height of the image
+     * @param file the file, which is created or replaced
+     * @throws IOException if the file cannot be written
+     */
+    public void write(int[] argb, int width, int height, Path file) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), BUFFER_BYTES)) {
+            encode(argb, width, height, out);
+        }
+    }
+
+    private void writeStripe(OutputStream out, Stripe stripe) throws IOException {
+        try {
+            writeChunk(out, "IDAT", stripe.workspace.compressed, 0, stripe.workspace.size);
+        } finally {
+            release(stripe.workspace);
+        }
+    }
+
+    private Workspace acquire(int rowBytes) {
+        Workspace workspace = workspaces.poll();
+        if (workspace == null) {
+            workspace = new Workspace();
+        }
+        workspace.prepare(rowBytes, level);
+        return workspace;
+    }
+
+    private void release(Workspace workspace) {
+        if (workspace == null) {
+            return;
+        }
+        // Keep enough for one image in flight per thread
+        if (workspaces.size() < 2 * ForkJoinPool.getCommonPoolParallelism() + 2) {
+            workspaces.add(workspace);
+        } else {
+            workspace.deflater.end();
+        }
+    }
+
+    private static void writeChunk(OutputStream out, String type, byte[] data, int offset, int length) throws IOException {
+        byte[] prefix = new byte[8];
+        putInt(prefix, 0, length);
+        for (int k = 0; k < 4; k++) {
+            prefix[4 + k] = (byte) type.charAt(k);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(prefix, 4, 4);
+        crc.update(data, offset, length);
+        byte[] suffix = new byte[4];
+        putInt(suffix, 0, (int) crc.getValue());
+        out.write(prefix);
+        out.write(data, offset, length);
+        out.write(suffix);
+    }
+
+    private static void putInt(byte[] b, int offset, int value) {
+        b[offset] = (byte) (value >>> 24);
+        b[offset + 1] = (byte) (value >>> 16);
+        b[offset + 2] = (byte) (value >>> 8);
+        b[offset + 3] = (byte) value;
+    }
+
+    /**
+     * Returns the Adler-32 checksum of two blocks of data given the checksum
+     * of each and the length of the second, as zlib's adler32_combine.
+     */
+    static long combineAdler(long adler1, long adler2, long length2) {
+        long rem = length2 % ADLER_BASE;
+        long sum1 = adler1 & 0xFFFFL;
+        long sum2 = (rem * sum1) % ADLER_BASE;
+        sum1 += (adler2 & 0xFFFFL) + ADLER_BASE - 1;
+        sum2 += ((adler1 >>> 16) & 0xFFFFL) + ((adler2 >>> 16) & 0xFFFFL) + ADLER_BASE - rem;
+        if (sum1 >= ADLER_BASE) {
+            sum1 -= ADLER_BASE;
+        }
+        if (sum1 >= ADLER_BASE) {
+            sum1 -= ADLER_BASE;
+        }
+        if (sum2 >= 2L * ADLER_BASE) {
+            sum2 -= 2L * ADLER_BASE;
+        }
+        if (sum2 >= ADLER_BASE) {
+            sum2 -= ADLER_BASE;
+        }
+        return sum1 | (sum2 << 16);
+    }
+
+    /**
+     * Supplies the pixels of an image a band of rows at a time.
+     */
+    @FunctionalInterface
+    public interface BandSource {
+
+        /**
+         * Fills an array with non-premultiplied ARGB pixels for a band of
+         * rows. This may be called for several bands at once on different
+         * threads, and a row may be requested more than once.
+         *
+         * @param y the first row
+         * @param rows the number of rows
+         * @param argb receives the pixels, row by row from index 0
+         */
+        void getPixels(int y, int rows, int[] argb);
+    }
+
+    /**
+     * The PNG colour type and bit depth used for an image.
+     */
+    private static final class Format {
+
+        static final Format RGB = new Format(2, 8, 24, null, null);
+        static final Format RGBA = new Format(6, 8, 32, null, null);
+
+        final int colorType;
+        final int bitDepth;
+        final int bitsPerPixel;
+        /**
+         * The palette, or null for a truecolour image.
+         */
+        final int[] colors;
+        /**
+         * Hash table from colour to palette index: keys at even positions,
+         * indices at odd positions and -1 for an empty slot.
+         */
+        final int[] index;
+
+        private Format(int colorType, int bitDepth, int bitsPerPixel, int[] colors, int[] index) {
+            this.colorType = colorType;
+            this.bitDepth = bitDepth;
+            this.bitsPerPixel = bitsPerPixel;
+            this.colors = colors;
+            this.index = index;
+        }
+
+        static Format of(int[] argb, int n, boolean palette) {
+            int[] table = new int[4 * MAX_PALETTE];
+            Arrays.fill(table, -1);
+            int count = 0;
+            boolean opaque = true;
+            int last = ~argb[0];
+            for (int k = 0; k < n; k++) {
+                int c = argb[k];
+                if (c == last) {
+                    continue;
+                }
+                last = c;
+                opaque &= c >>> 24 == 0xFF;
+                if (palette && count <= MAX_PALETTE && find(table, c) < 0) {
+                    // One more than the limit marks too many colours
+                    if (count < MAX_PALETTE) {
+                        insert(table, c, count);
+                    }
+                    count++;
+                }
+                if ((!palette || count > MAX_PALETTE) && !opaque) {
+                    break;
+                }
+            }
+            if (!palette || count > MAX_PALETTE) {
+                return opaque ? RGB : RGBA;
+            }
+            // Sort with translucent colours first to shorten the tRNS chunk
+            int[] colors = new int[count];
+            int m = 0;
+            for (int k = 0; k < table.length; k += 2) {
+                if (table[k + 1] >= 0 && table[k] >>> 24 != 0xFF) {
+                    colors[m++] = table[k];
+                }
+            }
+            for (int k = 0; k < table.length; k += 2) {
+                if (table[k + 1] >= 0 && table[k] >>> 24 == 0xFF) {
+                    colors[m++] = table[k];
+                }
+            }
+            Arrays.fill(table, -1);
+            for (int k = 0; k < count; k++) {
+                insert(table, colors[k], k);
+            }
+            int depth = count <= 2 ? 1 : count <= 4 ? 2 : count <= 16 ? 4 : 8;
+            return new Format(3, depth, depth, colors, table);
+        }
+
+        private static int slot(int[] table, int c) {
+            int h = (c * 0x9E3779B9) >>> 22;
+            int mask = table.length / 2 - 1;
+            h &= mask;
+            while (table[2 * h + 1] >= 0 && table[2 * h] != c) {
+                h = (h + 1) & mask;
+            }
+            return 2 * h;
+        }
+
+        static int find(int[] table, int c) {
+            return table[slot(table, c) + 1];
+        }
+
+        private static void insert(int[] table, int c, int value) {
+            int s = slot(table, c);
+            table[s] = c;
+            table[s + 1] = value;
+        }
+    }
+
+    /**
+     * Fetches bands from a {@code BandSource} into reusable arrays.
+     */
+    private static final class Bands {
+
+        private final BandSource source;
+        private final int width;
+        private final ConcurrentLinkedQueue<int[]> idle = new ConcurrentLinkedQueue<>();
+
+        Bands(BandSource source, int width) {
+            this.source = source;
+            this.width = width;
+        }
+
+        int[] get(int y, int rows) {
+            int[] band = idle.poll();
+            if (band == null || band.length < rows * width) {
+                band = new int[rows * width];
+            }
+            source.getPixels(y, rows, band);
+            return band;
+        }
+
+        void release(int[] band) {
+            idle.add(band);
+        }
+    }
+
+    /**
+     * Reusable buffers and {@code Deflater} for one stripe.
+     */
+    private static final class Workspace {
+
+        final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        final byte[] input = new byte[BUFFER_BYTES];
+        final byte[] output = new byte[BUFFER_BYTES];
+        final Adler32 adler = new Adler32();
+        byte[] previous = new byte[0];
+        byte[] current = new byte[0];
+        byte[] filtered = new byte[0];
+        byte[] compressed = new byte[BUFFER_BYTES];
+        int size;
+
+        void prepare(int rowBytes, int level) {
+            if (current.length < rowBytes) {
+                previous = new byte[rowBytes];
+                current = new byte[rowBytes];
+                filtered = new byte[rowBytes];
+            }
+            deflater.reset();
+            deflater.setLevel(level);
+            adler.reset();
+            size = 0;
+        }
+
+        void append(byte[] b, int length) {
+            if (size + length > compressed.length) {
+                compressed = Arrays.copyOf(compressed, Math.max(size + length, 2 * compressed.length));
+            }
+            System.arraycopy(b, 0, compressed, size, length);
+            size += length;
+        }
+    }
+
+    /**
+     * Filters and compresses a range of rows.
+     */
+    private final class Stripe extends ForkJoinTask<Void> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Bands bands;
+        private final int width;
+        private final Format format;
+        private final int y0;
+        private final int y1;
+        private final boolean last;
+        Workspace workspace;
+        long adler;
+        long length;
+        private int fill;
+        /**
+         * The pixels and the image row of their first row.
+         */
+        private int[] argb;
+        private int base;
+
+        Stripe(int[] argb, Bands bands, int width, Format format, int y0, int y1, boolean last) {
+            this.argb = argb;
+            this.bands = bands;
+            this.width = width;
+            this.format = format;
+            this.y0 = y0;
+            this.y1 = y1;
+            this.last = last;
+        }
+
+        @Override
+        public Void getRawResult() {
+            return null;
+        }
+
+        @Override
+        protected void setRawResult(Void value) {
+        }
+
+        @Override
+        protected boolean exec() {
+            compute();
+            return true;
+        }
+
+        void compute() {
+            int dataBytes = (width * format.bitsPerPixel + 7) / 8;
+            Workspace ws = acquire(dataBytes);
+            workspace = ws;
+            if (bands != null) {
+                base = Math.max(0, y0 - 1);
+                argb = bands.get(base, y1 - base);
+            }
+            Deflater deflater = ws.deflater;
+            if (format.colors == null) {
+                // Filtered truecolour data compress best with the filtered
+                // strategy, as used by libpng
+                deflater.setStrategy(Deflater.FILTERED);
+                int bpp = format.bitsPerPixel / 8;
+                if (y0 > 0) {
+                    toBytes(y0 - 1, ws.previous);
+                } else {
+                    Arrays.fill(ws.previous, 0, dataBytes, (byte) 0);
+                }
+                for (int y = y0; y < y1; y++) {
+                    toBytes(y, ws.current);
+                    int type = filter(ws.current, ws.previous, dataBytes, bpp, ws.filtered);
+                    put((byte) type);
+                    put(ws.filtered, dataBytes);
+                    byte[] t = ws.previous;
+                    ws.previous = ws.current;
+                    ws.current = t;
+                }
+            } else {
+                // Palette images are not filtered, as recommended by the PNG
+                // specification
+                deflater.setStrategy(Deflater.DEFAULT_STRATEGY);
+                for (int y = y0; y < y1; y++) {
+                    toIndices(y, ws.current, dataBytes);
+                    put((byte) 0);
+                    put(ws.current, dataBytes);
+                }
+            }
+            flushInput();
+            if (last) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    int n = deflater.deflate(ws.output, 0, ws.output.length);
+                    ws.append(ws.output, n);
+                }
+            } else {
+                // A sync flush ends the stripe on a byte boundary so the next
+                // stripe's compressed data can follow it
+                int n;
+                do {
+                    n = deflater.deflate(ws.output, 0, ws.output.length, Deflater.SYNC_FLUSH);
+                    ws.append(ws.output, n);
+                } while (n == ws.output.length);
+            }
+            if (bands != null) {
+                bands.release(argb);
+                argb = null;
+            }
+            adler = ws.adler.getValue();
+            length = (long) (y1 - y0) * (dataBytes + 1);
+        }
+
+        private void toBytes(int y, byte[] row) {
+            int offset = (y - base) * width;
+            int j = 0;
+            if (format.colorType == 2) {
+                for (int x = 0; x < width; x++) {
+                    int c = argb[offset + x];
+                    row[j++] = (byte) (c >>> 16);
+                    row[j++] = (byte) (c >>> 8);
+                    row[j++] = (byte) c;
+                }
+            } else {
+                for (int x = 0; x < width; x++) {
+                    int c = argb[offset + x];
+                    row[j++] = (byte) (c >>> 16);
+                    row[j++] = (byte) (c >>> 8);
+                    row[j++] = (byte) c;
+                    row[j++] = (byte) (c >>> 24);
+                }
+            }
+        }
+
+        private void toIndices(int y, byte[] row, int dataBytes) {
+            int offset = (y - base) * width;
+            int depth = format.bitDepth;
+            int perByte = 8 / depth;
+            Arrays.fill(row, 0, dataBytes, (byte) 0);
+            int last = ~argb[offset];
+            int index = 0;
+            for (int x = 0; x < width; x++) {
+                int c = argb[offset + x];
+                if (c != last) {
+                    last = c;
+                    index = Format.find(format.index, c);
+                }
+                if (depth == 8) {
+                    row[x] = (byte) index;
+                } else {
+                    int shift = 8 - depth * (1 + x % perByte);
+                    row[x / perByte] |= (byte) (index << shift);
+                }
+            }
+        }
+
+        private void put(byte b) {
+            if (fill == workspace.input.length) {
+                flushInput();
+            }
+            workspace.input[fill++] = b;
+        }
+
+        private void put(byte[] b, int length) {
+            int offset = 0;
+            while (offset < length) {
+                if (fill == workspace.input.length) {
+                    flushInput();
+                }
+                int n = Math.min(length - offset, workspace.input.length - fill);
+                System.arraycopy(b, offset, workspace.input, fill, n);
+                fill += n;
+                offset += n;
+            }
+        }
+
+        private void flushInput() {
+            Workspace ws = workspace;
+            ws.adler.update(ws.input, 0, fill);
+            ws.deflater.setInput(ws.input, 0, fill);
+            while (!ws.deflater.needsInput()) {
+                int n = ws.deflater.deflate(ws.output, 0, ws.output.length);
+                ws.append(ws.output, n);
+            }
+            fill = 0;
+        }
+    }
+
+    /**
+     * Chooses the filter type for a row that gives the smallest sum of
+     * absolute values, the heuristic recommended by the PNG specification,
+     * and applies it.
+     *
+     * @param row the raw row
+     * @param prior the raw previous row, zeros for the first row
+     * @param n the number of bytes in the row
+     * @param bpp the number of bytes per pixel
+     * @param out receives the filtered row
+     * @return the filter type
+     */
+    static int filter(byte[] row, byte[] prior, int n, int bpp, byte[] out) {
+        // Rows repeating the previous row, common in the plain areas of
+        // charts, need no search
+        int same = 0;
+        while (same < n && row[same] == prior[same]) {
+            same++;
+        }
+        if (same == n) {
+            Arrays.fill(out, 0, n, (byte) 0);
+            return 2;
+        }
+        // The sums are found first so only the chosen filter is stored
+        long sNone = 0L, sSub = 0L, sUp = 0L, sAverage = 0L, sPaeth = 0L;
+        for (int k = 0; k < bpp; k++) {
+            int x = row[k] & 0xFF;
+            int b = prior[k] & 0xFF;
+            sNone += abs(x);
+            sSub += abs(x);
+            sUp += abs(x - b);
+            sAverage += abs(x - (b >>> 1));
+            sPaeth += abs(x - b);
+        }
+        for (int k = bpp; k < n; k++) {
+            int x = row[k] & 0xFF;
+            int a = row[k - bpp] & 0xFF;
+            int b = prior[k] & 0xFF;
+            int c = prior[k - bpp] & 0xFF;
+            sNone += abs(x);
+            sSub += abs(x - a);
+            sUp += abs(x - b);
+            sAverage += abs(x - ((a + b) >>> 1));
+            sPaeth += abs(x - paeth(a, b, c));
+        }
+        int type = 0;
+        long best = sNone;
+        if (sSub < best) {
+            type = 1;
+            best = sSub;
+        }
+        if (sUp < best) {
+            type = 2;
+            best = sUp;
+        }
+        if (sAverage < best) {
+            type = 3;
+            best = sAverage;
+        }
+        if (sPaeth < best) {
+            type = 4;
+        }
+        switch (type) {
+            case 0:
+                System.arraycopy(row, 0, out, 0, n);
+                break;
+            case 1:
+                System.arraycopy(row, 0, out, 0, bpp);
+                for (int k = bpp; k < n; k++) {
+                    out[k] = (byte) (row[k] - row[k - bpp]);
+                }
+                break;
+            case 2:
+                for (int k = 0; k < n; k++) {
+                    out[k] = (byte) (row[k] - prior[k]);
+                }
+                break;
+            case 3:
+                for (int k = 0; k < bpp; k++) {
+                    out[k] = (byte) (row[k] - ((prior[k] & 0xFF) >>> 1));
+                }
+                for (int k = bpp; k < n; k++) {
+                    out[k] = (byte) (row[k] - (((row[k - bpp] & 0xFF) + (prior[k] & 0xFF)) >>> 1));
+                }
+                break;
+            default:
+                for (int k = 0; k < bpp; k++) {
+                    out[k] = (byte) (row[k] - prior[k]);
+                }
+                for (int k = bpp; k < n; k++) {
+                    out[k] = (byte) (row[k] - paeth(row[k - bpp] & 0xFF, prior[k] & 0xFF, prior[k - bpp] & 0xFF));
+                }
+        }
+        return type;
+    }
+
+    /**
+     * @return the absolute value of a difference taken as a signed byte
+     */
+    private static int abs(int d) {
+        int v = d & 0xFF;
+        return v < 128 ? v : 256 - v;
+    }
+
+    private static int paeth(int a, int b, int c) {
+        int p = a + b - c;
+        int pa = Math.abs(p - a);
+        int pb = Math.abs(p - b);
+        int pc = Math.abs(p - c);
+        return pa <= pb && pa <= pc ? a : pb <= pc ? b : c;
+    }
+}
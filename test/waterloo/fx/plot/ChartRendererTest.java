@@ -0,0 +1,159 @@
+/*
+*
+ * <http://sigtool.github.io/waterlooFX/>
+ *
+ * Copyright King's College London  2014. Copyright Ironduke Publishing Limited, UK 2014-.
+ *
+ * @author Malcolm Lidierth <a href="https://github.com/sigtool/waterlooFX/issues"> [Contact]</a>
+ *
+ * Project Waterloo is free software:  you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Project Waterloo is distributed in the hope that it will  be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package waterloo.fx.plot;
+
+import com.sun.javafx.application.PlatformImpl;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+import javafx.application.Platform;
+import javafx.scene.image.WritableImage;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Renders small charts offscreen. The toolkit is started on the headless
+ * Monocle platform set by the surefire configuration.
+ *
+ * @author Malcolm Lidierth
+ */
+public class ChartRendererTest {
+
+    private static final double WIDTH = 200d;
+    private static final double HEIGHT = 150d;
+
+    @BeforeClass
+    public static void startToolkit() {
+        // Does nothing if the toolkit is already running
+        PlatformImpl.startup(() -> {
+        });
+    }
+
+    /**
+     * Creates a chart with a thick red horizontal line across the middle of
+     * the view and a blue bar to its lower left.
+     */
+    private static Chart createChart() throws Exception {
+        return onFxThread(() -> {
+            Chart chart = new Chart();
+            chart.setViewport(new Viewport(0d, 10d, 0d, 10d));
+            LinePlot line = new LinePlot();
+            line.getDataModel().setXData(new double[]{-1d, 11d});
+            line.getDataModel().setYData(new double[]{5d, 5d});
+            line.setLineColor(Color.RED);
+            line.setLineWidth(6d);
+            chart.getChildren().add(line);
+            return chart;
+        });
+    }
+
+    private static <T> T onFxThread(Callable<T> callable) throws Exception {
+        FutureTask<T> task = new FutureTask<>(callable);
+        Platform.runLater(task);
+        return task.get();
+    }
+
+    /**
+     * Returns the number of red pixels in the middle column of an image.
+     */
+    private static int countRed(int[] argb, int width, int height) {
+        int count = 0;
+        for (int y = 0; y < height; y++) {
+            int p = argb[y * width + width / 2];
+            if (((p >> 16) & 0xff) > 200 && ((p >> 8) & 0xff) < 60 && (p & 0xff) < 60) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Test
+    public void renderScalesImage() throws Exception {
+        Chart chart = createChart();
+        WritableImage image = ChartRenderer.render(chart, WIDTH, HEIGHT, 1.5);
+        assertEquals(300d, image.getWidth(), 0d);
+        assertEquals(225d, image.getHeight(), 0d);
+        image = ChartRenderer.render(chart, WIDTH + 1d, HEIGHT, 1.5);
+        assertEquals(302d, image.getWidth(), 0d);
+    }
+
+    @Test
+    public void renderToArgbDrawsPlot() throws Exception {
+        int[] argb = ChartRenderer.renderToArgb(createChart(), WIDTH, HEIGHT, 1d);
+        assertEquals((int) (WIDTH * HEIGHT), argb.length);
+        // Opaque white outside the view
+        assertEquals(0xffffffff, argb[0]);
+        int red = countRed(argb, (int) WIDTH, (int) HEIGHT);
+        assertTrue("Line width in pixels: " + red, red >= 4 && red <= 8);
+    }
+
+    @Test
+    public void renderRestoresChart() throws Exception {
+        Chart chart = createChart();
+        double prefWidth = chart.getPrefWidth();
+        int[] first = ChartRenderer.renderToArgb(chart, WIDTH, HEIGHT, 1d);
+        assertEquals(null, chart.getParent());
+        assertEquals(null, chart.getScene());
+        assertEquals(prefWidth, chart.getPrefWidth(), 0d);
+        int[] second = ChartRenderer.renderToArgb(chart, WIDTH, HEIGHT, 1d);
+        assertEquals(countRed(first, (int) WIDTH, (int) HEIGHT), countRed(second, (int) WIDTH, (int) HEIGHT));
+    }
+
+    @Test
+    public void captureDrawsPlot() throws Exception {
+        SoftwareRenderer renderer = ChartRenderer.capture(createChart(), WIDTH, HEIGHT);
+        int[] argb = renderer.render(WIDTH, HEIGHT, 2d);
+        assertEquals((int) (4d * WIDTH * HEIGHT), argb.length);
+        assertEquals(0xffffffff, argb[0]);
+        int red = countRed(argb, (int) (2d * WIDTH), (int) (2d * HEIGHT));
+        assertTrue("Line width in pixels: " + red, red >= 10 && red <= 14);
+    }
+
+    @Test
+    public void rejectsChartWithParent() throws Exception {
+        Chart chart = createChart();
+        Pane pane = onFxThread(() -> new Pane(chart));
+        try {
+            ChartRenderer.render(chart, WIDTH, HEIGHT, 1d);
+            fail("Rendered a chart with a parent");
+        } catch (IllegalArgumentException ex) {
+            assertSame(pane, chart.getParent());
+        }
+        try {
+            ChartRenderer.capture(chart, WIDTH, HEIGHT);
+            fail("Captured a chart with a parent");
+        } catch (IllegalArgumentException ex) {
+            assertSame(pane, chart.getParent());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsEmptySize() throws Exception {
+        ChartRenderer.render(createChart(), 0d, HEIGHT, 1d);
+    }
+}
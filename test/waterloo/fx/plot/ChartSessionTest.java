@@ -0,0 +1,228 @@
+/*
+*
+ * <http://sigtool.github.io/waterlooFX/>
+ *
+ * Copyright King's College London  2014. Copyright Ironduke Publishing Limited, UK 2014-.
+ *
+ * @author Malcolm Lidierth <a href="https://github.com/sigtool/waterlooFX/issues"> [Contact]</a>
+ *
+ * Project Waterloo is free software:  you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Project Waterloo is distributed in the hope that it will  be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package waterloo.fx.plot;
+
+import com.sun.javafx.application.PlatformImpl;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import javafx.scene.Node;
+import javafx.scene.paint.Color;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import waterloo.fx.plot.model.DataModel;
+
+/**
+ * Saves charts to session files and restores them.
+ *
+ * @author Malcolm Lidierth
+ */
+public class ChartSessionTest {
+
+    private static final double[] X = {0d, 1d, 2d, 3d, 4d, 5d, 6d, 7d};
+    private static final double[] Y = {0.5, -1d, 2d, Double.NaN, 4d, -5d, 6d, 7.25};
+    private static final double[] ERROR = {0.1, 0.2, 0.3, 0.4, 0.5, 0.6, 0.7, 0.8};
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @BeforeClass
+    public static void startToolkit() {
+        PlatformImpl.startup(() -> {
+        });
+    }
+
+    /**
+     * Creates a chart with a second layer, a line plot parenting an error bar
+     * plot and a collection of two bar plots.
+     */
+    private static Chart createChart() {
+        Chart chart = new Chart();
+        chart.setMajorGridColor(Color.ORANGE);
+        LinePlot line = new LinePlot();
+        line.getDataModel().setXData(X);
+        line.getDataModel().setYData(Y);
+        line.setLineColor(Color.RED);
+        line.setLineWidth(2.5);
+        line.setId("line");
+        ErrorBarPlot errors = new ErrorBarPlot();
+        errors.getDataModel().setXData(X);
+        errors.getDataModel().setYData(Y);
+        errors.getDataModel().setExtraData1(ERROR);
+        errors.getDataModel().setExtraData3(ERROR);
+        line.add(errors);
+        chart.getChildren().add(line);
+
+        BarPlot bar0 = new BarPlot();
+        bar0.getDataModel().setXData(X);
+        bar0.getDataModel().setYData(X);
+        bar0.getDataModel().setBaseValue(1d);
+        BarPlot bar1 = new BarPlot();
+        bar1.getDataModel().setXData(X);
+        bar1.getDataModel().setYData(ERROR);
+        bar1.setFill(Color.GREEN);
+        chart.getChildren().add(new PlotCollection<>(bar0, bar1));
+
+        Chart layer = new Chart();
+        ScatterPlot scatter = new ScatterPlot();
+        scatter.getDataModel().setXData(Y);
+        scatter.getDataModel().setYData(X);
+        scatter.getStyleClass().add("session-test");
+        layer.getChildren().add(scatter);
+        chart.getChildren().add(layer);
+
+        chart.setViewport(new Viewport(-1d, 9d, -6d, 8d));
+        return chart;
+    }
+
+    private Chart roundTrip(Chart chart) throws IOException {
+        Path file = folder.newFile("chart.wfx").toPath();
+        ChartSession.save(chart, file);
+        return ChartSession.load(file);
+    }
+
+    private static List<Class<?>> classes(List<Node> nodes) {
+        return nodes.stream()
+                .filter(x -> x instanceof AbstractPlot || x instanceof PlotCollection)
+                .map(Object::getClass)
+                .collect(Collectors.toList());
+    }
+
+    private static void assertColumns(DataModel expected, DataModel actual) {
+        assertArrayEquals(expected.getXColumn().toDoubleArray(), actual.getXColumn().toDoubleArray(), 0d);
+        assertArrayEquals(expected.getYColumn().toDoubleArray(), actual.getYColumn().toDoubleArray(), 0d);
+        assertArrayEquals(expected.getExtraColumn0().toDoubleArray(), actual.getExtraColumn0().toDoubleArray(), 0d);
+        assertArrayEquals(expected.getExtraColumn1().toDoubleArray(), actual.getExtraColumn1().toDoubleArray(), 0d);
+        assertArrayEquals(expected.getExtraColumn2().toDoubleArray(), actual.getExtraColumn2().toDoubleArray(), 0d);
+        assertArrayEquals(expected.getExtraColumn3().toDoubleArray(), actual.getExtraColumn3().toDoubleArray(), 0d);
+        assertEquals(expected.getBaseValue(), actual.getBaseValue(), 0d);
+        assertEquals(expected.isDataPolar(), actual.isDataPolar());
+    }
+
+    @Test
+    public void restoresStructure() throws IOException {
+        Chart chart = createChart();
+        Chart restored = roundTrip(chart);
+        assertEquals(2, restored.getLayers().size());
+        assertEquals(classes(chart.getView().getChildren()), classes(restored.getView().getChildren()));
+        assertEquals(classes(chart.getLayers().get(1).getView().getChildren()),
+                classes(restored.getLayers().get(1).getView().getChildren()));
+
+        LinePlot line = (LinePlot) restored.getView().getChildren().stream()
+                .filter(x -> x instanceof LinePlot).findFirst().get();
+        assertEquals("line", line.getId());
+        assertEquals(1, line.getAllPlots().size());
+        assertEquals(ErrorBarPlot.class, line.getAllPlots().get(0).getClass());
+
+        PlotCollection<?> collection = (PlotCollection<?>) restored.getView().getChildren().stream()
+                .filter(x -> x instanceof PlotCollection).findFirst().get();
+        assertEquals(classes(collection.getChildren()), classes(
+                ((PlotCollection<?>) chart.getView().getChildren().stream()
+                .filter(x -> x instanceof PlotCollection).findFirst().get()).getChildren()));
+
+        assertEquals(-1d, restored.getXLeft(), 0d);
+        assertEquals(9d, restored.getXRight(), 0d);
+        assertEquals(-6d, restored.getYBottom(), 0d);
+        assertEquals(8d, restored.getYTop(), 0d);
+    }
+
+    @Test
+    public void restoresStyles() throws IOException {
+        Chart restored = roundTrip(createChart());
+        assertEquals(Color.ORANGE, restored.getMajorGridColor());
+        List<AbstractPlot<?>> plots = new ArrayList<>();
+        restored.forEachPlot(plots::add);
+        LinePlot line = (LinePlot) plots.get(0);
+        assertEquals(Color.RED, line.getVisualModel().getLineColor());
+        assertEquals(2.5, line.getVisualModel().getLineWidth(), 0d);
+        BarPlot bar1 = (BarPlot) plots.get(3);
+        assertEquals(Color.GREEN, bar1.getFill());
+        ScatterPlot scatter = (ScatterPlot) restored.getLayers().get(1).getView().getChildren().stream()
+                .filter(x -> x instanceof ScatterPlot).findFirst().get();
+        assertTrue(scatter.getStyleClass().contains("session-test"));
+    }
+
+    @Test
+    public void restoresColumns() throws IOException {
+        Chart chart = createChart();
+        Chart restored = roundTrip(chart);
+        List<AbstractPlot<?>> expected = new ArrayList<>();
+        chart.forEachPlot(expected::add);
+        List<AbstractPlot<?>> actual = new ArrayList<>();
+        restored.forEachPlot(actual::add);
+        assertEquals(expected.size(), actual.size());
+        for (int k = 0; k < expected.size(); k++) {
+            assertColumns(expected.get(k).getDataModel(), actual.get(k).getDataModel());
+        }
+        assertColumns(((AbstractPlot<?>) chart.getLayers().get(1).getView().getChildren().stream()
+                .filter(x -> x instanceof ScatterPlot).findFirst().get()).getDataModel(),
+                ((AbstractPlot<?>) restored.getLayers().get(1).getView().getChildren().stream()
+                .filter(x -> x instanceof ScatterPlot).findFirst().get()).getDataModel());
+    }
+
+    /**
+     * A mapped column is copied when first modified, and the modified chart
+     * can be saved over the file it is mapped from.
+     */
+    @Test
+    public void modifiesMappedColumn() throws IOException {
+        Path file = folder.newFile("chart.wfx").toPath();
+        ChartSession.save(createChart(), file);
+        Chart restored = ChartSession.load(file);
+        List<AbstractPlot<?>> plots = new ArrayList<>();
+        restored.forEachPlot(plots::add);
+        DataModel line = plots.get(0).getDataModel();
+        DataModel errors = plots.get(1).getDataModel();
+        line.getYData().set(3, 42d);
+        line.getXData().add(8d);
+        line.getYData().add(9d);
+        errors.getExtraData1().set(0, -1d);
+
+        double[] y = Y.clone();
+        y[3] = 42d;
+        y = Arrays.copyOf(y, y.length + 1);
+        y[y.length - 1] = 9d;
+        assertArrayEquals(y, line.getYColumn().toDoubleArray(), 0d);
+        assertEquals(9, line.getXColumn().size());
+        assertEquals(-1d, errors.getExtraColumn1().getDouble(0), 0d);
+        // The other columns still read the mapped values
+        assertArrayEquals(ERROR, errors.getExtraColumn3().toDoubleArray(), 0d);
+
+        ChartSession.save(restored, file);
+        Chart reloaded = ChartSession.load(file);
+        List<AbstractPlot<?>> reloadedPlots = new ArrayList<>();
+        reloaded.forEachPlot(reloadedPlots::add);
+        for (int k = 0; k < plots.size(); k++) {
+            assertColumns(plots.get(k).getDataModel(), reloadedPlots.get(k).getDataModel());
+        }
+        assertArrayEquals(y, reloadedPlots.get(0).getDataModel().getYColumn().toDoubleArray(), 0d);
+    }
+}
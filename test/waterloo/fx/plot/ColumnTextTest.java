@@ -0,0 +1,171 @@
+/*
+*
+ * <http://sigtool.github.io/waterlooFX/>
+ *
+ * Copyright King's College London  2014. Copyright Ironduke Publishing Limited, UK 2014-.
+ *
+ * @author Malcolm Lidierth <a href="https://github.com/sigtool/waterlooFX/issues"> [Contact]</a>
+ *
+ * Project Waterloo is free software:  you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Project Waterloo is distributed in the hope that it will  be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package waterloo.fx.plot;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import waterloo.fx.plot.model.DoubleColumn;
+
+/**
+ * Converts columns to and from the strings used by the data properties of
+ * plots.
+ *
+ * @author Malcolm Lidierth
+ */
+public class ColumnTextTest {
+
+    private static final double[] VALUES = {1d, -2.5, Double.NaN, Double.POSITIVE_INFINITY, -0d,
+        Double.MIN_VALUE, Math.PI, 1e300, 0.1, 42d};
+
+    private static double[] set(String s, boolean legacyBase64) {
+        DoubleColumn column = new DoubleColumn();
+        new ColumnText(column, legacyBase64).set(s);
+        return column.toDoubleArray();
+    }
+
+    private static byte[] littleEndian(double[] values, boolean f32) {
+        ByteBuffer buffer = ByteBuffer.allocate(values.length * (f32 ? Float.BYTES : Double.BYTES))
+                .order(ByteOrder.LITTLE_ENDIAN);
+        for (double v : values) {
+            if (f32) {
+                buffer.putFloat((float) v);
+            } else {
+                buffer.putDouble(v);
+            }
+        }
+        return buffer.array();
+    }
+
+    @Test
+    public void decodesLittleEndian() {
+        // 1.0 as the bytes 00 00 00 00 00 00 F0 3F and 00 00 80 3F
+        assertArrayEquals(new double[]{1d}, set("f64:AAAAAAAA8D8=", false), 0d);
+        assertArrayEquals(new double[]{1d}, set("f32:AACAPw==", false), 0d);
+    }
+
+    @Test
+    public void decodesF64() {
+        String s = ColumnText.F64 + Base64.getEncoder().encodeToString(littleEndian(VALUES, false));
+        assertArrayEquals(VALUES, set(s, true), 0d);
+    }
+
+    @Test
+    public void decodesF32() {
+        String s = ColumnText.F32 + Base64.getEncoder().encodeToString(littleEndian(VALUES, true));
+        double[] expected = new double[VALUES.length];
+        for (int k = 0; k < expected.length; k++) {
+            expected[k] = (float) VALUES[k];
+        }
+        assertArrayEquals(expected, set(s, false), 0d);
+    }
+
+    @Test
+    public void ignoresLineBreaks() {
+        String s = Base64.getMimeEncoder().encodeToString(littleEndian(VALUES, false));
+        assertTrue(s.contains("\r\n"));
+        assertArrayEquals(VALUES, set(ColumnText.F64 + s, false), 0d);
+        assertArrayEquals(VALUES, set(ColumnText.F64 + "\n" + s.replace("\r\n", "\n  ") + "\n", false), 0d);
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void rejectsPartialDouble() {
+        set(ColumnText.F64 + Base64.getEncoder().encodeToString(new byte[12]), false);
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void rejectsPartialFloat() {
+        set(ColumnText.F32 + Base64.getEncoder().encodeToString(new byte[6]), false);
+    }
+
+    @Test
+    public void decodesLegacyBase64() {
+        String s = Base64.getEncoder().encodeToString("1 2.5\n-3\t4e2".getBytes(StandardCharsets.UTF_8));
+        assertTrue(Character.isLetter(s.charAt(0)));
+        assertArrayEquals(new double[]{1d, 2.5, -3d, 400d}, set(s, true), 0d);
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void rejectsLegacyBase64WhenNotEnabled() {
+        set(Base64.getEncoder().encodeToString("1 2".getBytes(StandardCharsets.UTF_8)), false);
+    }
+
+    @Test
+    public void parsesCsv() {
+        assertArrayEquals(new double[]{1d, 2.5, Double.NaN}, set("1.0, 2.5, NaN", false), 0d);
+        assertArrayEquals(new double[]{1d, 2d}, set(" 1 ,, 2 , ", true), 0d);
+        assertArrayEquals(new double[]{-1e-3}, set("-1e-3", true), 0d);
+        assertArrayEquals(new double[0], set("", true), 0d);
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void rejectsBadNumber() {
+        set("1, 2, x", false);
+    }
+
+    @Test
+    public void returnsFormLastSet() {
+        DoubleColumn column = new DoubleColumn();
+        ColumnText text = new ColumnText(column, true);
+
+        text.set("1, 2.5");
+        assertEquals("1.0, 2.5", text.get());
+
+        text.set(ColumnText.encode(VALUES, false));
+        assertTrue(text.get().startsWith(ColumnText.F64));
+        double[] values = new double[VALUES.length];
+        ColumnText.decode(text.get()).get(values);
+        assertArrayEquals(VALUES, values, 0d);
+
+        text.set(ColumnText.encode(VALUES, true));
+        assertTrue(text.get().startsWith(ColumnText.F32));
+        // Modified values are written in the same form, rounded to single precision
+        column.set(0, 0.1);
+        ColumnText.decode(text.get()).get(values);
+        assertEquals((float) 0.1, values[0], 0d);
+
+        text.set("3");
+        assertEquals("3.0", text.get());
+    }
+
+    @Test
+    public void cachesText() {
+        DoubleColumn column = new DoubleColumn(1d, 2d);
+        ColumnText text = new ColumnText(column, false);
+        String first = text.get();
+        assertEquals("1.0, 2.0", first);
+        assertSame(first, text.get());
+        column.add(3d);
+        String second = text.get();
+        assertNotSame(first, second);
+        assertEquals("1.0, 2.0, 3.0", second);
+        assertSame(second, text.get());
+    }
+}
@@ -0,0 +1,310 @@
+/*
+*
+ * <http://sigtool.github.io/waterlooFX/>
+ *
+ * Copyright King's College London  2014. Copyright Ironduke Publishing Limited, UK 2014-.
+ *
+ * @author Malcolm Lidierth <a href="https://github.com/sigtool/waterlooFX/issues"> [Contact]</a>
+ *
+ * Project Waterloo is free software:  you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Project Waterloo is distributed in the hope that it will  be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package waterloo.fx.plot;
+
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import waterloo.fx.transforms.AbstractTransform;
+import waterloo.fx.transforms.Log10Transform;
+import waterloo.fx.transforms.NOPTransform;
+
+/**
+ * Compares the projection computed in parallel with a sequential reference,
+ * and checks the culling, decimation and cancellation rules directly.
+ *
+ * @author Malcolm Lidierth
+ */
+public class ProjectionTaskTest {
+
+    /**
+     * The leaf size of {@code ProjectionTask}: each leaf is culled and
+     * decimated independently.
+     */
+    private static final int LEAF_SIZE = 65536;
+    private static final double MARGIN = 8d;
+
+    private static final AbstractTransform LINEAR = new NOPTransform();
+
+    private static final double X_LEFT = 0d, X_RIGHT = 1000d, Y_BOTTOM = -1d, Y_TOP = 1d;
+    private static final double WIDTH = 400d, HEIGHT = 300d;
+
+    private static ProjectionTask.Frame frame(AbstractTransform yTransform, boolean polar, double columnWidth) {
+        return ProjectionTask.Frame.of(X_LEFT, X_RIGHT, Y_BOTTOM, Y_TOP, WIDTH, HEIGHT,
+                LINEAR, yTransform, polar, columnWidth);
+    }
+
+    private static double[] project(ProjectionTask.Frame frame, double[] x, double[] y) {
+        return new ProjectionTask(frame, DoubleBuffer.wrap(x), DoubleBuffer.wrap(y), null, null, x.length).invoke();
+    }
+
+    /**
+     * Data running past the edges of the view, with gaps of non-finite values
+     * and runs of points in the same pixel column.
+     */
+    private static double[][] data(int n, long seed) {
+        Random random = new Random(seed);
+        double[] x = new double[n];
+        double[] y = new double[n];
+        for (int k = 0; k < n; k++) {
+            x[k] = -200d + 1400d * k / n;
+            y[k] = 1.5 * Math.sin(k / 500d) + 0.2 * random.nextGaussian();
+            if (random.nextInt(100) == 0) {
+                y[k] = Double.NaN;
+            } else if (random.nextInt(500) == 0) {
+                x[k] = Double.POSITIVE_INFINITY;
+            }
+        }
+        return new double[][]{x, y};
+    }
+
+    /**
+     * Sequential reference: splits the data into the leaves used by the task,
+     * then culls and decimates each leaf in turn as described by the class.
+     */
+    private static double[] reference(double[] x, double[] y, AbstractTransform yTransform, double columnWidth) {
+        double[] px = new double[x.length];
+        double[] py = new double[x.length];
+        boolean[] finite = new boolean[x.length];
+        for (int k = 0; k < x.length; k++) {
+            px[k] = (LINEAR.transform(x[k]) - X_LEFT) * WIDTH / (X_RIGHT - X_LEFT);
+            py[k] = HEIGHT - (yTransform.transform(y[k]) - Y_BOTTOM) * HEIGHT / (Y_TOP - Y_BOTTOM);
+            finite[k] = Double.isFinite(px[k]) && Double.isFinite(py[k]);
+        }
+        Output out = new Output();
+        leaves(0, x.length, (from, to) -> {
+            // Culling
+            int[] kept = new int[to - from];
+            int n = 0;
+            int prevCode = 0;
+            for (int k = from; k < to; k++) {
+                if (!finite[k]) {
+                    continue;
+                }
+                int code = outcode(px[k], py[k]);
+                boolean haveNext = k + 1 < x.length && finite[k + 1];
+                if (n > 0 && haveNext && (prevCode & code & outcode(px[k + 1], py[k + 1])) != 0) {
+                    continue;
+                }
+                kept[n++] = k;
+                prevCode = code;
+            }
+            if (columnWidth <= 0d) {
+                for (int j = 0; j < n; j++) {
+                    out.add(px[kept[j]], py[kept[j]]);
+                }
+                return;
+            }
+            // Decimation of runs in the same column
+            for (int start = 0; start < n;) {
+                long column = (long) Math.floor(px[kept[start]] / columnWidth);
+                int end = start;
+                while (end < n && (long) Math.floor(px[kept[end]] / columnWidth) == column) {
+                    end++;
+                }
+                int first = kept[start], last = kept[end - 1], min = first, max = first;
+                for (int j = start; j < end; j++) {
+                    if (py[kept[j]] < py[min]) {
+                        min = kept[j];
+                    }
+                    if (py[kept[j]] > py[max]) {
+                        max = kept[j];
+                    }
+                }
+                out.add(px[first], py[first]);
+                for (int k : new int[]{Math.min(min, max), Math.max(min, max)}) {
+                    if (k != first && k != last) {
+                        out.add(px[k], py[k]);
+                    }
+                    if (min == max) {
+                        break;
+                    }
+                }
+                if (last != first) {
+                    out.add(px[last], py[last]);
+                }
+                start = end;
+            }
+        });
+        return out.toArray();
+    }
+
+    private interface Leaf {
+
+        void accept(int from, int to);
+    }
+
+    private static void leaves(int from, int to, Leaf leaf) {
+        if (to - from <= LEAF_SIZE) {
+            leaf.accept(from, to);
+        } else {
+            int mid = (from + to) >>> 1;
+            leaves(from, mid, leaf);
+            leaves(mid, to, leaf);
+        }
+    }
+
+    private static int outcode(double px, double py) {
+        int code = 0;
+        if (px < -MARGIN) {
+            code |= 1;
+        } else if (px > WIDTH + MARGIN) {
+            code |= 2;
+        }
+        if (py < -MARGIN) {
+            code |= 4;
+        } else if (py > HEIGHT + MARGIN) {
+            code |= 8;
+        }
+        return code;
+    }
+
+    private static final class Output {
+
+        private double[] values = new double[64];
+        private int count;
+
+        void add(double px, double py) {
+            if (count + 2 > values.length) {
+                values = Arrays.copyOf(values, 2 * values.length);
+            }
+            values[count++] = px;
+            values[count++] = py;
+        }
+
+        double[] toArray() {
+            return Arrays.copyOf(values, count);
+        }
+    }
+
+    @Test
+    public void matchesReferenceBelowLeafSize() {
+        double[][] d = data(LEAF_SIZE / 2, 1L);
+        assertArrayEquals(reference(d[0], d[1], LINEAR, 0d), project(frame(LINEAR, false, 0d), d[0], d[1]), 0d);
+        assertArrayEquals(reference(d[0], d[1], LINEAR, 1d), project(frame(LINEAR, false, 1d), d[0], d[1]), 0d);
+    }
+
+    @Test
+    public void matchesReferenceAboveLeafSize() {
+        // Several levels of forking, with leaves of unequal size
+        double[][] d = data(5 * LEAF_SIZE + 12345, 2L);
+        assertArrayEquals(reference(d[0], d[1], LINEAR, 0d), project(frame(LINEAR, false, 0d), d[0], d[1]), 0d);
+        assertArrayEquals(reference(d[0], d[1], LINEAR, 0.5), project(frame(LINEAR, false, 0.5), d[0], d[1]), 0d);
+        double[] y = d[1].clone();
+        for (int k = 0; k < y.length; k++) {
+            // Includes non-positive values, which are not finite on a log axis
+            y[k] = Math.pow(10d, y[k]) - 0.05;
+        }
+        AbstractTransform log = new Log10Transform();
+        assertArrayEquals(reference(d[0], y, log, 1d), project(frame(log, false, 1d), d[0], y), 0d);
+    }
+
+    @Test
+    public void skipsNonFiniteValues() {
+        double[] x = {100d, 200d, Double.NaN, 300d, 400d};
+        double[] y = {0d, Double.NaN, 0d, 0.5, Double.NEGATIVE_INFINITY};
+        assertArrayEquals(new double[]{40d, 150d, 120d, 75d}, project(frame(LINEAR, false, 0d), x, y), 0d);
+    }
+
+    @Test
+    public void decimatesColumns() {
+        // Nine points in the first pixel column, then one in the next
+        double[] x = {0d, 0.25, 0.5, 0.75, 1d, 1.25, 1.5, 1.75, 2d, 5d};
+        double[] y = {0d, 0.5, -0.5, 0.9, 0.1, -0.9, 0.2, 0.3, 0.4, 0d};
+        double[] p = project(frame(LINEAR, false, 1d), x, y);
+        // First, maximum and minimum y in index order, last
+        assertArrayEquals(new double[]{
+            0d, 150d,
+            0.3, 15d,
+            0.5, 285d,
+            0.8, 90d,
+            2d, 150d}, p, 1e-9);
+    }
+
+    @Test
+    public void keepsLastExtremeOfColumn() {
+        // The last point in the column has the smallest y
+        double[] x = {0d, 0.5, 1d};
+        double[] y = {0d, 0.5, -0.5};
+        assertArrayEquals(new double[]{0d, 150d, 0.2, 75d, 0.4, 225d},
+                project(frame(LINEAR, false, 1d), x, y), 1e-9);
+    }
+
+    @Test
+    public void keepsDistinctColumns() {
+        double[] x = new double[100];
+        double[] y = new double[100];
+        for (int k = 0; k < x.length; k++) {
+            x[k] = 10d * k;
+            y[k] = Math.sin(k);
+        }
+        // One point per column: nothing is removed
+        assertEquals(200, project(frame(LINEAR, false, 1d), x, y).length);
+    }
+
+    @Test
+    public void cullsOutsideView() {
+        // Points 1 to 8 are far above the view, as are their neighbours
+        double[] x = new double[10];
+        double[] y = new double[10];
+        for (int k = 0; k < x.length; k++) {
+            x[k] = 100d * k;
+            y[k] = k == 0 || k == 9 ? 0d : 10d;
+        }
+        double[] p = project(frame(LINEAR, false, 0d), x, y);
+        // The first point, the first and last points above the view, and the last point
+        assertArrayEquals(new double[]{0d, 150d, 40d, -1350d, 320d, -1350d, 360d, 150d}, p, 1e-9);
+        for (int k = 3; k < p.length - 2; k += 2) {
+            assertTrue(p[k] < -MARGIN);
+        }
+    }
+
+    @Test
+    public void cancelledTaskReturnsNothing() {
+        double[][] d = data(3 * LEAF_SIZE, 3L);
+        ProjectionTask task = new ProjectionTask(frame(LINEAR, false, 1d), DoubleBuffer.wrap(d[0]),
+                DoubleBuffer.wrap(d[1]), null, null, d[0].length);
+        task.cancel();
+        assertEquals(0, task.invoke().length);
+    }
+
+    @Test
+    public void projectsPolarData() {
+        double[] theta = {0d, Math.PI / 2d, Math.PI};
+        double[] r = {500d, 0.5, 100d};
+        double[] cos = new double[theta.length];
+        double[] sin = new double[theta.length];
+        for (int k = 0; k < theta.length; k++) {
+            cos[k] = Math.cos(theta[k]);
+            sin[k] = Math.sin(theta[k]);
+        }
+        double[] p = new ProjectionTask(frame(LINEAR, true, 0d), DoubleBuffer.wrap(theta), DoubleBuffer.wrap(r),
+                cos, sin, theta.length).invoke();
+        assertArrayEquals(new double[]{200d, 150d, 0d, 75d}, Arrays.copyOf(p, 4), 1e-9);
+        assertEquals(-40d, p[4], 1e-9);
+    }
+}
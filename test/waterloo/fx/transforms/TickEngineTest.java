@@ -0,0 +1,161 @@
+/*
+*
+ * <http://sigtool.github.io/waterlooFX/>
+ *
+ * Copyright King's College London  2014. Copyright Ironduke Publishing Limited, UK 2014-.
+ *
+ * @author Malcolm Lidierth <a href="https://github.com/sigtool/waterlooFX/issues"> [Contact]</a>
+ *
+ * Project Waterloo is free software:  you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Project Waterloo is distributed in the hope that it will  be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package waterloo.fx.transforms;
+
+import com.sun.javafx.application.PlatformImpl;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import waterloo.fx.plot.Chart;
+
+/**
+ * Computes linear and log ticks and reuses them from the cache.
+ *
+ * @author Malcolm Lidierth
+ */
+public class TickEngineTest {
+
+    private static final double EPS = 1e-12;
+
+    @BeforeClass
+    public static void startToolkit() {
+        PlatformImpl.startup(() -> {
+        });
+    }
+
+    @Test
+    public void computesLinearTicks() {
+        TickEngine.Ticks t = new TickEngine().linear(-3d, 7d, 2d, 4);
+        assertArrayEquals(new double[]{-4d, -2d, 0d, 2d, 4d, 6d, 8d}, t.major, EPS);
+        assertEquals(27, t.minor.length);
+        for (int k = 0; k < t.minor.length; k++) {
+            assertEquals(-4d + k * 0.5, t.minor[k], EPS);
+        }
+    }
+
+    @Test
+    public void snapsLinearTicksToZero() {
+        TickEngine.Ticks t = new TickEngine().linear(-0.25, 0.25, 0.1, 0);
+        assertEquals(0, t.minor.length);
+        assertEquals(7, t.major.length);
+        assertEquals(0d, t.major[3], 0d);
+        for (int k = 0; k < t.major.length; k++) {
+            assertEquals(-0.3 + k * 0.1, t.major[k], EPS);
+        }
+    }
+
+    @Test
+    public void computesLog10Ticks() {
+        TickEngine.Ticks t = new TickEngine().log(-1.5, 2.5, 10d);
+        assertArrayEquals(new double[]{-1d, 0d, 1d, 2d}, t.major, 0d);
+        // 4..9 below the first decade, 2..9 in each of the next three and 2..3 above
+        assertEquals(6 + 3 * 8 + 2, t.minor.length);
+        assertEquals(-2d + Math.log10(4d), t.minor[0], EPS);
+        for (int m = 2; m < 10; m++) {
+            assertEquals(-1d + Math.log10(m), t.minor[4 + m], EPS);
+        }
+        assertEquals(2d + Math.log10(3d), t.minor[t.minor.length - 1], EPS);
+    }
+
+    @Test
+    public void computesNaturalLogTicks() {
+        TickEngine.Ticks t = new TickEngine().log(0d, 2d, Math.E);
+        assertArrayEquals(new double[]{0d, 1d, 2d}, t.major, 0d);
+        assertArrayEquals(new double[]{Math.log(2d), 1d + Math.log(2d)}, t.minor, EPS);
+    }
+
+    @Test
+    public void reusesCachedTicks() {
+        TickEngine engine = new TickEngine();
+        TickEngine.Ticks t = engine.linear(0d, 10d, 2d, 2);
+        assertSame(t, engine.linear(0d, 10d, 2d, 2));
+        // Panning away and back again
+        TickEngine.Ticks panned = engine.linear(1d, 11d, 2d, 2);
+        assertNotSame(t, panned);
+        assertSame(t, engine.linear(0d, 10d, 2d, 2));
+        assertSame(panned, engine.linear(1d, 11d, 2d, 2));
+        // The key includes the scale, interval and minor count
+        assertNotSame(t, engine.linear(0d, 10d, 1d, 2));
+        assertNotSame(t, engine.linear(0d, 10d, 2d, 5));
+        assertNotSame(t, engine.log(0d, 10d, 2d));
+        TickEngine.Ticks log = engine.log(0d, 3d, 10d);
+        assertSame(log, engine.log(0d, 3d, 10d));
+        assertNotSame(log, engine.log(0d, 3d, Math.E));
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedTicks() {
+        TickEngine engine = new TickEngine();
+        TickEngine.Ticks first = engine.linear(0d, 10d, 2d, 2);
+        TickEngine.Ticks second = engine.linear(1d, 11d, 2d, 2);
+        for (int k = 2; k < 16; k++) {
+            engine.linear(k, k + 10d, 2d, 2);
+        }
+        // Touching the first entry makes the second the eldest
+        assertSame(first, engine.linear(0d, 10d, 2d, 2));
+        engine.linear(100d, 110d, 2d, 2);
+        assertSame(first, engine.linear(0d, 10d, 2d, 2));
+        TickEngine.Ticks recomputed = engine.linear(1d, 11d, 2d, 2);
+        assertNotSame(second, recomputed);
+        assertArrayEquals(second.major, recomputed.major, 0d);
+    }
+
+    @Test
+    public void clampsTickCount() {
+        TickEngine engine = new TickEngine();
+        assertEquals(TickEngine.MAX_TICKS + 1,
+                engine.linear(0d, TickEngine.MAX_TICKS - 1, 1d, 0).major.length);
+        assertSame(TickEngine.Ticks.EMPTY, engine.linear(0d, 1000d, 1d, 0));
+        assertSame(TickEngine.Ticks.EMPTY, engine.linear(0d, 1d, 0d, 0));
+        assertSame(TickEngine.Ticks.EMPTY, engine.linear(Double.NaN, 1d, 1d, 0));
+        assertEquals(TickEngine.MAX_TICKS + 1,
+                engine.log(0d, TickEngine.MAX_TICKS, 10d).major.length);
+        assertSame(TickEngine.Ticks.EMPTY, engine.log(-300d, 300d, 10d));
+        assertSame(TickEngine.Ticks.EMPTY, engine.log(0d, Double.POSITIVE_INFINITY, 10d));
+    }
+
+    @Test
+    public void verticalLogAxisUsesYLimits() {
+        Chart chart = new Chart();
+        chart.setXLeft(5d);
+        chart.setXRight(6d);
+        chart.setYBottom(-1.5);
+        chart.setYTop(2.5);
+        Log10Transform horizontal = new Log10Transform();
+        horizontal.updateBindings(chart, AbstractTransform.AXIS.HORIZONTAL);
+        assertArrayEquals(new double[]{5d, 6d}, horizontal.getMajorTickArray(), 0d);
+        Log10Transform vertical = new Log10Transform();
+        vertical.updateBindings(chart, AbstractTransform.AXIS.VERTICAL);
+        assertArrayEquals(new double[]{-1d, 0d, 1d, 2d}, vertical.getMajorTickArray(), 0d);
+        assertEquals(32, vertical.getMinorTickArray().length);
+        assertTrue(vertical.getMinorTickArray()[0] >= -1.5);
+        // A change to the y limits is seen by the vertical axis only
+        chart.setYBottom(0.5);
+        assertArrayEquals(new double[]{1d, 2d}, vertical.getMajorTickArray(), 0d);
+        assertArrayEquals(new double[]{5d, 6d}, horizontal.getMajorTickArray(), 0d);
+    }
+}
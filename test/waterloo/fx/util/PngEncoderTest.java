@@ -0,0 +1,169 @@
+/*
+*
+ * <http://sigtool.github.io/waterlooFX/>
+ *
+ * Copyright King's College London  2014. Copyright Ironduke Publishing Limited, UK 2014-.
+ *
+ * @author Malcolm Lidierth <a href="https://github.com/sigtool/waterlooFX/issues"> [Contact]</a>
+ *
+ * Project Waterloo is free software:  you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Project Waterloo is distributed in the hope that it will  be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package waterloo.fx.util;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.zip.Deflater;
+import javax.imageio.ImageIO;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Encodes images and decodes them with {@code ImageIO}.
+ *
+ * @author Malcolm Lidierth
+ */
+public class PngEncoderTest {
+
+    private static final int COLOR_TYPE_RGB = 2;
+    private static final int COLOR_TYPE_PALETTE = 3;
+    private static final int COLOR_TYPE_RGBA = 6;
+
+    /**
+     * Returns pixels chosen at random from a number of colours, the first of
+     * which is translucent if requested.
+     */
+    private static int[] pixels(int count, int colors, boolean translucent, long seed) {
+        Random random = new Random(seed);
+        int[] palette = new int[colors];
+        for (int k = 0; k < colors; k++) {
+            // Distinct colours for up to 419 entries
+            palette[k] = 0xFF000000 | k * 40009;
+        }
+        if (translucent) {
+            palette[0] = 0x80FF0000;
+        }
+        int[] argb = new int[count];
+        for (int k = 0; k < count; k++) {
+            argb[k] = palette[k < colors ? k : random.nextInt(colors)];
+        }
+        return argb;
+    }
+
+    private static byte[] encode(PngEncoder encoder, int[] argb, int width, int height) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        encoder.encode(argb, width, height, out);
+        return out.toByteArray();
+    }
+
+    /**
+     * Checks the bit depth and colour type in the IHDR chunk and that the
+     * decoded pixels match.
+     */
+    private static void assertImage(byte[] png, int bitDepth, int colorType, int[] argb, int width, int height)
+            throws IOException {
+        assertEquals(bitDepth, png[24]);
+        assertEquals(colorType, png[25]);
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(png));
+        assertEquals(width, image.getWidth());
+        assertEquals(height, image.getHeight());
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int expected = argb[y * width + x];
+                if (colorType == COLOR_TYPE_RGB) {
+                    expected |= 0xFF000000;
+                }
+                assertEquals("Pixel " + x + "," + y, Integer.toHexString(expected),
+                        Integer.toHexString(image.getRGB(x, y)));
+            }
+        }
+    }
+
+    @Test
+    public void encodesRgb() throws IOException {
+        int width = 701, height = 613;
+        int[] argb = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                argb[y * width + x] = 0xFF000000 | (x & 0xFF) << 16 | (y & 0xFF) << 8 | ((x * y) & 0xFF);
+            }
+        }
+        // Large enough to be compressed in several stripes
+        assertImage(encode(new PngEncoder(), argb, width, height), 8, COLOR_TYPE_RGB, argb, width, height);
+    }
+
+    @Test
+    public void encodesRgba() throws IOException {
+        int width = 97, height = 45;
+        Random random = new Random(1L);
+        int[] argb = new int[width * height];
+        for (int k = 0; k < argb.length; k++) {
+            argb[k] = random.nextInt();
+        }
+        assertImage(encode(new PngEncoder(), argb, width, height), 8, COLOR_TYPE_RGBA, argb, width, height);
+    }
+
+    @Test
+    public void encodesPalettes() throws IOException {
+        int[][] depths = {{2, 1}, {4, 2}, {16, 4}, {256, 8}};
+        for (int[] depth : depths) {
+            // Widths that do not fill the last byte of a row
+            int width = 37, height = 11;
+            int[] argb = pixels(width * height, depth[0], false, depth[0]);
+            assertImage(encode(new PngEncoder(), argb, width, height), depth[1], COLOR_TYPE_PALETTE,
+                    argb, width, height);
+            argb = pixels(width * height, depth[0], true, depth[0]);
+            assertImage(encode(new PngEncoder(), argb, width, height), depth[1], COLOR_TYPE_PALETTE,
+                    argb, width, height);
+        }
+    }
+
+    @Test
+    public void encodesWithoutPalette() throws IOException {
+        int width = 20, height = 10;
+        int[] argb = pixels(width * height, 4, false, 3L);
+        assertImage(encode(new PngEncoder(Deflater.BEST_SPEED, false), argb, width, height), 8, COLOR_TYPE_RGB,
+                argb, width, height);
+        // One colour more than a palette can hold
+        argb = pixels(300, 257, false, 4L);
+        assertImage(encode(new PngEncoder(), argb, 30, 10), 8, COLOR_TYPE_RGB, argb, 30, 10);
+    }
+
+    @Test
+    public void encodesBands() throws IOException {
+        int width = 300, height = 257;
+        int[] argb = new int[width * height];
+        for (int k = 0; k < argb.length; k++) {
+            argb[k] = 0x7F000000 | k;
+        }
+        for (boolean alpha : new boolean[]{false, true}) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            new PngEncoder().encode(width, height, alpha, 7, (y, rows, band) -> {
+                // A band may start with the row above it, for filtering
+                assertTrue(y >= 0 && rows <= 8 && y + rows <= height);
+                System.arraycopy(argb, y * width, band, 0, rows * width);
+            }, out);
+            assertImage(out.toByteArray(), 8, alpha ? COLOR_TYPE_RGBA : COLOR_TYPE_RGB, argb, width, height);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsShortArray() throws IOException {
+        encode(new PngEncoder(), new int[10], 4, 3);
+    }
+}
@@ -0,0 +1,265 @@
+/*
+*
+ * <http://sigtool.github.io/waterlooFX/>
+ *
+ * Copyright King's College London  2014. Copyright Ironduke Publishing Limited, UK 2014-.
+ *
+ * @author Malcolm Lidierth <a href="https://github.com/sigtool/waterlooFX/issues"> [Contact]</a>
+ *
+ * Project Waterloo is free software:  you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Project Waterloo is distributed in the hope that it will  be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package waterloo.fx.batch;
+
+import com.sun.javafx.application.PlatformImpl;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javafx.application.Platform;
+import waterloo.fx.plot.Chart;
+import waterloo.fx.plot.ChartRenderer;
+import waterloo.fx.plot.SoftwareRenderer;
+import waterloo.fx.util.PngEncoder;
+
+/**
+ * Renders the charts listed in a job manifest to PNG files without a display.
+ *
+ * Usage:
+ * <pre>
+ * java waterloo.fx.batch.BatchRenderer [-threads n] [-memory mb] [-out dir] manifest
+ * </pre>
+ * See {@link RenderJob} for the format of the manifest.
+ *
+ * Worker threads read the data files, draw the charts, encode the images and
+ * write them to disk concurrently. Only the styling and layout of each chart
+ * are done on the FX Application Thread, by {@link ChartRenderer#capture}; the
+ * workers then draw the charts in parallel with {@link SoftwareRenderer}. The
+ * number of jobs queued for the workers is bounded, as is the memory used by
+ * the pixels of the images being drawn or written: a job waits until its
+ * image fits within the limit set by -memory. When all jobs have run, the
+ * number of charts rendered per second and the peak heap usage are reported.
+ *
+ * To run without a display, use the headless Monocle platform, e.g.
+ * {@code -Dglass.platform=Monocle -Dmonocle.platform=Headless -Dprism.order=sw}
+ * with Monocle on the class path.
+ *
+ * @author Malcolm Lidierth
+ */
+public final class BatchRenderer {
+
+    private final int threads;
+    private final long memoryLimit;
+    private final Path outputDir;
+    /**
+     * Permits, in KiB, for the memory used by image pixels.
+     */
+    private final Semaphore memory;
+    private final AtomicInteger rendered = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final PngEncoder encoder = new PngEncoder();
+
+    /**
+     * @param threads the number of worker threads
+     * @param memoryLimit the maximum number of bytes of image pixels held at
+     * once
+     * @param outputDir the directory against which relative output paths are
+     * resolved
+     */
+    public BatchRenderer(int threads, long memoryLimit, Path outputDir) {
+        this.threads = threads;
+        this.memoryLimit = memoryLimit;
+        this.outputDir = outputDir;
+        memory = new Semaphore(toKiB(memoryLimit));
+    }
+
+    /**
+     * Runs the jobs in a manifest, returning when all have completed.
+     *
+     * @param manifest the manifest file
+     * @return the number of jobs that failed
+     * @throws IOException if the manifest cannot be read
+     * @throws InterruptedException if interrupted while waiting for the jobs
+     */
+    public int run(Path manifest) throws IOException, InterruptedException {
+        Path base = manifest.toAbsolutePath().getParent();
+        // A full queue makes the reader run the job itself, so no more than
+        // a few jobs per thread are held in memory
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(2 * threads), new ThreadPoolExecutor.CallerRunsPolicy());
+        resetPeakUsage();
+        long start = System.nanoTime();
+        try (BufferedReader reader = Files.newBufferedReader(manifest, StandardCharsets.UTF_8)) {
+            String text;
+            int line = 0;
+            while ((text = reader.readLine()) != null) {
+                line++;
+                RenderJob job;
+                try {
+                    job = RenderJob.parse(line, text, base, outputDir);
+                } catch (IllegalArgumentException ex) {
+                    System.err.println(manifest + ": " + ex.getMessage());
+                    failed.incrementAndGet();
+                    continue;
+                }
+                if (job != null) {
+                    pool.execute(() -> runJob(job));
+                }
+            }
+        } finally {
+            pool.shutdown();
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("Rendered %d charts in %.2f s (%.1f charts/s), %d failed%n",
+                rendered.get(), seconds, rendered.get() / seconds, failed.get());
+        System.out.printf("Peak heap usage %.1f MB, image memory limit %.1f MB%n",
+                getPeakUsage() / 1048576d, memoryLimit / 1048576d);
+        return failed.get();
+    }
+
+    private void runJob(RenderJob job) {
+        // The pixels are drawn into the array that is encoded
+        int permits = Math.min(toKiB(job.getImageBytes()), toKiB(memoryLimit));
+        try {
+            memory.acquire(permits);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        try {
+            double[][] xy = job.readData();
+            int[] pixels = render(job, xy);
+            Path output = job.getOutput();
+            if (output.getParent() != null) {
+                Files.createDirectories(output.getParent());
+            }
+            encoder.write(pixels, job.getImageWidth(), job.getImageHeight(), output);
+            rendered.incrementAndGet();
+        } catch (IOException | RuntimeException ex) {
+            System.err.println("Line " + job.getLine() + ": " + ex);
+            failed.incrementAndGet();
+        } finally {
+            memory.release(permits);
+        }
+    }
+
+    /**
+     * Creates and captures the chart on the FX Application Thread, then draws
+     * it on the calling thread.
+     */
+    private static int[] render(RenderJob job, double[][] xy) {
+        FutureTask<SoftwareRenderer> task = new FutureTask<>(() -> {
+            Chart chart = job.createChart(xy);
+            return ChartRenderer.capture(chart, job.getWidth(), job.getHeight());
+        });
+        Platform.runLater(task);
+        try {
+            return task.get().render(job.getWidth(), job.getHeight(), job.getScale());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw new IllegalStateException(ex.getCause());
+        }
+    }
+
+    private static int toKiB(long bytes) {
+        return (int) Math.min(Integer.MAX_VALUE, (bytes + 1023L) / 1024L);
+    }
+
+    private static void resetPeakUsage() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    /**
+     * @return the sum of the peak usage of the heap memory pools in bytes
+     */
+    private static long getPeakUsage() {
+        long peak = 0L;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    /**
+     * @param args the command line arguments
+     */
+    public static void main(String[] args) {
+        int threads = Runtime.getRuntime().availableProcessors();
+        long memoryLimit = 256L * 1048576L;
+        Path outputDir = Paths.get(".");
+        Path manifest = null;
+        try {
+            for (int k = 0; k < args.length; k++) {
+                switch (args[k]) {
+                    case "-threads":
+                        threads = Integer.parseInt(args[++k]);
+                        break;
+                    case "-memory":
+                        memoryLimit = Long.parseLong(args[++k]) * 1048576L;
+                        break;
+                    case "-out":
+                        outputDir = Paths.get(args[++k]);
+                        break;
+                    default:
+                        manifest = Paths.get(args[k]);
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException ex) {
+            manifest = null;
+        }
+        if (manifest == null || threads < 1 || memoryLimit < 1L) {
+            System.err.println("Usage: BatchRenderer [-threads n] [-memory mb] [-out dir] manifest");
+            System.exit(2);
+        }
+        int failures = 0;
+        // Start the toolkit without an Application
+        PlatformImpl.startup(() -> {
+        });
+        try {
+            failures = new BatchRenderer(threads, memoryLimit, outputDir).run(manifest);
+        } catch (IOException ex) {
+            System.err.println(ex);
+            failures = 1;
+        } catch (InterruptedException ex) {
+            failures = 1;
+        } finally {
+            Platform.exit();
+        }
+        System.exit(failures == 0 ? 0 : 1);
+    }
+}
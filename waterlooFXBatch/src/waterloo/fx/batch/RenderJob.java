@@ -0,0 +1,263 @@
+/*
+*
+ * <http://sigtool.github.io/waterlooFX/>
+ *
+ * Copyright King's College London  2014. Copyright Ironduke Publishing Limited, UK 2014-.
+ *
+ * @author Malcolm Lidierth <a href="https://github.com/sigtool/waterlooFX/issues"> [Contact]</a>
+ *
+ * Project Waterloo is free software:  you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Project Waterloo is distributed in the hope that it will  be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package waterloo.fx.batch;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import waterloo.fx.plot.AbstractPlot;
+import waterloo.fx.plot.BarPlot;
+import waterloo.fx.plot.Chart;
+import waterloo.fx.plot.LinePlot;
+import waterloo.fx.plot.ScatterPlot;
+import waterloo.fx.plot.Viewport;
+
+/**
+ * A chart to be rendered by {@link BatchRenderer}, as described by one line of
+ * a job manifest.
+ *
+ * Each line of the manifest has the whitespace-separated fields
+ * <pre>
+ * type data style width height output [scale]
+ * </pre>
+ * where
+ * <ul>
+ * <li>type is line, scatter or bar</li>
+ * <li>data is a text file with an x and a y value on each line, separated by
+ * whitespace or a comma. Lines that are blank or start with # are
+ * ignored.</li>
+ * <li>style is a CSS style sheet for the chart, or - for the default
+ * style</li>
+ * <li>width and height give the size of the chart</li>
+ * <li>output is the PNG file to write</li>
+ * <li>scale is the number of image pixels per chart pixel, 1 by default</li>
+ * </ul>
+ * Relative paths are resolved against the directory of the manifest for the
+ * data and style, and against the output directory for the output. Blank
+ * lines and lines starting with # are ignored.
+ *
+ * @author Malcolm Lidierth
+ */
+final class RenderJob {
+
+    /**
+     * Fraction of the data range added as a margin on each side of the view.
+     */
+    private static final double MARGIN = 0.05;
+
+    private final int line;
+    private final String type;
+    private final Path data;
+    private final Path style;
+    private final double width;
+    private final double height;
+    private final double scale;
+    private final Path output;
+
+    private RenderJob(int line, String type, Path data, Path style, double width, double height,
+            double scale, Path output) {
+        this.line = line;
+        this.type = type;
+        this.data = data;
+        this.style = style;
+        this.width = width;
+        this.height = height;
+        this.scale = scale;
+        this.output = output;
+    }
+
+    /**
+     * Parses a line of a manifest.
+     *
+     * @param line the line number, for messages
+     * @param text the text of the line
+     * @param base the directory of the manifest
+     * @param outputDir the output directory
+     * @return the job, or null if the line is blank or a comment
+     * @throws IllegalArgumentException if the line is invalid
+     */
+    static RenderJob parse(int line, String text, Path base, Path outputDir) {
+        String s = text.trim();
+        if (s.isEmpty() || s.startsWith("#")) {
+            return null;
+        }
+        String[] f = s.split("\\s+");
+        if (f.length < 6 || f.length > 7) {
+            throw new IllegalArgumentException("Line " + line + ": expected 6 or 7 fields but found " + f.length);
+        }
+        String type = f[0].toLowerCase();
+        if (!type.equals("line") && !type.equals("scatter") && !type.equals("bar")) {
+            throw new IllegalArgumentException("Line " + line + ": unknown chart type " + f[0]);
+        }
+        try {
+            double width = Double.parseDouble(f[3]);
+            double height = Double.parseDouble(f[4]);
+            double scale = f.length == 7 ? Double.parseDouble(f[6]) : 1d;
+            if (!(width > 0d && height > 0d && scale > 0d)) {
+                throw new IllegalArgumentException("Line " + line + ": the size and scale must be positive");
+            }
+            return new RenderJob(line, type, base.resolve(f[1]),
+                    f[2].equals("-") ? null : base.resolve(f[2]),
+                    width, height, scale, outputDir.resolve(f[5]));
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Line " + line + ": " + ex.getMessage());
+        }
+    }
+
+    /**
+     * @return the number of bytes needed for the pixels of one copy of the
+     * image
+     */
+    long getImageBytes() {
+        return 4L * getImageWidth() * getImageHeight();
+    }
+
+    int getImageWidth() {
+        return (int) Math.ceil(width * scale);
+    }
+
+    int getImageHeight() {
+        return (int) Math.ceil(height * scale);
+    }
+
+    int getLine() {
+        return line;
+    }
+
+    double getWidth() {
+        return width;
+    }
+
+    double getHeight() {
+        return height;
+    }
+
+    double getScale() {
+        return scale;
+    }
+
+    Path getOutput() {
+        return output;
+    }
+
+    /**
+     * Reads the data file. This may be called on any thread.
+     *
+     * @return the x values in element 0 and the y values in element 1
+     * @throws IOException if the file cannot be read or contains invalid
+     * values
+     */
+    double[][] readData() throws IOException {
+        double[] x = new double[1024];
+        double[] y = new double[1024];
+        int n = 0;
+        int lineNumber = 0;
+        try (BufferedReader reader = Files.newBufferedReader(data, StandardCharsets.UTF_8)) {
+            String text;
+            while ((text = reader.readLine()) != null) {
+                lineNumber++;
+                text = text.trim();
+                if (text.isEmpty() || text.startsWith("#")) {
+                    continue;
+                }
+                String[] f = text.split("[\\s,]+");
+                if (f.length < 2) {
+                    throw new IOException(data + " line " + lineNumber + ": expected x and y values");
+                }
+                if (n == x.length) {
+                    x = Arrays.copyOf(x, 2 * n);
+                    y = Arrays.copyOf(y, 2 * n);
+                }
+                try {
+                    x[n] = Double.parseDouble(f[0]);
+                    y[n] = Double.parseDouble(f[1]);
+                } catch (NumberFormatException ex) {
+                    throw new IOException(data + " line " + lineNumber + ": " + ex.getMessage());
+                }
+                n++;
+            }
+        }
+        return new double[][]{Arrays.copyOf(x, n), Arrays.copyOf(y, n)};
+    }
+
+    /**
+     * Creates the chart for the data. Call on the FX Application Thread.
+     *
+     * @param xy the data from {@code readData}
+     * @return the chart
+     */
+    Chart createChart(double[][] xy) {
+        Chart chart = new Chart();
+        if (style != null) {
+            chart.getStylesheets().add(style.toUri().toString());
+        }
+        AbstractPlot<?> plot;
+        switch (type) {
+            case "scatter":
+                plot = new ScatterPlot();
+                break;
+            case "bar":
+                plot = new BarPlot();
+                break;
+            default:
+                plot = new LinePlot();
+        }
+        plot.getDataModel().setXData(xy[0]);
+        plot.getDataModel().setYData(xy[1]);
+        chart.setViewport(viewportFor(xy[0], xy[1]));
+        chart.getChildren().add(plot);
+        return chart;
+    }
+
+    /**
+     * Returns a viewport that shows all the finite data with a margin.
+     */
+    private static Viewport viewportFor(double[] x, double[] y) {
+        double[] xr = range(x);
+        double[] yr = range(y);
+        double dx = Math.max(xr[1] - xr[0], Math.ulp(xr[0]) * 2d) * MARGIN;
+        double dy = Math.max(yr[1] - yr[0], Math.ulp(yr[0]) * 2d) * MARGIN;
+        return new Viewport(xr[0] - dx, xr[1] + dx, yr[0] - dy, yr[1] + dy);
+    }
+
+    private static double[] range(double[] v) {
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for (double d : v) {
+            if (Double.isFinite(d)) {
+                min = Math.min(min, d);
+                max = Math.max(max, d);
+            }
+        }
+        if (min > max) {
+            return new double[]{-1d, 1d};
+        }
+        if (min == max) {
+            return new double[]{min - 1d, max + 1d};
+        }
+        return new double[]{min, max};
+    }
+}